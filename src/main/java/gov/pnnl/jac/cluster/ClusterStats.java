@@ -76,6 +76,36 @@ public final class ClusterStats {
 		return members;
 	}
 	
+	/**
+	 * Computes the sum over all clusters of the squared distances of the members
+	 * from their cluster centers.  This is the quantity minimized by k-means.
+	 * 
+	 * @param cs
+	 * @param clusters
+	 * @param distanceFunc
+	 * 
+	 * @return
+	 */
+	public static double computeSquaredError(CoordinateList cs, ClusterList clusters, DistanceFunc distanceFunc) {
+		
+		final int numClusters = clusters.getClusterCount();
+		double[] buffer = new double[cs.getDimensionCount()];
+		
+		double sum = 0.0;
+		for (int c=0; c<numClusters; c++) {
+			Cluster cluster = clusters.getCluster(c);
+			double[] center = cluster.getCenterDirect();
+			final int n = cluster.getSize();
+			for (int i=0; i<n; i++) {
+				cs.getCoordinates(cluster.getMember(i), buffer);
+				double d = distanceFunc.distanceBetween(center, buffer);
+				sum += d * d;
+			}
+		}
+		
+		return sum;
+	}
+	
 	public static double[][] computeMeanAndVariance(CoordinateList cs, Cluster cluster) {
 		int dim = cs.getDimensionCount();
 		if (dim != cluster.getDimensions()) {
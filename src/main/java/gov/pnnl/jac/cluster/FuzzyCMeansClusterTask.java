@@ -6,12 +6,11 @@ import gov.pnnl.jac.geom.CoordinateMath;
 import gov.pnnl.jac.geom.SimpleCoordinateList;
 import gov.pnnl.jac.geom.distance.DistanceFunc;
 import gov.pnnl.jac.task.ProgressHandler;
+import gov.pnnl.jac.task.TaskScheduler;
 import gov.pnnl.jac.util.MethodTimer;
 
 import java.util.*;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 
 public class FuzzyCMeansClusterTask extends ClusterTask {
@@ -32,7 +31,9 @@ public class FuzzyCMeansClusterTask extends ClusterTask {
 	private List<ClusterCenterUpdater> mClusterCenterUpdaters;
 	private List<ErrorCalculator> mErrorCalculators;
 	
-	private ExecutorService mThreadPool;
+	// True if the updaters and calculators are run concurrently on the
+	// shared subtask pool.
+	private boolean mConcurrent;
 
 	public FuzzyCMeansClusterTask(CoordinateList cs,
 			FuzzyCMeansClusterTaskParams params) {
@@ -102,9 +103,7 @@ public class FuzzyCMeansClusterTask extends ClusterTask {
 				startCluster += numClusters;
 			}
 			
-			if (numThreads > 0) {
-				mThreadPool = Executors.newFixedThreadPool(numThreads);
-			}
+			mConcurrent = numThreads > 1;
 
 			initCenters(ph);
 			
@@ -190,10 +189,6 @@ public class FuzzyCMeansClusterTask extends ClusterTask {
 		} finally {
 
 			mClusterCenters = null;
-			if (mThreadPool != null) {
-				mThreadPool.shutdownNow();
-				mThreadPool = null;
-			}
 			
 			mMembershipUpdaters = null;
 			mClusterCenterUpdaters = null;
@@ -211,8 +206,8 @@ public class FuzzyCMeansClusterTask extends ClusterTask {
 		
 		try {
 
-			if (mThreadPool != null) {
-				mThreadPool.invokeAll(mClusterCenterUpdaters);
+			if (mConcurrent) {
+				TaskScheduler.invokeSubtasks(mClusterCenterUpdaters);
 			} else {
 				mClusterCenterUpdaters.get(0).call();
 			}
@@ -231,8 +226,8 @@ public class FuzzyCMeansClusterTask extends ClusterTask {
 			UPDATE_DEGREES = MethodTimer.startMethodTimer(UPDATE_DEGREES, null);
 
 			try {
-				if (mThreadPool != null) {
-					mThreadPool.invokeAll(mMembershipUpdaters);
+				if (mConcurrent) {
+					TaskScheduler.invokeSubtasks(mMembershipUpdaters);
 				} else {
 					mMembershipUpdaters.get(0).call();
 				}
@@ -310,8 +305,8 @@ public class FuzzyCMeansClusterTask extends ClusterTask {
 
 		try {
 
-			if (mThreadPool != null) {
-				mThreadPool.invokeAll(mErrorCalculators);
+			if (mConcurrent) {
+				TaskScheduler.invokeSubtasks(mErrorCalculators);
 			} else {
 				mErrorCalculators.get(0).call();
 			}
@@ -43,11 +43,21 @@ public class HierarchicalClusterTaskParams implements ClusterTaskParams {
      * SINGLE   -- also known as min-pairwise. Computed as the min
      *             distance between a coordinate in one node and a coordinate
      *             in the other node.
-     * MEAN     -- the distance between the node centers.
+     * MEAN     -- computed the same as AVERAGE, which it predates.
+     * AVERAGE  -- also known as UPGMA.  Computed as the mean of the
+     *             distances between the coordinates in one node and the
+     *             coordinates in the other node.
+     * WARD     -- Ward's minimum variance linkage.  Computed from the
+     *             distances between the nodes' children by the
+     *             Lance-Williams formula for squared distances, so it is
+     *             meaningful for Euclidean distances.
+     *
+     * All are computed from the distances to the merged nodes' children,
+     * without the coordinates.
      *
      */
     public enum Linkage {
-        COMPLETE, SINGLE, MEAN
+        COMPLETE, SINGLE, MEAN, AVERAGE, WARD
     };
 
     /**
@@ -164,6 +174,33 @@ public class HierarchicalClusterTaskParams implements ClusterTaskParams {
     	return Linkage.valueOf(linkageName.toUpperCase());
     }
 
+    /**
+     * Computes the Ward linkage distance from a node formed by merging
+     * two nodes to a third node by the Lance-Williams formula.
+     *
+     * @param distance1 the distance from the first merged node to the third node.
+     * @param distance2 the distance from the second merged node to the third node.
+     * @param count1 the number of coordinates in the first merged node.
+     * @param count2 the number of coordinates in the second merged node.
+     * @param otherCount the number of coordinates in the third node.
+     * @param mergeDistance the distance between the merged nodes.
+     *
+     * @return the distance from the merged node to the third node.
+     */
+    public static double wardDistance(double distance1, double distance2,
+    		int count1, int count2, int otherCount, double mergeDistance) {
+    	// Infinite distances, such as those missing from a sparse distance cache,
+    	// stay infinite as they do for the other linkages.
+    	if (Double.isInfinite(distance1) || Double.isInfinite(distance2)) {
+    		return Double.POSITIVE_INFINITY;
+    	}
+    	double sq = ((count1 + otherCount)*distance1*distance1 +
+    			(count2 + otherCount)*distance2*distance2 -
+    			otherCount*mergeDistance*mergeDistance)/(count1 + count2 + otherCount);
+    	// Rounding may make it slightly negative when all three nodes coincide.
+    	return sq > 0.0 ? Math.sqrt(sq) : 0.0;
+    }
+
     public int hashCode() {
         int hc = mDistanceFunc.hashCode();
         hc = 37 * hc + mLinkage.hashCode();
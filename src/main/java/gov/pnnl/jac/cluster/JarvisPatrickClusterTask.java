@@ -4,8 +4,11 @@ import java.util.*;
 import java.util.concurrent.*;
 
 import gov.pnnl.jac.collections.*;
+import gov.pnnl.jac.geom.BitCoordinateList;
 import gov.pnnl.jac.geom.CoordinateList;
+import gov.pnnl.jac.geom.DistanceQueue;
 import gov.pnnl.jac.geom.KDTree;
+import gov.pnnl.jac.geom.distance.BitDistanceFunc;
 import gov.pnnl.jac.geom.distance.DistanceFunc;
 import gov.pnnl.jac.task.*;
 
@@ -222,10 +225,17 @@ public class JarvisPatrickClusterTask extends ClusterTask {
 	    final int coordCount = coords.getCoordinateCount();
 	    int[][] nearestNeighbors = new int[coordCount][];
 
+	    DistanceFunc distanceFunc = params.getDistanceFunc();
+	    
 	    // A KD-Tree provides an efficient way of quickly looking up nearest
 	    // neighbors. Even for tuple lists with millions of members, this call
-	    // typically takes under a second.
-	    KDTree kdTree = KDTree.forCoordinateList(coords);
+	    // typically takes under a second.  But binary coordinates, such as 
+	    // fingerprints, have too many dimensions for the tree to prune, so 
+	    // the workers compare their bits to those of all the others instead.
+	    KDTree kdTree = null;
+	    if (!(coords instanceof BitCoordinateList && distanceFunc instanceof BitDistanceFunc)) {
+	        kdTree = KDTree.forCoordinateList(coords);
+	    }
 	    
 	    // Compute the nearest neighbors concurrently.
 	    final int workerCount = params.getWorkerThreadCount();
@@ -236,8 +246,6 @@ public class JarvisPatrickClusterTask extends ClusterTask {
 	    // will have 1 more than the rest.
 	    int leftOver = coordCount - (workerCount * perWorker);
 	    
-	    DistanceFunc distanceFunc = params.getDistanceFunc();
-	    
 	    // Instantiate the workers.
 	    int startTuple = 0;
 	    for (int i=0; i<workerCount; i++) {
@@ -250,20 +258,11 @@ public class JarvisPatrickClusterTask extends ClusterTask {
 	      startTuple = endTuple;
 	    }
 	    
-	    // If more than one worker, execute with a thread pool.
+	    // If more than one worker, execute on the shared subtask pool.
 	    if (workerCount > 1) {
-	        ExecutorService threadPool = null;
-	        try {
-	          threadPool = Executors.newFixedThreadPool(workerCount);
-	          // This will block. However, canceling will cause execution
-	          // to stop when the workers post progress.
-	          threadPool.invokeAll(workers);
-	        } finally {
-	          // Be sure to gracefully shutdown the thread pool.
-	          if (threadPool != null) {
-	            threadPool.shutdown();
-	          }
-	        }
+	        // This will block. However, canceling will cause execution
+	        // to stop when the workers post progress.
+	        TaskScheduler.invokeSubtasks(workers);
 	    } else {      
 	      // Only 1 worker, just call directly.
 	        workers.get(0).call();
@@ -304,7 +303,8 @@ public class JarvisPatrickClusterTask extends ClusterTask {
 	  }
 	  
 	  // Simple worker class to compute nearest neighbors by calling 
-	  // a method of the KD-Tree.
+	  // a method of the KD-Tree, or by comparing the bits of binary
+	  // coordinates if the KD-Tree is null.
 	  //
 	  private class NearestNeighborWorker implements Callable<Void> {
 
@@ -315,6 +315,8 @@ public class JarvisPatrickClusterTask extends ClusterTask {
 	    private DistanceFunc distanceFunc;
 	    private int[][] nnArray;
 	    private ProgressHandler ph;
+	    // Only allocated if the KD-Tree is null.
+	    private long[] bits1, bits2;
 	    
 	    private NearestNeighborWorker(int startTuple, int endTuple, int nnCount, 
 	        KDTree kdTree, DistanceFunc distanceFunc, int[][] nnArray, ProgressHandler ph) {
@@ -325,12 +327,17 @@ public class JarvisPatrickClusterTask extends ClusterTask {
 	      this.distanceFunc = distanceFunc;
 	      this.nnArray = nnArray;
 	      this.ph = ph;
+	      if (kdTree == null) {
+	        int wordCount = ((BitCoordinateList) getCoordinateList()).getWordCount();
+	        bits1 = new long[wordCount];
+	        bits2 = new long[wordCount];
+	      }
 	    }
 	    
 	    @Override
 	    public Void call() throws Exception {
 	      for (int i=startTuple; i<endTuple; i++) {
-	        int[] nn = kdTree.nearest(i, nnCount, distanceFunc);
+	        int[] nn = kdTree != null ? kdTree.nearest(i, nnCount, distanceFunc) : bitNearest(i);
 	        // Must remember of sort them. They come back from the kd-tree sorted by distance, 
 	        // not by tuple index.
 	        Arrays.sort(nn);
@@ -342,5 +349,34 @@ public class JarvisPatrickClusterTask extends ClusterTask {
 	      return null;
 	    }
 	    
+	    // Finds the nearest neighbors of a binary coordinate by comparing
+	    // its bits to those of every other coordinate.  Like the KD-Tree,
+	    // returns them sorted by distance.
+	    private int[] bitNearest(int ndx) {
+	      BitCoordinateList bitCoords = (BitCoordinateList) getCoordinateList();
+	      BitDistanceFunc bitDistanceFunc = (BitDistanceFunc) distanceFunc;
+	      bitCoords.getBits(ndx, bits1);
+	      DistanceQueue dq = new DistanceQueue(nnCount);
+	      final int coordCount = bitCoords.getCoordinateCount();
+	      for (int j=0; j<coordCount; j++) {
+	        if (j != ndx) {
+	          bitCoords.getBits(j, bits2);
+	          double d = bitDistanceFunc.distanceBetween(bits1, bits2);
+	          if (dq.size() < nnCount) {
+	            dq.add(j, d);
+	          } else if (d < dq.frontDistance()) {
+	            // Replace the farthest.
+	            dq.remove();
+	            dq.add(j, d);
+	          }
+	        }
+	      }
+	      int[] ids = new int[nnCount];
+	      for (int i=nnCount-1; i>=0; i--) {
+	        ids[i] = dq.remove();
+	      }
+	      return ids;
+	    }
+	    
 	  }
 }
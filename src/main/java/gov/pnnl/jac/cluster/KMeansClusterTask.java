@@ -25,6 +25,7 @@ import gov.pnnl.jac.geom.distance.*;
 import gov.pnnl.jac.task.*;
 import gov.pnnl.jac.util.SortUtils;
 
+import cern.colt.bitvector.BitVector;
 import cern.colt.list.*;
 import java.util.concurrent.*;
 
@@ -80,6 +81,51 @@ public class KMeansClusterTask extends ClusterTask {
     
     // Set to true if it appears we may be caught in an assignment oscillation.
     private boolean mTrackMoves;
+    
+    // Only allocated when using AssignmentMode.TRIANGLE_INEQUALITY.  For each
+    // coordinate, an upper bound on the distance to its assigned center and a
+    // lower bound on the distance to every other center.
+    private double[] mUpperBounds;
+    private double[] mLowerBounds;
+    
+    // The largest and second largest distances moved by any center in the 
+    // last center computation, and the index of the cluster with the largest.
+    // Used for loosening the lower bounds.
+    private double mMaxDrift, mSecondMaxDrift;
+    private int mMaxDriftCluster = -1;
+    
+    // From KMeansClusterTaskParams.getCenterRecomputeInterval().  If positive,
+    // the running sums of the clusters are maintained from the moves.
+    private int mCenterRecomputeInterval;
+    // The number of times computeCenters() has been called.
+    private int mCenterComputations;
+    // Set in computeCenters() when the centers must be recomputed from 
+    // the full memberships instead of the running sums.
+    private boolean mExactCenters = true;
+    // The number of coming center computations that must be exact, set when
+    // empty clusters are replaced, since the moves recorded around the
+    // replacement do not match the new clusters' sums.
+    private int mForcedExactCenters;
+    
+    // Only built when using AssignmentMode.KD_TREE_FILTERING.
+    private FilteringTree mFilteringTree;
+    
+    // Clusters from a previous run used to warm start clustering, or null
+    // if the initial centers are generated by the seeder.
+    private ClusterList mInitialClusters;
+    
+    // Row-major copy of the cluster centers, refreshed before each round of
+    // assignments, for computing the distances to all centers in one call.
+    private double[] mCenterBlock;
+    
+    // The norms of the cluster centers, refreshed along with mCenterBlock,
+    // when the distance function is a NormedDistanceFunc or when computing
+    // sparse distances.
+    private double[] mCenterNorms;
+    
+    // Only set while running restarts, so they can be cancelled along
+    // with this task.
+    private KMeansClusterTask[] mRestarts;
 
     /**
      * Fully-qualified constructor.
@@ -100,6 +146,47 @@ public class KMeansClusterTask extends ClusterTask {
         super(cs, params);
     }
 
+    /**
+     * Constructor for warm starting from the results of a previous run, 
+     * usually after coordinates have been appended to those previously 
+     * clustered. The previous centers are used instead of seeds, and the
+     * previous memberships as the initial assignments, so the number of clusters 
+     * and the seeder in the parameters are ignored. Coordinates not in any of the
+     * previous clusters, such as those appended, are assigned to the nearest 
+     * clusters in the first iteration.  Since only the clusters whose
+     * memberships change have to be recomputed and compared against, 
+     * clustering is much faster than starting over when few coordinates 
+     * have been added.
+     * 
+     * @param cs -
+     *            instance of <code>CoordinateSet</code> containing the
+     *            coordinates to be clustered.
+     * @param params -
+     *            instance of <code>KMeansClusterTaskParams</code> containing
+     *            the k-means parameters.
+     * @param initialClusters -
+     *            the clusters from the previous run, whose members must
+     *            all be indices of coordinates in <code>cs</code>.
+     */
+    public KMeansClusterTask(CoordinateList cs, KMeansClusterTaskParams params, 
+            ClusterList initialClusters) {
+        super(cs, params);
+        if (initialClusters == null) {
+            throw new NullPointerException();
+        }
+        mInitialClusters = initialClusters;
+    }
+    
+    /**
+     * Returns the clusters used to warm start clustering, or null if 
+     * clustering starts from seeds.
+     * 
+     * @return
+     */
+    public ClusterList getInitialClusters() {
+        return mInitialClusters;
+    }
+
     /**
      * Get the limit of the number of coordinates randomly sampled to initialize
      * the cluster centers. This limit, which defaults to 100,000, only matters
@@ -140,10 +227,9 @@ public class KMeansClusterTask extends ClusterTask {
     }
 
     // Finds the nearest cluster to the coordinate with the
-    // given index. If not using a cache to store coordinate-to-cluster
-    // distances, coordBuf is used as a scratch buffer for fetching
+    // given index. coord is used as a scratch buffer for fetching
     // coordinates.
-    private int nearestCluster(int ndx, double[] coordBuf, DistanceFunc df) {
+    private int nearestCluster(int ndx, CoordinateBuffer coord) {
 
         // If the nearest cluster from the previous iteration did not change in
         // the previous iteration, then we can omit from consideration all those
@@ -156,24 +242,40 @@ public class KMeansClusterTask extends ClusterTask {
         boolean onlyConsiderChanged = false;
 
         // Load up the coordinates, since we'll need 'em.
-        getCoordinateList().getCoordinates(ndx, coordBuf);
+        coord.load(ndx);
 
         if (oldNearest >= 0) {
             ProtoCluster oldCluster = mProtoClusters[oldNearest];
             if (oldCluster.getConsiderForAssignment() && !oldCluster.getUpdateFlag()) {
                 onlyConsiderChanged = true;
                 nearest = oldNearest;
-                min = df.distanceBetween(coordBuf, mProtoClusters[oldNearest].mCenter);
+                min = coord.comparableDistanceTo(mProtoClusters[oldNearest].mCenter, centerNorm(oldNearest));
             }
         }
 
         int numClusters = mProtoClusters.length;
+        
+        if (!onlyConsiderChanged && coord.hasBlockDistances()) {
+            // All clusters have to be considered, so compute the distances
+            // to all centers in one call.
+            double[] distances = coord.comparableDistancesTo(mCenterBlock, mCenterNorms, numClusters);
+            for (int c = 0; c < numClusters; c++) {
+                if (mProtoClusters[c].getConsiderForAssignment()) {
+                    double d = distances[c];
+                    if (d < min) {
+                        min = d;
+                        nearest = c;
+                    }
+                }
+            }
+            return nearest;
+        }
+        
         for (int c = 0; c < numClusters; c++) {
             ProtoCluster cluster = mProtoClusters[c];
             if (cluster.getConsiderForAssignment()) {
                 if (!onlyConsiderChanged || cluster.getUpdateFlag()) {
-                    double d = mDistanceFunc.distanceBetween(coordBuf,
-                            mProtoClusters[c].mCenter);
+                    double d = coord.comparableDistanceTo(mProtoClusters[c].mCenter, centerNorm(c));
                     if (d < min) {
                         min = d;
                         nearest = c;
@@ -185,6 +287,107 @@ public class KMeansClusterTask extends ClusterTask {
         return nearest;
     }
 
+    // The triangle inequality analogue of nearestCluster().  Coordinates
+    // whose upper bound is below both their lower bound and half the distance
+    // from their center to the next closest center cannot have changed 
+    // clusters, so no distances have to be computed for them.  Falls back 
+    // to computing the distances to all clusters, but chooses the same cluster
+    // nearestCluster() would have chosen.
+    private int nearestClusterBounded(int ndx, CoordinateBuffer coord) {
+
+        int oldNearest = mClusterAssignments[ndx];
+        
+        // Distance to the old nearest cluster, if it's computed before 
+        // the full scan.
+        double oldDist = Double.NaN;
+
+        if (oldNearest >= 0) {
+            ProtoCluster oldCluster = mProtoClusters[oldNearest];
+            if (oldCluster.getConsiderForAssignment()) {
+                // Loosen the bounds by the distances the centers moved.
+                double upper = mUpperBounds[ndx] + oldCluster.getDrift();
+                double lower = mLowerBounds[ndx] - 
+                        (oldNearest == mMaxDriftCluster ? mSecondMaxDrift : mMaxDrift);
+                mUpperBounds[ndx] = upper;
+                mLowerBounds[ndx] = lower;
+                double bound = Math.max(oldCluster.getHalfSeparation(), lower);
+                if (upper < bound) {
+                    return oldNearest;
+                }
+                // Tighten the upper bound and try again.
+                coord.load(ndx);
+                oldDist = coord.distanceTo(oldCluster.mCenter, centerNorm(oldNearest));
+                mUpperBounds[ndx] = oldDist;
+                if (oldDist < bound) {
+                    return oldNearest;
+                }
+            }
+        }
+        
+        if (Double.isNaN(oldDist)) {
+            coord.load(ndx);
+        }
+        
+        int nearest = -1;
+        double min = Double.MAX_VALUE;
+        double secondMin = Double.MAX_VALUE;
+        
+        // Same tie-breaking as nearestCluster(): if the old cluster did not
+        // change, it is retained unless another cluster is strictly closer.
+        if (oldNearest >= 0 && !Double.isNaN(oldDist) && 
+                !mProtoClusters[oldNearest].getUpdateFlag()) {
+            nearest = oldNearest;
+            min = oldDist;
+        }
+        
+        int numClusters = mProtoClusters.length;
+        double[] distances = coord.hasBlockDistances() ? 
+                coord.distancesTo(mCenterBlock, numClusters) : null;
+        for (int c = 0; c < numClusters; c++) {
+            ProtoCluster cluster = mProtoClusters[c];
+            if (cluster.getConsiderForAssignment() && c != nearest) {
+                double d = c == oldNearest && !Double.isNaN(oldDist) ? oldDist :
+                    (distances != null ? distances[c] : coord.distanceTo(cluster.mCenter, centerNorm(c)));
+                if (d < min) {
+                    secondMin = min;
+                    min = d;
+                    nearest = c;
+                } else if (d < secondMin) {
+                    secondMin = d;
+                }
+            }
+        }
+        
+        mUpperBounds[ndx] = min;
+        mLowerBounds[ndx] = secondMin;
+        
+        return nearest;
+    }
+    
+    // Invalidates all the distance bounds.  Called when the clusters are
+    // replaced wholesale, so the center drifts are meaningless.
+    private void resetBounds() {
+        if (mUpperBounds != null) {
+            Arrays.fill(mUpperBounds, Double.MAX_VALUE);
+            Arrays.fill(mLowerBounds, 0.0);
+            int numClusters = mProtoClusters.length;
+            for (int c = 0; c < numClusters; c++) {
+                mProtoClusters[c].setHalfSeparation(0.0);
+                mProtoClusters[c].setDrift(0.0);
+            }
+            mMaxDrift = mSecondMaxDrift = 0.0;
+            mMaxDriftCluster = -1;
+        }
+    }
+    
+    // Returns true if the distance function is known to obey the triangle 
+    // inequality, which is required by nearestClusterBounded().
+    private static boolean isMetric(DistanceFunc df) {
+        return df instanceof EuclideanNoNaN || 
+                df instanceof ManhattanNoNaN ||
+                df instanceof ChebyshevNoNaN;
+    }
+
     // Recomputes the centroids of the protoclusters with
     // update flags set to true.
     private void computeCenters() {
@@ -207,6 +410,20 @@ public class KMeansClusterTask extends ClusterTask {
             checkForCancel();
         }
 
+        if (mCenterRecomputeInterval > 0) {
+            // Applying a move to the running sums costs about twice as much as
+            // including a coordinate in an exact recomputation, so also 
+            // recompute exactly when many coordinates moved.
+            mExactCenters = mForcedExactCenters > 0 ||
+                    mCenterComputations % mCenterRecomputeInterval == 0 ||
+                    2L * mSubtaskManager.getMoves() >= getCoordinateList().getCoordinateCount() ||
+                    mSubtaskManager.hasUnassigned();
+            if (mForcedExactCenters > 0) {
+                mForcedExactCenters--;
+            }
+        }
+        mCenterComputations++;
+        
         mSubtaskManager.computeCenters();
     }
 
@@ -224,6 +441,9 @@ public class KMeansClusterTask extends ClusterTask {
             // determine if the cluster center needs to be updated.
             mProtoClusters[c].checkPoint();
         }
+        if (mDistanceFunc instanceof BlockDistanceFunc) {
+            fillCenterBlock();
+        }
         // Delegate the bulk of the work to the subtask manager and
         // its pool of worker threads.
         mSubtaskManager.makeAssignments();
@@ -231,6 +451,42 @@ public class KMeansClusterTask extends ClusterTask {
         return mSubtaskManager.getMoves();
     }
 
+    // Copies the cluster centers into mCenterBlock, computing their norms
+    // if they are needed.
+    private void fillCenterBlock() {
+        final int numClusters = mProtoClusters.length;
+        final int dim = getCoordinateList().getDimensionCount();
+        if (mCenterBlock == null || mCenterBlock.length != numClusters*dim) {
+            mCenterBlock = new double[numClusters*dim];
+        }
+        for (int c = 0; c < numClusters; c++) {
+            System.arraycopy(mProtoClusters[c].mCenter, 0, mCenterBlock, c*dim, dim);
+        }
+        final boolean sparse = usesSparseDistances(getCoordinateList(), mDistanceFunc);
+        if (sparse || mDistanceFunc instanceof NormedDistanceFunc) {
+            if (mCenterNorms == null || mCenterNorms.length != numClusters) {
+                mCenterNorms = new double[numClusters];
+            }
+            for (int c = 0; c < numClusters; c++) {
+                double[] center = mProtoClusters[c].mCenter;
+                mCenterNorms[c] = sparse ? ((SparseDistanceFunc) mDistanceFunc).norm(center) :
+                    ((NormedDistanceFunc) mDistanceFunc).norm(center);
+            }
+        }
+    }
+    
+    // True if the distances from the coordinates are computed from their non-zero
+    // elements.
+    private static boolean usesSparseDistances(CoordinateList coords, DistanceFunc distFunc) {
+        return coords instanceof SparseCoordinateList && distFunc instanceof SparseDistanceFunc;
+    }
+    
+    // Returns the norm of the center of cluster c, or NaN if 
+    // mCenterNorms is not in use.
+    private double centerNorm(int c) {
+        return mCenterNorms != null ? mCenterNorms[c] : Double.NaN;
+    }
+
     private boolean replaceEmptyClusters() {
 
         boolean emptyClustersReplaced = false;
@@ -291,6 +547,10 @@ public class KMeansClusterTask extends ClusterTask {
                             if (newClusters.length == 2) {
                                 mProtoClusters[indices[count]] = newClusters[0];
                                 mProtoClusters[i] = newClusters[1];
+                                // So the next assignments only count the 
+                                // coordinates that leave the new clusters as moves.
+                                assignMembers(newClusters[0], indices[count]);
+                                assignMembers(newClusters[1], i);
                                 replaced = true;
                                 emptyClustersReplaced = true;
                             }
@@ -304,9 +564,20 @@ public class KMeansClusterTask extends ClusterTask {
             }
         }
 
+        if (emptyClustersReplaced) {
+            mForcedExactCenters = 2;
+        }
+
         return emptyClustersReplaced;
     }
 
+    private void assignMembers(ProtoCluster cluster, int c) {
+        int[] members = cluster.getMembership();
+        for (int i = 0; i < members.length; i++) {
+            mClusterAssignments[members[i]] = c;
+        }
+    }
+
     private ProtoCluster[] split(ProtoCluster cluster) {
         int[] memberIndices = cluster.getMembership();
         FilteredCoordinateList fcs = new FilteredCoordinateList(memberIndices,
@@ -349,10 +620,21 @@ public class KMeansClusterTask extends ClusterTask {
 
     protected final ClusterList doTask() {
 
+        KMeansClusterTaskParams params = (KMeansClusterTaskParams) getParams();
+        
+        if (params.getNumRestarts() > 1) {
+            if (mInitialClusters != null) {
+                postMessage("restarts are ignored when warm starting");
+            } else if (params.getClusterSeeder() instanceof RandomSeeder) {
+                runRestarts(params);
+                return mClusters;
+            } else {
+                postMessage("restarts are ignored, since the cluster seeder is not random");
+            }
+        }
+        
         try { // Cleanup code in the finally clause
 
-            KMeansClusterTaskParams params = (KMeansClusterTaskParams) getParams();
-
             int maxIterations = params.getMaxIterations();
             int steps = maxIterations + 2;
             
@@ -363,6 +645,10 @@ public class KMeansClusterTask extends ClusterTask {
             ph.postBegin();
 
             mDistanceFunc = params.getDistanceFunc();
+            mCenterRecomputeInterval = params.getCenterRecomputeInterval();
+            mCenterComputations = 0;
+            mExactCenters = true;
+            mForcedExactCenters = 0;
 
             CoordinateList cs = getCoordinateList();
             int coordCount = cs.getCoordinateCount();
@@ -382,9 +668,12 @@ public class KMeansClusterTask extends ClusterTask {
             // array mProtoClusters, and may reduce the actual number of
             // clusters if there are too few unique coordinates in the
             // coordinate set.
-            initCenters(ph);
-            
-            ph.postMessage("initial cluster seeds generated");
+            if (mInitialClusters != null) {
+                initFromClusters(ph);
+            } else {
+                initCenters(ph);
+                ph.postMessage("initial cluster seeds generated");
+            }
             
             ph.postStep();
 
@@ -394,6 +683,8 @@ public class KMeansClusterTask extends ClusterTask {
             if (numClusters == 1) {
 
                 ProtoCluster cluster = mProtoClusters[0];
+                // Clears any initial members.
+                cluster.checkPoint();
                 for (int i = 0; i < coordCount; i++) {
                     cluster.add(i);
                 }
@@ -406,6 +697,35 @@ public class KMeansClusterTask extends ClusterTask {
                     numProcessors = Runtime.getRuntime().availableProcessors();
                 }
                 
+                // Allocate the distance bounds BEFORE instantiating the subtask
+                // manager, since its workers need to know whether bounds are used.
+                if (params.getAssignmentMode() == KMeansClusterTaskParams.AssignmentMode.TRIANGLE_INEQUALITY) {
+                    if (isMetric(mDistanceFunc)) {
+                        mUpperBounds = new double[coordCount];
+                        mLowerBounds = new double[coordCount];
+                        resetBounds();
+                        ph.postMessage("using triangle inequality distance bounds");
+                    } else {
+                        ph.postMessage("distance function " + mDistanceFunc.methodName() + 
+                                " does not obey the triangle inequality, so bounds will not be used");
+                    }
+                }
+
+                if (params.getAssignmentMode() == KMeansClusterTaskParams.AssignmentMode.KD_TREE_FILTERING) {
+                    if (mDistanceFunc instanceof EuclideanNoNaN) {
+                        if (FilteringTree.isFinite(cs)) {
+                            mFilteringTree = new FilteringTree(cs);
+                            ph.postMessage("using kd-tree filtering with " + mFilteringTree.mNodeCount + " nodes");
+                        } else {
+                            ph.postMessage("kd-tree filtering will not be used, since the coordinates contain NaNs or infinities");
+                        }
+                    } else {
+                        ph.postMessage("kd-tree filtering requires distance function " + 
+                                BasicDistanceMethod.EUCLIDEAN_NO_NAN + ", so it will not be used");
+                    }
+                    checkForCancel();
+                }
+
                 // Instantiate the subtask manager AFTER initializing
                 // mProtoClusters,
                 // since it must know how many clusters are to be generated.
@@ -424,6 +744,17 @@ public class KMeansClusterTask extends ClusterTask {
                 mClusterAssignments = new int[coordCount];
                 // Init. to -1, meaning no coordinates assigned yet.
                 Arrays.fill(mClusterAssignments, -1);
+                if (mInitialClusters != null) {
+                    // Since the update flags all start out false, nearestCluster()
+                    // leaves these where they are until their clusters' neighbors 
+                    // change.
+                    for (int c = 0; c < numClusters; c++) {
+                        int[] members = mProtoClusters[c].getMembership();
+                        for (int i = 0; i < members.length; i++) {
+                            mClusterAssignments[members[i]] = c;
+                        }
+                    }
+                }
 
                 // Make the initial cluster assignments.
                 makeAssignments();
@@ -517,6 +848,7 @@ public class KMeansClusterTask extends ClusterTask {
                                 changeInMovesDeque.clear();
                                 pastMoveLists = null;
                                 
+                                resetBounds();
                                 computeCenters();
                                 int moves2 = makeAssignments();
                                 ph.postMessage("additional moves after empty cluster replacement = "
@@ -572,16 +904,165 @@ public class KMeansClusterTask extends ClusterTask {
             mDistanceFunc = null;
             mProtoClusters = null;
             mClusterAssignments = null;
+            mUpperBounds = null;
+            mLowerBounds = null;
+            mFilteringTree = null;
+            mCenterBlock = null;
+            mCenterNorms = null;
             mPastProtoClusterStates = null;
-            if (mSubtaskManager != null) {
-                mSubtaskManager.shutdown();
-                mSubtaskManager = null;
-            }
+            mSubtaskManager = null;
         }
 
         return mClusters;
     }
     
+    // Clusters the coordinates params.getNumRestarts() times, each time with a
+    // copy of the seeder using a different random seed, and keeps the 
+    // clustering with the least squared error.  The restarts run concurrently,
+    // as many at once as there are worker threads, with the worker threads divided
+    // evenly among them.  
+    private void runRestarts(KMeansClusterTaskParams params) {
+        
+        final int numRestarts = params.getNumRestarts();
+        
+        int numProcessors = params.getNumWorkerThreads();
+        if (numProcessors <= 0) {
+            numProcessors = Runtime.getRuntime().availableProcessors();
+        }
+        
+        final int concurrentRestarts = Math.min(numRestarts, numProcessors);
+        final int workersPerRestart = Math.max(1, numProcessors/concurrentRestarts);
+        
+        final ProgressHandler ph = new ProgressHandler(this, getBeginProgress(), getEndProgress());
+        ph.postBegin();
+        ph.postMessage("running " + numRestarts + " restarts, " + concurrentRestarts + 
+                " at a time with " + workersPerRestart + " subtask threads each");
+        
+        RandomSeeder seeder = (RandomSeeder) params.getClusterSeeder();
+        long seed = seeder.getRandomSeed();
+        if (seed == 0L) {
+            seed = System.currentTimeMillis();
+        }
+        // Generates the seeds for the restarts after the first.
+        Random random = new Random(seed);
+        
+        final CoordinateList cs = getCoordinateList();
+        final double[] progress = new double[numRestarts];
+        final double[] errors = new double[numRestarts];
+        
+        List<Callable<Void>> runs = new ArrayList<Callable<Void>>(numRestarts);
+        
+        try {
+            
+            mRestarts = new KMeansClusterTask[numRestarts];
+        
+            for (int r=0; r<numRestarts; r++) {
+                
+                long restartSeed = seed;
+                if (r > 0) {
+                    do {
+                        restartSeed = random.nextLong();
+                    } while (restartSeed == 0L);
+                }
+                
+                final KMeansClusterTaskParams restartParams = (KMeansClusterTaskParams) params.clone();
+                restartParams.setNumRestarts(1);
+                restartParams.setNumWorkerThreads(workersPerRestart);
+                restartParams.setDistanceFunc(params.getDistanceFunc().clone());
+                restartParams.setClusterSeeder(seeder.withRandomSeed(restartSeed));
+                
+                final KMeansClusterTask restart = new KMeansClusterTask(cs, restartParams);
+                restart.setInitCentersSamplingLimit(mInitCentersSamplingLimit);
+                
+                final int index = r;
+                restart.addTaskListener(new TaskListener.Adapter() {
+                    public void taskProgress(TaskEvent e) {
+                        postRestartProgress(ph, progress, index, e.getProgress());
+                    }
+                });
+                
+                mRestarts[r] = restart;
+                
+                runs.add(new Callable<Void>() {
+                    public Void call() throws Exception {
+                        restart.run();
+                        if (restart.getTaskOutcome() == TaskOutcome.SUCCESS) {
+                            errors[index] = ClusterStats.computeSquaredError(cs, 
+                                    restart.getClusterList(), restartParams.getDistanceFunc());
+                        }
+                        return null;
+                    }
+                });
+            }
+            
+            // Catches a cancel that arrived while the restarts were being created.
+            checkForCancel();
+            
+            if (concurrentRestarts > 1) {
+                try {
+                    TaskScheduler.invokeSubtasks(runs);
+                } catch (InterruptedException ex) {
+                    // Can occur if you cancel while the restarts are running.
+                    if (!isCancelled()) {
+                        Logger.getLogger(KMeansClusterTask.class.getName()).log(Level.SEVERE, null, ex);
+                    }
+                }
+            } else {
+                for (Callable<Void> run : runs) {
+                    try {
+                        run.call();
+                    } catch (Exception ex) {
+                        Logger.getLogger(KMeansClusterTask.class.getName()).log(Level.SEVERE, null, ex);
+                    }
+                }
+            }
+            
+            checkForCancel();
+            
+            int best = -1;
+            for (int r=0; r<numRestarts; r++) {
+                KMeansClusterTask restart = mRestarts[r];
+                if (restart.getTaskOutcome() == TaskOutcome.SUCCESS) {
+                    ph.postMessage("restart " + (r + 1) + " squared error = " + errors[r]);
+                    if (best < 0 || errors[r] < errors[best]) {
+                        best = r;
+                    }
+                } else if (restart.getTaskOutcome() == TaskOutcome.ERROR) {
+                    error(restart.getErrorMessage());
+                } else {
+                    error("k-means restart did not complete successfully");
+                }
+            }
+            
+            ph.postMessage("keeping restart " + (best + 1));
+            setClusterList(mRestarts[best].getClusterList());
+            
+            ph.postEnd();
+            
+        } finally {
+            
+            mRestarts = null;
+            
+        }
+    }
+    
+    // Called by the restarts' listeners to post the average progress over
+    // all restarts.
+    private void postRestartProgress(ProgressHandler ph, double[] progress, int index, double p) {
+        synchronized (progress) {
+            progress[index] = p;
+            double sum = 0.0;
+            for (int i=0; i<progress.length; i++) {
+                sum += progress[i];
+            }
+            try {
+                ph.postFraction(sum/progress.length);
+            } catch (CancellationException ce) {
+                // The restarts are cancelled along with this task.
+            }
+        }
+    }
+    
     private boolean hasCycle(List<List<Move>> moveLists) {
         
         final int numLists = moveLists.size();
@@ -654,6 +1135,14 @@ public class KMeansClusterTask extends ClusterTask {
             if (seeder instanceof KMeansPlusPlusSeeder) {
                 ((KMeansPlusPlusSeeder) seeder).cancel();
             }
+            final KMeansClusterTask[] restarts = mRestarts;
+            if (restarts != null) {
+                for (int i=0; i<restarts.length; i++) {
+                    if (restarts[i] != null) {
+                        restarts[i].cancel(true);
+                    }
+                }
+            }
             return true;
         }
         return false;
@@ -705,6 +1194,59 @@ public class KMeansClusterTask extends ClusterTask {
         }
     }
     
+    // Initializes mProtoClusters from the centers and memberships of
+    // mInitialClusters for a warm start.
+    private void initFromClusters(ProgressHandler ph) {
+        
+        KMeansClusterTaskParams params = (KMeansClusterTaskParams) getParams();
+        
+        CoordinateList cs = getCoordinateList();
+        final int coordCount = cs.getCoordinateCount();
+        final int dim = cs.getDimensionCount();
+        
+        final int numClusters = mInitialClusters.getClusterCount();
+        if (numClusters == 0) {
+            error("no initial clusters");
+        }
+        
+        // Used to catch coordinates in more than one cluster.
+        BitVector assigned = new BitVector(coordCount);
+        int assignedCount = 0;
+        
+        mProtoClusters = new ProtoCluster[numClusters];
+        
+        for (int c = 0; c < numClusters; c++) {
+            Cluster cluster = mInitialClusters.getCluster(c);
+            if (cluster.getDimensions() != dim) {
+                error("initial cluster dimensions != coordinate dimensions: " +
+                        cluster.getDimensions() + " != " + dim);
+            }
+            int[] members = cluster.getMembership();
+            // Sorted, since setUpdateFlag() compares them to the memberships
+            // scattered in ascending order.
+            Arrays.sort(members);
+            for (int i = 0; i < members.length; i++) {
+                int ndx = members[i];
+                if (ndx < 0 || ndx >= coordCount) {
+                    error("initial cluster member out of range: " + ndx);
+                }
+                if (assigned.getQuick(ndx)) {
+                    error("coordinate in more than one initial cluster: " + ndx);
+                }
+                assigned.putQuick(ndx, true);
+            }
+            assignedCount += members.length;
+            mProtoClusters[c] = new ProtoCluster(members, cluster.getCenter());
+        }
+        
+        if (numClusters != params.getNumClusters()) {
+            ph.postMessage("number of clusters is " + numClusters + 
+                    ", the number of initial clusters");
+        }
+        ph.postMessage("warm starting with " + (coordCount - assignedCount) + 
+                " unassigned coordinates");
+    }
+    
     private static class ProtoClusterState {
         
         private int[] mMembers;
@@ -808,6 +1350,14 @@ public class KMeansClusterTask extends ClusterTask {
 
         // Whether or not nearestCluster() should consider this one.
         private boolean mConsiderForAssignment = true;
+        
+        // Distance the center moved in the last update, and half the distance
+        // to the closest other center.  Only maintained when using distance bounds.
+        private double mDrift;
+        private double mHalfSeparation;
+        
+        // Only maintained when centers are maintained incrementally.
+        private double[] mSum;
 
         ProtoCluster(PointCoordinate point) {
             int dim = point.getDimensions();
@@ -848,9 +1398,15 @@ public class KMeansClusterTask extends ClusterTask {
             return mCenter;
         }
 
-        synchronized void add(int ndx) {
+        void add(int ndx) {
             mCurrentMembership.add(ndx);
         }
+        
+        // Replaces the current membership.  The array is used directly, 
+        // so that it may be filled in after this call.
+        void setMembership(int[] membership) {
+            mCurrentMembership = new IntArrayList(membership);
+        }
 
         boolean isEmpty() {
             return mCurrentMembership.size() == 0;
@@ -858,19 +1414,14 @@ public class KMeansClusterTask extends ClusterTask {
 
         void setUpdateFlag() {
             mCurrentMembership.trimToSize();
-            // Must sort the elements! Since multiple threads may be calling
-            // making the cluster assignments, the coordinates may be added out
-            // of order. Have to ensure both mCurrentMembership and
-            // mPreviousMembership are sorted before the equality check.
-            Arrays.sort(mCurrentMembership.elements());
+            // No need to sort the elements, since the memberships are
+            // scattered in ascending order after the assignments are made.
             mUpdateFlag = !mPreviousMembership.equals(mCurrentMembership);
         }
 
         void checkPoint() {
-            mPreviousMembership.clear();
-            mPreviousMembership.addAllOf(mCurrentMembership);
-            mPreviousMembership.trimToSize();
-            mCurrentMembership.clear();
+            mPreviousMembership = mCurrentMembership;
+            mCurrentMembership = new IntArrayList();
         }
 
         boolean getConsiderForAssignment() {
@@ -884,12 +1435,57 @@ public class KMeansClusterTask extends ClusterTask {
         boolean getUpdateFlag() {
             return mUpdateFlag;
         }
+        
+        double getDrift() {
+            return mDrift;
+        }
+        
+        void setDrift(double drift) {
+            mDrift = drift;
+        }
+        
+        double getHalfSeparation() {
+            return mHalfSeparation;
+        }
+        
+        void setHalfSeparation(double halfSeparation) {
+            mHalfSeparation = halfSeparation;
+        }
 
         void updateCenter(CoordinateList cs) {
             if (mCurrentMembership.size() > 0) {
                 cs.computeAverage(mCurrentMembership.elements(), mCenter);
             }
         }
+        
+        // The running sum of the members' coordinates, or null if not
+        // yet initialized by initSum().
+        double[] getSum() {
+            return mSum;
+        }
+        
+        // Initializes the running sum from the center, which must have
+        // just been computed from the full membership.
+        void initSum() {
+            final int dim = mCenter.length;
+            if (mSum == null) {
+                mSum = new double[dim];
+            }
+            final int n = mCurrentMembership.size();
+            for (int i = 0; i < dim; i++) {
+                mSum[i] = n * mCenter[i];
+            }
+        }
+        
+        void updateCenterFromSum() {
+            final int n = mCurrentMembership.size();
+            if (n > 0) {
+                final int dim = mCenter.length;
+                for (int i = 0; i < dim; i++) {
+                    mCenter[i] = mSum[i] / n;
+                }
+            }
+        }
     }
 
     private class SubtaskManager {
@@ -897,9 +1493,15 @@ public class KMeansClusterTask extends ClusterTask {
         // Lists of workers to which to delegate portions of each task.
         private final List<CenterComputation> mCenterComps = new ArrayList<CenterComputation>();
         private final List<MakeAssignments> mAssigners = new ArrayList<MakeAssignments>();
+        private final List<CenterSeparation> mSeparationComps = new ArrayList<CenterSeparation>();
+        private final List<MembershipScatter> mScatterers = new ArrayList<MembershipScatter>();
+        // Only used in KD_TREE_FILTERING mode.
+        private final List<Callable<Void>> mFilterers = new ArrayList<Callable<Void>>();
+        private final List<Callable<Void>> mCounters = new ArrayList<Callable<Void>>();
         
-        // Only set if using multiple threads.
-        private ExecutorService mThreadPool;
+        // True if using multiple workers, which are then executed on the
+        // shared subtask pool.
+        private boolean mConcurrent;
         
         // Constructor.
         SubtaskManager(int numWorkers) {
@@ -944,65 +1546,103 @@ public class KMeansClusterTask extends ClusterTask {
                 int endCoord = startCoord + coordsPerWorker[i];
                 int endCluster = startCluster + clustersPerWorker[i];
                 
+                final MakeAssignments assigner = new MakeAssignments(startCoord, endCoord);
                 mCenterComps.add(new CenterComputation(startCluster, endCluster));
-                mAssigners.add(new MakeAssignments(startCoord, endCoord));
+                mAssigners.add(assigner);
+                if (mFilteringTree != null) {
+                    mFilterers.add(new Callable<Void>() {
+                        public Void call() throws Exception {
+                            try {
+                                assigner.filterSubtrees();
+                            } catch (CancellationException ce) {
+                                // Ignore, since doTask() will detect the cancel.
+                            }
+                            return null;
+                        }
+                    });
+                    mCounters.add(new Callable<Void>() {
+                        public Void call() throws Exception {
+                            assigner.countAssignments();
+                            return null;
+                        }
+                    });
+                }
+                mScatterers.add(new MembershipScatter(assigner));
+                mSeparationComps.add(new CenterSeparation(startCluster, endCluster));
                 
                 startCoord = endCoord;
                 startCluster = endCluster;
             }
 
-            if (numWorkers > 1) {
-                mThreadPool = Executors.newFixedThreadPool(numWorkers);
+            if (mFilteringTree != null) {
+                // Deal out the subtrees, several per worker for better balance.
+                IntArrayList subtrees = mFilteringTree.subtrees(4 * numWorkers);
+                for (int i = 0; i < subtrees.size(); i++) {
+                    mAssigners.get(i % numWorkers).mSubtrees.add(subtrees.getQuick(i));
+                }
             }
-        }
 
-        // Called to stop the threads of the thread pool, which would otherwise
-        // keep waiting for another request to do something.
-        void shutdown() {
-            if (mThreadPool != null) {
-                mThreadPool.shutdownNow();
-            }
+            mConcurrent = numWorkers > 1;
         }
 
-        // Update the cluster centers.
+        // Make the assignments, then rebuild the cluster memberships from them.
         boolean makeAssignments() {
-            boolean ok = false;
-            if (mThreadPool != null) {
-                try {
-                    mThreadPool.invokeAll(mAssigners);
-                    ok = true;
-                } catch (InterruptedException ex) {
-                    // Can occur if you cancel while the assigners are working.
-                    if (!isCancelled()) {
-                        Logger.getLogger(KMeansClusterTask.class.getName()).log(Level.SEVERE, null, ex);
-                    }
+            boolean ok = mFilteringTree != null ? invoke(mFilterers) && invoke(mCounters) :
+                invoke(mAssigners);
+            if (ok) {
+                allocateMemberships();
+                ok = invoke(mScatterers);
+            }
+            return ok;
+        }
+        
+        // Sizes the new membership of every cluster from the assigners' counts, 
+        // and gives each scatterer its starting offsets into them.  Since the
+        // assigners cover ascending ranges of coordinates, the scattered 
+        // memberships come out sorted.
+        private void allocateMemberships() {
+            final int numClusters = mProtoClusters.length;
+            final int numWorkers = mAssigners.size();
+            for (int c = 0; c < numClusters; c++) {
+                int offset = 0;
+                for (int w = 0; w < numWorkers; w++) {
+                    mScatterers.get(w).mOffsets[c] = offset;
+                    offset += mAssigners.get(w).mClusterCounts[c];
                 }
-            } else {
-                try {
-                    // No thread pool, so call the single worker directly.
-                    mAssigners.get(0).call();
-                    ok = true;
-                } catch (Exception ex) {
-                    Logger.getLogger(KMeansClusterTask.class.getName()).log(Level.SEVERE, null, ex);
+                int[] membership = new int[offset];
+                mProtoClusters[c].setMembership(membership);
+                for (int w = 0; w < numWorkers; w++) {
+                    mScatterers.get(w).mMemberships[c] = membership;
                 }
             }
-            return ok;
         }
 
         // Compute the distances between the coordinates and those centers with
         // update flags.
         boolean computeCenters() {
+            boolean ok = invoke(mCenterComps);
+            if (ok && mUpperBounds != null) {
+                computeMaxDrifts();
+                ok = invoke(mSeparationComps);
+            }
+            return ok;
+        }
+        
+        private boolean invoke(List<? extends Callable<Void>> workers) {
             boolean ok = false;
-            if (mThreadPool != null) {
+            if (mConcurrent) {
                 try {
-                    mThreadPool.invokeAll(mCenterComps);
+                    TaskScheduler.invokeSubtasks(workers);
                     ok = true;
                 } catch (InterruptedException ex) {
-                    Logger.getLogger(KMeansClusterTask.class.getName()).log(Level.SEVERE, null, ex);
+                    // Can occur if you cancel while the workers are working.
+                    if (!isCancelled()) {
+                        Logger.getLogger(KMeansClusterTask.class.getName()).log(Level.SEVERE, null, ex);
+                    }
                 }
             } else {
                 try {
-                    mCenterComps.get(0).call();
+                    workers.get(0).call();
                     ok = true;
                 } catch (Exception ex) {
                     Logger.getLogger(KMeansClusterTask.class.getName()).log(Level.SEVERE, null, ex);
@@ -1010,6 +1650,29 @@ public class KMeansClusterTask extends ClusterTask {
             }
             return ok;
         }
+        
+        // Finds the 2 largest center drifts for loosening the lower bounds.
+        private void computeMaxDrifts() {
+            double max = 0.0, secondMax = 0.0;
+            int maxCluster = -1;
+            int numClusters = mProtoClusters.length;
+            for (int c = 0; c < numClusters; c++) {
+                ProtoCluster cluster = mProtoClusters[c];
+                if (cluster.getConsiderForAssignment()) {
+                    double drift = cluster.getDrift();
+                    if (drift > max) {
+                        secondMax = max;
+                        max = drift;
+                        maxCluster = c;
+                    } else if (drift > secondMax) {
+                        secondMax = drift;
+                    }
+                }
+            }
+            mMaxDrift = max;
+            mSecondMaxDrift = secondMax;
+            mMaxDriftCluster = maxCluster;
+        }
 
         int getMoves() {
             int moves = 0;
@@ -1019,6 +1682,15 @@ public class KMeansClusterTask extends ClusterTask {
             return moves;
         }
         
+        boolean hasUnassigned() {
+            for (MakeAssignments m: mAssigners) {
+                if (m.mUnassigned.size() > 0 || m.mFilteredUnassigned) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
         List<Move> getMoveList() {
             List<Move> moveList = null;
             if (mTrackMoves) {
@@ -1036,19 +1708,156 @@ public class KMeansClusterTask extends ClusterTask {
 
         private int mStartCluster, mEndCluster;
         private CoordinateList mCS;
+        // Only used to compute the drifts when maintaining distance bounds.
+        private double[] mPrevCenter;
+        private DistanceFunc mDistFunc;
+        // Only used when maintaining running sums.
+        private double[] mCoordBuf;
+        // Used instead of mCoordBuf for sparse coordinates.
+        private SparseVector mSparseCoordBuf;
         
         CenterComputation(int startCluster, int endCluster) {
             mStartCluster = startCluster;
             mEndCluster = endCluster;
             mCS = getCoordinateList();
+            if (mUpperBounds != null) {
+                mPrevCenter = new double[mCS.getDimensionCount()];
+                mDistFunc = (DistanceFunc) getDistanceFunc().clone();
+            }
+            if (mCenterRecomputeInterval > 0) {
+                mCoordBuf = new double[mCS.getDimensionCount()];
+                if (mCS instanceof SparseCoordinateList) {
+                    mSparseCoordBuf = new SparseVector();
+                }
+            }
+        }
+        
+        // Adjusts the running sums of this worker's clusters for the moves made
+        // by all the MakeAssignments workers.
+        private void applyMoves() {
+            final int dim = mCoordBuf.length;
+            for (MakeAssignments assigner : mSubtaskManager.mAssigners) {
+                final IntArrayList movedCoords = assigner.mMovedCoords;
+                final IntArrayList movedFrom = assigner.mMovedFrom;
+                final int numMoves = movedCoords.size();
+                for (int m = 0; m < numMoves; m++) {
+                    int ndx = movedCoords.getQuick(m);
+                    int from = movedFrom.getQuick(m);
+                    int to = mClusterAssignments[ndx];
+                    double[] fromSum = from >= mStartCluster && from < mEndCluster ? 
+                            mProtoClusters[from].getSum() : null;
+                    double[] toSum = to >= mStartCluster && to < mEndCluster ?
+                            mProtoClusters[to].getSum() : null;
+                    if (mSparseCoordBuf != null) {
+                        addSparse(ndx, fromSum, toSum);
+                    } else if (fromSum != null || toSum != null) {
+                        mCS.getCoordinates(ndx, mCoordBuf);
+                        if (fromSum != null) {
+                            for (int i = 0; i < dim; i++) {
+                                fromSum[i] -= mCoordBuf[i];
+                            }
+                        }
+                        if (toSum != null) {
+                            for (int i = 0; i < dim; i++) {
+                                toSum[i] += mCoordBuf[i];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        
+        // Only adjusts the sums for the non-zero elements of the coordinate.
+        private void addSparse(int ndx, double[] fromSum, double[] toSum) {
+            if (fromSum == null && toSum == null) {
+                return;
+            }
+            ((SparseCoordinateList) mCS).getSparseCoordinates(ndx, mSparseCoordBuf);
+            final int[] indices = mSparseCoordBuf.getIndices();
+            final double[] values = mSparseCoordBuf.getValues();
+            final int n = mSparseCoordBuf.getNonZeroCount();
+            for (int i = 0; i < n; i++) {
+                if (fromSum != null) {
+                    fromSum[indices[i]] -= values[i];
+                }
+                if (toSum != null) {
+                    toSum[indices[i]] += values[i];
+                }
+            }
+        }
+        
+        private void updateCenter(ProtoCluster cluster) {
+            if (mCoordBuf == null) {
+                cluster.updateCenter(mCS);
+            } else if (mExactCenters || cluster.getSum() == null) {
+                cluster.updateCenter(mCS);
+                cluster.initSum();
+            } else {
+                cluster.updateCenterFromSum();
+            }
         }
         
         public Void call() throws Exception {
             try {
+                if (mCoordBuf != null && !mExactCenters) {
+                    applyMoves();
+                }
                 for (int c = mStartCluster; c < mEndCluster; c++) {
                     ProtoCluster cluster = mProtoClusters[c];
+                    if (cluster.isEmpty() && cluster.getSum() != null) {
+                        // Don't let rounding errors accumulate in empty clusters.
+                        Arrays.fill(cluster.getSum(), 0.0);
+                    }
                     if (cluster.getUpdateFlag()) {
-                        cluster.updateCenter(mCS);
+                        if (mPrevCenter != null) {
+                            System.arraycopy(cluster.mCenter, 0, mPrevCenter, 0, mPrevCenter.length);
+                            updateCenter(cluster);
+                            cluster.setDrift(mDistFunc.distanceBetween(mPrevCenter, cluster.mCenter));
+                        } else {
+                            updateCenter(cluster);
+                        }
+                    } else {
+                        cluster.setDrift(0.0);
+                    }
+                    checkForCancel();
+                }
+            } catch (CancellationException ce) {
+                // Ignore, since doTask() will detect the cancel.
+            }
+            return null;
+        }
+    }
+    
+    // Computes half the distance from each center to its closest neighboring 
+    // center.  Only used when maintaining distance bounds.
+    private class CenterSeparation implements Callable<Void> {
+        
+        private int mStartCluster, mEndCluster;
+        private DistanceFunc mDistFunc;
+        
+        CenterSeparation(int startCluster, int endCluster) {
+            mStartCluster = startCluster;
+            mEndCluster = endCluster;
+            mDistFunc = (DistanceFunc) getDistanceFunc().clone();
+        }
+        
+        public Void call() throws Exception {
+            try {
+                int numClusters = mProtoClusters.length;
+                for (int c = mStartCluster; c < mEndCluster; c++) {
+                    ProtoCluster cluster = mProtoClusters[c];
+                    if (cluster.getConsiderForAssignment()) {
+                        double min = Double.MAX_VALUE;
+                        for (int j = 0; j < numClusters; j++) {
+                            ProtoCluster other = mProtoClusters[j];
+                            if (j != c && other.getConsiderForAssignment()) {
+                                double d = mDistFunc.distanceBetween(cluster.mCenter, other.mCenter);
+                                if (d < min) {
+                                    min = d;
+                                }
+                            }
+                        }
+                        cluster.setHalfSeparation(0.5 * min);
                     }
                     checkForCancel();
                 }
@@ -1062,17 +1871,28 @@ public class KMeansClusterTask extends ClusterTask {
     private class MakeAssignments implements Callable<Void> {
 
         private int mStartCoord, mEndCoord;
-        private double[] mCoordBuf;
-        private DistanceFunc mDistFunc;
+        private CoordinateBuffer mCoord;
         private int mMoves;
         private List<Move> mMoveList;
+        // The number of coordinates assigned to each cluster, and the
+        // indices of those assigned to no cluster, in the last call.
+        private int[] mClusterCounts;
+        private IntArrayList mUnassigned = new IntArrayList();
+        // The indices of the coordinates that moved, and the clusters they moved
+        // from.  Only recorded when maintaining running sums.
+        private IntArrayList mMovedCoords = new IntArrayList();
+        private IntArrayList mMovedFrom = new IntArrayList();
+        // The nodes of the filtering tree whose coordinates are assigned by 
+        // this worker.  Only used in KD_TREE_FILTERING mode.
+        private IntArrayList mSubtrees = new IntArrayList();
+        // Set if filterSubtrees() left any coordinates unassigned.
+        private boolean mFilteredUnassigned;
         
         MakeAssignments(int startCoord, int endCoord) {
             mStartCoord = startCoord;
             mEndCoord = endCoord;
-            CoordinateList coords = getCoordinateList();
-            mCoordBuf = new double[coords.getDimensionCount()];
-            mDistFunc = (DistanceFunc) getDistanceFunc().clone();
+            mCoord = new CoordinateBuffer(getCoordinateList(), getDistanceFunc());
+            mClusterCounts = new int[mProtoClusters.length];
         }
         
         public int getMoves() {
@@ -1083,23 +1903,44 @@ public class KMeansClusterTask extends ClusterTask {
             return mMoveList;
         }
         
-        public Void call() throws Exception {
-            try {
-                mMoves = 0;
+        private void reset() {
+            mMoves = 0;
+            Arrays.fill(mClusterCounts, 0);
+            mUnassigned.clear();
+            mFilteredUnassigned = false;
+            mMovedCoords.clear();
+            mMovedFrom.clear();
+            if (mTrackMoves) {
+                mMoveList = new ArrayList<Move> ();
+            }
+        }
+        
+        // Records the assignment of coordinate i to cluster c.
+        private void assign(int i, int c) {
+            mClusterCounts[c]++;
+            if (mClusterAssignments[i] != c) {
                 if (mTrackMoves) {
-                    mMoveList = new ArrayList<Move> ();
+                    mMoveList.add(new Move(i, mClusterAssignments[i], c));
+                }
+                if (mCenterRecomputeInterval > 0) {
+                    mMovedCoords.add(i);
+                    mMovedFrom.add(mClusterAssignments[i]);
                 }
+                mClusterAssignments[i] = c;
+                mMoves++;
+            }
+        }
+        
+        public Void call() throws Exception {
+            try {
+                reset();
                 for (int i = mStartCoord; i < mEndCoord; i++) {
-                    int c = nearestCluster(i, mCoordBuf, mDistFunc);
+                    int c = mUpperBounds != null ? nearestClusterBounded(i, mCoord) :
+                        nearestCluster(i, mCoord);
                     if (c >= 0) {
-                        mProtoClusters[c].add(i);
-                        if (mClusterAssignments[i] != c) {
-                            if (mTrackMoves) {
-                                mMoveList.add(new Move(i, mClusterAssignments[i], c));
-                            }
-                            mClusterAssignments[i] = c;
-                            mMoves++;
-                        }
+                        assign(i, c);
+                    } else {
+                        mUnassigned.add(i);
                     }
                 }
             } catch (CancellationException ce) {
@@ -1107,6 +1948,429 @@ public class KMeansClusterTask extends ClusterTask {
             }
             return null;
         }
+        
+        // The KD_TREE_FILTERING replacement for call(). The coordinates 
+        // of the worker's subtrees, not its range, are assigned.  Since the
+        // cluster counts are then not for the worker's range, countAssignments() 
+        // must be called after all workers have finished.
+        void filterSubtrees() {
+            reset();
+            final int numClusters = mProtoClusters.length;
+            int[] candidates = new int[numClusters];
+            int numCandidates = 0;
+            for (int c = 0; c < numClusters; c++) {
+                if (mProtoClusters[c].getConsiderForAssignment()) {
+                    candidates[numCandidates++] = c;
+                }
+            }
+            final int numSubtrees = mSubtrees.size();
+            for (int i = 0; i < numSubtrees; i++) {
+                filter(mSubtrees.getQuick(i), candidates, numCandidates);
+                checkForCancel();
+            }
+        }
+        
+        // Counts the assignments of the coordinates in the worker's range.
+        void countAssignments() {
+            Arrays.fill(mClusterCounts, 0);
+            for (int i = mStartCoord; i < mEndCoord; i++) {
+                int c = mClusterAssignments[i];
+                if (c >= 0) {
+                    mClusterCounts[c]++;
+                }
+            }
+        }
+
+        // Assigns the coordinates of a tree node, given the clusters that may 
+        // still contain the nearest center to any of them in increasing order.
+        private void filter(int node, int[] candidates, int numCandidates) {
+            
+            final FilteringTree tree = mFilteringTree;
+            final int[] indices = tree.mIndices;
+            final int start = tree.mStarts[node];
+            final int end = tree.mEnds[node];
+            
+            if (numCandidates > 1) {
+                
+                // The candidate nearest the centroid of the node is kept for sure.
+                final double[] centroid = tree.mCentroids[node];
+                int best = -1;
+                double bestDist = Double.MAX_VALUE;
+                for (int j = 0; j < numCandidates; j++) {
+                    double d = FilteringTree.distanceSquared(centroid, mProtoClusters[candidates[j]].mCenter);
+                    if (best < 0 || d < bestDist) {
+                        best = candidates[j];
+                        bestDist = d;
+                    }
+                }
+                
+                // Drop all candidates strictly farther than best from every 
+                // point in the node's bounding box.
+                final double[] bestCenter = mProtoClusters[best].mCenter;
+                int[] remaining = new int[numCandidates];
+                int numRemaining = 0;
+                for (int j = 0; j < numCandidates; j++) {
+                    int c = candidates[j];
+                    if (c == best || !tree.isFarther(node, mProtoClusters[c].mCenter, bestCenter)) {
+                        remaining[numRemaining++] = c;
+                    }
+                }
+                candidates = remaining;
+                numCandidates = numRemaining;
+            }
+
+            if (numCandidates == 1) {
+                
+                // Every coordinate in the node is strictly closest to this cluster.
+                final int c = candidates[0];
+                for (int i = start; i < end; i++) {
+                    assign(indices[i], c);
+                }
+                
+            } else if (tree.mLefts[node] >= 0) {
+                
+                filter(tree.mLefts[node], candidates, numCandidates);
+                filter(tree.mRights[node], candidates, numCandidates);
+            
+            } else {
+                
+                // A leaf, so check each coordinate against the candidates
+                // like nearestCluster(), which is also how ties are broken.
+                for (int i = start; i < end; i++) {
+                    final int ndx = indices[i];
+                    mCoord.load(ndx);
+                    final int oldNearest = mClusterAssignments[ndx];
+                    int nearest = -1;
+                    double min = Double.MAX_VALUE;
+                    double oldDist = Double.NaN;
+                    for (int j = 0; j < numCandidates; j++) {
+                        int c = candidates[j];
+                        double d = mCoord.comparableDistanceTo(mProtoClusters[c].mCenter, centerNorm(c));
+                        if (d < min) {
+                            min = d;
+                            nearest = c;
+                        }
+                        if (c == oldNearest) {
+                            oldDist = d;
+                        }
+                    }
+                    // nearestCluster() keeps an unchanged old cluster in a tie. 
+                    if (oldDist == min && !mProtoClusters[oldNearest].getUpdateFlag()) {
+                        nearest = oldNearest;
+                    }
+                    if (nearest >= 0) {
+                        assign(ndx, nearest);
+                    } else {
+                        // Cleared, since the worker that scatters this 
+                        // coordinate can't tell it was unassigned.
+                        mClusterAssignments[ndx] = -1;
+                        mFilteredUnassigned = true;
+                    }
+                }
+            }
+        }
+    }
+    
+    // Holds a coordinate fetched for computing its distances to the centers.
+    // When the coordinates are stored as floats and the distance function has 
+    // float kernels, the coordinate is kept as floats instead of being 
+    // widened to doubles.
+    private static class CoordinateBuffer {
+        
+        private CoordinateList mCoords;
+        private DistanceFunc mDistFunc;
+        private double[] mCoordBuf;
+        // Non-null only if using the float kernels.
+        private FloatCoordinateList mFloatCoords;
+        private FloatDistanceFunc mFloatDistFunc;
+        private float[] mFloatCoordBuf;
+        // Non-null only if computing blocks of distances.
+        private BlockDistanceFunc mBlockDistFunc;
+        private double[] mBlockDistances;
+        // Non-null if squared distances can be compared in place of the distances.
+        private SquaredDistanceFunc mSquaredDistFunc;
+        // Non-null if the distances can be computed with norms, in which case
+        // mCoordNorm is the norm of the last coordinate loaded.
+        private NormedDistanceFunc mNormedDistFunc;
+        private double mCoordNorm;
+        // Non-null only if the coordinates are sparse, in which case only their
+        // non-zero elements are loaded.
+        private SparseCoordinateList mSparseCoords;
+        private SparseDistanceFunc mSparseDistFunc;
+        private SparseVector mSparseCoordBuf;
+        
+        CoordinateBuffer(CoordinateList coords, DistanceFunc distFunc) {
+            mCoords = coords;
+            mDistFunc = (DistanceFunc) distFunc.clone();
+            final int dim = coords.getDimensionCount();
+            if (usesSparseDistances(coords, mDistFunc)) {
+                mSparseCoords = (SparseCoordinateList) coords;
+                mSparseDistFunc = (SparseDistanceFunc) mDistFunc;
+                mSparseCoordBuf = new SparseVector();
+            } else if (coords instanceof FloatCoordinateList && mDistFunc instanceof FloatDistanceFunc) {
+                mFloatCoords = (FloatCoordinateList) coords;
+                mFloatDistFunc = (FloatDistanceFunc) mDistFunc;
+                mFloatCoordBuf = new float[dim];
+            } else {
+                mCoordBuf = new double[dim];
+                if (mDistFunc instanceof BlockDistanceFunc) {
+                    mBlockDistFunc = (BlockDistanceFunc) mDistFunc;
+                }
+                if (mDistFunc instanceof SquaredDistanceFunc) {
+                    mSquaredDistFunc = (SquaredDistanceFunc) mDistFunc;
+                } else if (mDistFunc instanceof NormedDistanceFunc) {
+                    mNormedDistFunc = (NormedDistanceFunc) mDistFunc;
+                }
+            }
+        }
+        
+        boolean hasBlockDistances() {
+            return mBlockDistFunc != null;
+        }
+        
+        void load(int ndx) {
+            if (mSparseCoords != null) {
+                mSparseCoords.getSparseCoordinates(ndx, mSparseCoordBuf);
+            } else if (mFloatCoords != null) {
+                mFloatCoords.getCoordinates(ndx, mFloatCoordBuf);
+            } else {
+                mCoords.getCoordinates(ndx, mCoordBuf);
+                if (mNormedDistFunc != null) {
+                    mCoordNorm = mNormedDistFunc.norm(mCoordBuf);
+                }
+            }
+        }
+        
+        // Returns the distance from the last coordinate loaded.  centerNorm is
+        // only used for sparse distances.
+        double distanceTo(double[] center, double centerNorm) {
+            if (mSparseCoords != null) {
+                return mSparseDistFunc.distanceBetween(mSparseCoordBuf, center, centerNorm);
+            }
+            return mFloatCoords != null ? mFloatDistFunc.distanceBetween(mFloatCoordBuf, center) :
+                mDistFunc.distanceBetween(mCoordBuf, center);
+        }
+        
+        // Returns an array holding the distances from the last coordinate loaded
+        // to the first count centers of the row-major block.  Only valid if
+        // hasBlockDistances() returns true.
+        double[] distancesTo(double[] block, int count) {
+            if (mBlockDistances == null || mBlockDistances.length < count) {
+                mBlockDistances = new double[count];
+            }
+            mBlockDistFunc.distancesBetween(mCoordBuf, block, 0, count, mBlockDistances);
+            return mBlockDistances;
+        }
+        
+        // Like distanceTo(), but returns the squared distance if the distance
+        // function can compute it, or uses the norms if it can use those.  
+        // Only for comparing with other values returned by this method.
+        double comparableDistanceTo(double[] center, double centerNorm) {
+            if (mSquaredDistFunc != null) {
+                return mSquaredDistFunc.squaredDistanceBetween(mCoordBuf, center);
+            }
+            if (mNormedDistFunc != null) {
+                return mNormedDistFunc.distanceBetween(mCoordBuf, mCoordNorm, center, centerNorm);
+            }
+            return distanceTo(center, centerNorm);
+        }
+        
+        // The analogue of distancesTo() for comparableDistanceTo().  
+        // centerNorms is only used with a NormedDistanceFunc.
+        double[] comparableDistancesTo(double[] block, double[] centerNorms, int count) {
+            if (mSquaredDistFunc == null && mNormedDistFunc == null) {
+                return distancesTo(block, count);
+            }
+            if (mBlockDistances == null || mBlockDistances.length < count) {
+                mBlockDistances = new double[count];
+            }
+            if (mSquaredDistFunc != null) {
+                mSquaredDistFunc.squaredDistancesBetween(mCoordBuf, block, 0, count, mBlockDistances);
+            } else {
+                mNormedDistFunc.distancesBetween(mCoordBuf, mCoordNorm, block, centerNorms, 0, count, mBlockDistances);
+            }
+            return mBlockDistances;
+        }
+    }
+    
+    // Used in KD_TREE_FILTERING mode.  A flattened version of the
+    // kd-tree produced by MultiResKDTreeNode, with the range of the 
+    // node's coordinates in mIndices, its bounding box, and its centroid
+    // cached for every node.
+    private static class FilteringTree {
+        
+        // The target number of coordinates in the leaves.
+        static final int LEAF_SIZE = 32;
+        
+        // Relative tolerance used to keep rounding errors from 
+        // pruning candidates that are not strictly farther.
+        private static final double PRUNING_TOLERANCE = 1.0e-10;
+        
+        private int[] mIndices;
+        private int[] mStarts, mEnds;
+        // -1 for leaves.
+        private int[] mLefts, mRights;
+        private double[][] mMins, mMaxes;
+        private double[][] mCentroids;
+        private int mNodeCount;
+        
+        FilteringTree(CoordinateList cs) {
+            final int coordCount = cs.getCoordinateCount();
+            int splits = 0;
+            while ((coordCount >> splits) > LEAF_SIZE) {
+                splits++;
+            }
+            MultiResKDTreeNode root = MultiResKDTreeNode.createKDTree(cs, null, splits);
+            int nodeCount = countNodes(root);
+            mIndices = new int[coordCount];
+            mStarts = new int[nodeCount];
+            mEnds = new int[nodeCount];
+            mLefts = new int[nodeCount];
+            mRights = new int[nodeCount];
+            mMins = new double[nodeCount][];
+            mMaxes = new double[nodeCount][];
+            mCentroids = new double[nodeCount][];
+            flatten(root, 0);
+        }
+        
+        // Returns true if none of the coordinates contain NaNs or 
+        // infinities.  The bounding boxes ignore NaNs, so pruning with them
+        // would be invalid.
+        static boolean isFinite(CoordinateList cs) {
+            final int coordCount = cs.getCoordinateCount();
+            final double[] buf = new double[cs.getDimensionCount()];
+            for (int i = 0; i < coordCount; i++) {
+                cs.getCoordinates(i, buf);
+                for (int j = 0; j < buf.length; j++) {
+                    if (Double.isNaN(buf[j]) || Double.isInfinite(buf[j])) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        
+        private static int countNodes(MultiResKDTreeNode node) {
+            return node.isSplit() ? 1 + countNodes(node.getLeft()) + countNodes(node.getRight()) : 1;
+        }
+        
+        // Flattens the node, placing its indices beginning at start. Returns 
+        // the index of the node.
+        private int flatten(MultiResKDTreeNode node, int start) {
+            final int n = mNodeCount++;
+            HyperRect rect = node.getBoundingRect();
+            final int dim = rect.getDimension();
+            mMins[n] = new double[dim];
+            mMaxes[n] = new double[dim];
+            for (int i = 0; i < dim; i++) {
+                mMins[n][i] = rect.getMinCornerCoord(i);
+                mMaxes[n][i] = rect.getMaxCornerCoord(i);
+            }
+            mCentroids[n] = node.getCenter(null);
+            mStarts[n] = start;
+            mEnds[n] = start + node.getSize();
+            if (node.isSplit()) {
+                MultiResKDTreeNode left = node.getLeft();
+                mLefts[n] = flatten(left, start);
+                mRights[n] = flatten(node.getRight(), start + left.getSize());
+            } else {
+                mLefts[n] = mRights[n] = -1;
+                int[] indices = node.getIndices();
+                System.arraycopy(indices, 0, mIndices, start, indices.length);
+            }
+            return n;
+        }
+        
+        // Returns the indices of nodes whose subtrees partition the tree into
+        // at least the given number of pieces, unless there are too few leaves.
+        IntArrayList subtrees(int minCount) {
+            IntArrayList nodes = new IntArrayList();
+            nodes.add(0);
+            boolean split = true;
+            while (nodes.size() < minCount && split) {
+                IntArrayList nextNodes = new IntArrayList();
+                split = false;
+                for (int i = 0; i < nodes.size(); i++) {
+                    int node = nodes.getQuick(i);
+                    if (mLefts[node] >= 0) {
+                        nextNodes.add(mLefts[node]);
+                        nextNodes.add(mRights[node]);
+                        split = true;
+                    } else {
+                        nextNodes.add(node);
+                    }
+                }
+                nodes = nextNodes;
+            }
+            return nodes;
+        }
+        
+        // Returns true if every point in the node's bounding box is strictly
+        // farther from center than from bestCenter. Only the corner of the box
+        // farthest in the direction of center from bestCenter has to be checked.
+        boolean isFarther(int node, double[] center, double[] bestCenter) {
+            final double[] min = mMins[node];
+            final double[] max = mMaxes[node];
+            final int dim = min.length;
+            double d = 0.0, dBest = 0.0;
+            for (int i = 0; i < dim; i++) {
+                double v = center[i] > bestCenter[i] ? max[i] : min[i];
+                double diff = center[i] - v;
+                double diffBest = bestCenter[i] - v;
+                d += diff*diff;
+                dBest += diffBest*diffBest;
+            }
+            return d > dBest * (1.0 + PRUNING_TOLERANCE);
+        }
+        
+        static double distanceSquared(double[] coords1, double[] coords2) {
+            double d2 = 0.0;
+            final int dim = coords1.length;
+            for (int i = 0; i < dim; i++) {
+                double d = coords1[i] - coords2[i];
+                d2 += d*d;
+            }
+            return d2;
+        }
+    }
+    
+    // Copies the indices of the coordinates assigned by a MakeAssignments worker
+    // into the cluster memberships.  Each scatterer writes to its own 
+    // regions of the membership arrays, so no locking is needed.
+    private class MembershipScatter implements Callable<Void> {
+        
+        private MakeAssignments mAssigner;
+        // Where this scatterer's first member of each cluster goes. 
+        private int[] mOffsets;
+        private int[][] mMemberships;
+        
+        MembershipScatter(MakeAssignments assigner) {
+            mAssigner = assigner;
+            mOffsets = new int[mProtoClusters.length];
+            mMemberships = new int[mProtoClusters.length][];
+        }
+        
+        public Void call() throws Exception {
+            final int[] offsets = mOffsets;
+            final int[][] memberships = mMemberships;
+            final IntArrayList unassigned = mAssigner.mUnassigned;
+            final int numUnassigned = unassigned.size();
+            int u = 0;
+            for (int i = mAssigner.mStartCoord; i < mAssigner.mEndCoord; i++) {
+                if (u < numUnassigned && unassigned.getQuick(u) == i) {
+                    // Its entry in mClusterAssignments is stale.
+                    u++;
+                    continue;
+                }
+                int c = mClusterAssignments[i];
+                if (c >= 0) {
+                    memberships[c][offsets[c]++] = i;
+                }
+            }
+            // Release the references to the membership arrays.
+            Arrays.fill(memberships, null);
+            return null;
+        }
     }
     
     private static class Move implements Comparable<Move> {
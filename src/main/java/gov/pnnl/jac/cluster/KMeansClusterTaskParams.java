@@ -34,6 +34,30 @@ public class KMeansClusterTaskParams implements ClusterTaskParams {
 
     private static final long serialVersionUID = 8885574658404343728L;
 
+    /**
+     * Strategies for assigning coordinates to their nearest clusters.
+     *
+     * STANDARD            -- the distance from each coordinate to every cluster
+     *                        center that changed in the previous iteration is 
+     *                        computed on every iteration.
+     * TRIANGLE_INEQUALITY -- per-coordinate upper and lower distance bounds and
+     *                        per-center drifts are maintained (Hamerly's method), 
+     *                        so that most distance computations can be skipped.  
+     *                        The assignments are identical to those of STANDARD.
+     *                        Only honored when the distance function is a true
+     *                        metric; otherwise STANDARD is used.
+     * KD_TREE_FILTERING   -- the coordinates are organized in a kd-tree and
+     *                        candidate centers are filtered per tree node 
+     *                        (Kanungo et al.), so whole subtrees are assigned 
+     *                        at once.  Best for data of 2 to 20 dimensions.
+     *                        The assignments are identical to those of STANDARD.
+     *                        Only honored for Euclidean distance on data without
+     *                        NaNs; otherwise STANDARD is used.
+     */
+    public enum AssignmentMode {
+        STANDARD, TRIANGLE_INEQUALITY, KD_TREE_FILTERING
+    };
+
     // Desired number of clusters.
     private int mNumClusters;
     // Maximum number of iterations before quitting.
@@ -52,6 +76,15 @@ public class KMeansClusterTaskParams implements ClusterTaskParams {
     private DistanceFunc mDistanceFunc;
     // The cluster seeder.
     private ClusterSeeder mSeeder;
+    // How coordinates are assigned to their nearest clusters.
+    private AssignmentMode mAssignmentMode = AssignmentMode.STANDARD;
+    // If positive, cluster centers are maintained incrementally from the
+    // moves in each iteration, and recomputed exactly from the full memberships
+    // every this many iterations.  If 0, centers are always recomputed exactly.
+    private int mCenterRecomputeInterval;
+    // The number of times clustering is run from different random seeds, 
+    // keeping the clustering with the least distortion.
+    private int mNumRestarts = 1;
 
     public KMeansClusterTaskParams(int numClusters, 
             int maxIterations,
@@ -163,6 +196,53 @@ public class KMeansClusterTaskParams implements ClusterTaskParams {
     public void setNumWorkerThreads(int numWorkerThreads) {
     	mNumWorkerThreads = numWorkerThreads;
     }
+    
+    public final AssignmentMode getAssignmentMode() {
+        return mAssignmentMode;
+    }
+    
+    public void setAssignmentMode(AssignmentMode assignmentMode) {
+        if (assignmentMode == null) {
+            throw new NullPointerException();
+        }
+        mAssignmentMode = assignmentMode;
+    }
+    
+    /**
+     * Get the interval, in iterations, at which cluster centers are recomputed 
+     * from their full memberships.  In the iterations between, the centers are
+     * updated from running sums adjusted only by the coordinates that moved.
+     * If 0 (the default), centers are always recomputed from the full memberships.
+     * 
+     * @return
+     */
+    public final int getCenterRecomputeInterval() {
+        return mCenterRecomputeInterval;
+    }
+    
+    public void setCenterRecomputeInterval(int interval) {
+        ExceptionUtil.checkNonNegative(interval);
+        mCenterRecomputeInterval = interval;
+    }
+    
+    /**
+     * Get the number of times clustering is run, each time from seeds
+     * generated with a different random seed.  The clustering with the smallest
+     * total squared distance of the coordinates from their cluster centers is 
+     * kept.  The restarts run concurrently, with the worker threads divided
+     * among them.  Only honored when the seeder is a <tt>RandomSeeder</tt> and
+     * clustering is not warm started.  The default is 1.
+     * 
+     * @return
+     */
+    public final int getNumRestarts() {
+        return mNumRestarts;
+    }
+    
+    public void setNumRestarts(int numRestarts) {
+        ExceptionUtil.checkPositive(numRestarts);
+        mNumRestarts = numRestarts;
+    }
 
     public Object clone() {
         try {
@@ -179,6 +259,9 @@ public class KMeansClusterTaskParams implements ClusterTaskParams {
         hc = 31 * hc + mNumWorkerThreads;
         hc = 31 * hc + mDistanceFunc.hashCode();
         hc = 31 * hc + mSeeder.hashCode();
+        hc = 31 * hc + mAssignmentMode.hashCode();
+        hc = 31 * hc + mCenterRecomputeInterval;
+        hc = 31 * hc + mNumRestarts;
         return hc;
     }
 
@@ -192,7 +275,10 @@ public class KMeansClusterTaskParams implements ClusterTaskParams {
                     && this.mMovesGoal == other.mMovesGoal
                     && this.mNumWorkerThreads == other.mNumWorkerThreads
                     && this.mDistanceFunc.equals(other.mDistanceFunc)
-                    && this.mSeeder.equals(other.mSeeder);
+                    && this.mSeeder.equals(other.mSeeder)
+                    && this.mAssignmentMode == other.mAssignmentMode
+                    && this.mCenterRecomputeInterval == other.mCenterRecomputeInterval
+                    && this.mNumRestarts == other.mNumRestarts;
         }
         return false;
     }
@@ -225,6 +311,12 @@ public class KMeansClusterTaskParams implements ClusterTaskParams {
         private DistanceFunc mDistanceFunc;
         // The cluster seeder.
         private ClusterSeeder mSeeder;
+        // How coordinates are assigned to their nearest clusters.
+        private AssignmentMode mAssignmentMode = AssignmentMode.STANDARD;
+        // Iterations between exact center recomputations, or 0 for always.
+        private int mCenterRecomputeInterval;
+        // The number of clustering runs from different random seeds.
+        private int mNumRestarts = 1;
         
         public Builder(int numClusters) {
             ExceptionUtil.checkPositive(numClusters);
@@ -270,6 +362,24 @@ public class KMeansClusterTaskParams implements ClusterTaskParams {
             return this;
         }
         
+        public Builder assignmentMode(AssignmentMode assignmentMode) {
+            ExceptionUtil.checkNotNull(assignmentMode);
+            this.mAssignmentMode = assignmentMode;
+            return this;
+        }
+        
+        public Builder centerRecomputeInterval(int interval) {
+            ExceptionUtil.checkNonNegative(interval);
+            this.mCenterRecomputeInterval = interval;
+            return this;
+        }
+        
+        public Builder numRestarts(int numRestarts) {
+            ExceptionUtil.checkPositive(numRestarts);
+            this.mNumRestarts = numRestarts;
+            return this;
+        }
+        
         public KMeansClusterTaskParams build() {
             if (this.mDistanceFunc == null) {
                 this.mDistanceFunc = new EuclideanNoNaN();
@@ -278,7 +388,7 @@ public class KMeansClusterTaskParams implements ClusterTaskParams {
                 this.mSeeder = new RandomSeeder(System.currentTimeMillis(), 
                         new MersenneTwisterRandom());
             }
-            return new KMeansClusterTaskParams(
+            KMeansClusterTaskParams params = new KMeansClusterTaskParams(
                     this.mNumClusters, 
                     this.mMaxIterations,
                     this.mMovesGoal, 
@@ -286,6 +396,10 @@ public class KMeansClusterTaskParams implements ClusterTaskParams {
                     this.mReplaceEmptyClusters,
                     this.mDistanceFunc,
                     this.mSeeder);
+            params.setAssignmentMode(this.mAssignmentMode);
+            params.setCenterRecomputeInterval(this.mCenterRecomputeInterval);
+            params.setNumRestarts(this.mNumRestarts);
+            return params;
         }
     }
 }
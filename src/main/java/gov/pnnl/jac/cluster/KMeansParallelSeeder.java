@@ -0,0 +1,419 @@
+package gov.pnnl.jac.cluster;
+
+import gov.pnnl.jac.collections.IntArrayList;
+import gov.pnnl.jac.geom.CoordinateList;
+import gov.pnnl.jac.geom.SimpleCoordinateList;
+import gov.pnnl.jac.geom.distance.DistanceFunc;
+import gov.pnnl.jac.geom.distance.EuclideanNoNaN;
+import gov.pnnl.jac.task.TaskScheduler;
+import gov.pnnl.jac.util.ExceptionUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>Implements the scalable variant of k-means++ seeding proposed in 2012
+ * by Bahmani, Moseley, Vattani, Kumar, and Vassilvitskii, commonly called
+ * k-means||.  Instead of choosing one seed per pass over the coordinates,
+ * each of a small number of rounds samples many candidates in parallel,
+ * each coordinate being chosen with probability proportional to its squared
+ * distance from the candidates chosen so far.  The candidates are then
+ * weighted by the number of coordinates nearest to them and reduced to the
+ * requested number of seeds by weighted k-means++.</p>
+ *
+ * <p>The random choices made for each coordinate depend only on the
+ * random seed and the coordinate index, so the seeds generated are the
+ * same for any number of worker threads.</p>
+ *
+ * @author R. Scarberry
+ *
+ */
+public class KMeansParallelSeeder extends KMeansPlusPlusSeeder {
+
+    // Coordinates are split into this many chunks for the parallel
+    // passes, regardless of the number of threads, so that sums are
+    // always accumulated in the same order.
+    private static final int CHUNK_COUNT = 64;
+
+    // Number of candidates expected per round, as a multiple of the
+    // number of seeds requested.
+    private double mOversampling;
+    // Number of sampling rounds.
+    private int mRounds;
+    // If -1, then select based on the number of processors.
+    private int mNumWorkerThreads;
+
+    private volatile boolean mCancelFlag;
+
+    public KMeansParallelSeeder(long seed,
+            Random random,
+            DistanceFunc distanceFunc,
+            double oversampling,
+            int rounds,
+            int numWorkerThreads) {
+        super(seed, random, distanceFunc);
+        if (Double.isNaN(oversampling) || oversampling <= 0.0) {
+            throw new IllegalArgumentException("oversampling must be positive: " + oversampling);
+        }
+        ExceptionUtil.checkPositive(rounds);
+        mOversampling = oversampling;
+        mRounds = rounds;
+        mNumWorkerThreads = numWorkerThreads > 0 ? numWorkerThreads : -1;
+    }
+
+    public KMeansParallelSeeder(long seed, DistanceFunc distanceFunc) {
+        this(seed, new Random(), distanceFunc, 2.0, 2, -1);
+    }
+
+    public KMeansParallelSeeder(long seed) {
+        this(seed, new EuclideanNoNaN());
+    }
+
+    public void cancel() {
+        super.cancel();
+        mCancelFlag = true;
+    }
+
+    public KMeansParallelSeeder withRandomSeed(long seed) {
+        KMeansParallelSeeder copy = (KMeansParallelSeeder) super.withRandomSeed(seed);
+        copy.mCancelFlag = false;
+        return copy;
+    }
+
+    public double getOversampling() {
+        return mOversampling;
+    }
+
+    public int getRounds() {
+        return mRounds;
+    }
+
+    public int getNumWorkerThreads() {
+        return mNumWorkerThreads;
+    }
+
+    public synchronized CoordinateList generateSeeds(final CoordinateList coords, int numSeeds) {
+
+        long seed = this.getRandomSeed();
+        if (seed == 0L) {
+            seed = System.currentTimeMillis();
+        }
+
+        Random random = this.getRandom();
+        random.setSeed(seed);
+
+        final int coordCount = coords.getCoordinateCount();
+        final int coordLen = coords.getDimensionCount();
+
+        if (numSeeds > coordCount) {
+            numSeeds = coordCount;
+        }
+
+        // Minimum squared distances from the coordinates to any candidate,
+        // and the indices in candidateList of the nearest candidates.
+        final double[] minDistances2 = new double[coordCount];
+        Arrays.fill(minDistances2, Double.MAX_VALUE);
+        final int[] nearest = new int[coordCount];
+
+        IntArrayList candidateList = new IntArrayList();
+
+        int numWorkers = mNumWorkerThreads > 0 ? mNumWorkerThreads :
+            Runtime.getRuntime().availableProcessors();
+        // The chunks are run on the shared subtask pool unless limited to one thread.
+        final boolean concurrent = numWorkers > 1;
+
+        List<Chunk> chunks = new ArrayList<Chunk> (CHUNK_COUNT);
+        int chunkCount = Math.min(CHUNK_COUNT, coordCount);
+        for (int i=0; i<chunkCount; i++) {
+            int start = (int) ((long) coordCount * i / chunkCount);
+            int end = (int) ((long) coordCount * (i + 1) / chunkCount);
+            chunks.add(new Chunk(coords, start, end, minDistances2, nearest));
+        }
+
+        // Choose the first candidate at random.
+        candidateList.add(random.nextInt(coordCount));
+        int firstNew = 0;
+
+        double expectedCount = mOversampling * numSeeds;
+
+        // The distances are updated once more after the last round, so that
+        // the nearest candidates are known for weighting.
+        for (int round = 0; round <= mRounds && !mCancelFlag; round++) {
+
+            // Update the distances for the candidates chosen last round.
+            double cost = 0.0;
+            double[][] newCandidates = candidateCoords(coords, candidateList, firstNew);
+            for (Chunk chunk: chunks) {
+                chunk.prepareUpdate(newCandidates, firstNew);
+            }
+            invoke(concurrent, chunks);
+            for (Chunk chunk: chunks) {
+                cost += chunk.mCost;
+            }
+
+            if (round == mRounds || mCancelFlag || cost == 0.0) {
+                break;
+            }
+
+            firstNew = candidateList.size();
+            final long roundSeed = random.nextLong();
+            for (Chunk chunk: chunks) {
+                chunk.prepareSample(roundSeed, expectedCount/cost);
+            }
+            invoke(concurrent, chunks);
+            for (Chunk chunk: chunks) {
+                candidateList.addAll(chunk.mSampled);
+            }
+            
+            if (candidateList.size() == firstNew) {
+                break;
+            }
+        }
+
+        int[] candidates = candidateList.toArray();
+
+        if (candidates.length > numSeeds && !mCancelFlag) {
+
+            // Weight each candidate by the number of coordinates nearest to it.
+            double[] weights = new double[candidates.length];
+            for (int i=0; i<coordCount; i++) {
+                weights[nearest[i]] += 1.0;
+            }
+
+            candidates = reduce(candidates, candidateCoords(coords, candidateList, 0), 
+                    weights, numSeeds, random);
+            
+        } else if (candidates.length > numSeeds) {
+            
+            // Canceled, so just take the earliest candidates. 
+            candidates = Arrays.copyOf(candidates, numSeeds);
+        }
+
+        Arrays.sort(candidates);
+
+        CoordinateList seeds = new SimpleCoordinateList(coordLen, candidates.length);
+        double[] buf = new double[coordLen];
+        for (int i=0; i<candidates.length; i++) {
+            coords.getCoordinates(candidates[i], buf);
+            seeds.setCoordinates(i, buf);
+        }
+
+        return seeds;
+    }
+
+    // Picks numSeeds of the candidates using k-means++ with each candidate's
+    // probability scaled by its weight.  Returns the chosen candidates.
+    private int[] reduce(int[] candidates, double[][] candidateCoords,
+            double[] weights, int numSeeds, Random random) {
+
+        final int candidateCount = candidates.length;
+        final DistanceFunc distFunc = getDistanceFunc();
+
+        double[] minDistances2 = new double[candidateCount];
+        Arrays.fill(minDistances2, Double.MAX_VALUE);
+        boolean[] chosen = new boolean[candidateCount];
+        IntArrayList seedList = new IntArrayList(numSeeds);
+
+        // The first with probability proportional to weight.
+        int next = sample(weights, null, chosen, random);
+
+        while (next >= 0 && !mCancelFlag) {
+
+            seedList.add(candidates[next]);
+            chosen[next] = true;
+
+            if (seedList.size() == numSeeds) {
+                break;
+            }
+
+            double[] nextCoords = candidateCoords[next];
+            for (int i=0; i<candidateCount; i++) {
+                if (!chosen[i]) {
+                    double d = distFunc.distanceBetween(nextCoords, candidateCoords[i]);
+                    double d2 = d*d;
+                    if (d2 < minDistances2[i]) {
+                        minDistances2[i] = d2;
+                    }
+                }
+            }
+
+            next = sample(weights, minDistances2, chosen, random);
+        }
+
+        return seedList.toArray();
+    }
+
+    // Picks an index not already chosen with probability proportional to
+    // weights[i]*distances2[i], or just weights[i] if distances2 is null.
+    // Returns -1 if all have been chosen.
+    private static int sample(double[] weights, double[] distances2, boolean[] chosen, Random random) {
+
+        final int n = weights.length;
+        double sum = 0.0;
+        for (int i=0; i<n; i++) {
+            if (!chosen[i]) {
+                sum += distances2 != null ? weights[i]*distances2[i] : weights[i];
+            }
+        }
+
+        double t = random.nextDouble() * sum;
+        double probSum = 0.0;
+        int lastAvailable = -1;
+
+        for (int i=0; i<n; i++) {
+            if (!chosen[i]) {
+                lastAvailable = i;
+                probSum += distances2 != null ? weights[i]*distances2[i] : weights[i];
+                if (probSum >= t) {
+                    return i;
+                }
+            }
+        }
+
+        // Rounding may have kept probSum from reaching t.
+        return lastAvailable;
+    }
+
+    private static double[][] candidateCoords(CoordinateList coords, IntArrayList candidateList, int start) {
+        final int n = candidateList.size() - start;
+        double[][] candidateCoords = new double[n][];
+        for (int i=0; i<n; i++) {
+            candidateCoords[i] = coords.getCoordinates(candidateList.get(start + i), null);
+        }
+        return candidateCoords;
+    }
+
+    private void invoke(boolean concurrent, List<Chunk> chunks) {
+        if (concurrent) {
+            try {
+                TaskScheduler.invokeSubtasks(chunks);
+            } catch (InterruptedException ex) {
+                Logger.getLogger(KMeansParallelSeeder.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        } else {
+            for (Chunk chunk: chunks) {
+                chunk.call();
+            }
+        }
+    }
+
+    // Returns a uniform random number in [0, 1) depending only on
+    // the seed and index, using the SplitMix64 mixing function.
+    private static double uniform(long seed, int index) {
+        long z = seed + (index + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return (z >>> 11) * 0x1.0p-53;
+    }
+
+    public int hashCode() {
+        int hc = super.hashCode();
+        long l = Double.doubleToLongBits(mOversampling);
+        hc = 37*hc + (int) (l ^ (l >>> 32));
+        hc = 37*hc + mRounds;
+        return 37*hc + mNumWorkerThreads;
+    }
+
+    public boolean equals(Object o) {
+        if (o == this) return true;
+        if (o instanceof KMeansParallelSeeder && super.equals(o)) {
+            KMeansParallelSeeder other = (KMeansParallelSeeder) o;
+            return this.mOversampling == other.mOversampling &&
+                this.mRounds == other.mRounds &&
+                this.mNumWorkerThreads == other.mNumWorkerThreads;
+        }
+        return false;
+    }
+
+    // Performs one of the parallel passes over a range of the coordinates,
+    // depending on which prepare method was called last.
+    private class Chunk implements Callable<Void> {
+
+        private CoordinateList mCoords;
+        private int mStart, mEnd;
+        private double[] mMinDistances2;
+        private int[] mNearest;
+        private DistanceFunc mDistFunc;
+        private double[] mBuf;
+
+        private boolean mSamplePhase;
+        private double[][] mCandidates;
+        private int mFirstCandidate;
+        private long mRoundSeed;
+        private double mScale;
+
+        // Results of the passes.
+        private double mCost;
+        private IntArrayList mSampled = new IntArrayList();
+
+        Chunk(CoordinateList coords, int start, int end, double[] minDistances2, int[] nearest) {
+            mCoords = coords;
+            mStart = start;
+            mEnd = end;
+            mMinDistances2 = minDistances2;
+            mNearest = nearest;
+            mDistFunc = (DistanceFunc) getDistanceFunc().clone();
+            mBuf = new double[coords.getDimensionCount()];
+        }
+
+        // firstCandidate is the index in the candidate list of newCandidates[0].
+        void prepareUpdate(double[][] newCandidates, int firstCandidate) {
+            mSamplePhase = false;
+            mCandidates = newCandidates;
+            mFirstCandidate = firstCandidate;
+        }
+
+        void prepareSample(long roundSeed, double scale) {
+            mSamplePhase = true;
+            mRoundSeed = roundSeed;
+            mScale = scale;
+        }
+
+        public Void call() {
+            if (mSamplePhase) {
+                sample();
+            } else {
+                update();
+            }
+            return null;
+        }
+
+        private void update() {
+            double cost = 0.0;
+            for (int i=mStart; i<mEnd && !mCancelFlag; i++) {
+                double min = mMinDistances2[i];
+                if (min > 0.0) {
+                    mCoords.getCoordinates(i, mBuf);
+                    for (int j=0; j<mCandidates.length; j++) {
+                        double d = mDistFunc.distanceBetween(mBuf, mCandidates[j]);
+                        double d2 = d*d;
+                        if (d2 < min) {
+                            min = d2;
+                            mNearest[i] = mFirstCandidate + j;
+                        }
+                    }
+                    mMinDistances2[i] = min;
+                }
+                cost += min;
+            }
+            mCost = cost;
+        }
+
+        private void sample() {
+            mSampled.clear();
+            for (int i=mStart; i<mEnd && !mCancelFlag; i++) {
+                // Candidates and coordinates identical to them have
+                // distances of 0, so they can never be sampled again.
+                if (uniform(mRoundSeed, i) < mScale * mMinDistances2[i]) {
+                    mSampled.add(i);
+                }
+            }
+        }
+    }
+}
@@ -42,6 +42,23 @@ public class KMeansPlusPlusSeeder extends RandomSeeder {
 	public void cancel() {
 	    mCancelFlag = true;
 	}
+
+	/**
+	 * Returns the distance function used to compute the distances
+	 * between coordinates and seeds.
+	 * 
+	 * @return
+	 */
+	public DistanceFunc getDistanceFunc() {
+	    return mDistFunc;
+	}
+
+	public KMeansPlusPlusSeeder withRandomSeed(long seed) {
+	    KMeansPlusPlusSeeder copy = (KMeansPlusPlusSeeder) super.withRandomSeed(seed);
+	    copy.mDistFunc = mDistFunc.clone();
+	    copy.mCancelFlag = false;
+	    return copy;
+	}
 	
 	private static int[] generatePotentialSeeds(final int coordCount, final Random random) {
 		int[] potentialSeeds = new int[coordCount];
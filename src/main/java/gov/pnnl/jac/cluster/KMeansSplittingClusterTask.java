@@ -8,6 +8,7 @@ import gov.pnnl.jac.geom.distance.DistanceFunc;
 import gov.pnnl.jac.task.ProgressHandler;
 import gov.pnnl.jac.task.TaskEvent;
 import gov.pnnl.jac.task.TaskListener;
+import gov.pnnl.jac.task.TaskScheduler;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -17,8 +18,6 @@ import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executor;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -78,13 +77,12 @@ public abstract class KMeansSplittingClusterTask extends ClusterTask {
         }
 
         ClusterList clusterList = null;
-        ExecutorService threadPool = null;
+
+        // The splitters are run on the shared subtask pool if more than one
+        // worker thread is requested.
+        final boolean concurrent = numWorkerThreads > 1;
 
         try {
-            
-            if (numWorkerThreads > 1) {
-                threadPool = Executors.newFixedThreadPool(numWorkerThreads);
-            }
 
             int minClusters = Math.max(1, params.getMinClusters());
             if (minClusters > numCoords) {
@@ -154,8 +152,8 @@ public abstract class KMeansSplittingClusterTask extends ClusterTask {
                 }
 
                 if (splitterList.size() > 0) {
-                    if (threadPool != null) {
-                        List<Future<Collection<Cluster>>> results = threadPool.invokeAll(splitterList);
+                    if (concurrent) {
+                        List<Future<Collection<Cluster>>> results = TaskScheduler.invokeSubtasks(splitterList);
                         for (Future<Collection<Cluster>> result: results) {
                             Collection<Cluster> clusters = result.get();
                             addToCurrentClusters(clusters);
@@ -302,9 +300,8 @@ public abstract class KMeansSplittingClusterTask extends ClusterTask {
             setClusterList(clusterList);
             
         } finally {
-            if (threadPool != null) {
-                threadPool.shutdownNow();
-            }
+            // Not left to be cancelled if clustering failed.
+            mLocalKMeans = null;
         }
 
         ph.postEnd();
@@ -0,0 +1,405 @@
+/*
+ * MiniBatchKMeansClusterTask.java
+ *
+ * JAC: Java Analytic Components
+ *
+ * For information contact Randall Scarberry, randall.scarberry@pnl.gov
+ *
+ * Notice: This computer software was prepared by Battelle Memorial Institute,
+ * hereinafter the Contractor, under Contract No. DE-AC05-76RL0 1830 with the
+ * Department of Energy (DOE).  All rights in the computer software are
+ * reserved by DOE on behalf of the United States Government and the Contractor
+ * as provided in the Contract.  You are authorized to use this computer
+ * software for Governmental purposes but it is not to be released or
+ * distributed to the public.  NEITHER THE GOVERNMENT NOR THE CONTRACTOR MAKES
+ * ANY WARRANTY, EXPRESS OR IMPLIED, OR ASSUMES ANY LIABILITY FOR THE USE OF
+ * THIS SOFTWARE.  This notice including this sentence must appear on any
+ * copies of this computer software.
+ */
+package gov.pnnl.jac.cluster;
+
+import gov.pnnl.jac.geom.*;
+import gov.pnnl.jac.geom.distance.*;
+import gov.pnnl.jac.task.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>
+ * Performs mini-batch k-means clustering (Sculley, 2010).  The coordinates
+ * are read in consecutive batches, each batch is assigned to the nearest
+ * centers, and then the centers are nudged toward the batch members using
+ * per-center learning rates that decrease as the centers absorb more coordinates.
+ * A single final pass assigns every coordinate to its nearest center.
+ * </p>
+ *
+ * <p>
+ * Since coordinates are only ever read in ascending index order, this task
+ * is suited to coordinate lists too large for memory, such as
+ * <code>FileMappedCoordinateList</code> and <code>MultiFileMappedCoordinateList</code>,
+ * for which <code>KMeansClusterTask</code> would perform a full pass of random
+ * reads on every iteration.  Because the batches are consecutive, the coordinates
+ * should not be ordered in a way that correlates with the clusters.
+ * </p>
+ *
+ * @author R. Scarberry
+ * @version 1.0
+ */
+public class MiniBatchKMeansClusterTask extends ClusterTask {
+
+    // The maximum number of coordinates sampled for generating the
+    // initial cluster seeds.
+    private int mInitCentersSamplingLimit = 100000;
+
+    // The cluster seeder -- only set during use, so that it can be
+    // canceled.
+    private ClusterSeeder mSeeder;
+
+    /**
+     * Constructor.
+     *
+     * @param cs - the coordinates to be clustered.
+     * @param params - the mini-batch k-means parameters.
+     */
+    public MiniBatchKMeansClusterTask(CoordinateList cs, MiniBatchKMeansClusterTaskParams params) {
+        super(cs, params);
+    }
+
+    /**
+     * Get the limit of the number of coordinates sampled to generate the initial
+     * cluster seeds.  The samples are evenly spaced through the coordinate list,
+     * so they can be read in a forward-only manner.
+     *
+     * @return
+     */
+    public int getInitCentersSamplingLimit() {
+        return mInitCentersSamplingLimit;
+    }
+
+    /**
+     * Set the limit for the number of coordinates sampled to
+     * initialize the cluster centers. This limit should be set much larger than
+     * the number of clusters desired.
+     */
+    public void setInitCentersSamplingLimit(int samplingLimit) {
+        mInitCentersSamplingLimit = samplingLimit;
+    }
+
+    /**
+     * Returns the algorithm name "mini-batch k-means"
+     */
+    public String getAlgorithmName() {
+        return "mini-batch k-means";
+    }
+
+    protected ClusterList doTask() throws Exception {
+
+        MiniBatchKMeansClusterTaskParams params = (MiniBatchKMeansClusterTaskParams) getParams();
+
+        CoordinateList cs = getCoordinateList();
+        final int coordCount = cs.getCoordinateCount();
+        final int dim = cs.getDimensionCount();
+
+        // Error out if there are no coordinates to cluster.
+        if (coordCount == 0) {
+            error("zero coordinates");
+        }
+
+        final int batchSize = Math.min(params.getBatchSize(), coordCount);
+        final int maxBatches = params.getMaxBatches() > 0 ? params.getMaxBatches() :
+            (coordCount + batchSize - 1)/batchSize;
+
+        ProgressHandler ph = new ProgressHandler(this, getBeginProgress(),
+                getEndProgress(), maxBatches + 2);
+        ph.postBegin();
+
+        DistanceFunc distanceFunc = params.getDistanceFunc();
+        // Ensure that the data source is set for the distance function.
+        if (distanceFunc instanceof AbstractDistanceFunc) {
+            ((AbstractDistanceFunc) distanceFunc).setDataSource(
+                    new CoordinateListColumnarDoubles(cs));
+        }
+
+        double[][] centers = initCenters(ph);
+        final int numClusters = centers.length;
+
+        ph.postStep();
+
+        int numWorkers = params.getNumWorkerThreads();
+        if (numWorkers <= 0) {
+            numWorkers = Runtime.getRuntime().availableProcessors();
+        }
+        numWorkers = Math.min(numWorkers, batchSize);
+
+        // The assigners are run on the shared subtask pool if there are several.
+        final boolean concurrent = numWorkers > 1;
+        if (concurrent) {
+            ph.postMessage("concurrent processing mode with "
+                    + numWorkers + " subtask threads");
+        } else {
+            ph.postMessage("non-concurrent processing mode");
+        }
+
+        List<BatchAssigner> assigners = new ArrayList<BatchAssigner>(numWorkers);
+        for (int i = 0; i < numWorkers; i++) {
+            assigners.add(new BatchAssigner((DistanceFunc) distanceFunc.clone()));
+        }
+
+        double[][] batch = new double[batchSize][dim];
+        int[] batchAssignments = new int[batchSize];
+
+        // The number of coordinates absorbed by each center so far.  The
+        // learning rate for a center is the reciprocal of this count.
+        long[] centerCounts = new long[numClusters];
+
+        int start = 0;
+
+        for (int b = 0; b < maxBatches; b++) {
+
+            int len = readBatch(cs, start, batch);
+            assignBatch(concurrent, assigners, batch, len, centers, batchAssignments);
+
+            for (int i = 0; i < len; i++) {
+                int c = batchAssignments[i];
+                if (c >= 0) {
+                    double eta = 1.0/(++centerCounts[c]);
+                    double[] center = centers[c];
+                    double[] coords = batch[i];
+                    for (int d = 0; d < dim; d++) {
+                        center[d] += eta*(coords[d] - center[d]);
+                    }
+                }
+            }
+
+            start += len;
+            if (start == coordCount) {
+                start = 0;
+            }
+
+            ph.postStep();
+        }
+
+        ph.postMessage(maxBatches + " batches of " + batchSize +
+                " coordinates used to train the centers");
+
+        // The final pass, which assigns every coordinate and computes
+        // the exact centroids of the clusters.
+        int[] assignments = new int[coordCount];
+        int[] sizes = new int[numClusters];
+        double[][] sums = new double[numClusters][dim];
+
+        for (start = 0; start < coordCount; ) {
+            int len = readBatch(cs, start, batch);
+            assignBatch(concurrent, assigners, batch, len, centers, batchAssignments);
+            for (int i = 0; i < len; i++) {
+                int c = batchAssignments[i];
+                assignments[start + i] = c;
+                if (c >= 0) {
+                    sizes[c]++;
+                    double[] sum = sums[c];
+                    double[] coords = batch[i];
+                    for (int d = 0; d < dim; d++) {
+                        sum[d] += coords[d];
+                    }
+                }
+            }
+            start += len;
+        }
+
+        int[][] memberships = new int[numClusters][];
+        for (int c = 0; c < numClusters; c++) {
+            memberships[c] = new int[sizes[c]];
+        }
+        int[] counts = new int[numClusters];
+        for (int i = 0; i < coordCount; i++) {
+            int c = assignments[i];
+            if (c >= 0) {
+                memberships[c][counts[c]++] = i;
+            }
+        }
+
+        List<Cluster> clusterList = new ArrayList<Cluster>(numClusters);
+        int numDeleted = 0;
+        for (int c = 0; c < numClusters; c++) {
+            int sz = sizes[c];
+            if (sz > 0) {
+                double[] center = sums[c];
+                for (int d = 0; d < dim; d++) {
+                    center[d] /= sz;
+                }
+                clusterList.add(new Cluster(memberships[c], center));
+            } else {
+                numDeleted++;
+            }
+        }
+
+        setClusterList(new ClusterList(clusterList.toArray(new Cluster[clusterList.size()])));
+
+        if (numDeleted > 0) {
+            ph.postMessage("number of clusters was reduced to " + clusterList.size()
+                    + ", because " + numDeleted
+                    + " empty clusters were deleted");
+        }
+
+        ph.postEnd();
+
+        return mClusters;
+    }
+
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (super.cancel(mayInterruptIfRunning)) {
+            final ClusterSeeder seeder = mSeeder;
+            if (seeder instanceof KMeansPlusPlusSeeder) {
+                ((KMeansPlusPlusSeeder) seeder).cancel();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    // Reads consecutive coordinates beginning with start into the batch, stopping
+    // at the end of the coordinate list.  Returns the number read.
+    private int readBatch(CoordinateList cs, int start, double[][] batch) {
+        checkForCancel();
+        int len = Math.min(batch.length, cs.getCoordinateCount() - start);
+        for (int i = 0; i < len; i++) {
+            cs.getCoordinates(start + i, batch[i]);
+        }
+        return len;
+    }
+
+    // Finds the nearest centers for the first len coordinates of the batch, dividing
+    // the work among the assigners.
+    private void assignBatch(boolean concurrent, List<BatchAssigner> assigners,
+            double[][] batch, int len, double[][] centers, int[] batchAssignments) {
+        final int numWorkers = assigners.size();
+        int startRow = 0;
+        for (int i = 0; i < numWorkers; i++) {
+            int rows = len/numWorkers + (i < len%numWorkers ? 1 : 0);
+            assigners.get(i).setWork(batch, startRow, startRow + rows, centers, batchAssignments);
+            startRow += rows;
+        }
+        if (concurrent) {
+            try {
+                TaskScheduler.invokeSubtasks(assigners);
+            } catch (InterruptedException ex) {
+                // Can occur if you cancel while the assigners are working.
+                if (!isCancelled()) {
+                    Logger.getLogger(MiniBatchKMeansClusterTask.class.getName()).log(Level.SEVERE, null, ex);
+                }
+            }
+        } else {
+            assigners.get(0).call();
+        }
+        checkForCancel();
+    }
+
+    // Generates the initial centers by applying the seeder to evenly spaced
+    // samples of the coordinates.
+    private double[][] initCenters(ProgressHandler ph) {
+
+        try {
+
+            MiniBatchKMeansClusterTaskParams params = (MiniBatchKMeansClusterTaskParams) getParams();
+
+            CoordinateList cs = getCoordinateList();
+            final int coordCount = cs.getCoordinateCount();
+            final int dim = cs.getDimensionCount();
+
+            mSeeder = params.getClusterSeeder();
+
+            CoordinateList samples = cs;
+            if (mInitCentersSamplingLimit > 0 && coordCount > mInitCentersSamplingLimit) {
+                final int sampleCount = mInitCentersSamplingLimit;
+                samples = new SimpleCoordinateList(dim, sampleCount);
+                double[] buf = new double[dim];
+                for (int i = 0; i < sampleCount; i++) {
+                    int ndx = (int) ((long) i * coordCount / sampleCount);
+                    samples.setCoordinates(i, cs.getCoordinates(ndx, buf));
+                }
+                ph.postMessage(sampleCount + " coordinates sampled for generating seeds");
+            }
+
+            int clustersRequested = params.getNumClusters();
+
+            int minUniqueCoordCount = CoordinateMath.checkNumberOfUniqueCoordinates(samples, clustersRequested);
+
+            int actualClusterCount = Math.min(clustersRequested, minUniqueCoordCount);
+
+            CoordinateList seeds = mSeeder.generateSeeds(samples, actualClusterCount);
+
+            checkForCancel();
+
+            int seedsGenerated = seeds.getCoordinateCount();
+
+            if (clustersRequested > 0 && seedsGenerated < clustersRequested) {
+                ph.postMessage("number of requested clusters reduced to "
+                        + seedsGenerated + ", the number of unique coordinates");
+            }
+
+            double[][] centers = new double[seedsGenerated][];
+            for (int i = 0; i < seedsGenerated; i++) {
+                centers[i] = seeds.getCoordinates(i, null);
+            }
+
+            ph.postMessage("cluster centers initialized");
+
+            return centers;
+
+        } finally {
+
+            mSeeder = null;
+
+        }
+    }
+
+    // Finds the nearest centers for a range of rows in a batch.
+    private static class BatchAssigner implements Callable<Void> {
+
+        private DistanceFunc mDistFunc;
+        // Non-null if squared distances can be compared instead.
+        private SquaredDistanceFunc mSquaredDistFunc;
+        private double[][] mBatch;
+        private int mStartRow, mEndRow;
+        private double[][] mCenters;
+        private int[] mAssignments;
+
+        BatchAssigner(DistanceFunc distFunc) {
+            mDistFunc = distFunc;
+            if (distFunc instanceof SquaredDistanceFunc) {
+                mSquaredDistFunc = (SquaredDistanceFunc) distFunc;
+            }
+        }
+
+        void setWork(double[][] batch, int startRow, int endRow, double[][] centers, int[] assignments) {
+            mBatch = batch;
+            mStartRow = startRow;
+            mEndRow = endRow;
+            mCenters = centers;
+            mAssignments = assignments;
+        }
+
+        public Void call() {
+            final int numClusters = mCenters.length;
+            for (int i = mStartRow; i < mEndRow; i++) {
+                double[] coords = mBatch[i];
+                int nearest = -1;
+                double min = Double.MAX_VALUE;
+                for (int c = 0; c < numClusters; c++) {
+                    double d = mSquaredDistFunc != null ? 
+                            mSquaredDistFunc.squaredDistanceBetween(coords, mCenters[c]) :
+                            mDistFunc.distanceBetween(coords, mCenters[c]);
+                    if (d < min) {
+                        min = d;
+                        nearest = c;
+                    }
+                }
+                mAssignments[i] = nearest;
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * MiniBatchKMeansClusterTaskParams.java
+ *
+ * JAC: Java Analytic Components
+ *
+ * For information contact Randall Scarberry, randall.scarberry@pnl.gov
+ *
+ * Notice: This computer software was prepared by Battelle Memorial Institute,
+ * hereinafter the Contractor, under Contract No. DE-AC05-76RL0 1830 with the
+ * Department of Energy (DOE).  All rights in the computer software are
+ * reserved by DOE on behalf of the United States Government and the Contractor
+ * as provided in the Contract.  You are authorized to use this computer
+ * software for Governmental purposes but it is not to be released or
+ * distributed to the public.  NEITHER THE GOVERNMENT NOR THE CONTRACTOR MAKES
+ * ANY WARRANTY, EXPRESS OR IMPLIED, OR ASSUMES ANY LIABILITY FOR THE USE OF
+ * THIS SOFTWARE.  This notice including this sentence must appear on any
+ * copies of this computer software.
+ */
+package gov.pnnl.jac.cluster;
+
+import gov.pnnl.jac.geom.distance.*;
+import gov.pnnl.jac.util.ExceptionUtil;
+import gov.pnnl.jac.util.MersenneTwisterRandom;
+
+/**
+ * <p>Encapsulates the parameters needed for mini-batch k-means clustering.
+ * This class is the implementation of <tt>ClusterTaskParams</tt> associated with
+ * <tt>MiniBatchKMeansClusterTask</tt>.</p>
+ *
+ * @author R. Scarberry
+ *
+ */
+public class MiniBatchKMeansClusterTaskParams implements ClusterTaskParams {
+
+    private static final long serialVersionUID = -3140457383658155923L;
+
+    // Desired number of clusters.
+    private int mNumClusters;
+    // Number of coordinates read in each mini-batch.
+    private int mBatchSize = 1000;
+    // Number of mini-batches used to train the centers. If -1, enough
+    // batches for one pass over the coordinates.
+    private int mMaxBatches = -1;
+    // The number of worker threads to use for finding nearest clusters.
+    // If -1, then select based on the number of processors.
+    private int mNumWorkerThreads = -1;
+    // The distance function.
+    private DistanceFunc mDistanceFunc;
+    // The cluster seeder.
+    private ClusterSeeder mSeeder;
+
+    public MiniBatchKMeansClusterTaskParams(int numClusters,
+            int batchSize,
+            int maxBatches,
+            int numWorkerThreads,
+            DistanceFunc distanceFunc,
+            ClusterSeeder seeder) {
+        ExceptionUtil.checkPositive(batchSize);
+        if (distanceFunc == null) {
+            throw new NullPointerException();
+        }
+        if (seeder == null) {
+            throw new NullPointerException();
+        }
+        mNumClusters = numClusters;
+        mBatchSize = batchSize;
+        if (maxBatches > 0) {
+            mMaxBatches = maxBatches;
+        }
+        if (numWorkerThreads > 0) {
+            mNumWorkerThreads = numWorkerThreads;
+        }
+        mDistanceFunc = distanceFunc;
+        mSeeder = seeder;
+    }
+
+    public MiniBatchKMeansClusterTaskParams(
+            int numClusters,
+            DistanceFunc distanceFunc) {
+        this(numClusters, 1000, -1, -1, distanceFunc,
+                new KMeansPlusPlusSeeder(0L, distanceFunc));
+    }
+
+    public MiniBatchKMeansClusterTaskParams() {
+        this(0, 1000, -1, Runtime.getRuntime().availableProcessors(), new EuclideanNoNaN(),
+                new KMeansPlusPlusSeeder(System.currentTimeMillis(), new EuclideanNoNaN()));
+    }
+
+    public final int getNumClusters() {
+        return mNumClusters;
+    }
+
+    public void setNumClusters(int numClusters) {
+        mNumClusters = numClusters;
+    }
+
+    public final int getBatchSize() {
+        return mBatchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        ExceptionUtil.checkPositive(batchSize);
+        mBatchSize = batchSize;
+    }
+
+    /**
+     * Get the number of mini-batches used to train the cluster centers.
+     * If not positive, the number of batches is chosen so that every coordinate
+     * is read once.
+     *
+     * @return
+     */
+    public final int getMaxBatches() {
+        return mMaxBatches;
+    }
+
+    public void setMaxBatches(int maxBatches) {
+        mMaxBatches = maxBatches > 0 ? maxBatches : -1;
+    }
+
+    public final DistanceFunc getDistanceFunc() {
+        return mDistanceFunc;
+    }
+
+    public void setDistanceFunc(DistanceFunc distanceFunc) {
+        if (distanceFunc == null) throw new NullPointerException();
+        mDistanceFunc = distanceFunc;
+    }
+
+    public final ClusterSeeder getClusterSeeder() {
+        return mSeeder;
+    }
+
+    public void setClusterSeeder(ClusterSeeder seeder) {
+        if (seeder == null) {
+            throw new NullPointerException();
+        }
+        mSeeder = seeder;
+    }
+
+    public final int getNumWorkerThreads() {
+        return mNumWorkerThreads;
+    }
+
+    public void setNumWorkerThreads(int numWorkerThreads) {
+        mNumWorkerThreads = numWorkerThreads;
+    }
+
+    public Object clone() {
+        try {
+            return super.clone();
+        } catch (CloneNotSupportedException cnse) {
+            throw new InternalError();
+        }
+    }
+
+    public int hashCode() {
+        int hc = mNumClusters;
+        hc = 31 * hc + mBatchSize;
+        hc = 31 * hc + mMaxBatches;
+        hc = 31 * hc + mNumWorkerThreads;
+        hc = 31 * hc + mDistanceFunc.hashCode();
+        hc = 31 * hc + mSeeder.hashCode();
+        return hc;
+    }
+
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (o instanceof MiniBatchKMeansClusterTaskParams) {
+            MiniBatchKMeansClusterTaskParams other = (MiniBatchKMeansClusterTaskParams) o;
+            return this.mNumClusters == other.mNumClusters
+                    && this.mBatchSize == other.mBatchSize
+                    && this.mMaxBatches == other.mMaxBatches
+                    && this.mNumWorkerThreads == other.mNumWorkerThreads
+                    && this.mDistanceFunc.equals(other.mDistanceFunc)
+                    && this.mSeeder.equals(other.mSeeder);
+        }
+        return false;
+    }
+
+    /**
+     * Builder for conveniently building an instance of
+     * MiniBatchKMeansClusterTaskParams without having to call a constructor
+     * with every parameter.
+     */
+    public static class Builder {
+
+        private int mNumClusters;
+        private int mBatchSize = 1000;
+        private int mMaxBatches = -1;
+        private int mNumWorkerThreads = -1;
+        private DistanceFunc mDistanceFunc;
+        private ClusterSeeder mSeeder;
+
+        public Builder(int numClusters) {
+            ExceptionUtil.checkPositive(numClusters);
+            this.mNumClusters = numClusters;
+        }
+
+        public Builder batchSize(int batchSize) {
+            ExceptionUtil.checkPositive(batchSize);
+            this.mBatchSize = batchSize;
+            return this;
+        }
+
+        public Builder maxBatches(int maxBatches) {
+            if (maxBatches <= 0) {
+                maxBatches = -1;
+            }
+            this.mMaxBatches = maxBatches;
+            return this;
+        }
+
+        public Builder numWorkerThreads(int numWorkerThreads) {
+            if (numWorkerThreads <= 0) {
+                numWorkerThreads = -1;
+            }
+            this.mNumWorkerThreads = numWorkerThreads;
+            return this;
+        }
+
+        public Builder distanceFunc(DistanceFunc distanceFunc) {
+            ExceptionUtil.checkNotNull(distanceFunc);
+            this.mDistanceFunc = distanceFunc;
+            return this;
+        }
+
+        public Builder seeder(ClusterSeeder seeder) {
+            ExceptionUtil.checkNotNull(seeder);
+            this.mSeeder = seeder;
+            return this;
+        }
+
+        public MiniBatchKMeansClusterTaskParams build() {
+            if (this.mDistanceFunc == null) {
+                this.mDistanceFunc = new EuclideanNoNaN();
+            }
+            if (this.mSeeder == null) {
+                this.mSeeder = new RandomSeeder(System.currentTimeMillis(),
+                        new MersenneTwisterRandom());
+            }
+            return new MiniBatchKMeansClusterTaskParams(
+                    this.mNumClusters,
+                    this.mBatchSize,
+                    this.mMaxBatches,
+                    this.mNumWorkerThreads,
+                    this.mDistanceFunc,
+                    this.mSeeder);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * NNChainHierarchicalClusterTask.java
+ *
+ * JAC: Java Analytic Components
+ *
+ * For information contact Randall Scarberry, randall.scarberry@pnl.gov
+ *
+ * Notice: This computer software was prepared by Battelle Memorial Institute,
+ * hereinafter the Contractor, under Contract No. DE-AC05-76RL0 1830 with the
+ * Department of Energy (DOE).  All rights in the computer software are
+ * reserved by DOE on behalf of the United States Government and the Contractor
+ * as provided in the Contract.  You are authorized to use this computer
+ * software for Governmental purposes but it is not to be released or
+ * distributed to the public.  NEITHER THE GOVERNMENT NOR THE CONTRACTOR MAKES
+ * ANY WARRANTY, EXPRESS OR IMPLIED, OR ASSUMES ANY LIABILITY FOR THE USE OF
+ * THIS SOFTWARE.  This notice including this sentence must appear on any
+ * copies of this computer software.
+ */
+package gov.pnnl.jac.cluster;
+
+import gov.pnnl.jac.geom.CoordinateList;
+import gov.pnnl.jac.geom.distance.DistanceCache;
+import gov.pnnl.jac.geom.distance.SparseRAMDistanceCache;
+import gov.pnnl.jac.task.ProgressHandler;
+import gov.pnnl.jac.util.SortUtils;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * <p>Implementation of standard hierarchical clustering which merges the nodes
+ * using the nearest-neighbor chain algorithm.  Starting from any node, a chain is
+ * grown by appending the nearest neighbor of the last node, until the last two nodes
+ * are each other's nearest neighbors.  They are then merged, and the chain is grown
+ * again from what remains of it.  Since the supported linkages are all reducible,
+ * meaning that merging two nodes never brings the merged node closer to a third
+ * than the nearer of the two was, the merges are those that
+ * <tt>StandardHierarchicalClusterTask</tt> would make, though not in the same order.
+ * They are recorded and made in order of increasing distance at the end, never
+ * before the merges forming their nodes, so the dendrogram is the same except
+ * possibly for the order of merges at equal distances.  With MEAN, AVERAGE and WARD linkage, the distances of merged nodes
+ * are computed from distances that were themselves updated in a different order,
+ * so the dendrogram is only the same up to floating-point rounding: merge
+ * distances may differ in their last bits, and merges at distances that differ
+ * by no more than that may be made in a different order.</p>
+ *
+ * <p>Each merge takes time proportional to the number of coordinates for the
+ * nearest-neighbor searches and the distance updates, so the whole clustering takes
+ * O(n<sup>2</sup>) time after the distances are cached, with O(n) additional memory.
+ * <tt>StandardHierarchicalClusterTask</tt> may search whole rows of the cache for
+ * many nodes after each merge, which approaches O(n<sup>3</sup>) on some data.  The
+ * distances are cached as they are by <tt>StandardHierarchicalClusterTask</tt>, so
+ * all of its settings apply.</p>
+ *
+ * @author R. Scarberry
+ *
+ */
+public class NNChainHierarchicalClusterTask extends StandardHierarchicalClusterTask {
+
+	// The number of distances read from a row of the cache in one call
+	// when searching for a nearest neighbor.
+	private static final int ROW_PAGE = 4096;
+
+	public NNChainHierarchicalClusterTask(CoordinateList cs,
+			HierarchicalClusterTaskParams params,
+			Dendrogram dendrogram) {
+		super(cs, params, dendrogram);
+	}
+
+	public NNChainHierarchicalClusterTask(CoordinateList cs,
+			HierarchicalClusterTaskParams params) {
+		this(cs, params, null);
+	}
+
+	/**
+	 * Get the algorithm name.
+	 */
+	public String getAlgorithmName() {
+		return "nearest-neighbor chain hierarchical";
+	}
+
+	protected void mergeNodes(DistanceCache cache, ProgressHandler ph) throws IOException {
+
+		HierarchicalClusterTaskParams.Linkage linkage =
+			((HierarchicalClusterTaskParams) getParams()).getLinkage();
+
+		int n = cache.getNumIndices();
+
+		// The number of coordinates in each node, 0 for those that
+		// have been merged into others.  A node's id is the lowest index
+		// of its coordinates, as it is in the dendrogram.
+		int[] sizes = new int[n];
+		Arrays.fill(sizes, 1);
+
+		int[] chain = new int[n];
+		int chainLength = 0;
+		// No node with a lower id than this remains unmerged.
+		int firstNode = 0;
+
+		// The merges in the order they are made, which are made in the
+		// dendrogram in order of increasing distance at the end.
+		int mergeCount = n - 1;
+		int[] mergeIDs1 = new int[mergeCount];
+		int[] mergeIDs2 = new int[mergeCount];
+		double[] mergeDistances = new double[mergeCount];
+		// The greatest merge distance in each node, including those of the
+		// nodes merged into it, indexed by node id.  Rounding can leave a merge
+		// distance slightly below those of the merges forming its nodes, so
+		// the merges are ordered by these instead.
+		double[] heights = new double[n];
+		double[] mergeHeights = new double[mergeCount];
+
+		double[] row = new double[Math.min(ROW_PAGE, n)];
+
+		for (int m=0; m<mergeCount; m++) {
+
+			if (chainLength == 0) {
+				while (sizes[firstNode] == 0) {
+					firstNode++;
+				}
+				chain[chainLength++] = firstNode;
+			}
+
+			// Grow the chain until its last two nodes are each other's
+			// nearest neighbors.
+			while (true) {
+
+				int last = chain[chainLength - 1];
+				int prev = chainLength > 1 ? chain[chainLength - 2] : -1;
+
+				// The previous node wins ties, so the chain always ends.
+				int nn = prev;
+				double nnDistance = prev >= 0 ? cache.getDistance(last, prev) :
+					SparseRAMDistanceCache.MISSING;
+
+				for (int i=firstNode; i<last; i++) {
+					if (sizes[i] > 0 && i != prev) {
+						double d = cache.getDistance(i, last);
+						if (d < nnDistance || nn < 0) {
+							nn = i;
+							nnDistance = d;
+						}
+					}
+				}
+
+				// The distances from last to the higher ids are consecutive
+				// in the cache, so read them a page at a time.
+				if (last + 1 < n) {
+					long pos = cache.distancePos(last, last + 1);
+					for (int j0 = last + 1; j0 < n; j0 += ROW_PAGE) {
+						int count = Math.min(ROW_PAGE, n - j0);
+						cache.getDistances(pos + j0 - last - 1, row, 0, count);
+						for (int k=0; k<count; k++) {
+							int j = j0 + k;
+							if (sizes[j] > 0 && j != prev) {
+								double d = row[k];
+								if (d < nnDistance || nn < 0) {
+									nn = j;
+									nnDistance = d;
+								}
+							}
+						}
+					}
+				}
+
+				if (nn == prev) {
+					chainLength -= 2;
+					mergeIDs1[m] = Math.min(last, prev);
+					mergeIDs2[m] = Math.max(last, prev);
+					mergeDistances[m] = nnDistance;
+					break;
+				}
+
+				chain[chainLength++] = nn;
+
+				checkForCancel();
+			}
+
+			// Update the distances to the merged node, which takes the lower id.
+			int mergeID = mergeIDs1[m];
+			int otherID = mergeIDs2[m];
+			int mergeSize = sizes[mergeID];
+			int otherSize = sizes[otherID];
+			sizes[mergeID] += otherSize;
+			sizes[otherID] = 0;
+			mergeHeights[m] = Math.max(mergeDistances[m], Math.max(heights[mergeID], heights[otherID]));
+			heights[mergeID] = mergeHeights[m];
+
+			for (int i=firstNode; i<n; i++) {
+				if (sizes[i] > 0 && i != mergeID) {
+					double d1 = cache.getDistance(mergeID, i);
+					double d2 = cache.getDistance(otherID, i);
+					double d = 0.0;
+					switch (linkage) {
+					case COMPLETE:
+						d = Math.max(d1, d2);
+						break;
+					case SINGLE:
+						d = Math.min(d1, d2);
+						break;
+					case MEAN:
+					case AVERAGE:
+						d = (mergeSize*d1 + otherSize*d2)/(mergeSize + otherSize);
+						break;
+					case WARD:
+						d = HierarchicalClusterTaskParams.wardDistance(d1, d2,
+								mergeSize, otherSize, sizes[i], mergeDistances[m]);
+						break;
+					default:
+						error("unsupported linkage type: " + linkage);
+					}
+					cache.setDistance(mergeID, i, d);
+				}
+			}
+
+			checkForCancel();
+
+			ph.postStep();
+		}
+
+		// Sort the merges by height, those made first coming first among
+		// equal heights, so nodes are always merged before their parents.
+		// The distances themselves are recorded, as StandardHierarchicalClusterTask
+		// records them when rounding puts a parent below its children.
+		int[] order = new int[mergeCount];
+		for (int m=0; m<mergeCount; m++) {
+			order[m] = m;
+		}
+		SortUtils.parallelSort(mergeHeights, order);
+
+		// Any nodes not linked by a distance in a sparse cache were merged
+		// at MISSING, and are merged last at the greatest distance.
+		double maxMergeDistance = 0.0;
+		for (int m=0; m<mergeCount; m++) {
+			double d = mergeDistances[order[m]];
+			if (d == SparseRAMDistanceCache.MISSING && cache instanceof SparseRAMDistanceCache) {
+				d = unlinkedMergeDistance(cache, maxMergeDistance);
+			} else if (d > maxMergeDistance) {
+				maxMergeDistance = d;
+			}
+			mDendrogram.mergeNodes(mergeIDs1[order[m]], mergeIDs2[order[m]], d);
+		}
+	}
+}
@@ -26,7 +26,7 @@ import java.util.Set;
 import gov.pnnl.jac.geom.*;
 import cern.colt.map.HashFunctions;
 
-public class RandomSeeder implements ClusterSeeder {
+public class RandomSeeder implements ClusterSeeder, Cloneable {
 
 	private long mSeed;
 	private Random mRandom;
@@ -115,6 +115,38 @@ public class RandomSeeder implements ClusterSeeder {
 		return mRandom;
 	}
 
+	/**
+	 * Returns a copy of this seeder which uses the specified random seed
+	 * and its own instance of the same class of random number generator, so that
+	 * the copy may generate seeds concurrently with this seeder.
+	 * 
+	 * @param seed
+	 * @return
+	 * @throws IllegalStateException if the random number generator is a subclass
+	 *   of <tt>Random</tt> without an accessible no-arg constructor.
+	 */
+	public RandomSeeder withRandomSeed(long seed) {
+		RandomSeeder copy = null;
+		try {
+			copy = (RandomSeeder) super.clone();
+		} catch (CloneNotSupportedException cnse) {
+			throw new InternalError();
+		}
+		copy.mSeed = seed;
+		Class<? extends Random> randomClass = mRandom.getClass();
+		if (randomClass == Random.class) {
+			copy.mRandom = new Random(seed);
+		} else {
+			try {
+				copy.mRandom = randomClass.getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException e) {
+				throw new IllegalStateException("cannot create another " + randomClass.getName(), e);
+			}
+			copy.mRandom.setSeed(seed);
+		}
+		return copy;
+	}
+
     // Inner class used to assure that unique initial clusters are
     // selected.
     static class ClusterCenter {
@@ -20,15 +20,20 @@ package gov.pnnl.jac.cluster;
 
 import gov.pnnl.jac.collections.*;
 import gov.pnnl.jac.geom.CoordinateList;
+import gov.pnnl.jac.geom.SparseCoordinateList;
+import gov.pnnl.jac.geom.SparseVector;
+import gov.pnnl.jac.geom.distance.BlockDistanceFunc;
 import gov.pnnl.jac.geom.distance.Cosine;
 import gov.pnnl.jac.geom.distance.DistanceCacheFactory;
 import gov.pnnl.jac.geom.distance.DistanceFunc;
 import gov.pnnl.jac.geom.distance.EuclideanNoNaN;
+import gov.pnnl.jac.geom.distance.SparseDistanceFunc;
 import gov.pnnl.jac.task.ProgressHandler;
 import gov.pnnl.jac.task.Task;
 import gov.pnnl.jac.task.TaskEvent;
 import gov.pnnl.jac.task.TaskListener;
 import gov.pnnl.jac.task.TaskOutcome;
+import gov.pnnl.jac.task.TaskScheduler;
 import gov.pnnl.jac.util.ArrayUtils;
 import gov.pnnl.jac.util.MethodTimer;
 
@@ -38,8 +43,6 @@ import java.util.List;
 import java.util.Random;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import cern.colt.bitvector.BitVector;
 
@@ -121,7 +124,9 @@ AbstractHierarchicalClusterTask {
     private BitVector mUnavailabilityBits;
     private BitVector mWhichDistancesToCalculate;
     
-    private ExecutorService mThreadPool;
+    // True if the distance calculators are run concurrently on the
+    // shared subtask pool.
+    private boolean mConcurrent;
 
     private List<DistanceCalculator> mCalculators;
 
@@ -131,6 +136,12 @@ AbstractHierarchicalClusterTask {
     private int mCurrentSize;
     private double[] mCurrentCoordValues;
     private double[] mCurrentDistances;
+    // Only used when computing sparse distances.  mCurrentSparseValues holds
+    // the non-zero elements of the current node if it is a leaf, and is null
+    // otherwise, in which case mCurrentNorm is the norm of its centroid.
+    private SparseVector mCurrentSparseValues;
+    private double mCurrentNorm;
+    private SparseVector mCurrentSparseBuf;
 
     // Find nearest neighbor of coordinate with specified index.
     // The two buffers are passed to avoid repeated reallocation.
@@ -158,6 +169,16 @@ AbstractHierarchicalClusterTask {
                     // from the coordinate set.
                     cs.getCoordinates(index, mCurrentCoordValues);
                 }
+                
+                if (mCurrentSparseBuf != null) {
+                    if (sz > 1) {
+                        mCurrentSparseValues = null;
+                        mCurrentNorm = ((SparseDistanceFunc) mDistFunc).norm(mCurrentCoordValues);
+                    } else {
+                        mCurrentSparseValues = ((SparseCoordinateList) cs).getSparseCoordinates(
+                                index, mCurrentSparseBuf);
+                    }
+                }
 
 //                mWhichDistancesToCalculate.clear();
 //                if (hintClusters != null) {
@@ -174,8 +195,8 @@ AbstractHierarchicalClusterTask {
                 mCurrentIndex = index;
                 mCurrentSize = sz;
 
-                if (mThreadPool != null) {
-                    mThreadPool.invokeAll(mCalculators);
+                if (mConcurrent) {
+                    TaskScheduler.invokeSubtasks(mCalculators);
                 } else {
                     mCalculators.get(0).call();
                 }
@@ -329,6 +350,9 @@ AbstractHierarchicalClusterTask {
             mNearestNeighborDistances = new double[coordCount];
 
             mDistFunc = params.getDistanceFunc();
+            if (usesSparseDistances()) {
+                mCurrentSparseBuf = new SparseVector();
+            }
             mDendrogram = new Dendrogram(coordCount);
 
             // Create the DistanceCalculators.
@@ -343,9 +367,7 @@ AbstractHierarchicalClusterTask {
             
             assert coordsSoFar == coordCount;
 
-            if (threadCount > 1) {
-                mThreadPool = Executors.newFixedThreadPool(threadCount);
-            }
+            mConcurrent = threadCount > 1;
 
             final double[] coordBuf1 = new double[dim];
             final double[] coordBuf2 = new double[dim];
@@ -416,6 +438,11 @@ AbstractHierarchicalClusterTask {
 
                         mCentroidMap.put(mergeIndex, centroid);
                         mNearestNeighbors[mergeIndex] = -1;
+                        
+                        // The distances to leaves have to be computed as the
+                        // DistanceCalculators compute them.
+                        final double centroidNorm = mCurrentSparseBuf != null ? 
+                                ((SparseDistanceFunc) mDistFunc).norm(centroid) : Double.NaN;
                         mNearestNeighbors[invalidatedIndex] = -1;
 
                         for (int i = 0; i < coordCount; i++) {
@@ -426,17 +453,24 @@ AbstractHierarchicalClusterTask {
 
                                 final int nsz = mDendrogram.nodeSize(i);
 
-                                double[] buf = null;
-                                if (nsz > 1) {
-                                    buf = (double[]) mCentroidMap.get(i);
+                                double m = ((double) nsz * totalSz) / (nsz + totalSz);
+                                double d;
+                                
+                                if (nsz == 1 && mCurrentSparseBuf != null) {
+                                    SparseVector sv = ((SparseCoordinateList) cs).getSparseCoordinates(
+                                            i, mCurrentSparseBuf);
+                                    d = m * ((SparseDistanceFunc) mDistFunc).distanceBetween(sv, centroid, centroidNorm);
                                 } else {
-                                    cs.getCoordinates(i, coordBuf1);
-                                    buf = coordBuf1;
+                                    double[] buf = null;
+                                    if (nsz > 1) {
+                                        buf = (double[]) mCentroidMap.get(i);
+                                    } else {
+                                        cs.getCoordinates(i, coordBuf1);
+                                        buf = coordBuf1;
+                                    }
+                                    d = m * mDistFunc.distanceBetween(centroid, buf);
                                 }
 
-                                double m = ((double) nsz * totalSz) / (nsz + totalSz);
-                                double d = m * mDistFunc.distanceBetween(centroid, buf);
-
                                 // The old nearest neighbor was one of the nodes that
                                 // were just merged. If it's moved closer, the merged
                                 // node is still the nearest neighbor.
@@ -545,10 +579,7 @@ AbstractHierarchicalClusterTask {
 
         } finally {
 
-            if (mThreadPool != null) {
-                mThreadPool.shutdownNow();
-                mThreadPool = null;
-            }
+            mCalculators = null;
         }
     }
     
@@ -585,12 +616,34 @@ AbstractHierarchicalClusterTask {
 
     // Used for parallel calculation of distances.
     //
+    // True if the distances to leaves are computed from the non-zero elements
+    // of their coordinates.
+    private boolean usesSparseDistances() {
+        return getCoordinateList() instanceof SparseCoordinateList && 
+                mDistFunc instanceof SparseDistanceFunc;
+    }
+    
     class DistanceCalculator implements Callable<Void> {
 
+        // The most leaves whose coordinates are loaded into the block at
+        // once, fewer for coordinates of many dimensions so the block
+        // stays in the processor's cache.
+        static final int BLOCK_ROWS = 256;
+        static final int BLOCK_BYTES = 128 * 1024;
+
         private int mStartIndex, mEndIndex;
         private CoordinateList mCS;
         private double[] mBuf;
         private DistanceFunc mDF;
+        // Only allocated if the distance function is a BlockDistanceFunc.
+        // The coordinates of up to mBlockRows consecutive leaves, loaded for
+        // each run of them, so their distances can be computed in single calls.
+        private double[] mBlock;
+        private int mBlockRows;
+        private double[] mBlockDistances;
+        // Only allocated if computing sparse distances, which are used 
+        // instead of mBlock.
+        private SparseVector mSparseBuf;
 
         DistanceCalculator(int startIndex, int endIndex) {
             mStartIndex = startIndex;
@@ -599,15 +652,66 @@ AbstractHierarchicalClusterTask {
             int dim = mCS.getDimensionCount();
             mBuf = new double[dim];
             mDF = (DistanceFunc) mDistFunc.clone();
+            if (usesSparseDistances()) {
+                mSparseBuf = new SparseVector();
+            } else if (mDF instanceof BlockDistanceFunc) {
+                long bytesPerCoord = 8L * Math.max(1, dim);
+                mBlockRows = (int) Math.max(1L, Math.min(Math.min(BLOCK_ROWS, endIndex - startIndex),
+                        BLOCK_BYTES/bytesPerCoord));
+                // At most max(BLOCK_BYTES/8, dim) doubles, so it cannot overflow.
+                mBlock = new double[(int) (mBlockRows * (long) dim)];
+                mBlockDistances = new double[mBlockRows];
+            }
         }
 
         @Override
         public Void call() throws Exception {
 
-            for (int i = mStartIndex; i < mEndIndex; i++) {
+            int i = mStartIndex;
+            while (i < mEndIndex) {
                 if (i != mCurrentIndex && !mUnavailabilityBits.get(i)) {
-                    double[] buf = null;
                     int sz = mDendrogram.nodeSize(i);
+                    if (sz == 1 && mBlock != null) {
+                        int runLimit = Math.min(mEndIndex, i + mBlockRows);
+                        int runEnd = i + 1;
+                        while (runEnd < runLimit && isAvailableLeaf(runEnd)) {
+                            runEnd++;
+                        }
+                        int dim = mBuf.length;
+                        for (int j = i; j < runEnd; j++) {
+                            mCS.getCoordinates(j, mBuf);
+                            System.arraycopy(mBuf, 0, mBlock, (j - i)*dim, dim);
+                        }
+                        ((BlockDistanceFunc) mDF).distancesBetween(mCurrentCoordValues, mBlock, 
+                                0, runEnd - i, mBlockDistances);
+                        double m = ((double) mCurrentSize * sz) / (mCurrentSize + sz);
+                        for (int j = i; j < runEnd; j++) {
+                            mCurrentDistances[j] = m * mBlockDistances[j - i];
+                        }
+                        i = runEnd;
+                        continue;
+                    }
+                    if (mSparseBuf != null && (sz == 1 || mCurrentSparseValues != null)) {
+                        // A leaf is involved.  The distances have to be computed the 
+                        // same way whichever node is current, or the chains of 
+                        // nearest neighbors might never end.
+                        SparseDistanceFunc sparseDF = (SparseDistanceFunc) mDF;
+                        double d;
+                        if (sz > 1) {
+                            double[] centroid = (double[]) mCentroidMap.get(i);
+                            d = sparseDF.distanceBetween(mCurrentSparseValues, centroid, sparseDF.norm(centroid));
+                        } else {
+                            ((SparseCoordinateList) mCS).getSparseCoordinates(i, mSparseBuf);
+                            d = mCurrentSparseValues != null ? 
+                                sparseDF.distanceBetween(mCurrentSparseValues, mSparseBuf) :
+                                sparseDF.distanceBetween(mSparseBuf, mCurrentCoordValues, mCurrentNorm);
+                        }
+                        double m = ((double) mCurrentSize * sz) / (mCurrentSize + sz);
+                        mCurrentDistances[i] = m * d;
+                        i++;
+                        continue;
+                    }
+                    double[] buf = null;
                     if (sz > 1) {
                         buf = (double[]) mCentroidMap.get(i);
                     } else {
@@ -617,10 +721,14 @@ AbstractHierarchicalClusterTask {
                     double m = ((double) mCurrentSize * sz) / (mCurrentSize + sz);
                     mCurrentDistances[i] = m * mDF.distanceBetween(mCurrentCoordValues, buf);
                 }
+                i++;
             }
 
             return null;
         }
 
+        private boolean isAvailableLeaf(int i) {
+            return i != mCurrentIndex && !mUnavailabilityBits.get(i) && mDendrogram.nodeSize(i) == 1;
+        }
     }
 }
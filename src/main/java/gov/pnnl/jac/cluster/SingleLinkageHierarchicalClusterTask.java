@@ -0,0 +1,512 @@
+/*
+ * SingleLinkageHierarchicalClusterTask.java
+ *
+ * JAC: Java Analytic Components
+ *
+ * For information contact Randall Scarberry, randall.scarberry@pnl.gov
+ *
+ * Notice: This computer software was prepared by Battelle Memorial Institute,
+ * hereinafter the Contractor, under Contract No. DE-AC05-76RL0 1830 with the
+ * Department of Energy (DOE).  All rights in the computer software are
+ * reserved by DOE on behalf of the United States Government and the Contractor
+ * as provided in the Contract.  You are authorized to use this computer
+ * software for Governmental purposes but it is not to be released or
+ * distributed to the public.  NEITHER THE GOVERNMENT NOR THE CONTRACTOR MAKES
+ * ANY WARRANTY, EXPRESS OR IMPLIED, OR ASSUMES ANY LIABILITY FOR THE USE OF
+ * THIS SOFTWARE.  This notice including this sentence must appear on any
+ * copies of this computer software.
+ */
+package gov.pnnl.jac.cluster;
+
+import gov.pnnl.jac.geom.BitCoordinateList;
+import gov.pnnl.jac.geom.CoordinateList;
+import gov.pnnl.jac.geom.SparseCoordinateList;
+import gov.pnnl.jac.geom.SparseVector;
+import gov.pnnl.jac.geom.distance.BitDistanceFunc;
+import gov.pnnl.jac.geom.distance.BlockDistanceFunc;
+import gov.pnnl.jac.geom.distance.DistanceCacheFactory;
+import gov.pnnl.jac.geom.distance.DistanceFunc;
+import gov.pnnl.jac.geom.distance.NormedDistanceFunc;
+import gov.pnnl.jac.geom.distance.SparseDistanceFunc;
+import gov.pnnl.jac.task.ProgressHandler;
+import gov.pnnl.jac.task.TaskEvent;
+import gov.pnnl.jac.task.TaskListener;
+import gov.pnnl.jac.task.TaskOutcome;
+import gov.pnnl.jac.task.TaskScheduler;
+import gov.pnnl.jac.util.SortUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>Implementation of single linkage hierarchical clustering which does not
+ * cache the pairwise distances.  The single linkage dendrogram is determined by
+ * a minimum spanning tree of the coordinates, whose edges joined in order of
+ * increasing length are the merges.  The tree is found by Prim's algorithm,
+ * computing the distances from each coordinate added to the tree to those not
+ * yet in it as they are needed, with the coordinates divided among workers that
+ * run in parallel.  It takes O(n<sup>2</sup>) time, like
+ * <tt>StandardHierarchicalClusterTask</tt>, but only O(n) memory, so it can
+ * cluster far more coordinates than fit a distance cache under the file
+ * threshold.  The dendrogram is the same as that of
+ * <tt>StandardHierarchicalClusterTask</tt> with single linkage, except possibly
+ * for the order of merges at equal distances.</p>
+ *
+ * <p>The linkage of the parameters must be <tt>SINGLE</tt>.</p>
+ *
+ * @author R. Scarberry
+ *
+ */
+public class SingleLinkageHierarchicalClusterTask extends AbstractHierarchicalClusterTask {
+
+	// The number of coordinates to which the workers compute the distances
+	// from the coordinate added to the tree in one call of a BlockDistanceFunc.
+	private static final int BLOCK_ROWS = 256;
+
+	private DistanceFunc mDistanceFunc;
+	private InterleafDistanceMinimizerTask mMinimizerTask;
+
+	public SingleLinkageHierarchicalClusterTask(CoordinateList cs,
+			HierarchicalClusterTaskParams params,
+			Dendrogram dendrogram) {
+		super(cs, params, dendrogram);
+	}
+
+	public SingleLinkageHierarchicalClusterTask(CoordinateList cs,
+			HierarchicalClusterTaskParams params) {
+		this(cs, params, null);
+	}
+
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		if (super.cancel(mayInterruptIfRunning)) {
+		    // If in the middle of minimizing interleaf distances,
+		    // cancel the minimizer task.
+		    if (mMinimizerTask != null) {
+		        mMinimizerTask.cancel(mayInterruptIfRunning);
+		    }
+            return true;
+        }
+        return false;
+	}
+
+	/**
+	 * Get the algorithm name.
+	 */
+	public String getAlgorithmName() {
+		return "single linkage hierarchical";
+	}
+
+	protected void buildDendrogram() {
+
+		ProgressHandler ph = new ProgressHandler(this);
+
+		double beginP = this.getBeginProgress();
+		double endP = this.getEndProgress();
+
+		if (endP > beginP) {
+			ph.setMinProgressIncrement((endP - beginP)/100.0);
+		}
+		ph.setMinTimeIncrement(500L);
+
+		ph.postBegin();
+
+		HierarchicalClusterTaskParams params = (HierarchicalClusterTaskParams) super.getParams();
+
+		if (params.getLinkage() != HierarchicalClusterTaskParams.Linkage.SINGLE) {
+			error("unsupported linkage type: " + params.getLinkage());
+		}
+
+		double fracForMinimization = params.getMinimizeInterleafDistances() ? 0.05 : 0.0;
+		double fracForRest = 1.0 - fracForMinimization;
+
+		double fracForSpanningTree = 0.95*fracForRest;
+		double fracForMerging = 0.05*fracForRest;
+
+		mDistanceFunc = params.getDistanceFunc();
+
+		CoordinateList cs = getCoordinateList();
+		int coordinateCount = cs.getCoordinateCount();
+
+		mDendrogram = new Dendrogram(coordinateCount);
+
+		if (coordinateCount > 1) {
+
+			int numProcessors = params.getNumWorkerThreads();
+			if (numProcessors <= 0) {
+				numProcessors = Runtime.getRuntime().availableProcessors();
+			}
+
+			// The edges of the tree, edge k joining edgeIndices1[k] and
+			// edgeIndices2[k].
+			int edgeCount = coordinateCount - 1;
+			int[] edgeIndices1 = new int[edgeCount];
+			int[] edgeIndices2 = new int[edgeCount];
+			double[] edgeLengths = new double[edgeCount];
+
+			ph.subsection(fracForSpanningTree, edgeCount);
+
+			ph.postMessage("finding minimum spanning tree");
+
+			new SpanningTreeBuilder(numProcessors, cs).buildTree(
+					edgeIndices1, edgeIndices2, edgeLengths, ph);
+
+			ph.postEnd();
+
+			ph.subsection(fracForMerging);
+
+			ph.postMessage("merging nodes");
+
+			// Sort the edges by length, then join them.  The id of each
+			// node of the dendrogram is the lowest index of its coordinates,
+			// so track the lowest index in each set of joined coordinates.
+			int[] order = new int[edgeCount];
+			for (int k=0; k<edgeCount; k++) {
+				order[k] = k;
+			}
+			SortUtils.parallelSort(edgeLengths, order);
+
+			int[] parents = new int[coordinateCount];
+			int[] lowestIndices = new int[coordinateCount];
+			for (int i=0; i<coordinateCount; i++) {
+				parents[i] = i;
+				lowestIndices[i] = i;
+			}
+
+			for (int k=0; k<edgeCount; k++) {
+				int root1 = findRoot(parents, edgeIndices1[order[k]]);
+				int root2 = findRoot(parents, edgeIndices2[order[k]]);
+				int id1 = lowestIndices[root1];
+				int id2 = lowestIndices[root2];
+				// The lower id first, as StandardHierarchicalClusterTask merges
+				// them, so the children are on the same sides.
+				mDendrogram.mergeNodes(Math.min(id1, id2), Math.max(id1, id2), edgeLengths[k]);
+				parents[root2] = root1;
+				lowestIndices[root1] = Math.min(id1, id2);
+			}
+
+			ph.postEnd();
+
+			if (params.getMinimizeInterleafDistances()) {
+
+				ph.subsection(fracForMinimization);
+
+				final ProgressHandler ph2 = ph;
+
+				// Delegate the minimization of interleaf distances to another
+				// Task, but call that Task's run method directly.
+				mMinimizerTask = new InterleafDistanceMinimizerTask(mDendrogram,
+						DistanceCacheFactory.asReadOnlyDistanceCache(cs, mDistanceFunc));
+
+				// This anonymous TaskListener just forwards messages
+				// to the listeners for this Task.
+				mMinimizerTask.addTaskListener(new TaskListener() {
+					public void taskBegun(TaskEvent e) {
+						ph2.postMessage("minimizing dendrogram interleaf distances");
+					}
+					public void taskMessage(TaskEvent e) {
+						ph2.postMessage(e.getMessage());
+					}
+					public void taskProgress(TaskEvent e) {}
+					public void taskEnded(TaskEvent e) {}
+				});
+
+				ph.postBegin();
+
+				// Call the run method directly.  No need to create a new thread here.
+				mMinimizerTask.run();
+
+				// If something goes wrong in the minimizer, be sure to detect it
+				if (mMinimizerTask.getTaskOutcome() == TaskOutcome.ERROR) {
+					error(mMinimizerTask.getErrorMessage());
+				}
+
+				ph.postEnd();
+			}
+		}
+
+		ph.postEnd();
+	}
+
+	// Returns the root of the set containing index, halving the paths
+	// along the way.
+	private static int findRoot(int[] parents, int index) {
+		while (parents[index] != index) {
+			parents[index] = parents[parents[index]];
+			index = parents[index];
+		}
+		return index;
+	}
+
+	// Finds the minimum spanning tree by Prim's algorithm, with the coordinates
+	// divided among Workers which update the distances from the tree to their
+	// coordinates in parallel.
+	private class SpanningTreeBuilder {
+
+		private CoordinateList mCS;
+		private List<Worker> mWorkers;
+		// True when in multi-processor mode, in which case the Workers are
+		// run on the shared subtask pool.
+		private boolean mConcurrent;
+
+		// The distance from each coordinate not yet in the tree to the
+		// nearest coordinate in it, and the index of that coordinate.
+		private double[] mTreeDistances;
+		private int[] mTreeNeighbors;
+
+		// The norms of the coordinates, only computed when the distance
+		// function is a NormedDistanceFunc.
+		private double[] mNorms;
+
+		// The coordinate most recently added to the tree, whose distances
+		// to the others the Workers compute.
+		private int mAddedIndex;
+		private double[] mAddedCoords;
+		private SparseVector mAddedSparse;
+		private long[] mAddedBits;
+		private double mAddedNorm;
+
+		SpanningTreeBuilder(int numWorkers, CoordinateList cs) {
+
+			mCS = cs;
+			int coordCount = cs.getCoordinateCount();
+
+			mTreeDistances = new double[coordCount];
+			Arrays.fill(mTreeDistances, Double.MAX_VALUE);
+			mTreeNeighbors = new int[coordCount];
+
+			if (cs instanceof SparseCoordinateList && mDistanceFunc instanceof SparseDistanceFunc) {
+				mAddedSparse = new SparseVector();
+			} else if (cs instanceof BitCoordinateList && mDistanceFunc instanceof BitDistanceFunc) {
+				mAddedBits = new long[((BitCoordinateList) cs).getWordCount()];
+			} else {
+				mAddedCoords = new double[cs.getDimensionCount()];
+				if (mDistanceFunc instanceof NormedDistanceFunc) {
+					NormedDistanceFunc normedDistFunc = (NormedDistanceFunc) mDistanceFunc;
+					mNorms = new double[coordCount];
+					for (int i=0; i<coordCount; i++) {
+						mNorms[i] = normedDistFunc.norm(cs.getCoordinates(i, mAddedCoords));
+					}
+				}
+			}
+
+			if (numWorkers > coordCount) {
+				numWorkers = coordCount;
+			}
+
+			mWorkers = new ArrayList<Worker>(numWorkers);
+			int coordsSoFar = 0;
+			for (int i=0; i<numWorkers; i++) {
+				int coordsForThisWorker = (int) Math.round(((double) coordCount)*(i+1)/numWorkers) - coordsSoFar;
+				mWorkers.add(new Worker(coordsSoFar, coordsForThisWorker));
+				coordsSoFar += coordsForThisWorker;
+			}
+
+			mConcurrent = numWorkers > 1;
+		}
+
+		// Fills in the edges of the tree, posting a step for each.
+		void buildTree(int[] edgeIndices1, int[] edgeIndices2, double[] edgeLengths,
+				ProgressHandler ph) {
+
+			int edgeCount = edgeLengths.length;
+
+			// Start with coordinate 0.
+			int index = 0;
+
+			for (int k=0; k<edgeCount; k++) {
+
+				addToTree(index);
+
+				// The coordinate nearest to the tree is the next one added,
+				// the lowest index winning ties.
+				index = -1;
+				double minDistance = 0.0;
+				for (Worker worker : mWorkers) {
+					int nearest = worker.mNearestIndex;
+					if (nearest >= 0 && (index < 0 || mTreeDistances[nearest] < minDistance)) {
+						index = nearest;
+						minDistance = mTreeDistances[nearest];
+					}
+				}
+
+				edgeIndices1[k] = mTreeNeighbors[index];
+				edgeIndices2[k] = index;
+				edgeLengths[k] = minDistance;
+
+				ph.postStep();
+			}
+		}
+
+		// Adds the coordinate at index to the tree, having the workers
+		// update the distances from the tree to the others.
+		private void addToTree(int index) {
+
+			mAddedIndex = index;
+			if (mAddedSparse != null) {
+				((SparseCoordinateList) mCS).getSparseCoordinates(index, mAddedSparse);
+			} else if (mAddedBits != null) {
+				((BitCoordinateList) mCS).getBits(index, mAddedBits);
+			} else {
+				mCS.getCoordinates(index, mAddedCoords);
+				if (mNorms != null) {
+					mAddedNorm = mNorms[index];
+				}
+			}
+
+			if (mConcurrent) {
+				try {
+					TaskScheduler.invokeSubtasks(mWorkers);
+				} catch (InterruptedException ex) {
+					Logger.getLogger(SingleLinkageHierarchicalClusterTask.class.getName()).log(Level.SEVERE,
+							null, ex);
+				}
+			} else {
+				mWorkers.get(0).call();
+			}
+
+			checkForCancel();
+		}
+
+		// Class that does the deeds.
+		//
+		private class Worker implements Callable<Void> {
+
+			// The indices of the worker's coordinates not yet in the tree
+			// are in the first mRemainingCount elements.
+			private int[] mRemaining;
+			private int mRemainingCount;
+
+			// The index of the worker's coordinate nearest to the tree after
+			// the last call, or -1 if all are in the tree.
+			private int mNearestIndex = -1;
+
+			// Personal clone of the DistanceFunc, to avoid synchronization
+			// problems.
+			private DistanceFunc mDistFunc;
+
+			// Working buffers.
+			private double[] mCoordBuf;
+			private SparseVector mSparseBuf;
+			private long[] mBitBuf;
+			// Only allocated if mDistFunc is a BlockDistanceFunc.
+			private double[] mBlock;
+			private double[] mBlockNorms;
+			private double[] mBlockDistances;
+
+			Worker(int startCoord, int coordCount) {
+
+				mRemaining = new int[coordCount];
+				for (int i=0; i<coordCount; i++) {
+					mRemaining[i] = startCoord + i;
+				}
+				mRemainingCount = coordCount;
+
+				mDistFunc = (DistanceFunc) mDistanceFunc.clone();
+
+				if (mAddedSparse != null) {
+					mSparseBuf = new SparseVector();
+				} else if (mAddedBits != null) {
+					mBitBuf = new long[mAddedBits.length];
+				} else {
+					mCoordBuf = new double[mCS.getDimensionCount()];
+					if (mDistFunc instanceof BlockDistanceFunc) {
+						mBlock = new double[BLOCK_ROWS * mCS.getDimensionCount()];
+						mBlockDistances = new double[BLOCK_ROWS];
+						if (mNorms != null) {
+							mBlockNorms = new double[BLOCK_ROWS];
+						}
+					}
+				}
+			}
+
+			public Void call() {
+
+				try {
+
+					// Remove the added coordinate, if it's one of this worker's.
+					int added = mAddedIndex;
+					for (int r=0; r<mRemainingCount; r++) {
+						if (mRemaining[r] == added) {
+							mRemaining[r] = mRemaining[--mRemainingCount];
+							break;
+						}
+					}
+
+					// Update the distances from the tree, then find the nearest.
+					for (int start=0; start<mRemainingCount; start+=BLOCK_ROWS) {
+						int rows = Math.min(BLOCK_ROWS, mRemainingCount - start);
+						if (mBlock != null) {
+							int dim = mCoordBuf.length;
+							for (int r=0; r<rows; r++) {
+								int index = mRemaining[start + r];
+								System.arraycopy(mCS.getCoordinates(index, mCoordBuf), 0,
+										mBlock, r*dim, dim);
+								if (mBlockNorms != null) {
+									mBlockNorms[r] = mNorms[index];
+								}
+							}
+							if (mBlockNorms != null) {
+								((NormedDistanceFunc) mDistFunc).distancesBetween(mAddedCoords, mAddedNorm,
+										mBlock, mBlockNorms, 0, rows, mBlockDistances);
+							} else {
+								((BlockDistanceFunc) mDistFunc).distancesBetween(mAddedCoords,
+										mBlock, 0, rows, mBlockDistances);
+							}
+							for (int r=0; r<rows; r++) {
+								int index = mRemaining[start + r];
+								if (mBlockDistances[r] < mTreeDistances[index]) {
+									mTreeDistances[index] = mBlockDistances[r];
+									mTreeNeighbors[index] = added;
+								}
+							}
+						} else {
+							for (int r=0; r<rows; r++) {
+								int index = mRemaining[start + r];
+								double d = distanceTo(index);
+								if (d < mTreeDistances[index]) {
+									mTreeDistances[index] = d;
+									mTreeNeighbors[index] = added;
+								}
+							}
+						}
+						checkForCancel();
+					}
+
+					int nearest = -1;
+					for (int r=0; r<mRemainingCount; r++) {
+						int index = mRemaining[r];
+						if (nearest < 0 || mTreeDistances[index] < mTreeDistances[nearest] ||
+								(mTreeDistances[index] == mTreeDistances[nearest] && index < nearest)) {
+							nearest = index;
+						}
+					}
+					mNearestIndex = nearest;
+
+				} catch (CancellationException ce) {
+					// Ignore, since the thread running the cluster task
+					// will report the cancel.
+				}
+
+				return null;
+			}
+
+			// Computes the distance from the added coordinate to the coordinate
+			// at index, unless using a BlockDistanceFunc.
+			private double distanceTo(int index) {
+				if (mSparseBuf != null) {
+					((SparseCoordinateList) mCS).getSparseCoordinates(index, mSparseBuf);
+					return ((SparseDistanceFunc) mDistFunc).distanceBetween(mAddedSparse, mSparseBuf);
+				} else if (mBitBuf != null) {
+					((BitCoordinateList) mCS).getBits(index, mBitBuf);
+					return ((BitDistanceFunc) mDistFunc).distanceBetween(mAddedBits, mBitBuf);
+				}
+				return mDistFunc.distanceBetween(mAddedCoords, mCS.getCoordinates(index, mCoordBuf));
+			}
+		}
+	}
+}
@@ -19,14 +19,24 @@
 package gov.pnnl.jac.cluster;
 
 import gov.pnnl.jac.collections.ArrayUtil;
+import gov.pnnl.jac.geom.BitCoordinateList;
 import gov.pnnl.jac.geom.CoordinateList;
+import gov.pnnl.jac.geom.SparseCoordinateList;
+import gov.pnnl.jac.geom.SparseVector;
+import gov.pnnl.jac.geom.distance.BitDistanceFunc;
+import gov.pnnl.jac.geom.distance.BlockDistanceFunc;
 import gov.pnnl.jac.geom.distance.DistanceCache;
 import gov.pnnl.jac.geom.distance.DistanceCacheFactory;
+import gov.pnnl.jac.geom.distance.DistanceCachePrecision;
 import gov.pnnl.jac.geom.distance.DistanceFunc;
+import gov.pnnl.jac.geom.distance.NormedDistanceFunc;
+import gov.pnnl.jac.geom.distance.SparseDistanceFunc;
+import gov.pnnl.jac.geom.distance.SparseRAMDistanceCache;
 import gov.pnnl.jac.task.ProgressHandler;
 import gov.pnnl.jac.task.TaskEvent;
 import gov.pnnl.jac.task.TaskListener;
 import gov.pnnl.jac.task.TaskOutcome;
+import gov.pnnl.jac.task.TaskScheduler;
 
 import java.io.File;
 import java.io.IOException;
@@ -38,8 +48,6 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.Executor;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -56,6 +64,10 @@ public class StandardHierarchicalClusterTask extends AbstractHierarchicalCluster
 
 	public static final long DEFAULT_MEM_THRESHOLD = 128L * 1024L * 1024L;
 	public static final long DEFAULT_FILE_THRESHOLD = 2L * 1024L * 1024L * 1024L;
+
+	// The most candidates for the nearest neighbor of each node kept when
+	// the nearest neighbor candidate memory is set.
+	public static final int MAX_NEAREST_NEIGHBOR_CANDIDATES = 64;
 	
 	private DistanceFunc mDistanceFunc;
 	private InterleafDistanceMinimizerTask mMinimizerTask;
@@ -71,10 +83,33 @@ public class StandardHierarchicalClusterTask extends AbstractHierarchicalCluster
 	// the number of coordinates to 23,170.
 	private long mDistanceCacheFileThreshold = DEFAULT_FILE_THRESHOLD;
 
+	// The precision of the cached distances.  Both thresholds apply to the
+	// size of the cache, so lower precisions raise the limits above.  FLOAT
+	// raises them to 8192 and 32,768 coordinates, SHORT to 11,585 and 46,341.
+	private DistanceCachePrecision mDistanceCachePrecision = DistanceCachePrecision.DOUBLE;
+
+	// The greatest distance a SHORT precision cache can store, or NaN if the
+	// distances are not cached in SHORT precision.
+	private double mShortDistanceBound = Double.NaN;
+
+	// If the distances would exceed the file threshold and either of these is
+	// set, only the distances no greater than the threshold, or among the nearest
+	// neighbors of each coordinate, are cached in a SparseRAMDistanceCache.
+	private double mSparseDistanceThreshold = SparseRAMDistanceCache.MISSING;
+	private int mSparseNearestNeighbors;
+
+	// The memory for lists of candidates for the nearest neighbor of each node,
+	// which spare rescanning the node's row of the cache when its nearest neighbor
+	// is merged.  The default, 0, keeps no lists.
+	private long mNearestNeighborCandidateMemory;
+
 	// The directory in which to store cache files temporarily during the
 	// construction of a new dendrogram.
 	private File mCacheFileLocation;
 
+	// Only set while mergeNodes() is being called.
+	private SubtaskManager mSubtaskManager;
+
 	public StandardHierarchicalClusterTask(CoordinateList cs,
 			HierarchicalClusterTaskParams params,
 			Dendrogram dendrogram) {
@@ -145,6 +180,119 @@ public class StandardHierarchicalClusterTask extends AbstractHierarchicalCluster
 		mDistanceCacheFileThreshold = threshold;
 	}
 
+	/**
+	 * Returns the precision in which pairwise distances are cached.
+	 * @return
+	 */
+	public DistanceCachePrecision getDistanceCachePrecision() {
+		return mDistanceCachePrecision;
+	}
+
+	/**
+	 * Sets the precision in which pairwise distances are cached.  Storing them
+	 * as floats or quantized shorts halves or quarters the size of the cache,
+	 * so the distances of more coordinates can be cached in RAM or in a file
+	 * under the thresholds.  With SHORT precision, the distances are quantized
+	 * up to twice the greatest distance from the average coordinate, which
+	 * bounds the distances for functions obeying the triangle inequality.
+	 * COMPLETE, SINGLE, MEAN and AVERAGE linkage keep the distances between
+	 * clusters within that range too.  The task fails rather than cache a
+	 * greater distance, as can happen with functions not obeying the triangle
+	 * inequality, and SHORT precision cannot be used with WARD linkage, whose
+	 * merged distances exceed the bound.  Merges of clusters whose
+	 * distances differ by less than the quantization step may be made in a 
+	 * different order than with DOUBLE precision.
+	 * @param precision
+	 */
+	public void setDistanceCachePrecision(DistanceCachePrecision precision) {
+		if (precision == null) {
+			throw new NullPointerException();
+		}
+		mDistanceCachePrecision = precision;
+	}
+
+	/**
+	 * Returns the greatest distance cached if there are too many coordinates to
+	 * cache all the distances under the file threshold.
+	 * @return
+	 */
+	public double getSparseDistanceThreshold() {
+		return mSparseDistanceThreshold;
+	}
+
+	/**
+	 * Sets the greatest distance cached if there are too many coordinates to cache
+	 * all the distances under the file threshold, in which case the distances no
+	 * greater than the threshold are cached in memory in a
+	 * <tt>SparseRAMDistanceCache</tt>.  Single and complete linkage merges
+	 * at distances no greater than the threshold are the same as if all the
+	 * distances were cached.  Clusters not linked by any cached distance are
+	 * merged last, at the greater of the threshold and the greatest merge
+	 * distance.  The default, positive infinity, caches no distances sparsely,
+	 * so hierarchical clustering fails unless nearest neighbors are set.
+	 * @param threshold
+	 */
+	public void setSparseDistanceThreshold(double threshold) {
+		if (Double.isNaN(threshold)) {
+			throw new IllegalArgumentException("threshold is NaN");
+		}
+		mSparseDistanceThreshold = threshold;
+	}
+
+	/**
+	 * Returns the number of nearest neighbors of each coordinate whose distances
+	 * are cached if there are too many coordinates to cache all the distances under
+	 * the file threshold.
+	 * @return
+	 */
+	public int getSparseNearestNeighbors() {
+		return mSparseNearestNeighbors;
+	}
+
+	/**
+	 * Sets the number of nearest neighbors of each coordinate whose distances are
+	 * cached if there are too many coordinates to cache all the distances under the
+	 * file threshold, in which case the distances between coordinates that are
+	 * not among each other's nearest neighbors are not cached.  If a sparse distance
+	 * threshold is also set, distances greater than the threshold are not cached
+	 * either.  The default, 0, selects no distances by nearest neighbors.
+	 * @param nearestNeighbors
+	 */
+	public void setSparseNearestNeighbors(int nearestNeighbors) {
+		if (nearestNeighbors < 0) {
+			throw new IllegalArgumentException("number of nearest neighbors < 0: " + nearestNeighbors);
+		}
+		mSparseNearestNeighbors = nearestNeighbors;
+	}
+
+	/**
+	 * Returns the memory for lists of candidates for the nearest neighbor of
+	 * each node.
+	 * @return - the memory as a number of bytes.
+	 */
+	public long getNearestNeighborCandidateMemory() {
+		return mNearestNeighborCandidateMemory;
+	}
+
+	/**
+	 * Sets the memory for lists of candidates for the nearest neighbor of each
+	 * node.  When a node's row of the distance cache is scanned for its nearest
+	 * neighbor, the nearest few are kept in a list, and when that neighbor is
+	 * merged, the new nearest neighbor is found among them instead of by
+	 * rescanning the row.  The row is only rescanned if the candidates no longer
+	 * include a neighbor known to be the nearest.  Each candidate takes 12 bytes,
+	 * and up to <code>MAX_NEAREST_NEIGHBOR_CANDIDATES</code> are kept for each
+	 * node, as many as fit in the memory.  The merges are the same as without
+	 * the lists.  The default, 0, keeps no lists.
+	 * @param memory the memory as a number of bytes.
+	 */
+	public void setNearestNeighborCandidateMemory(long memory) {
+		if (memory < 0L) {
+			throw new IllegalArgumentException("memory < 0: " + memory);
+		}
+		mNearestNeighborCandidateMemory = memory;
+	}
+
 	/**
 	 * Gets the directory in which temporary distance cache files are to be
 	 * placed during building of a new dendrogram.
@@ -181,6 +329,34 @@ public class StandardHierarchicalClusterTask extends AbstractHierarchicalCluster
 		return "hierarchical";
 	}
 
+	// Returns twice the greatest distance from the average coordinate to any of 
+	// the coordinates, which by the triangle inequality is no less than the distance 
+	// between any two.  Used to scale the distances for SHORT precision.
+	private double maxDistanceBound(CoordinateList cs) {
+		int coordCount = cs.getCoordinateCount();
+		int[] indices = new int[coordCount];
+		for (int i=0; i<coordCount; i++) {
+			indices[i] = i;
+		}
+		double[] center = cs.computeAverage(indices, null);
+		for (int d=0; d<center.length; d++) {
+			if (Double.isNaN(center[d])) {
+				center[d] = 0.0;
+			}
+		}
+		double[] coords = new double[center.length];
+		double max = 0.0;
+		for (int i=0; i<coordCount; i++) {
+			double d = mDistanceFunc.distanceBetween(center, cs.getCoordinates(i, coords));
+			if (d > max) {
+				max = d;
+			}
+		}
+		max *= 2.0;
+		// If all the coordinates are the same, any bound will do.
+		return max > 0.0 && !Double.isInfinite(max) ? max : 1.0;
+	}
+
 	protected void buildDendrogram() throws IOException {
 
 		ProgressHandler ph = new ProgressHandler(this);
@@ -206,6 +382,13 @@ public class StandardHierarchicalClusterTask extends AbstractHierarchicalCluster
 
 		mDistanceFunc = params.getDistanceFunc();
 
+		// Ward distances between clusters grow beyond the distances between
+		// the coordinates, so they do not fit the SHORT range.
+		if (mDistanceCachePrecision == DistanceCachePrecision.SHORT &&
+				params.getLinkage() == HierarchicalClusterTaskParams.Linkage.WARD) {
+			error("SHORT distance cache precision is unsupported with WARD linkage");
+		}
+
 		CoordinateList cs = getCoordinateList();
 		int coordinateCount = cs.getCoordinateCount();
 
@@ -230,8 +413,22 @@ public class StandardHierarchicalClusterTask extends AbstractHierarchicalCluster
 			SubtaskManager mgr = null;
 			
 			if (coordinateCount > 1) {
+			    double maxDistance = mDistanceCachePrecision == DistanceCachePrecision.SHORT ? 
+			    		maxDistanceBound(cs) : Double.NaN;
 			    cache =DistanceCacheFactory.newDistanceCache(coordinateCount,
-			            mDistanceCacheMemThreshold, mDistanceCacheFileThreshold, cacheFile);
+			            mDistanceCacheMemThreshold, mDistanceCacheFileThreshold, cacheFile,
+			            mDistanceCachePrecision, maxDistance);
+			    if (cache == null) {
+			    	if (mSparseDistanceThreshold == SparseRAMDistanceCache.MISSING &&
+			    			mSparseNearestNeighbors == 0) {
+			    		error("too many coordinates to cache their distances: " + coordinateCount);
+			    	}
+			    	ph.postMessage("caching distances sparsely");
+			    	cache = new SparseRAMDistanceCache(coordinateCount, 
+			    			mSparseDistanceThreshold, mSparseNearestNeighbors);
+			    }
+			    mShortDistanceBound = DistanceCachePrecision.of(cache) == DistanceCachePrecision.SHORT ?
+			    		maxDistance : Double.NaN;
 			}
 			
 			ph.postEnd();
@@ -256,33 +453,18 @@ public class StandardHierarchicalClusterTask extends AbstractHierarchicalCluster
 
 			ph.postEnd();
 
-		    boolean done = mDendrogram.isFinished();
-		    // To hold the indices of the nearest neighbors to be merged in each iteration.
-		    int[] nnPair = new int[2];
-		    double[] nnDistance = new double[1];
-
 		    ph.subsection(fracForMerging, coordinateCount - 1);
 
 		    ph.postMessage("merging nodes");
 
-		    while (!done) {
-
-		    	if (!mgr.lookupNearestNeighbors(nnPair, nnDistance)) {
-		    		error("problem finding nearest neighbors");
-		    	}
-
-		    	int mergeID = mDendrogram.mergeNodes(nnPair[0], nnPair[1], nnDistance[0]);
-
-		    	done = mDendrogram.isFinished();
-
-		    	if (!done) {
-		    		mgr.updateDistances(mergeID);
-		    		mgr.updateNearestNeighbors();
+		    if (mgr != null) {
+		    	mSubtaskManager = mgr;
+		    	try {
+		    		mergeNodes(cache, ph);
+		    	} finally {
+		    		mSubtaskManager = null;
 		    	}
-
-		    	ph.postStep();
-
-		    } // while
+		    }
 
 		    ph.postEnd();
 
@@ -344,6 +526,65 @@ public class StandardHierarchicalClusterTask extends AbstractHierarchicalCluster
 
 	}
 
+	/**
+	 * Merges all the nodes of the new dendrogram, posting a step to the progress
+	 * handler for each merge, after the distances between the coordinates have been
+	 * cached.  This implementation repeatedly merges the closest pair of nodes,
+	 * searching for them in parallel.  Subclasses may merge the nodes by other means,
+	 * as long as the merges are made in order of increasing distance, using the
+	 * cache for the distances between the nodes.
+	 * @param cache the distance cache, holding the distances between the coordinates.
+	 * @param ph the progress handler.
+	 * @throws IOException
+	 */
+	protected void mergeNodes(DistanceCache cache, ProgressHandler ph) throws IOException {
+
+		SubtaskManager mgr = mSubtaskManager;
+
+	    boolean done = mDendrogram.isFinished();
+	    // To hold the indices of the nearest neighbors to be merged in each iteration.
+	    int[] nnPair = new int[2];
+	    double[] nnDistance = new double[1];
+	    // The greatest distance merged so far.
+	    double maxMergeDistance = 0.0;
+
+	    while (!done) {
+
+	    	if (!mgr.lookupNearestNeighbors(nnPair, nnDistance)) {
+	    		// A sparse cache may not link all the clusters, in which
+	    		// case the remaining ones are merged at the greatest distance.
+	    		if (!(cache instanceof SparseRAMDistanceCache) || !mgr.lookupUnlinkedPair(nnPair)) {
+	    			error("problem finding nearest neighbors");
+	    		}
+	    		nnDistance[0] = unlinkedMergeDistance(cache, maxMergeDistance);
+	    	}
+
+	    	if (nnDistance[0] > maxMergeDistance) {
+	    		maxMergeDistance = nnDistance[0];
+	    	}
+
+	    	int mergeID = mDendrogram.mergeNodes(nnPair[0], nnPair[1], nnDistance[0]);
+
+	    	done = mDendrogram.isFinished();
+
+	    	if (!done) {
+	    		mgr.updateDistances(mergeID, nnDistance[0]);
+	    		mgr.updateNearestNeighbors();
+	    	}
+
+	    	ph.postStep();
+
+	    } // while
+	}
+
+	// Returns the distance at which to merge clusters not linked by any distance
+	// in a SparseRAMDistanceCache, given the greatest distance merged so far.
+	static double unlinkedMergeDistance(DistanceCache cache, double maxMergeDistance) {
+		double threshold = ((SparseRAMDistanceCache) cache).getThreshold();
+		return threshold < SparseRAMDistanceCache.MISSING ? 
+				Math.max(threshold, maxMergeDistance) : maxMergeDistance;
+	}
+
 	private class SubtaskManager {
 
 		// Codes for what the workers are currently doing.
@@ -356,6 +597,21 @@ public class StandardHierarchicalClusterTask extends AbstractHierarchicalCluster
 		static final int UPDATING_DISTANCES = 2;
 		// Updating of the dendrogram nodes.
 		static final int UPDATING_NEAREST_NEIGHBORS = 3;
+		
+		// The number of coordinates on a side of the tiles of distances the
+		// workers compute when initializing the distances, at most.
+		static final int BLOCK_ROWS = 256;
+		// The greatest size of the block of dense coordinates a worker loads
+		// for a tile, which limits the tiles for coordinates of many dimensions
+		// so the block stays in the processor's cache while the distances to it
+		// from the tile's rows are computed.
+		static final int TILE_BLOCK_BYTES = 128 * 1024;
+		// The fewest coordinates on a side of the tiles.
+		static final int MIN_TILE_ROWS = 16;
+
+		// The number of distances the workers read from the cache in one call
+		// when searching a row of the cache for a nearest neighbor.
+		static final int ROW_PAGE = 4096;
 
 		// What the object is currently doing.
 		private int mDoing = DOING_NOTHING;
@@ -363,9 +619,9 @@ public class StandardHierarchicalClusterTask extends AbstractHierarchicalCluster
 		// True if the at least one of the Workers is doing something.
 		private boolean mWorking;
 
-		// The ThreadPool that runs the Workers when in multi-processor mode.
-		// O/W, it is null.
-		private ExecutorService mThreadPool;
+		// True when in multi-processor mode, in which case the Workers are
+		// run on the shared subtask pool.
+		private boolean mConcurrent;
 
 		// The worker objects which implement Runnable.
 		private List<Worker> mWorkers;
@@ -377,12 +633,47 @@ public class StandardHierarchicalClusterTask extends AbstractHierarchicalCluster
 		// Nearest neighbor distances corresponding 1:1 with mNNIndices.
 		private double[] mNNDistances;
 
+		// The norms of the coordinates, only computed while initializing
+		// the distances when the distance function is a NormedDistanceFunc.
+		private double[] mNorms;
+
 		private int mMergeIndex, mLeftIndex, mRightIndex;
 		private int mLeftCount, mRightCount;
+		// The distance between the nodes merged last, needed for Ward linkage.
+		private double mMergeDistance;
+
+		// The number of candidates kept for the nearest neighbor of each node, 0
+		// if none are kept.  Node i's candidates are in elements
+		// [i*mCandidateCount - i*mCandidateCount + mCandidateListSizes[i]) of
+		// mCandidateIndices and mCandidateDistances, which are the nearest
+		// of the nodes j > i when its row was last scanned.  Nodes not among
+		// them were no nearer than mCandidateBounds[i], and by the reducibility
+		// of the linkages, nodes they merge into stay that far.  The list size
+		// is -1 until the row is scanned.
+		private int mCandidateCount;
+		private int[] mCandidateIndices;
+		private double[] mCandidateDistances;
+		private int[] mCandidateListSizes;
+		private double[] mCandidateBounds;
+		// The id of the node each node was merged into, for resolving candidates
+		// that have been merged since they were listed.
+		private int[] mMergedInto;
+
+		// The distances are initialized in square tiles of mTileRows coordinates
+		// on a side.  Tile (r, c), for r <= c, holds the distances between the
+		// coordinates in [r*mTileRows - (r+1)*mTileRows) and those in
+		// [c*mTileRows - (c+1)*mTileRows).  The workers claim them one at a
+		// time from nextTile(), so none is idle until all have been claimed.
+		private int mTileRows;
+		private int mTileCount;
+		private int mNextTileRow, mNextTileColumn;
 
 		private CoordinateList mCS;
 		private int mCoordCount;
 		private DistanceCache mCache;
+		// The greatest distance the cache stores, less than MISSING only if
+		// the cache is a SparseRAMDistanceCache with a threshold.
+		private double mMaxCachedDistance = SparseRAMDistanceCache.MISSING;
 		private HierarchicalClusterTaskParams.Linkage mLinkage;
 
 		// Constructor.
@@ -399,6 +690,9 @@ public class StandardHierarchicalClusterTask extends AbstractHierarchicalCluster
 		    mCS = cs;
 		    mCache = cache;
 		    mCoordCount = mCS.getCoordinateCount();
+		    if (cache instanceof SparseRAMDistanceCache) {
+		    	mMaxCachedDistance = ((SparseRAMDistanceCache) cache).getThreshold();
+		    }
 
 		    mNNIndices = new int[mCoordCount];
 		    Arrays.fill(mNNIndices, -1); // -1 indicates "not assigned"
@@ -407,6 +701,18 @@ public class StandardHierarchicalClusterTask extends AbstractHierarchicalCluster
 
 		    mLinkage = params.getLinkage();
 
+		    long candidateCount = Math.min(mNearestNeighborCandidateMemory/(12L * mCoordCount),
+		    		Math.min(MAX_NEAREST_NEIGHBOR_CANDIDATES, Integer.MAX_VALUE/mCoordCount));
+		    mCandidateCount = (int) Math.min(candidateCount, mCoordCount - 1);
+		    if (mCandidateCount > 0) {
+		    	mCandidateIndices = new int[mCoordCount * mCandidateCount];
+		    	mCandidateDistances = new double[mCoordCount * mCandidateCount];
+		    	mCandidateListSizes = new int[mCoordCount];
+		    	Arrays.fill(mCandidateListSizes, -1);
+		    	mCandidateBounds = new double[mCoordCount];
+		    	mMergedInto = new int[mCoordCount];
+		    }
+
 		    long distanceCount = ((long) mCoordCount)*((long)mCoordCount - 1L)/2L;
 		    if (numWorkers > mCoordCount) {
 		        postMessage("reducing number of worker threads to the number of coordinates");
@@ -416,30 +722,31 @@ public class StandardHierarchicalClusterTask extends AbstractHierarchicalCluster
 		        numWorkers = (int) distanceCount;
 		    }
 
-		    long distancesSoFar = 0L;
+		    mTileRows = BLOCK_ROWS;
+		    if (!(cs instanceof SparseCoordinateList && mDistanceFunc instanceof SparseDistanceFunc) &&
+		    		!(cs instanceof BitCoordinateList && mDistanceFunc instanceof BitDistanceFunc)) {
+		    	int bytesPerCoord = 8 * Math.max(1, cs.getDimensionCount());
+		    	mTileRows = Math.max(MIN_TILE_ROWS, Math.min(BLOCK_ROWS, TILE_BLOCK_BYTES/bytesPerCoord));
+		    }
+		    mTileCount = (int) ((mCoordCount + (long) mTileRows - 1L)/mTileRows);
+
 		    int coordsSoFar = 0;
 
 		    // Create the Updaters.
 		    mWorkers = new ArrayList<Worker>(numWorkers);
 
-		    // Need to apportion the work among the workers.
+		    // Need to apportion the coordinates among the workers.  The distances
+		    // are apportioned as the workers claim tiles.
 		    for (int i=0; i<numWorkers; i++) {
 
-		        long distancesForThisWorker = Math.round(((double) (distanceCount * (i+1)))/numWorkers)
-		        - distancesSoFar;
-
 		        int coordsForThisWorker = (int) Math.round(((double)mCoordCount)*(i+1)/numWorkers) - coordsSoFar;
 
-		        mWorkers.add(new Worker(distancesSoFar, distancesForThisWorker,
-		                coordsSoFar, coordsForThisWorker));
+		        mWorkers.add(new Worker(coordsSoFar, coordsForThisWorker));
 
-		        distancesSoFar += distancesForThisWorker;
 		        coordsSoFar += coordsForThisWorker;
 		    }
 
-		    if (numWorkers > 1) {
-		        mThreadPool = Executors.newFixedThreadPool(numWorkers);
-		    }
+		    mConcurrent = numWorkers > 1;
 		}
 
 		// Null the items that could be consuming large amounts of
@@ -449,14 +756,6 @@ public class StandardHierarchicalClusterTask extends AbstractHierarchicalCluster
 			mCache = null;
 		}
 
-		// Called to stop the threads of the thread pool, which would otherwise
-		// keep waiting for another request to do something.
-		void shutdown() {
-			if (mThreadPool != null) {
-				mThreadPool.shutdownNow();
-			}
-		}
-
 		/**
 		 * Find the nearest neighbor pair, placing the indices into the
 		 * provided array of length 2.
@@ -488,14 +787,93 @@ public class StandardHierarchicalClusterTask extends AbstractHierarchicalCluster
 	    	return found;
 	    }
 
+	    /**
+	     * Find the two lowest indices still in contention, which are not linked
+	     * by a distance when lookupNearestNeighbors() fails.
+	     * @param indices
+	     * @return - true if a pair is found.
+	     */
+	    boolean lookupUnlinkedPair(int[] indices) {
+	    	int found = 0;
+	    	int len = mNNIndices.length;
+	    	for (int i=0; i<len && found < 2; i++) {
+	    		if (mNNIndices[i] >= 0) {
+	    			indices[found++] = i;
+	    		}
+	    	}
+	    	return found == 2;
+	    }
+
 	    boolean initializeDistances() {
-			mDoing = INITIALIZING_DISTANCES;
-			return work();
+	    	// Not needed if the workers compute sparse or bit distances.
+	    	if (mDistanceFunc instanceof NormedDistanceFunc && 
+	    			!(mCS instanceof SparseCoordinateList && mDistanceFunc instanceof SparseDistanceFunc) &&
+	    			!(mCS instanceof BitCoordinateList && mDistanceFunc instanceof BitDistanceFunc)) {
+	    		NormedDistanceFunc normedDistFunc = (NormedDistanceFunc) mDistanceFunc;
+	    		double[] coords = new double[mCS.getDimensionCount()];
+	    		mNorms = new double[mCoordCount];
+	    		for (int i=0; i<mCoordCount; i++) {
+	    			mNorms[i] = normedDistFunc.norm(mCS.getCoordinates(i, coords));
+	    		}
+	    	}
+	    	try {
+	    		mNextTileRow = mNextTileColumn = 0;
+	    		mDoing = INITIALIZING_DISTANCES;
+	    		boolean ok = work();
+	    		// Combine the nearest neighbors found by the workers, the lower
+	    		// index winning ties, as when one worker computed the distances
+	    		// in order.
+	    		for (Worker worker : mWorkers) {
+	    			int[] nnIndices = worker.mInitNNIndices;
+	    			double[] nnDistances = worker.mInitNNDistances;
+	    			if (nnIndices != null) {
+	    				for (int i=0; i<mCoordCount; i++) {
+	    					int j = nnIndices[i];
+	    					if (j >= 0 && (nnDistances[i] < mNNDistances[i] ||
+	    							(nnDistances[i] == mNNDistances[i] && j < mNNIndices[i]))) {
+	    						mNNIndices[i] = j;
+	    						mNNDistances[i] = nnDistances[i];
+	    					}
+	    				}
+	    				worker.mInitNNIndices = null;
+	    				worker.mInitNNDistances = null;
+	    			}
+	    		}
+	    		// Coordinates with no cached distances, possible if the cache
+	    		// is sparse, are their own nearest neighbors until merged.
+	    		for (int i=0; i<mCoordCount; i++) {
+	    			if (mNNIndices[i] < 0) {
+	    				mNNIndices[i] = i;
+	    			}
+	    		}
+	    		if (mCache instanceof SparseRAMDistanceCache) {
+	    			((SparseRAMDistanceCache) mCache).finishSelection();
+	    		}
+	    		return ok;
+	    	} finally {
+	    		mNorms = null;
+	    	}
+		}
+
+		// Claims the next tile of distances to initialize, placing its row and
+		// column in tile.  Returns false if all have been claimed.
+		synchronized boolean nextTile(int[] tile) {
+			if (mNextTileRow >= mTileCount) {
+				return false;
+			}
+			tile[0] = mNextTileRow;
+			tile[1] = mNextTileColumn;
+			if (++mNextTileColumn >= mTileCount) {
+				mNextTileRow++;
+				mNextTileColumn = mNextTileRow;
+			}
+			return true;
 		}
 
-		boolean updateDistances(int mergeID) {
+		boolean updateDistances(int mergeID, double mergeDistance) {
 
 			mMergeIndex = mergeID;
+			mMergeDistance = mergeDistance;
 
 			// One of these, usually the left, is the same as mMergeIndex.
 			mLeftIndex = mDendrogram.leftChildID(mMergeIndex);
@@ -520,6 +898,10 @@ public class StandardHierarchicalClusterTask extends AbstractHierarchicalCluster
 				mNNIndices[mLeftIndex] = -1;
 			}
 
+			if (mMergedInto != null) {
+				mMergedInto[mLeftIndex == mMergeIndex ? mRightIndex : mLeftIndex] = mMergeIndex;
+			}
+
 			mDoing = UPDATING_DISTANCES;
 			return work();
 		}
@@ -534,9 +916,9 @@ public class StandardHierarchicalClusterTask extends AbstractHierarchicalCluster
 		    boolean ok = false;
 		    try {
 		        mWorking = true;
-		        if (mThreadPool != null) {
+		        if (mConcurrent) {
 		            try {
-		                mThreadPool.invokeAll(mWorkers);
+		                TaskScheduler.invokeSubtasks(mWorkers);
 		                ok = true;
 		            } catch (InterruptedException ex) {
 		                Logger.getLogger(StandardHierarchicalClusterTask.class.getName()).log(Level.SEVERE, 
@@ -562,9 +944,6 @@ public class StandardHierarchicalClusterTask extends AbstractHierarchicalCluster
 		//
 		private class Worker implements Callable<Void> {
 
-			private int mIndex1Min, mIndex1Max;
-			private int mIndex2Min, mIndex2Max;
-
 			private int mStartCoord;
 			private int mCoordCount;
 
@@ -582,22 +961,44 @@ public class StandardHierarchicalClusterTask extends AbstractHierarchicalCluster
 			// a clone
 			// to be safe.
 			private DistanceFunc mDistFunc;
+			
+			// Used by workerInitializeDistances() to hold the coordinates of
+			// the columns of a tile, loaded once for the tile, and the distances
+			// to them from one of its rows.  mBlock is only allocated if mDistFunc
+			// is a BlockDistanceFunc, in which case it holds the coordinates one
+			// after another, and mCoordBlock otherwise.
+			private double[] mBlock;
+			private double[][] mCoordBlock;
+			private double[] mBlockDistances;
+			// The norms of the coordinates in mBlock and of the coordinate in
+			// mCoordBuf1, only used if mNorms is non-null.
+			private double[] mBlockNorms;
+			private double mNorm;
+			// Only allocated if mCS is sparse and mDistFunc can compute sparse
+			// distances, in which case they replace mCoordBuf1 and mCoordBlock.
+			private SparseVector mSparseBuf1;
+			private SparseVector[] mSparseBlock;
+			// Only allocated if mCS is a BitCoordinateList and mDistFunc can
+			// compute distances from its bits, in which case they replace
+			// mCoordBuf1 and mCoordBlock.
+			private long[] mBitBuf1;
+			private long[][] mBitBlock;
+			// The nearest neighbors found by workerInitializeDistances() among
+			// the distances it computed, combined by initializeDistances().
+			int[] mInitNNIndices;
+			double[] mInitNNDistances;
+			// Used by workerUpdateNearestNeighbors() to read pages of a row
+			// of the distance cache.
+			private double[] mRowBuf;
+			// Used by workerUpdateNearestNeighbors() to select the nearest
+			// neighbor candidates of a row in a max-heap, only allocated if
+			// candidates are kept.
+			private int[] mHeapIndices;
+			private double[] mHeapDistances;
+			private int mHeapSize;
 
 			// Constructor
-			Worker(long startDistance, long distanceCount,
-				   int startCoord, int coordCount) {
-
-				// Set the endpoints for the indices. These are the indices
-				// into the distance cache.
-				int[] indices = DistanceCacheFactory.getIndicesForDistance(startDistance, mCache);
-				mIndex1Min = indices[0];
-				mIndex2Min = indices[1];
-
-				indices = DistanceCacheFactory.getIndicesForDistance(startDistance +
-						distanceCount - 1, mCache);
-
-				mIndex1Max = indices[0];
-				mIndex2Max = indices[1];
+			Worker(int startCoord, int coordCount) {
 
 				mStartCoord = startCoord;
 				mCoordCount = coordCount;
@@ -607,6 +1008,26 @@ public class StandardHierarchicalClusterTask extends AbstractHierarchicalCluster
 				mCoordBuf2 = new double[mCS.getDimensionCount()];
 
 				mDistFunc = (DistanceFunc) mDistanceFunc.clone();
+				
+				mBlockDistances = new double[mTileRows];
+				if (mCS instanceof SparseCoordinateList && mDistFunc instanceof SparseDistanceFunc) {
+					mSparseBuf1 = new SparseVector();
+					mSparseBlock = new SparseVector[mTileRows];
+					for (int r=0; r<mTileRows; r++) {
+						mSparseBlock[r] = new SparseVector();
+					}
+				} else if (mCS instanceof BitCoordinateList && mDistFunc instanceof BitDistanceFunc) {
+					int wordCount = ((BitCoordinateList) mCS).getWordCount();
+					mBitBuf1 = new long[wordCount];
+					mBitBlock = new long[mTileRows][wordCount];
+				} else if (mDistFunc instanceof BlockDistanceFunc) {
+					mBlock = new double[mTileRows * mCS.getDimensionCount()];
+					if (mDistFunc instanceof NormedDistanceFunc) {
+						mBlockNorms = new double[mTileRows];
+					}
+				} else {
+					mCoordBlock = new double[mTileRows][mCS.getDimensionCount()];
+				}
 			}
 
 			public Void call() throws Exception {
@@ -631,64 +1052,96 @@ public class StandardHierarchicalClusterTask extends AbstractHierarchicalCluster
 
 				if (mCache != null) {
 
-		        	final int setAtATime = 1024;
+		            int numIndices = mCache.getNumIndices();
+
+		            mInitNNIndices = new int[numIndices];
+		            Arrays.fill(mInitNNIndices, -1);
+		            mInitNNDistances = new double[numIndices];
+		            Arrays.fill(mInitNNDistances, Double.MAX_VALUE);
+
+		            // Each tile's distances are set in one call.
+		            int setAtATime = mTileRows * mTileRows;
 		        	int[] indices1 = new int[setAtATime];
 		        	int[] indices2 = new int[setAtATime];
 		        	double[] distances = new double[setAtATime];
-		        	int count = 0;
 
-		            int numIndices = mCache.getNumIndices();
+		        	int[] tile = new int[2];
 
 		            try {
 
-		            	for (int i=mIndex1Min; i<=mIndex1Max; i++) {
+		            	while (nextTile(tile)) {
+
+		            		int istart = tile[0] * mTileRows;
+		            		int iend = Math.min(istart + mTileRows, numIndices);
+		            		int jstart = tile[1] * mTileRows;
+		            		int jend = Math.min(jstart + mTileRows, numIndices);
 
-		            		int jmin = i == mIndex1Min ? mIndex2Min : i+1;
-		            		int jmax = i == mIndex1Max ? mIndex2Max : numIndices - 1;
+		            		// Load the coordinates of the tile's columns once
+		            		// for all its rows.
+		            		loadBlock(jstart, jend - jstart);
 
-		            		for (int j=jmin; j<=jmax; j++) {
+		            		int count = 0;
+		            		double maxDistance = 0.0;
 
-		            			indices1[count] = i;
-		            			indices2[count] = j;
-		            			mCS.getCoordinates(i, mCoordBuf1);
-		            			mCS.getCoordinates(j, mCoordBuf2);
+		            		for (int i=istart; i<iend; i++) {
 
-		            			double distance = mDistFunc.distanceBetween(mCoordBuf1, mCoordBuf2);
+		            			// Only j > i on the diagonal.
+		            			int jmin = Math.max(jstart, i + 1);
+		            			if (jmin >= jend) {
+		            				break;
+		            			}
 
-		            			// These 2 if-blocks initialize the mNNDistances and
-		            			// mNNIndices.
-		            			if (distance < mNNDistances[i]) {
-		            				mNNDistances[i] = distance;
-		            				mNNIndices[i] = j;
+		            			if (mSparseBuf1 != null) {
+		            				((SparseCoordinateList) mCS).getSparseCoordinates(i, mSparseBuf1);
+		            			} else if (mBitBuf1 != null) {
+		            				((BitCoordinateList) mCS).getBits(i, mBitBuf1);
+		            			} else {
+		            				mCS.getCoordinates(i, mCoordBuf1);
 		            			}
-		            			if (distance < mNNDistances[j]) {
-		            				mNNDistances[j] = distance;
-		            				mNNIndices[j] = i;
+		            			if (mNorms != null) {
+		            				mNorm = mNorms[i];
 		            			}
 
-		            			distances[count++] = distance;
+		            			computeBlockDistances(jmin - jstart, jend - jmin);
 
-		            			if (count == setAtATime) {
-		            				mCache.setDistances(indices1, indices2, distances);
-		            				count = 0;
-		            			}
+		            			for (int j=jmin; j<jend; j++) {
 
-		            			checkForCancel();
+		            				double distance = mBlockDistances[j - jstart];
 
-		            		} // for (int j...
+		            				// These 2 calls initialize the nearest neighbors
+		            				// from the distances the cache keeps.
+		            				offerNearestNeighbor(i, j, distance);
+		            				offerNearestNeighbor(j, i, distance);
 
-		            	} // for (int i...
+		            				indices1[count] = i;
+		            				indices2[count] = j;
+		            				distances[count++] = distance;
+		            				if (distance > maxDistance) {
+		            					maxDistance = distance;
+		            				}
+		            			}
+		            		}
 
-		            	if (count > 0) {
+		            		// Only distance functions not obeying the triangle inequality
+		            		// exceed the bound.  The linkages keep merged distances within
+		            		// the range of these, except WARD, which is not used with SHORT.
+		            		if (maxDistance > mShortDistanceBound) {
+		            			error("distance exceeds the SHORT precision bound of " +
+		            					mShortDistanceBound + ": " + maxDistance);
+		            			return;
+		            		}
 
-		            		if (count < setAtATime) {
-		            			indices1 = ArrayUtil.section(indices1, 0, count);
-		            			indices2 = ArrayUtil.section(indices2, 0, count);
-		            			distances = ArrayUtil.section(distances, 0, count);
+		            		if (count == setAtATime) {
+		            			mCache.setDistances(indices1, indices2, distances);
+		            		} else if (count > 0) {
+		            			mCache.setDistances(ArrayUtil.section(indices1, 0, count),
+		            					ArrayUtil.section(indices2, 0, count),
+		            					ArrayUtil.section(distances, 0, count));
 		            		}
 
-		            		mCache.setDistances(indices1, indices2, distances);
-		            	}
+		            		checkForCancel();
+
+		            	} // while (nextTile...
 
 		            } catch (IOException ioe) {
 
@@ -705,6 +1158,78 @@ public class StandardHierarchicalClusterTask extends AbstractHierarchicalCluster
 				}
 			}
 
+			// Makes j the nearest neighbor of i found so far if the distance
+			// between them is nearer than any found before and is kept by the
+			// cache.  The lower index wins ties.
+			private void offerNearestNeighbor(int i, int j, double distance) {
+				if (distance <= mMaxCachedDistance && (distance < mInitNNDistances[i] ||
+						(distance == mInitNNDistances[i] && j < mInitNNIndices[i]))) {
+					mInitNNDistances[i] = distance;
+					mInitNNIndices[i] = j;
+				}
+			}
+
+			// Loads the rows coordinates beginning with start into the block,
+			// along with their norms if they have been computed.
+			private void loadBlock(int start, int rows) {
+				if (mSparseBlock != null) {
+					SparseCoordinateList sparseCS = (SparseCoordinateList) mCS;
+					for (int r=0; r<rows; r++) {
+						sparseCS.getSparseCoordinates(start + r, mSparseBlock[r]);
+					}
+				} else if (mBitBlock != null) {
+					BitCoordinateList bitCS = (BitCoordinateList) mCS;
+					for (int r=0; r<rows; r++) {
+						bitCS.getBits(start + r, mBitBlock[r]);
+					}
+				} else if (mBlock != null) {
+					final int dim = mCoordBuf1.length;
+					for (int r=0; r<rows; r++) {
+						mCS.getCoordinates(start + r, mCoordBuf2);
+						System.arraycopy(mCoordBuf2, 0, mBlock, r*dim, dim);
+					}
+					if (mNorms != null) {
+						System.arraycopy(mNorms, start, mBlockNorms, 0, rows);
+					}
+				} else {
+					for (int r=0; r<rows; r++) {
+						mCS.getCoordinates(start + r, mCoordBlock[r]);
+					}
+				}
+			}
+
+			// Computes the distances from the coordinate in mCoordBuf1 to the
+			// count coordinates of the block beginning with start, placing them
+			// in the same elements of mBlockDistances.  The norms are used if they
+			// have been computed.  Sparse coordinates are compared through their
+			// non-zero elements in mSparseBuf1 and mSparseBlock, and binary
+			// coordinates through their bits in mBitBuf1 and mBitBlock.
+			private void computeBlockDistances(int start, int count) {
+				final int end = start + count;
+				if (mSparseBlock != null) {
+					SparseDistanceFunc sparseDistFunc = (SparseDistanceFunc) mDistFunc;
+					for (int r=start; r<end; r++) {
+						mBlockDistances[r] = sparseDistFunc.distanceBetween(mSparseBuf1, mSparseBlock[r]);
+					}
+				} else if (mBitBlock != null) {
+					BitDistanceFunc bitDistFunc = (BitDistanceFunc) mDistFunc;
+					for (int r=start; r<end; r++) {
+						mBlockDistances[r] = bitDistFunc.distanceBetween(mBitBuf1, mBitBlock[r]);
+					}
+				} else if (mBlock != null) {
+					if (mNorms != null) {
+						((NormedDistanceFunc) mDistFunc).distancesBetween(mCoordBuf1, mNorm,
+								mBlock, mBlockNorms, start, count, mBlockDistances);
+					} else {
+						((BlockDistanceFunc) mDistFunc).distancesBetween(mCoordBuf1, mBlock, start, count, mBlockDistances);
+					}
+				} else {
+					for (int r=start; r<end; r++) {
+						mBlockDistances[r] = mDistFunc.distanceBetween(mCoordBuf1, mCoordBlock[r]);
+					}
+				}
+			}
+
 			// Update nearest neighbors.
 			//
 			private void workerUpdateNearestNeighbors() {
@@ -720,20 +1245,58 @@ public class StandardHierarchicalClusterTask extends AbstractHierarchicalCluster
 
 			                if (i == mMergeIndex || nnIndex == mLeftIndex || nnIndex == mRightIndex) {
 
+			                  // The merged node's distances have all changed, so its
+			                  // candidates are of no use.
+			                  if (i != mMergeIndex && mCandidateCount > 0 &&
+			                		  mCandidateListSizes[i] >= 0 && nearestCandidate(i)) {
+			                	  continue;
+			                  }
+
+			                  if (mCandidateCount > 0 && mHeapIndices == null) {
+			                	  mHeapIndices = new int[mCandidateCount];
+			                	  mHeapDistances = new double[mCandidateCount];
+			                  }
+			                  mHeapSize = 0;
+
 			                  int newNNIndex = i;
 			                  double newNNDistance = Double.MAX_VALUE;
 
+			                  // The distances from i to j > i are consecutive in the
+			                  // cache, so read them a page at a time.
 			                  int n = mNNIndices.length;
-			                  for (int j = i + 1; j<n; j++) {
-			                	  if (mNNIndices[j] >= 0) {
-			                		  double d = mCache.getDistance(i, j);
-			                		  if (d < newNNDistance) {
-			                			  newNNIndex = j;
-			                			  newNNDistance = d;
+			                  if (i + 1 < n) {
+			                	  if (mRowBuf == null) {
+			                		  mRowBuf = new double[ROW_PAGE];
+			                	  }
+			                	  long pos = mCache.distancePos(i, i + 1);
+			                	  for (int j0 = i + 1; j0 < n; j0 += ROW_PAGE) {
+			                		  int count = Math.min(ROW_PAGE, n - j0);
+			                		  mCache.getDistances(pos + j0 - i - 1, mRowBuf, 0, count);
+			                		  for (int k = 0; k < count; k++) {
+			                			  if (mNNIndices[j0 + k] >= 0) {
+			                				  double d = mRowBuf[k];
+			                				  if (d < newNNDistance) {
+			                					  newNNIndex = j0 + k;
+			                					  newNNDistance = d;
+			                				  }
+			                				  if (mHeapIndices != null && d < Double.MAX_VALUE) {
+			                					  offerCandidate(j0 + k, d);
+			                				  }
+			                			  }
 			                		  }
 			                	  }
 			                  }
 
+			                  if (mHeapIndices != null) {
+			                	  // Those not kept were no nearer than the farthest kept.
+			                	  int offset = i * mCandidateCount;
+			                	  System.arraycopy(mHeapIndices, 0, mCandidateIndices, offset, mHeapSize);
+			                	  System.arraycopy(mHeapDistances, 0, mCandidateDistances, offset, mHeapSize);
+			                	  mCandidateListSizes[i] = mHeapSize;
+			                	  mCandidateBounds[i] = mHeapSize == mCandidateCount ?
+			                			  mHeapDistances[0] : Double.POSITIVE_INFINITY;
+			                  }
+
 			                  checkForCancel();
 
 			                  // The "bug" discussed above will sometimes set a node's
@@ -761,6 +1324,95 @@ public class StandardHierarchicalClusterTask extends AbstractHierarchicalCluster
 				 }
 			}
 
+			// Looks for the nearest neighbor of node i among its candidates, resolving
+			// those merged since they were listed to the nodes they were merged into
+			// and reading their current distances.  Returns false if the nearest
+			// is not known to be nearer than the nodes not listed, in which case the
+			// row must be rescanned.
+			private boolean nearestCandidate(int i) throws IOException {
+				int offset = i * mCandidateCount;
+				int size = mCandidateListSizes[i];
+				int newNNIndex = -1;
+				double newNNDistance = Double.MAX_VALUE;
+				int kept = 0;
+				for (int k=0; k<size; k++) {
+					int j = mCandidateIndices[offset + k];
+					while (mNNIndices[j] < 0) {
+						j = mMergedInto[j];
+					}
+					// Nodes merged into a node with a lower id than i have
+					// left the row.
+					if (j > i) {
+						double d = mCache.getDistance(i, j);
+						mCandidateIndices[offset + kept] = j;
+						mCandidateDistances[offset + kept] = d;
+						kept++;
+						if (d < newNNDistance || (d == newNNDistance && j < newNNIndex)) {
+							newNNIndex = j;
+							newNNDistance = d;
+						}
+					}
+				}
+				mCandidateListSizes[i] = kept;
+				if (newNNIndex >= 0 && newNNDistance < mCandidateBounds[i]) {
+					mNNIndices[i] = newNNIndex;
+					mNNDistances[i] = newNNDistance;
+					return true;
+				}
+				if (mCandidateBounds[i] == Double.POSITIVE_INFINITY) {
+					// All the nodes in the row were listed, so none remain.
+					mNNIndices[i] = i;
+					mNNDistances[i] = Double.MAX_VALUE;
+					return true;
+				}
+				return false;
+			}
+
+			// Offers node j at distance d as a nearest neighbor candidate to the
+			// max-heap of the nearest found so far, ordered by distance, then index.
+			private void offerCandidate(int j, double d) {
+				int k;
+				if (mHeapSize < mCandidateCount) {
+					// Sift up from the new leaf.
+					k = mHeapSize++;
+					while (k > 0) {
+						int parent = (k - 1)/2;
+						if (mHeapDistances[parent] > d ||
+								(mHeapDistances[parent] == d && mHeapIndices[parent] > j)) {
+							break;
+						}
+						mHeapIndices[k] = mHeapIndices[parent];
+						mHeapDistances[k] = mHeapDistances[parent];
+						k = parent;
+					}
+				} else if (d < mHeapDistances[0] || (d == mHeapDistances[0] && j < mHeapIndices[0])) {
+					// Replace the farthest and sift down.
+					k = 0;
+					while (true) {
+						int child = 2*k + 1;
+						if (child >= mHeapSize) {
+							break;
+						}
+						if (child + 1 < mHeapSize && (mHeapDistances[child + 1] > mHeapDistances[child] ||
+								(mHeapDistances[child + 1] == mHeapDistances[child] &&
+								mHeapIndices[child + 1] > mHeapIndices[child]))) {
+							child++;
+						}
+						if (mHeapDistances[child] < d ||
+								(mHeapDistances[child] == d && mHeapIndices[child] < j)) {
+							break;
+						}
+						mHeapIndices[k] = mHeapIndices[child];
+						mHeapDistances[k] = mHeapDistances[child];
+						k = child;
+					}
+				} else {
+					return;
+				}
+				mHeapIndices[k] = j;
+				mHeapDistances[k] = d;
+			}
+
 			private void workerUpdateDistances() {
 
 				try {
@@ -815,10 +1467,16 @@ public class StandardHierarchicalClusterTask extends AbstractHierarchicalCluster
 								distancesToSet[count] = Math.min(distances[i], distances[i+1]);
 								break;
 							case MEAN:
+							case AVERAGE:
 								distancesToSet[count] =
 									(mLeftCount*distances[i] + mRightCount*distances[i+1])/
 									(mLeftCount + mRightCount);
 								break;
+							case WARD:
+								distancesToSet[count] = HierarchicalClusterTaskParams.wardDistance(
+										distances[i], distances[i+1], mLeftCount, mRightCount,
+										mDendrogram.nodeSize(indices1[i]), mMergeDistance);
+								break;
 							default:
 								error("unsupported linkage type: " + mLinkage);
 							}
@@ -273,7 +273,7 @@ public class StandardHierarchicalSimilarityClusterTask extends
                 done = mDendrogram.isFinished();
 
                 if (!done) {
-                    mgr.updateDistances(mergeID);
+                    mgr.updateDistances(mergeID, nnDistance[0]);
                     mgr.updateNearestNeighbors();
                 }
 
@@ -398,6 +398,9 @@ public class StandardHierarchicalSimilarityClusterTask extends
 
         private int mLeftCount, mRightCount;
 
+        // The distance between the nodes merged last, needed for Ward linkage.
+        private double mMergeDistance;
+
         private Similarities mSims;
 
         private int mCoordCount;
@@ -551,9 +554,10 @@ public class StandardHierarchicalSimilarityClusterTask extends
             return work();
         }
 
-        boolean updateDistances(int mergeID) {
+        boolean updateDistances(int mergeID, double mergeDistance) {
 
             mMergeIndex = mergeID;
+            mMergeDistance = mergeDistance;
 
             // One of these, usually the left, is the same as mMergeIndex.
             mLeftIndex = mDendrogram.leftChildID(mMergeIndex);
@@ -912,11 +916,19 @@ public class StandardHierarchicalSimilarityClusterTask extends
                                         distances[i + 1]);
                                 break;
                             case MEAN:
+                            case AVERAGE:
                                 distancesToSet[count] = (mLeftCount
                                         * distances[i] + mRightCount
                                         * distances[i + 1])
                                         / (mLeftCount + mRightCount);
                                 break;
+                            case WARD:
+                                distancesToSet[count] = HierarchicalClusterTaskParams
+                                        .wardDistance(distances[i], distances[i + 1],
+                                                mLeftCount, mRightCount,
+                                                mDendrogram.nodeSize(indices1[i]),
+                                                mMergeDistance);
+                                break;
                             default:
                                 error("unsupported linkage type: " + mLinkage);
                             }
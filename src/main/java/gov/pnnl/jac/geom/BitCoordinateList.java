@@ -0,0 +1,49 @@
+package gov.pnnl.jac.geom;
+
+/**
+ * <p>A <tt>CoordinateList</tt> of binary coordinates, such as chemical
+ * fingerprints, that stores each coordinate as bits packed into longs.
+ * Dimension <code>d</code> of a coordinate is bit <code>d % 64</code> of
+ * word <code>d / 64</code>.  The double precision methods of
+ * <tt>CoordinateList</tt> read the bits as 0s and 1s and set a bit for
+ * every value other than 0 or NaN.  The methods declared here transfer the
+ * packed words directly, for use with the kernels of
+ * <tt>BitDistanceFunc</tt>.</p>
+ *
+ * @author R. Scarberry
+ *
+ */
+public interface BitCoordinateList extends CoordinateList {
+
+    /**
+     * Returns the number of longs holding the bits of each coordinate,
+     * which is <code>getDimensionCount()</code> divided by 64, rounded up.
+     * Any bits of the last word beyond the dimensions are always 0.
+     * @return
+     */
+    public int getWordCount();
+
+    /**
+     * Set the bits of the coordinate with the specified index.
+     *
+     * @param ndx - the coordinate index which must be in the range
+     *   <code>[0 - getCoordinateCount()-1]</code>.
+     * @param words - the packed bits, which must be of length
+     *   <code>getWordCount()</code>.
+     */
+    public void setBits(int ndx, long[] words);
+
+    /**
+     * Retrieve the bits of the coordinate with the specified index.
+     *
+     * @param ndx - the coordinate index which must be in the range
+     *   <code>[0 - getCoordinateCount()-1]</code>.
+     * @param words - an array to hold the returned bits.
+     *   If non-null, must be of length <code>getWordCount()</code>.
+     *   If null, a new array is allocated and returned with the bits.
+     * @return - the array containing the bits, which will be the
+     *   same as the second argument if that argument is non-null.
+     */
+    public long[] getBits(int ndx, long[] words);
+
+}
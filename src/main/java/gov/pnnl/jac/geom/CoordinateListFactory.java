@@ -14,6 +14,15 @@ public interface CoordinateListFactory {
 	CoordinateList createCoordinateList(String id, int dimensions, int coordCount)
 	  throws IOException;
 	
+	/**
+	 * Creates a coordinate list storing its values in the given precision.
+	 * Those created with <tt>CoordinatePrecision.FLOAT</tt> implement 
+	 * <tt>FloatCoordinateList</tt>.  The 3-argument version creates
+	 * double precision coordinate lists.
+	 */
+	CoordinateList createCoordinateList(String id, int dimensions, int coordCount, 
+	        CoordinatePrecision precision) throws IOException;
+	
 	CoordinateList openCoordinateList(String id) throws IOException;
 		
 	CoordinateList copyCoordinateList(String id, CoordinateList sourceCoordList) throws IOException;
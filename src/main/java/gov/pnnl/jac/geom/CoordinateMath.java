@@ -465,6 +465,39 @@ public final class CoordinateMath {
 		return m;
 	}
 
+	/**
+	 * Computes the maximum of the absolute values
+	 * of elements in an array of floats.
+	 * Only non-NaN elements are considered.
+	 * 
+	 * @param buf - array containing the elements.
+	 * 
+	 * @return - the maximum absolute value.
+	 */
+	public static double absMax(float[] buf) {
+		double m = Double.NaN;
+		int n = buf.length;
+		int i = 0;
+		for (; i < n; i++) {
+			float f = buf[i];
+			if (!Float.isNaN(f)) {
+				m = Math.abs(f);
+				break;
+			}
+		}
+		i++;
+		for (; i < n; i++) {
+			float f = buf[i];
+			if (!Float.isNaN(f)) {
+				double d = Math.abs(f);
+				if (d > m) {
+					m = d;
+				}
+			}
+		}
+		return m;
+	}
+
 	/**
 	 * Computes the minimum of the absolute values
 	 * of elements in an array of doubles.
@@ -0,0 +1,50 @@
+package gov.pnnl.jac.geom;
+
+/**
+ * <p>The precision in which a <tt>CoordinateList</tt> stores its values.
+ * Coordinate lists always return coordinates as doubles, but those created
+ * with <tt>FLOAT</tt> precision store them in half the memory, implementing
+ * <tt>FloatCoordinateList</tt> so they may also be fetched without
+ * widening.</p>
+ *
+ * @author R. Scarberry
+ *
+ */
+public enum CoordinatePrecision {
+
+    /**
+     * 8-byte double precision values.
+     */
+    DOUBLE(8),
+
+    /**
+     * 4-byte single precision values.
+     */
+    FLOAT(4);
+
+    private int mBytesPerValue;
+
+    private CoordinatePrecision(int bytesPerValue) {
+        mBytesPerValue = bytesPerValue;
+    }
+
+    /**
+     * Returns the number of bytes used to store each value.
+     *
+     * @return
+     */
+    public int getBytesPerValue() {
+        return mBytesPerValue;
+    }
+
+    /**
+     * Returns the precision of a coordinate list.
+     *
+     * @param coords
+     *
+     * @return
+     */
+    public static CoordinatePrecision of(CoordinateList coords) {
+        return coords instanceof FloatCoordinateList ? FLOAT : DOUBLE;
+    }
+}
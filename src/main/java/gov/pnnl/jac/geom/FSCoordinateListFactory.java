@@ -23,6 +23,8 @@ public class FSCoordinateListFactory implements CoordinateListFactory {
 	private Map<String, Object> mCoordListMap = new HashMap<String, Object> ();
 	private Object mSingleFileSentinel = new Object();
 	private Object mMultiFileSentinel = new Object();
+	// For single files of float coordinates.
+	private Object mFloatFileSentinel = new Object();
 	
 	public FSCoordinateListFactory(File dir, long ramThreshold, long fileThreshold)
 	throws IOException {
@@ -78,11 +80,13 @@ public class FSCoordinateListFactory implements CoordinateListFactory {
     	for (int i=0; i<singleFiles.length; i++) {
     		File f = singleFiles[i];
     		try {
+    			String fname = f.getName();
+    			String tupleName = fname.substring(FILENAME_PREFIX.length(), 
+    					fname.length() - FILENAME_SUFFIX.length());
     			if (FileMappedCoordinateList.validateFile(f)) {
-    				String fname = f.getName();
-    				String tupleName = fname.substring(FILENAME_PREFIX.length(), 
-                        fname.length() - FILENAME_SUFFIX.length());
     				mCoordListMap.put(tupleName, mSingleFileSentinel);
+    			} else if (FileMappedFloatCoordinateList.validateFile(f)) {
+    				mCoordListMap.put(tupleName, mFloatFileSentinel);
     			}
     		} catch (IOException ioe) {
     			LOGGER.error(ioe);
@@ -107,6 +111,21 @@ public class FSCoordinateListFactory implements CoordinateListFactory {
 			String id, 
 			int dimensions,
 			int coordCount) throws IOException {
+    	return createCoordinateList(id, dimensions, coordCount, CoordinatePrecision.DOUBLE);
+    }
+    
+    /**
+     * Creates a coordinate list storing its values in the given precision.  
+     * Whether the list is kept in memory or in files depends on the size
+     * of the data in that precision.  Float coordinate lists too large
+     * for the file threshold are still kept in a single file, since 
+     * there is no multiple file float implementation.
+     */
+    public synchronized CoordinateList createCoordinateList(
+			String id, 
+			int dimensions,
+			int coordCount,
+			CoordinatePrecision precision) throws IOException {
     	
 		if (id == null) throw new NullPointerException();
 		
@@ -117,8 +136,15 @@ public class FSCoordinateListFactory implements CoordinateListFactory {
 		}
 		
 		CoordinateList coords = null;
-		long dataSize = 8L*coordCount*dimensions;
-		if (dataSize <= mRAMThreshold) {
+		long dataSize = (long) precision.getBytesPerValue()*coordCount*dimensions;
+		if (precision == CoordinatePrecision.FLOAT) {
+			if (dataSize <= mRAMThreshold) {
+				coords = new SimpleFloatCoordinateList(dimensions, coordCount);
+			} else {
+				String filename = getFilename(id);
+				coords = FileMappedFloatCoordinateList.createNew(new File(mDir, filename), dimensions, coordCount);
+			}
+		} else if (dataSize <= mRAMThreshold) {
 			try {
 				coords = new SimpleCoordinateList(dimensions, coordCount);
 			} catch (OutOfMemoryError me) {
@@ -163,6 +189,13 @@ public class FSCoordinateListFactory implements CoordinateListFactory {
 			} else {
 				coords = FileMappedCoordinateList.openExisting(f);
 			}
+		} else if (o == mFloatFileSentinel) {
+			File f = getFileFor(id);
+			if (f.length() <= mRAMThreshold) {
+				coords = SimpleFloatCoordinateList.load(f);
+			} else {
+				coords = FileMappedFloatCoordinateList.openExisting(f);
+			}
 		} else if (o == mMultiFileSentinel) {
 			File dir = new File(mDir, getDirname(id));
 			if (dir.isDirectory()) {
@@ -172,6 +205,8 @@ public class FSCoordinateListFactory implements CoordinateListFactory {
 			coords = (CoordinateList) o;
 			if (coords instanceof FileMappedCoordinateList) {
 				((FileMappedCoordinateList) coords).openFile();
+			} else if (coords instanceof FileMappedFloatCoordinateList) {
+				((FileMappedFloatCoordinateList) coords).openFile();
 			} else if (coords instanceof MultiFileMappedCoordinateList) {
 				((MultiFileMappedCoordinateList) coords).open();
 			}
@@ -251,7 +286,8 @@ public class FSCoordinateListFactory implements CoordinateListFactory {
 		int dimensions = sourceCoordList.getDimensionCount();
 		int coordinateCount = sourceCoordList.getCoordinateCount();
 		
-		CoordinateList coords = createCoordinateList(id, dimensions, coordinateCount);
+		CoordinateList coords = createCoordinateList(id, dimensions, coordinateCount,
+				CoordinatePrecision.of(sourceCoordList));
 		
 		double[] buffer = new double[dimensions];
 		for (int i=0; i<coordinateCount; i++) {
@@ -293,6 +329,13 @@ public class FSCoordinateListFactory implements CoordinateListFactory {
         	if (!f.delete()) {
         		throw new IOException("could not delete file for coordinates associated with id " + id);
         	}
+        } else if (coordList instanceof FileMappedFloatCoordinateList) {
+        	FileMappedFloatCoordinateList fmCoordList = (FileMappedFloatCoordinateList) coordList;
+        	File f = fmCoordList.getBackingFile();
+        	fmCoordList.closeFile();
+        	if (!f.delete()) {
+        		throw new IOException("could not delete file for coordinates associated with id " + id);
+        	}
         } else if (coordList instanceof MultiFileMappedCoordinateList) {
         	MultiFileMappedCoordinateList mfmCoordList = (MultiFileMappedCoordinateList) coordList;
         	File dir = mfmCoordList.getDirectory();
@@ -325,9 +368,14 @@ public class FSCoordinateListFactory implements CoordinateListFactory {
 		if (coordList instanceof FileMappedCoordinateList) {
 			((FileMappedCoordinateList) coordList).closeFile();
 			mCoordListMap.put(id, mSingleFileSentinel);
+		} else if (coordList instanceof FileMappedFloatCoordinateList) {
+			((FileMappedFloatCoordinateList) coordList).closeFile();
+			mCoordListMap.put(id, mFloatFileSentinel);
 		} else if (coordList instanceof MultiFileMappedCoordinateList) {
 			((MultiFileMappedCoordinateList) coordList).close();
 			mCoordListMap.put(id, mMultiFileSentinel);
+		} else if (coordList instanceof SimpleFloatCoordinateList) {
+			mCoordListMap.put(id, mFloatFileSentinel);
 		} else {
 			mCoordListMap.put(id, mSingleFileSentinel);
 		}
@@ -342,11 +390,16 @@ public class FSCoordinateListFactory implements CoordinateListFactory {
 			if (o instanceof FileMappedCoordinateList) {
 				((FileMappedCoordinateList) o).closeFile();
 				mCoordListMap.put(ids[i], mSingleFileSentinel);
+			} else if (o instanceof FileMappedFloatCoordinateList) {
+				((FileMappedFloatCoordinateList) o).closeFile();
+				mCoordListMap.put(ids[i], mFloatFileSentinel);
 			} else if (o instanceof MultiFileMappedCoordinateList) {
 				((MultiFileMappedCoordinateList) o).close();
 				mCoordListMap.put(ids[i], mMultiFileSentinel);
 			} else if (o instanceof SimpleCoordinateList) {
 				mCoordListMap.put(ids[i], mSingleFileSentinel);
+			} else if (o instanceof SimpleFloatCoordinateList) {
+				mCoordListMap.put(ids[i], mFloatFileSentinel);
 			}
 		}
 	}
@@ -380,6 +433,9 @@ public class FSCoordinateListFactory implements CoordinateListFactory {
 		if (coordList instanceof SimpleCoordinateList) {
 			File backingFile = getFileFor(id);
 			((SimpleCoordinateList) coordList).save(backingFile);
+		} else if (coordList instanceof SimpleFloatCoordinateList) {
+			File backingFile = getFileFor(id);
+			((SimpleFloatCoordinateList) coordList).save(backingFile);
 		}
 	}
 }
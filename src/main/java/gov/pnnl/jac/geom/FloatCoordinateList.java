@@ -0,0 +1,42 @@
+package gov.pnnl.jac.geom;
+
+/**
+ * <p>A <tt>CoordinateList</tt> that stores its values in single precision.
+ * The double precision methods of <tt>CoordinateList</tt> widen the values
+ * on the way out and narrow them on the way in.  The methods declared here
+ * transfer the stored values directly, for use with the float kernels of
+ * <tt>FloatDistanceFunc</tt>.  Of the clustering tasks, only
+ * <tt>KMeansClusterTask</tt> uses them.  The others read these lists through
+ * the double precision methods, so they store them in half the memory but
+ * compute the same distances.</p>
+ *
+ * @author R. Scarberry
+ *
+ */
+public interface FloatCoordinateList extends CoordinateList {
+
+    /**
+     * Set the coordinate values for the coordinate with the
+     * specified index.
+     *
+     * @param ndx - the coordinate index which must be in the range
+     *   <code>[0 - getCoordinateCount()-1]</code>.
+     * @param coords - the coordinate values.
+     */
+    public void setCoordinates(int ndx, float[] coords);
+
+    /**
+     * Retrieve the coordinate values for the coordinate with
+     * the specified index.
+     *
+     * @param ndx - the coordinate index which must be in the range
+     *   <code>[0 - getCoordinateCount()-1]</code>.
+     * @param coords - an array to hold the returned coordinates.
+     *   If non-null, must be of length <code>getDimensionCount()</code>.
+     *   If null, a new array is allocated and returned with the values.
+     * @return - the array containing the values, which will be the
+     *   same as the second argument if that argument is non-null.
+     */
+    public float[] getCoordinates(int ndx, float[] coords);
+
+}
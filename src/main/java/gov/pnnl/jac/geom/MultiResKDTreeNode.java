@@ -95,7 +95,7 @@ public class MultiResKDTreeNode {
         		// NaN sorts out as the largest.
         		if (!Double.isNaN(spreads[i])) {
         			if (spreads[i] > 0.0) {
-        				splitDim = i;
+        				splitDim = dims[i];
         			}
         			break;
         		}
@@ -199,6 +199,16 @@ public class MultiResKDTreeNode {
     	return rtn;
     }
     
+    /**
+     * Returns a copy of the smallest <tt>HyperRect</tt> containing all 
+     * the coordinates of this node.
+     * 
+     * @return
+     */
+    public HyperRect getBoundingRect() {
+        return (HyperRect) mRect.clone();
+    }
+    
     public double[] getCenter(double[] buffer) {
         double[] rtn = null;
         if (buffer != null) {
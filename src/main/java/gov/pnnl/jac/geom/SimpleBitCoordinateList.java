@@ -0,0 +1,299 @@
+package gov.pnnl.jac.geom;
+
+import java.io.*;
+
+/**
+ * <p>The binary counterpart of <tt>SimpleCoordinateList</tt>, which maintains
+ * the coordinate data as bits packed into a long array in memory.  Each
+ * coordinate takes <code>getWordCount()</code> longs, a 64th of the space
+ * taken by doubles.</p>
+ *
+ * @author R. Scarberry
+ *
+ */
+public class SimpleBitCoordinateList extends AbstractCoordinateList
+    implements BitCoordinateList {
+
+    private int mWordCount;
+    // Masks off the bits of the last word of a coordinate beyond the
+    // dimensions, which are kept 0 so the kernels can count whole words.
+    private long mLastWordMask;
+    private long[] mWords;
+
+    /**
+     * Constructs a new <tt>SimpleBitCoordinateList</tt> with all bits initialized to
+     * zero.
+     * @param dimensions the number of dimensions.
+     * @param coordinateCount the number of coordinates.
+     */
+    public SimpleBitCoordinateList(int dimensions, int coordinateCount) {
+        if (dimensions < 0) {
+            throw new IllegalArgumentException("dimensions < 0: " + dimensions);
+        }
+        if (coordinateCount < 0) {
+            throw new IllegalArgumentException("coordinateCount < 0: "
+                    + coordinateCount);
+        }
+        init(dimensions, coordinateCount);
+        mWords = new long[mWordCount * mCount];
+    }
+
+    /**
+     * Constructs a new <tt>SimpleBitCoordinateList</tt> using the specified array of
+     * packed bits, <code>(dimensions + 63)/64</code> longs per coordinate.  The parameter
+     * <tt>allWords</tt> is not copied, so any changes made directly to this array will
+     * affect the coordinate set.  Bits beyond the dimensions in the last word of each
+     * coordinate are cleared.
+     *
+     * @param dimensions the number of dimensions.
+     * @param coordinateCount the number of coordinates.
+     * @param allWords an array containing the packed bits.
+     *
+     * @throws IllegalArgumentException if either dimensions or coordinateCount is negative, or
+     *   if allWords is not of the length required for the dimensions and the coordinates.
+     */
+    public SimpleBitCoordinateList(int dimensions, int coordinateCount,
+            long[] allWords) {
+        if (dimensions < 0) {
+            throw new IllegalArgumentException("dimensions < 0: " + dimensions);
+        }
+        if (coordinateCount < 0) {
+            throw new IllegalArgumentException("coordinateCount < 0: "
+                    + coordinateCount);
+        }
+        init(dimensions, coordinateCount);
+        if (allWords.length != mWordCount * coordinateCount) {
+            throw new IllegalArgumentException(
+                    "invalid number of words: " + allWords.length
+                            + " != " + (mWordCount * coordinateCount));
+        }
+        mWords = allWords;
+        if (mWordCount > 0) {
+            for (int i = mWordCount - 1; i < mWords.length; i += mWordCount) {
+                mWords[i] &= mLastWordMask;
+            }
+        }
+    }
+
+    private void init(int dimensions, int coordinateCount) {
+        mDim = dimensions;
+        mCount = coordinateCount;
+        mWordCount = (dimensions + 63) >>> 6;
+        int bitsInLastWord = dimensions & 63;
+        mLastWordMask = bitsInLastWord == 0 ? -1L : (1L << bitsInLastWord) - 1L;
+    }
+
+    /**
+     * Creates and loads a new coordinate set from the specified input, which
+     * must be in the format written by <tt>save()</tt>.
+     *
+     * @param in
+     * @return a new <tt>SimpleBitCoordinateList</tt> instance.
+     *
+     * @throws IOException if an instance of the coordinate list cannot be
+     *   successfully read from the input.
+     */
+    public static SimpleBitCoordinateList load(DataInput in) throws IOException {
+        int dimensions = in.readInt();
+        int count = in.readInt();
+        if (dimensions < 0 || count < 0) {
+            throw new IOException("invalid dimensions: " + count + " by "
+                    + dimensions);
+        }
+        long[] words = new long[((dimensions + 63) >>> 6) * count];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = in.readLong();
+        }
+        return new SimpleBitCoordinateList(dimensions, count, words);
+    }
+
+    /**
+     * Creates and loads a new coordinate set from the specified file.
+     *
+     * @param in
+     * @return a new <tt>SimpleBitCoordinateList</tt> instance.
+     *
+     * @throws IOException if an instance of the coordinate list cannot be
+     *   successfully read from the file.
+     */
+    public static SimpleBitCoordinateList load(File f) throws IOException {
+        DataInputStream dis = null;
+        try {
+            dis = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(f)));
+            return load(dis);
+        } finally {
+            if (dis != null) {
+                try {
+                    dis.close();
+                } catch (IOException ioe) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Saves the coordinates as the dimensions and count followed by the
+     * packed bits as longs.
+     *
+     * @param out
+     * @throws IOException
+     */
+    public void save(DataOutput out) throws IOException {
+        out.writeInt(mDim);
+        out.writeInt(mCount);
+        for (int i=0; i<mWords.length; i++) {
+            out.writeLong(mWords[i]);
+        }
+    }
+
+    public void save(File f) throws IOException {
+        DataOutputStream dos = null;
+        try {
+            dos = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(f)));
+            save(dos);
+            dos.flush();
+        } finally {
+            if (dos != null) {
+                try {
+                    dos.close();
+                } catch (IOException ioe) {
+                }
+            }
+        }
+    }
+
+    public int getWordCount() {
+        return mWordCount;
+    }
+
+    public void setCoordinates(int ndx, double[] coords) {
+        checkIndex(ndx);
+        checkDimensions(coords.length);
+        final int start = ndx * mWordCount;
+        java.util.Arrays.fill(mWords, start, start + mWordCount, 0L);
+        for (int i = 0; i < mDim; i++) {
+            if (coords[i] != 0.0 && !Double.isNaN(coords[i])) {
+                mWords[start + (i >>> 6)] |= 1L << i;
+            }
+        }
+    }
+
+    public double[] getCoordinates(int ndx, double[] coords) {
+        checkIndex(ndx);
+        double[] c = null;
+        if (coords != null) {
+            checkDimensions(coords.length);
+            c = coords;
+        } else {
+            c = new double[mDim];
+        }
+        final int start = ndx * mWordCount;
+        for (int i = 0; i < mDim; i++) {
+            c[i] = (mWords[start + (i >>> 6)] >>> i) & 1L;
+        }
+        return c;
+    }
+
+    public void setBits(int ndx, long[] words) {
+        checkIndex(ndx);
+        checkWordCount(words.length);
+        final int start = ndx * mWordCount;
+        System.arraycopy(words, 0, mWords, start, mWordCount);
+        if (mWordCount > 0) {
+            mWords[start + mWordCount - 1] &= mLastWordMask;
+        }
+    }
+
+    public long[] getBits(int ndx, long[] words) {
+        checkIndex(ndx);
+        long[] w = null;
+        if (words != null) {
+            checkWordCount(words.length);
+            w = words;
+        } else {
+            w = new long[mWordCount];
+        }
+        System.arraycopy(mWords, ndx * mWordCount, w, 0, mWordCount);
+        return w;
+    }
+
+    public void setCoordinateQuick(int ndx, int dim, double coord) {
+        int i = ndx * mWordCount + (dim >>> 6);
+        if (coord != 0.0 && !Double.isNaN(coord)) {
+            mWords[i] |= 1L << dim;
+        } else {
+            mWords[i] &= ~(1L << dim);
+        }
+    }
+
+    public double getCoordinateQuick(int ndx, int dim) {
+        return (mWords[ndx * mWordCount + (dim >>> 6)] >>> dim) & 1L;
+    }
+
+    public double[] getDimensionValues(int dim, double[] values) {
+        checkDimension(dim);
+        double[] v = null;
+        if (values != null) {
+            if (values.length != mCount) {
+                throw new IllegalArgumentException(String
+                        .valueOf(values.length)
+                        + " != " + mCount);
+            }
+            v = values;
+        } else {
+            v = new double[mCount];
+        }
+        int ndx = dim >>> 6;
+        for (int i = 0; i < mCount; i++) {
+            v[i] = (mWords[ndx] >>> dim) & 1L;
+            ndx += mWordCount;
+        }
+        return v;
+    }
+
+    /**
+     * Overridden to count the set bits of each dimension.  The
+     * averages are the fractions of the coordinates with the bits set.
+     */
+    public double[] computeAverage(int[] indices, double[] avg) {
+        checkIndices(indices);
+        double[] rtn = null;
+        if (avg != null) {
+            checkDimensions(avg.length);
+            rtn = avg;
+        } else {
+            rtn = new double[mDim];
+        }
+        java.util.Arrays.fill(rtn, 0.0);
+        int n = indices.length;
+        if (n == 0) {
+            // No information in any dimension.
+            java.util.Arrays.fill(rtn, Double.NaN);
+            return rtn;
+        }
+        for (int i = 0; i < n; i++) {
+            int start = indices[i] * mWordCount;
+            for (int w = 0; w < mWordCount; w++) {
+                long word = mWords[start + w];
+                // Visit only the set bits.
+                while (word != 0L) {
+                    rtn[(w << 6) + Long.numberOfTrailingZeros(word)] += 1.0;
+                    word &= word - 1L;
+                }
+            }
+        }
+        for (int d = 0; d < mDim; d++) {
+            rtn[d] /= n;
+        }
+        return rtn;
+    }
+
+    private void checkWordCount(int wordCount) {
+        if (wordCount != mWordCount) {
+            throw new IllegalArgumentException(String.valueOf(wordCount) + " != "
+                    + mWordCount);
+        }
+    }
+}
@@ -18,7 +18,8 @@ public class SimpleCoordinateListFactory implements CoordinateListFactory {
 		int dimensions = sourceCoordList.getDimensionCount();
 		int coordinateCount = sourceCoordList.getCoordinateCount();
 		
-		CoordinateList coords = createCoordinateList(id, dimensions, coordinateCount);
+		CoordinateList coords = createCoordinateList(id, dimensions, coordinateCount, 
+		        CoordinatePrecision.of(sourceCoordList));
 		
 		double[] buffer = new double[dimensions];
 		for (int i=0; i<coordinateCount; i++) {
@@ -31,7 +32,14 @@ public class SimpleCoordinateListFactory implements CoordinateListFactory {
 
 	public synchronized CoordinateList createCoordinateList(String id, int dimensions,
 			int coordCount) throws IOException {
-		CoordinateList coords = new SimpleCoordinateList(dimensions, coordCount);
+		return createCoordinateList(id, dimensions, coordCount, CoordinatePrecision.DOUBLE);
+	}
+
+	public synchronized CoordinateList createCoordinateList(String id, int dimensions,
+			int coordCount, CoordinatePrecision precision) throws IOException {
+		CoordinateList coords = precision == CoordinatePrecision.FLOAT ? 
+		        new SimpleFloatCoordinateList(dimensions, coordCount) :
+		        new SimpleCoordinateList(dimensions, coordCount);
 		mCoordListMap.put(id, coords);
 		return coords;
 	}
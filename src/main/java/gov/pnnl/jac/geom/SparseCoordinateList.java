@@ -9,10 +9,14 @@ import gov.pnnl.jac.util.ExceptionUtil;
 import gov.pnnl.jac.util.SortUtils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class SparseCoordinateList extends AbstractCoordinateList {
 
+	private static final IntList EMPTY_INDICES = new IntArrayList();
+	private static final DoubleList EMPTY_VALUES = new DoubleArrayList();
+
 	private List<IntList> mNonZeroIndices;
 	private List<DoubleList> mNonZeroValues;
 	
@@ -35,12 +39,12 @@ public class SparseCoordinateList extends AbstractCoordinateList {
 				mNonZeroIndices.add(new IntArrayList());
 				mNonZeroValues.add(new DoubleArrayList());
 			}
-			for (int i=0; i<coords.length; i++) {
-				double d = coords[i];
-				if (d != 0.0) {
-					nonZeroIndices.add(i);
-					nonZeroValues.add(d);
-				}
+		}
+		for (int i=0; i<coords.length; i++) {
+			double d = coords[i];
+			if (d != 0.0) {
+				nonZeroIndices.add(i);
+				nonZeroValues.add(d);
 			}
 		}
 		if (add) {
@@ -88,6 +92,8 @@ public class SparseCoordinateList extends AbstractCoordinateList {
 	public double[] getCoordinates(int ndx, double[] coords) {
 		checkIndex(ndx);
 		double[] rtn = coords != null && coords.length >= mDim ? coords : new double[mDim];
+		// Clear out whatever was left in the buffer.
+		Arrays.fill(rtn, 0, mDim, 0.0);
 		if (ndx < mNonZeroIndices.size()) {
 			IntList nonZeroIndices = mNonZeroIndices.get(ndx);
 			DoubleList nonZeroValues = mNonZeroValues.get(ndx);
@@ -99,6 +105,79 @@ public class SparseCoordinateList extends AbstractCoordinateList {
 		return rtn;
 	}
 
+	/**
+	 * Retrieve the non-zero elements of the coordinate with the specified
+	 * index, without expanding it into an array of all the dimensions.
+	 * 
+	 * @param ndx - the coordinate index which must be in the range
+	 *   <code>[0 - getCoordinateCount()-1]</code>.
+	 * @param buffer - a <tt>SparseVector</tt> to hold the returned elements. 
+	 *   If null, a new instance is allocated and returned.
+	 * @return - the <tt>SparseVector</tt> containing the elements, which will
+	 *   be the same as the second argument if that argument is non-null.
+	 */
+	public SparseVector getSparseCoordinates(int ndx, SparseVector buffer) {
+		checkIndex(ndx);
+		SparseVector rtn = buffer != null ? buffer : new SparseVector();
+		if (ndx < mNonZeroIndices.size()) {
+			rtn.set(mDim, mNonZeroIndices.get(ndx), mNonZeroValues.get(ndx));
+		} else {
+			rtn.set(mDim, EMPTY_INDICES, EMPTY_VALUES);
+		}
+		return rtn;
+	}
+
+	/**
+	 * Overridden to sum only the non-zero elements.  As in the other
+	 * coordinate lists, NaNs are left out of the averages.
+	 */
+	@Override
+	public double[] computeAverage(int[] indices, double[] avg) {
+		checkIndices(indices);
+		double[] rtn = null;
+		if (avg != null) {
+			checkDimensions(avg.length);
+			rtn = avg;
+		} else {
+			rtn = new double[mDim];
+		}
+		Arrays.fill(rtn, 0.0);
+		// Only allocated if NaNs are encountered.
+		int[] nanCounts = null;
+		final int n = indices.length;
+		final int sz = mNonZeroIndices.size();
+		for (int i = 0; i < n; i++) {
+			int ndx = indices[i];
+			if (ndx < sz) {
+				IntList nonZeroIndices = mNonZeroIndices.get(ndx);
+				DoubleList nonZeroValues = mNonZeroValues.get(ndx);
+				final int nz = nonZeroIndices.size();
+				for (int j = 0; j < nz; j++) {
+					int d = nonZeroIndices.get(j);
+					double dv = nonZeroValues.get(j);
+					if (!Double.isNaN(dv)) {
+						rtn[d] += dv;
+					} else {
+						if (nanCounts == null) {
+							nanCounts = new int[mDim];
+						}
+						nanCounts[d]++;
+					}
+				}
+			}
+		}
+		for (int d = 0; d < mDim; d++) {
+			int ct = nanCounts != null ? n - nanCounts[d] : n;
+			if (ct >= 1) {
+				rtn[d] /= ct;
+			} else {
+				// No information in dimension d.
+				rtn[d] = Double.NaN;
+			}
+		}
+		return rtn;
+	}
+
 	@Override
 	public double getCoordinateQuick(int ndx, int dim) {
 		checkIndex(ndx);
@@ -106,7 +185,7 @@ public class SparseCoordinateList extends AbstractCoordinateList {
 		double rtn = 0.0;
 		if (ndx < mNonZeroIndices.size()) {
 			IntList nonZeroIndices = mNonZeroIndices.get(ndx);
-			int n = ListUtils.binarySearch(nonZeroIndices, ndx);
+			int n = ListUtils.binarySearch(nonZeroIndices, dim);
 			if (n >= 0) {
 				rtn = mNonZeroValues.get(ndx).get(n);
 			}
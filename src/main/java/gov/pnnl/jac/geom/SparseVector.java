@@ -0,0 +1,125 @@
+package gov.pnnl.jac.geom;
+
+import gov.pnnl.jac.collections.DoubleList;
+import gov.pnnl.jac.collections.IntList;
+
+/**
+ * <p>A view of a coordinate through its non-zero elements, such as those
+ * fetched from a <tt>SparseCoordinateList</tt>.  The indices of the non-zero
+ * elements are held in ascending order in an array paired with an array of
+ * their values.  The arrays may be longer than the number of non-zero
+ * elements, so that an instance may be reused as a buffer for coordinates
+ * with differing numbers of non-zero elements.</p>
+ *
+ * @author R. Scarberry
+ *
+ */
+public class SparseVector {
+
+    // The number of dimensions, including those with zeros.
+    private int mDim;
+    // The number of non-zero elements.
+    private int mSize;
+    private int[] mIndices;
+    private double[] mValues;
+
+    /**
+     * Constructs an empty <tt>SparseVector</tt>, which is usually passed as
+     * a buffer to <tt>SparseCoordinateList.getSparseCoordinates()</tt>.
+     */
+    public SparseVector() {
+        mIndices = new int[0];
+        mValues = new double[0];
+    }
+
+    /**
+     * Constructs a <tt>SparseVector</tt> from the indices and values of its
+     * non-zero elements.  The arrays are not copied.
+     *
+     * @param dimensions the number of dimensions.
+     * @param indices the indices of the non-zero elements, which must be in
+     *   ascending order.
+     * @param values the values of the non-zero elements.
+     *
+     * @throws IllegalArgumentException if the arrays have different lengths.
+     */
+    public SparseVector(int dimensions, int[] indices, double[] values) {
+        if (indices.length != values.length) {
+            throw new IllegalArgumentException("indices.length != values.length: " +
+                    indices.length + " != " + values.length);
+        }
+        mDim = dimensions;
+        mSize = indices.length;
+        mIndices = indices;
+        mValues = values;
+    }
+
+    /**
+     * Returns the number of dimensions, including those with zeros.
+     * @return
+     */
+    public int getDimensionCount() {
+        return mDim;
+    }
+
+    /**
+     * Returns the number of non-zero elements, which are the first
+     * elements of the arrays returned by <code>getIndices()</code>
+     * and <code>getValues()</code>.
+     * @return
+     */
+    public int getNonZeroCount() {
+        return mSize;
+    }
+
+    /**
+     * Returns the array holding the indices of the non-zero elements.
+     * This is not a copy, so it should not be modified.
+     * @return
+     */
+    public int[] getIndices() {
+        return mIndices;
+    }
+
+    /**
+     * Returns the array holding the values of the non-zero elements.
+     * This is not a copy, so it should not be modified.
+     * @return
+     */
+    public double[] getValues() {
+        return mValues;
+    }
+
+    /**
+     * Expands the vector into a dense coordinate.
+     *
+     * @param coords - an array to hold the returned coordinates.
+     *   If non-null, must be of length <code>getDimensionCount()</code>.
+     *   If null, a new array is allocated and returned with the values.
+     * @return - the array containing the values, which will be the
+     *   same as the argument if that argument is non-null.
+     */
+    public double[] toDense(double[] coords) {
+        double[] rtn = coords != null ? coords : new double[mDim];
+        java.util.Arrays.fill(rtn, 0.0);
+        for (int i = 0; i < mSize; i++) {
+            rtn[mIndices[i]] = mValues[i];
+        }
+        return rtn;
+    }
+
+    // Copies in the non-zero elements stored by a SparseCoordinateList.
+    void set(int dimensions, IntList indices, DoubleList values) {
+        final int sz = indices.size();
+        if (mIndices.length < sz) {
+            mIndices = new int[sz];
+            mValues = new double[sz];
+        }
+        for (int i = 0; i < sz; i++) {
+            mIndices[i] = indices.get(i);
+            mValues[i] = values.get(i);
+        }
+        mDim = dimensions;
+        mSize = sz;
+    }
+}
@@ -1,6 +1,6 @@
 package gov.pnnl.jac.geom.distance;
 
-public abstract class AbstractDistanceFunc implements DistanceFunc {
+public abstract class AbstractDistanceFunc implements BlockDistanceFunc {
 
     protected ColumnarDoubles mDataSource;
     
@@ -20,6 +20,21 @@ public abstract class AbstractDistanceFunc implements DistanceFunc {
         return mDataSource;
     }
     
+    /**
+     * Computes the distances by copying each coordinate of the block and
+     * calling <tt>distanceBetween()</tt>.  Subclasses should override this
+     * to loop over the block directly.
+     */
+    public void distancesBetween(double[] coord, double[] block, int start, int count, double[] distances) {
+        final int dim = coord.length;
+        final int end = start + count;
+        double[] buf = new double[dim];
+        for (int i=start, offset=start*dim; i<end; i++, offset+=dim) {
+            System.arraycopy(block, offset, buf, 0, dim);
+            distances[i] = distanceBetween(coord, buf);
+        }
+    }
+    
     public DistanceFunc clone() {
         AbstractDistanceFunc clone = null;
         try {
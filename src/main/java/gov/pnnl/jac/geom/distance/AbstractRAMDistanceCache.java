@@ -0,0 +1,179 @@
+package gov.pnnl.jac.geom.distance;
+
+/**
+ * <p>The base class of the distance caches that keep their distances in an
+ * array in memory, which is indexed by the position returned by
+ * <code>distancePos()</code>.  Subclasses determine how the distances are
+ * stored by implementing <code>distanceAt()</code> and
+ * <code>setDistanceAt()</code>.</p>
+ *
+ * @author R. Scarberry
+ *
+ */
+abstract class AbstractRAMDistanceCache implements DistanceCache {
+
+	// The maximum number of indices for a cache kept in an array.
+	// Any higher and the array would require a greater length than
+	// an int can accommodate.
+	static final int MAX_INDEX_COUNT = 0x10000;
+
+	protected int mIndexCount;
+	protected int mDistanceCount;
+
+	protected AbstractRAMDistanceCache(int indexCount) {
+		if (indexCount < 0) {
+			throw new IllegalArgumentException("number of indices < 0: " + indexCount);
+		}
+		if (indexCount > MAX_INDEX_COUNT) {
+			throw new IllegalArgumentException("number of indices greater than " + MAX_INDEX_COUNT + ": " + indexCount);
+		}
+		mIndexCount = indexCount;
+		mDistanceCount = indexCount*(indexCount-1)/2;
+	}
+
+	/**
+	 * Returns the distance stored at position pos of the array.
+	 * @param pos
+	 * @return
+	 */
+	protected abstract double distanceAt(int pos);
+
+	/**
+	 * Stores a distance at position pos of the array.
+	 * @param pos
+	 * @param distance
+	 */
+	protected abstract void setDistanceAt(int pos, double distance);
+
+	protected void checkIndex(int index) {
+		if (index < 0 || index >= mIndexCount) {
+			throw new IllegalArgumentException("index not in [0 - (" + mIndexCount + " - 1)]: " + index);
+		}
+	}
+
+	/**
+	 * Get the number of indices, N.  Valid indices for the other methods are
+	 * then [0 - (N-1)].
+	 * @return - the number of indices.
+	 */
+	public int getNumIndices() {
+		return mIndexCount;
+	}
+
+	public long getNumDistances() {
+		return (long) mDistanceCount;
+	}
+
+	public double getDistance(long n) {
+		return distanceAt((int) n);
+	}
+
+	// Returns the index into the array of the distance measure for
+	// index1 and index2.
+	protected int distanceIndex(int index1, int index2) {
+		if (index1 == index2) {
+			throw new IllegalArgumentException("indices are equal: " + index1);
+		}
+        if (index1 > index2) { // Swap them
+            index1 ^= index2;
+            index2 ^= index1;
+            index1 ^= index2;
+        }
+        int n = mIndexCount - index1;
+        return mDistanceCount - n *(n - 1)/2 + index2 - index1 - 1;
+	}
+
+	public long distancePos(int index1, int index2) {
+		return (long) distanceIndex(index1, index2);
+	}
+
+	/**
+	 * Get the distance between the entities represented by index1 and index2.
+	 * @param index1
+	 * @param index2
+	 * @return
+	 */
+	public double getDistance(int index1, int index2) {
+		checkIndex(index1);
+		checkIndex(index2);
+		double d = 0.0;
+		if (index1 != index2) {
+			d = distanceAt(distanceIndex(index1, index2));
+		}
+		return d;
+	}
+
+	/**
+	 * Get distances in bulk.  Element i of the returned array will contain the
+	 * distance between indices1[i] and indices2[i].  Therefore, indices1 and indices2
+	 * must be the same length.  If distances is non-null, it must be the same length
+	 * as indices1 and indices2.  If it's null, a new distances array is allocated and
+	 * returned.
+	 * @param indices1
+	 * @param indices2
+	 * @param distances
+	 * @return
+	 */
+	public double[] getDistances(int[] indices1, int[] indices2, double[] distances) {
+		int n = indices1.length;
+		if (n != indices2.length) {
+			throw new IllegalArgumentException(String.valueOf(n) + " != " + indices2.length);
+		}
+		double[] d = distances;
+		if (distances != null) {
+			if (distances.length != n) {
+				throw new IllegalArgumentException("distance buffer length not equal to number of indices");
+			}
+		} else {
+			d = new double[n];
+		}
+		for (int i=0; i<n; i++) {
+			d[i] = getDistance(indices1[i], indices2[i]);
+		}
+		return d;
+	}
+
+	public void getDistances(long n, double[] distances, int offset, int count) {
+		if (n < 0 || count < 0 || n + count > mDistanceCount) {
+			throw new IndexOutOfBoundsException("distances [" + n + " - " + (n + count) +
+					") not in [0 - " + mDistanceCount + ")");
+		}
+		int pos = (int) n;
+		for (int i=0; i<count; i++) {
+			distances[offset + i] = distanceAt(pos + i);
+		}
+	}
+
+	/**
+	 * Set the distance between the identities identified by index1 and index2.
+	 * @param index1
+	 * @param index2
+	 * @param distance
+	 */
+	public void setDistance(int index1, int index2, double distance) {
+		checkIndex(index1);
+		checkIndex(index2);
+		if (index1 != index2) {
+			setDistanceAt(distanceIndex(index1, index2), distance);
+		}
+	}
+
+	/**
+	 * Set distances in bulk.  All three arrays must be the same length.
+	 * @param indices1
+	 * @param indices2
+	 * @param distances
+	 */
+	public void setDistances(int[] indices1, int[] indices2, double[] distances) {
+		int n = indices1.length;
+		if (n != indices2.length) {
+			throw new IllegalArgumentException(String.valueOf(n) + " != " + indices2.length);
+		}
+		if (n != distances.length) {
+			throw new IllegalArgumentException("distance buffer length not equal to number of indices");
+		}
+		for (int i=0; i<n; i++) {
+			setDistanceAt(distanceIndex(indices1[i], indices2[i]), distances[i]);
+		}
+	}
+}
@@ -0,0 +1,274 @@
+package gov.pnnl.jac.geom.distance;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * <p>The base class of the distance caches that keep their distances in
+ * <tt>ByteBuffer</tt>s of <code>2^SEGMENT_SHIFT</code> distances each, so
+ * that the number of distances is not limited by the int indices of a
+ * buffer or an array.  Distances are read and written with the absolute
+ * get and put methods of the segments, which do not change the state of
+ * the buffers, so any number of threads may read concurrently without
+ * locking.  Threads may write distinct distances concurrently, but reads
+ * of distances being written by other threads must be ordered by the
+ * caller.  Subclasses provide the segments by implementing
+ * <code>segments()</code>.</p>
+ *
+ * @author R. Scarberry
+ *
+ */
+abstract class AbstractSegmentedDistanceCache implements DistanceCache {
+
+	// The number of distances in each segment is 2^SEGMENT_SHIFT,
+	// which is 1GB of doubles.
+	static final int SEGMENT_SHIFT = 27;
+	static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1L;
+
+	protected int mIndexCount;
+	protected long mDistanceCount;
+	// How the distances are stored in the segments.
+	protected DistanceCachePrecision mPrecision;
+	protected int mBytesPerDistance;
+	// Only used if the precision is SHORT.
+	protected double mMaxDistance = Double.NaN;
+	private double mScale;
+
+	protected AbstractSegmentedDistanceCache(int indexCount, DistanceCachePrecision precision,
+			double maxDistance) {
+		if (indexCount < 0) {
+			throw new IllegalArgumentException("number of indices < 0: " + indexCount);
+		}
+		mIndexCount = indexCount;
+		mDistanceCount = ((long)mIndexCount * ((long) mIndexCount - 1L))/2L;
+		setPrecision(precision, maxDistance);
+	}
+
+	/**
+	 * Sets the precision of the distances, which subclasses reading it from
+	 * a file may not know until after construction.
+	 * @param precision
+	 * @param maxDistance
+	 * @throws IllegalArgumentException if the precision is SHORT and maxDistance
+	 *   is not positive and finite.
+	 */
+	protected void setPrecision(DistanceCachePrecision precision, double maxDistance) {
+		if (precision == null) {
+			throw new NullPointerException();
+		}
+		mPrecision = precision;
+		mBytesPerDistance = precision.getBytesPerDistance();
+		if (precision == DistanceCachePrecision.SHORT) {
+			ShortRAMDistanceCache.checkMaxDistance(maxDistance);
+			mMaxDistance = maxDistance;
+			mScale = maxDistance/ShortRAMDistanceCache.MAX_LEVEL;
+		}
+	}
+
+	/**
+	 * Returns the segments, each holding <code>2^SEGMENT_SHIFT</code>
+	 * distances except for the last, which holds the rest.  Segment k
+	 * holds distance <code>(k << SEGMENT_SHIFT)</code> at position 0.
+	 * @return
+	 * @throws IOException
+	 */
+	protected abstract ByteBuffer[] segments() throws IOException;
+
+	/**
+	 * Returns the number of segments needed for the distances.
+	 * @return
+	 */
+	protected int segmentCount() {
+		return (int) ((mDistanceCount + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+	}
+
+	/**
+	 * Returns the number of distances in segment k.
+	 * @param k
+	 * @return
+	 */
+	protected long segmentDistanceCount(int k) {
+		return Math.min(SEGMENT_MASK + 1L, mDistanceCount - (((long) k) << SEGMENT_SHIFT));
+	}
+
+	/**
+	 * Returns the precision in which the distances are stored.
+	 * @return
+	 */
+	public DistanceCachePrecision getPrecision() {
+		return mPrecision;
+	}
+
+	/**
+	 * Returns the maximum distance that can be stored without clamping if the
+	 * precision is SHORT, otherwise NaN.
+	 * @return
+	 */
+	public double getMaxDistance() {
+		return mMaxDistance;
+	}
+
+	protected void checkIndex(int index) {
+		if (index < 0 || index >= mIndexCount) {
+			throw new IllegalArgumentException("index not in [0 - (" + mIndexCount + " - 1)]: " + index);
+		}
+	}
+
+	public long distancePos(int index1, int index2) {
+		if (index1 == index2) {
+			throw new IllegalArgumentException("indices are equal: " + index1);
+		}
+        if (index1 > index2) { // Swap them
+            index1 ^= index2;
+            index2 ^= index1;
+            index1 ^= index2;
+        }
+        long n = mIndexCount - index1;
+        return mDistanceCount - n *(n - 1)/2 + index2 - index1 - 1;
+	}
+
+	// Reads distance n from the segments.
+	private double readDistance(ByteBuffer[] segments, long n) {
+		ByteBuffer segment = segments[(int) (n >>> SEGMENT_SHIFT)];
+		int pos = ((int) (n & SEGMENT_MASK)) * mBytesPerDistance;
+		switch (mPrecision) {
+		case FLOAT:
+			return segment.getFloat(pos);
+		case SHORT:
+			return (segment.getShort(pos) & ShortRAMDistanceCache.MAX_LEVEL) * mScale;
+		default:
+			return segment.getDouble(pos);
+		}
+	}
+
+	// Writes distance n to the segments.
+	private void writeDistance(ByteBuffer[] segments, long n, double distance) {
+		ByteBuffer segment = segments[(int) (n >>> SEGMENT_SHIFT)];
+		int pos = ((int) (n & SEGMENT_MASK)) * mBytesPerDistance;
+		switch (mPrecision) {
+		case FLOAT:
+			segment.putFloat(pos, (float) distance);
+			break;
+		case SHORT:
+			segment.putShort(pos, ShortRAMDistanceCache.quantize(distance, mMaxDistance));
+			break;
+		default:
+			segment.putDouble(pos, distance);
+		}
+	}
+
+	// Returns the quantized distance n for saving, if the precision is SHORT.
+	short levelAt(long n) throws IOException {
+		return segments()[(int) (n >>> SEGMENT_SHIFT)].getShort(((int) (n & SEGMENT_MASK)) * mBytesPerDistance);
+	}
+
+	/**
+	 * Get the number of indices, N.  Valid indices for the other methods are
+	 * then [0 - (N-1)].
+	 * @return - the number of indices.
+	 */
+	public int getNumIndices() {
+		return mIndexCount;
+	}
+
+	public long getNumDistances() {
+		return mDistanceCount;
+	}
+
+	public double getDistance(long n) throws IOException {
+		return readDistance(segments(), n);
+	}
+
+	/**
+	 * Get the distance between the entities represented by index1 and index2.
+	 * @param index1
+	 * @param index2
+	 * @return
+	 */
+	public double getDistance(int index1, int index2) throws IOException {
+		checkIndex(index1);
+		checkIndex(index2);
+		return readDistance(segments(), distancePos(index1, index2));
+	}
+
+	/**
+	 * Get distances in bulk.  Element i of the returned array will contain the
+	 * distance between indices1[i] and indices2[i].  Therefore, indices1 and indices2
+	 * must be the same length.  If distances is non-null, it must be the same length
+	 * as indices1 and indices2.  If it's null, a new distances array is allocated and
+	 * returned.
+	 * @param indices1
+	 * @param indices2
+	 * @param distances
+	 * @return
+	 */
+	public double[] getDistances(int[] indices1, int[] indices2, double[] distances) throws IOException {
+		int n = indices1.length;
+		if (n != indices2.length) {
+			throw new IllegalArgumentException(String.valueOf(n) + " != " + indices2.length);
+		}
+		double[] d = distances;
+		if (distances != null) {
+			if (distances.length != n) {
+				throw new IllegalArgumentException("distance buffer length not equal to number of indices");
+			}
+		} else {
+			d = new double[n];
+		}
+		ByteBuffer[] segments = segments();
+		for (int i=0; i<n; i++) {
+			checkIndex(indices1[i]);
+			checkIndex(indices2[i]);
+			d[i] = readDistance(segments, distancePos(indices1[i], indices2[i]));
+		}
+		return d;
+	}
+
+	public void getDistances(long n, double[] distances, int offset, int count) throws IOException {
+		if (n < 0 || count < 0 || n + count > mDistanceCount) {
+			throw new IndexOutOfBoundsException("distances [" + n + " - " + (n + count) +
+					") not in [0 - " + mDistanceCount + ")");
+		}
+		ByteBuffer[] segments = segments();
+		for (int i=0; i<count; i++) {
+			distances[offset + i] = readDistance(segments, n + i);
+		}
+	}
+
+	/**
+	 * Set the distance between the identities identified by index1 and index2.
+	 * @param index1
+	 * @param index2
+	 * @param distance
+	 * @throws IOException
+	 */
+	public void setDistance(int index1, int index2, double distance) throws IOException {
+		checkIndex(index1);
+		checkIndex(index2);
+		writeDistance(segments(), distancePos(index1, index2), distance);
+	}
+
+	/**
+	 * Set distances in bulk.  All three arrays must be the same length.
+	 * @param indices1
+	 * @param indices2
+	 * @param distances
+	 */
+	public void setDistances(int[] indices1, int[] indices2, double[] distances)
+	  throws IOException {
+		int n = indices1.length;
+		if (n != indices2.length) {
+			throw new IllegalArgumentException(String.valueOf(n) + " != " + indices2.length);
+		}
+		if (n != distances.length) {
+			throw new IllegalArgumentException("distance buffer length not equal to number of indices");
+		}
+		ByteBuffer[] segments = segments();
+		for (int i=0; i<n; i++) {
+			checkIndex(indices1[i]);
+			checkIndex(indices2[i]);
+			writeDistance(segments, distancePos(indices1[i], indices2[i]), distances[i]);
+		}
+	}
+
+}
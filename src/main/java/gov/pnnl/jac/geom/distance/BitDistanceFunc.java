@@ -0,0 +1,25 @@
+package gov.pnnl.jac.geom.distance;
+
+/**
+ * <p>A <tt>DistanceFunc</tt> that can compute distances directly from
+ * binary coordinates packed 64 dimensions to a long, such as those fetched
+ * from a <tt>BitCoordinateList</tt>.  The distances are counted a word at a
+ * time with <code>Long.bitCount()</code>, and are the same as those between
+ * the coordinates expanded into 0s and 1s.</p>
+ *
+ * @author R. Scarberry
+ *
+ */
+public interface BitDistanceFunc extends DistanceFunc {
+
+    /**
+     * Compute the distance between two packed binary coordinates.
+     * The coordinates should have equal numbers of words, with the bits
+     * beyond the dimensions cleared.
+     * @param bits1
+     * @param bits2
+     * @return
+     */
+    public double distanceBetween(long[] bits1, long[] bits2);
+
+}
@@ -0,0 +1,34 @@
+package gov.pnnl.jac.geom.distance;
+
+/**
+ * <p>A <tt>DistanceFunc</tt> that can compute the distances from one
+ * coordinate to a block of coordinates in a single call.  The block is a
+ * row-major array holding the coordinates one after another, so the
+ * distances can be computed in one tight loop instead of one call per
+ * pair.</p>
+ *
+ * @author R. Scarberry
+ *
+ */
+public interface BlockDistanceFunc extends DistanceFunc {
+
+    /**
+     * Compute the distances from a coordinate to a range of the coordinates
+     * in a block.  Coordinate <code>k</code> of the block occupies
+     * <code>block[k*dim]</code> through <code>block[(k+1)*dim - 1]</code>,
+     * where <code>dim</code> is the length of <code>coord</code>.  Its
+     * distance, the same as would be returned by <code>distanceBetween()</code>,
+     * is stored in <code>distances[k]</code>.
+     *
+     * @param coord the coordinate from which to compute the distances.
+     * @param block the block of coordinates.
+     * @param start the index of the first coordinate of the block to which
+     *   the distance is computed.
+     * @param count the number of coordinates, starting with coordinate
+     *   <code>start</code>, to which distances are computed.
+     * @param distances receives the distances, of length at least
+     *   <code>start + count</code>.
+     */
+    public void distancesBetween(double[] coord, double[] block, int start, int count, double[] distances);
+
+}
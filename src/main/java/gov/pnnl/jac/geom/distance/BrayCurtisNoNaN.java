@@ -17,27 +17,15 @@ public class BrayCurtisNoNaN extends AbstractDistanceFunc {
     public BrayCurtisNoNaN() {}
 
     public double distanceBetween(double[] coord1, double[] coord2) {
-        double sigma_dif = 0.0;
-        double sigma_sum = 0.0;
-
-        for (int i = 0; i < coord1.length; i++) {
-            double samp1 = 0.0;
-            double samp2 = 0.0;
-            if (coord1[i] > 0.0) {
-                samp1 = coord1[i];
-            }
-            if (coord2[i] > 0.0) {
-                samp2 = coord2[i];
-            }
+        return DistanceKernels.brayCurtis(coord1, coord2, 0, coord1.length);
+    }
 
-            sigma_dif += Math.abs(samp1 - samp2);
-            sigma_sum += samp1 + samp2;
+    public void distancesBetween(double[] coord, double[] block, int start, int count, double[] distances) {
+        final int dim = coord.length;
+        final int end = start + count;
+        for (int j=start, offset=start*dim; j<end; j++, offset+=dim) {
+            distances[j] = DistanceKernels.brayCurtis(coord, block, offset, dim);
         }
-
-        if (sigma_sum <= 0.0)
-            return 0;
-
-        return sigma_dif / sigma_sum;
     }
 
     public String methodName() {
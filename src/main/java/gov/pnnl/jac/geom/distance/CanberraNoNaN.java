@@ -21,18 +21,15 @@ public class CanberraNoNaN extends AbstractDistanceFunc {
     }
 
     public double distanceBetween(double[] coord1, double[] coord2) {
-        double dist = 0.0;
-        int len = coord1.length;
-        for (int i = 0; i < len; i++) {
-            double c1 = coord1[i];
-            double c2 = coord2[i];
-            double num = Math.abs(c1 - c2);
-            double denom = Math.abs(c1) + Math.abs(c2);
-            if (denom > 0.0) {
-                dist += num / denom;
-            }
+        return DistanceKernels.canberraSum(coord1, coord2, 0, coord1.length);
+    }
+
+    public void distancesBetween(double[] coord, double[] block, int start, int count, double[] distances) {
+        final int dim = coord.length;
+        final int end = start + count;
+        for (int j=start, offset=start*dim; j<end; j++, offset+=dim) {
+            distances[j] = DistanceKernels.canberraSum(coord, block, offset, dim);
         }
-        return dist;
     }
 
     public int hashCode() {
@@ -9,7 +9,7 @@ package gov.pnnl.jac.geom.distance;
  * @since 3.0.0
  *
  */
-public class ChebyshevNoNaN extends AbstractDistanceFunc {
+public class ChebyshevNoNaN extends AbstractDistanceFunc implements FloatDistanceFunc {
 
 	public ChebyshevNoNaN() {}
 	
@@ -18,12 +18,46 @@ public class ChebyshevNoNaN extends AbstractDistanceFunc {
 	 */
 	@Override
 	public double distanceBetween(double[] coord1, double[] coord2) {
+        return DistanceKernels.maxAbsDifference(coord1, coord2, 0, coord1.length);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void distancesBetween(double[] coord, double[] block, int start, int count, double[] distances) {
+        final int dim = coord.length;
+        final int end = start + count;
+        for (int j=start, offset=start*dim; j<end; j++, offset+=dim) {
+            distances[j] = DistanceKernels.maxAbsDifference(coord, block, offset, dim);
+        }
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double distanceBetween(float[] coord1, float[] coord2) {
+        double dist = 0.0;
+        final int len = coord1.length;
+        for (int i = 0; i < len; i++) {
+            double diff = Math.abs((double) coord1[i] - coord2[i]);
+            if (diff > dist) {
+            	dist = diff;
+            }
+        }
+        return dist;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double distanceBetween(float[] coord1, double[] coord2) {
         double dist = 0.0;
         final int len = coord1.length;
         for (int i = 0; i < len; i++) {
-            double c1 = coord1[i];
-            double c2 = coord2[i];
-            double diff = Math.abs(c1 - c2);
+            double diff = Math.abs(coord1[i] - coord2[i]);
             if (diff > dist) {
             	dist = diff;
             }
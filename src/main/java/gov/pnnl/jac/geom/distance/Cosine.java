@@ -14,7 +14,13 @@ import gov.pnnl.jac.geom.*;
  * @author not attributable
  * @version 1.0
  */
-public final class Cosine extends AbstractDistanceFunc {
+public final class Cosine extends AbstractDistanceFunc implements FloatDistanceFunc, NormedDistanceFunc, SparseDistanceFunc {
+
+    // Norms outside of this range, other than 0, are not used, since 
+    // the dot products computed with them might overflow or lose
+    // precision.  distanceBetween() avoids that by scaling the coordinates.
+    private static final double MIN_NORM = 1.0e-100;
+    private static final double MAX_NORM = 1.0e100;
 
     public Cosine() {
     }
@@ -30,7 +36,35 @@ public final class Cosine extends AbstractDistanceFunc {
                 CoordinateMath.absMax(coord1),
                 CoordinateMath.absMax(coord2)); 
         
-        final int dim = coord1.length;
+        return scaledDistance(coord1, coord2, 0, coord1.length, maxA);
+    }
+
+    public void distancesBetween(double[] coord, double[] block, int start, int count, double[] distances) {
+
+        final int dim = coord.length;
+        final int end = start + count;
+        final double coordMax = CoordinateMath.absMax(coord);
+
+        for (int j=start, offset=start*dim; j<end; j++, offset+=dim) {
+
+            double rowMax = 0.0;
+            for (int i=0; i<dim; i++) {
+                double a = Math.abs(block[offset + i]);
+                if (a > rowMax) {
+                    rowMax = a;
+                }
+            }
+            double maxA = Math.max(coordMax, rowMax);
+
+            distances[j] = scaledDistance(coord, block, offset, dim, maxA);
+        }
+    }
+
+    // The distance between coord1 and the dim elements of coord2 starting at
+    // offset2, scaling both by maxA, the greatest of their absolute values, so
+    // the sums can neither overflow nor underflow.
+    private static double scaledDistance(double[] coord1, double[] coord2, int offset2, 
+            int dim, double maxA) {
 
         double cos = 1.0;
         double sx = 0.0, sy = 0.0, sxy = 0.0;
@@ -38,7 +72,7 @@ public final class Cosine extends AbstractDistanceFunc {
         if (maxA > 0.0) {
             for (int i=0; i<dim; i++) {
                 double dx = coord1[i];
-                double dy = coord2[i];
+                double dy = coord2[offset2 + i];
                 if (!Double.isNaN(dx) && !Double.isNaN(dy)) {
                     dx /= maxA;
                     dy /= maxA;
@@ -55,6 +89,92 @@ public final class Cosine extends AbstractDistanceFunc {
         return 1.0 - Math.abs(cos);
     }
 
+    public double norm(double[] coord) {
+        return usableNorm(DistanceKernels.dot(coord, coord, 0, coord.length));
+    }
+    
+    // Returns the norm if it's safe to use, NaN otherwise.
+    private static double usableNorm(double norm) {
+        return norm == 0.0 || (norm >= MIN_NORM && norm <= MAX_NORM) ? norm : Double.NaN;
+    }
+
+    public double distanceBetween(double[] coord1, double norm1, double[] coord2, double norm2) {
+        if (Double.isNaN(norm1) || Double.isNaN(norm2)) {
+            return distanceBetween(coord1, coord2);
+        }
+        return distanceFromDot(DistanceKernels.dot(coord1, coord2, 0, coord1.length), norm1, norm2);
+    }
+
+    public void distancesBetween(double[] coord, double norm, double[] block, double[] blockNorms, 
+            int start, int count, double[] distances) {
+        if (Double.isNaN(norm)) {
+            distancesBetween(coord, block, start, count, distances);
+            return;
+        }
+        final int dim = coord.length;
+        final int end = start + count;
+        double[] buf = null;
+        for (int j=start, offset=start*dim; j<end; j++, offset+=dim) {
+            double rowNorm = blockNorms[j];
+            if (!Double.isNaN(rowNorm)) {
+                distances[j] = distanceFromDot(DistanceKernels.dot(coord, block, offset, dim), norm, rowNorm);
+            } else {
+                if (buf == null) {
+                    buf = new double[dim];
+                }
+                System.arraycopy(block, offset, buf, 0, dim);
+                distances[j] = distanceBetween(coord, buf);
+            }
+        }
+    }
+
+    // Coordinates with NaNs or with unusable norms are expanded and passed to
+    // distanceBetween().
+    public double distanceBetween(SparseVector coord1, SparseVector coord2) {
+        double norm1 = usableNorm(DistanceKernels.sumSquares(coord1));
+        double norm2 = usableNorm(DistanceKernels.sumSquares(coord2));
+        if (Double.isNaN(norm1) || Double.isNaN(norm2)) {
+            return distanceBetween(coord1.toDense(null), coord2.toDense(null));
+        }
+        return distanceFromDot(DistanceKernels.dot(coord1, coord2), norm1, norm2);
+    }
+
+    public double distanceBetween(SparseVector coord1, double[] coord2, double norm2) {
+        double norm1 = usableNorm(DistanceKernels.sumSquares(coord1));
+        if (Double.isNaN(norm1) || Double.isNaN(norm2)) {
+            return distanceBetween(coord1.toDense(null), coord2);
+        }
+        return distanceFromDot(DistanceKernels.dot(coord1, coord2), norm1, norm2);
+    }
+
+    // Same as distanceBetween() when sxy is 0.0: the cosine is taken to be 1.
+    private static double distanceFromDot(double dot, double norm1, double norm2) {
+        double cos = 1.0;
+        if (dot != 0.0) {
+            cos = dot/Math.sqrt(norm1*norm2);
+        }
+        return 1.0 - Math.abs(cos);
+    }
+
+    // The float coordinates are widened, so the distances are exactly those 
+    // of the widened coordinates.
+    public double distanceBetween(float[] coord1, float[] coord2) {
+        return distanceBetween(widen(coord1), widen(coord2));
+    }
+
+    public double distanceBetween(float[] coord1, double[] coord2) {
+        return distanceBetween(widen(coord1), coord2);
+    }
+
+    private static double[] widen(float[] coord) {
+        final int dim = coord.length;
+        double[] rtn = new double[dim];
+        for (int i=0; i<dim; i++) {
+            rtn[i] = coord[i];
+        }
+        return rtn;
+    }
+
     public int hashCode() {
     	return BasicDistanceMethod.COSINE.name().hashCode();
     }
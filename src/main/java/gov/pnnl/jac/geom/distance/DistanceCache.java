@@ -32,6 +32,26 @@ public interface DistanceCache extends ReadOnlyDistanceCache {
 	 */
 	public double[] getDistances(int[] indices1, int[] indices2, double[] distances) throws IOException;
 	
+	/**
+	 * Get count consecutive distances in bulk, starting with distance n, into
+	 * distances beginning at offset.  Since the distances between index i and
+	 * the indices j > i are consecutive, starting at <code>distancePos(i, i+1)</code>,
+	 * this reads a row of the triangular layout more efficiently than
+	 * <code>getDistance(i, j)</code> for each j.  The default implementation
+	 * reads them one at a time with <code>getDistance(long)</code>, and should
+	 * be overridden by caches able to read them in bulk.
+	 * @param n
+	 * @param distances
+	 * @param offset
+	 * @param count
+	 * @throws IOException
+	 */
+	public default void getDistances(long n, double[] distances, int offset, int count) throws IOException {
+		for (int i=0; i<count; i++) {
+			distances[offset + i] = getDistance(n + i);
+		}
+	}
+	
 	/**
 	 * Set the distance between the identities identified by index1 and index2.
 	 * @param index1
@@ -15,12 +15,54 @@ public class DistanceCacheFactory {
 		long memoryThreshold, 
 		long fileThreshold, 
 		File cacheFile) throws IOException {
+		return newDistanceCache(coordinateCount, memoryThreshold, fileThreshold, 
+				cacheFile, DistanceCachePrecision.DOUBLE, Double.NaN);
+	}
+	
+	/**
+	 * Creates a distance cache storing its distances in the specified precision.
+	 * The cache is kept in memory if its size is no greater than the memory threshold,
+	 * in a file if it is no greater than the file threshold, otherwise null is 
+	 * returned.  Storing distances in lower precision lets more coordinates fit
+	 * under each threshold.  In-memory caches for more than 
+	 * <code>RAMDistanceCache.MAX_INDEX_COUNT</code> coordinates are kept off the
+	 * heap in an <tt>OffHeapDistanceCache</tt>.
+	 * 
+	 * @param coordinateCount the number of coordinates.
+	 * @param memoryThreshold the maximum size in bytes of a cache kept in memory.
+	 * @param fileThreshold the maximum size in bytes of a cache kept in a file.
+	 * @param cacheFile the file used if the cache is kept in a file.
+	 * @param precision the precision of the stored distances.
+	 * @param maxDistance the maximum distance to be stored without clamping if
+	 *   the precision is SHORT, ignored otherwise.
+	 *   
+	 * @return the cache or null.
+	 * 
+	 * @throws IOException
+	 */
+	public static DistanceCache newDistanceCache(
+		int coordinateCount,
+		long memoryThreshold, 
+		long fileThreshold, 
+		File cacheFile,
+		DistanceCachePrecision precision,
+		double maxDistance) throws IOException {
 		
-		long size = distanceCacheSize(coordinateCount);
+		long size = distanceCacheSize(coordinateCount, precision);
 		if (size <= memoryThreshold) {
-			return new RAMDistanceCache(coordinateCount);
+			if (coordinateCount > RAMDistanceCache.MAX_INDEX_COUNT) {
+				return new OffHeapDistanceCache(coordinateCount, precision, maxDistance);
+			}
+			switch (precision) {
+			case FLOAT:
+				return new FloatRAMDistanceCache(coordinateCount);
+			case SHORT:
+				return new ShortRAMDistanceCache(coordinateCount, maxDistance);
+			default:
+				return new RAMDistanceCache(coordinateCount);
+			}
 		} else if (size <= fileThreshold) {
-			return new FileDistanceCache(coordinateCount, cacheFile);
+			return new FileDistanceCache(coordinateCount, cacheFile, precision, maxDistance);
 		}
 		
 		return null;
@@ -40,11 +82,39 @@ public class DistanceCacheFactory {
 	}
 	
 	public static long distanceCacheSize(int coordinateCount) {
-		return 4L + 4L*coordinateCount*((long)coordinateCount - 1);
+		return distanceCacheSize(coordinateCount, DistanceCachePrecision.DOUBLE);
+	}
+	
+	/**
+	 * Returns the size in bytes of a cache of distances in the specified precision
+	 * for the specified number of coordinates.
+	 * 
+	 * @param coordinateCount
+	 * @param precision
+	 * @return
+	 */
+	public static long distanceCacheSize(int coordinateCount, DistanceCachePrecision precision) {
+		long distanceCount = ((long) coordinateCount * ((long) coordinateCount - 1L))/2L;
+		return FileDistanceCache.headerLength(precision) + precision.getBytesPerDistance()*distanceCount;
 	}
 	
 	public static int coordinateLimit(long byteThreshold) {
-		return (int) ((Math.sqrt(16.0 + 16.0 * (byteThreshold - 4L)) + 4.0)/8.0);
+		return coordinateLimit(byteThreshold, DistanceCachePrecision.DOUBLE);
+	}
+	
+	/**
+	 * Returns the maximum number of coordinates whose distances in the specified
+	 * precision can be cached in the specified number of bytes.
+	 * 
+	 * @param byteThreshold
+	 * @param precision
+	 * @return
+	 */
+	public static int coordinateLimit(long byteThreshold, DistanceCachePrecision precision) {
+		// Solves n(n - 1)/2 = (byteThreshold - headerLength)/bytesPerDistance for n.
+		double distanceCount = (double) (byteThreshold - FileDistanceCache.headerLength(precision))/
+				precision.getBytesPerDistance();
+		return (int) ((Math.sqrt(1.0 + 8.0 * distanceCount) + 1.0)/2.0);
 	}
 	
 	public static int[] getIndicesForDistance(long pos, ReadOnlyDistanceCache cache) {
@@ -135,8 +205,33 @@ public class DistanceCacheFactory {
 				dos.writeInt(cache.getNumIndices());
 				long numDistances = cache.getNumDistances();
 				
-				for (long d=0L; d<numDistances; d++) {
-					dos.writeDouble(cache.getDistance(d));
+				// Written in the same format as a FileDistanceCache of the 
+				// same precision.
+				switch (DistanceCachePrecision.of(cache)) {
+				case FLOAT:
+					for (long d=0L; d<numDistances; d++) {
+						dos.writeFloat((float) cache.getDistance(d));
+					}
+					break;
+				case SHORT:
+					if (cache instanceof OffHeapDistanceCache) {
+						OffHeapDistanceCache offHeapCache = (OffHeapDistanceCache) cache;
+						dos.writeDouble(offHeapCache.getMaxDistance());
+						for (long d=0L; d<numDistances; d++) {
+							dos.writeShort(offHeapCache.levelAt(d));
+						}
+					} else {
+						ShortRAMDistanceCache shortCache = (ShortRAMDistanceCache) cache;
+						dos.writeDouble(shortCache.getMaxDistance());
+						for (int d=0; d<numDistances; d++) {
+							dos.writeShort(shortCache.levelAt(d));
+						}
+					}
+					break;
+				default:
+					for (long d=0L; d<numDistances; d++) {
+						dos.writeDouble(cache.getDistance(d));
+					}
 				}
 				
 			} finally {
@@ -167,9 +262,9 @@ public class DistanceCacheFactory {
 			dis = new DataInputStream(new BufferedInputStream(new FileInputStream(f)));
 			
 			int numIndices = dis.readInt();
-			long expectedLen = distanceCacheSize(numIndices);
+			DistanceCachePrecision precision = FileDistanceCache.precisionForFileLength(numIndices, flen);
 			
-			if (numIndices < 0 || flen != expectedLen) {
+			if (precision == null) {
 				throw new IOException("invalid distance cache file");
 			}
 			
@@ -177,12 +272,57 @@ public class DistanceCacheFactory {
 				
 				int numDistances = numIndices*(numIndices - 1)/2;
 				
-				double[] distances = new double[numDistances];
-				for (int i=0; i<numDistances; i++) {
-					distances[i] = dis.readDouble();
+				switch (precision) {
+				case FLOAT:
+					float[] floatDistances = new float[numDistances];
+					for (int i=0; i<numDistances; i++) {
+						floatDistances[i] = dis.readFloat();
+					}
+					cache = new FloatRAMDistanceCache(numIndices, floatDistances);
+					break;
+				case SHORT:
+					double maxDistance = dis.readDouble();
+					short[] shortDistances = new short[numDistances];
+					for (int i=0; i<numDistances; i++) {
+						shortDistances[i] = dis.readShort();
+					}
+					cache = new ShortRAMDistanceCache(numIndices, maxDistance, shortDistances);
+					break;
+				default:
+					double[] distances = new double[numDistances];
+					for (int i=0; i<numDistances; i++) {
+						distances[i] = dis.readDouble();
+					}
+					cache = new RAMDistanceCache(numIndices, distances);
 				}
 				
-				cache = new RAMDistanceCache(numIndices, distances);
+			} else if (flen <= memoryThreshold) {
+				
+				double maxDistance = precision == DistanceCachePrecision.SHORT ?
+						dis.readDouble() : Double.NaN;
+				OffHeapDistanceCache offHeapCache = new OffHeapDistanceCache(numIndices, 
+						precision, maxDistance);
+				
+				// Distances are in the same order as the indices (i, j > i) 
+				// iterated row by row.
+				for (int i=0; i<numIndices - 1; i++) {
+					for (int j=i+1; j<numIndices; j++) {
+						double distance;
+						switch (precision) {
+						case FLOAT:
+							distance = dis.readFloat();
+							break;
+						case SHORT:
+							distance = (dis.readShort() & ShortRAMDistanceCache.MAX_LEVEL) * 
+								maxDistance/ShortRAMDistanceCache.MAX_LEVEL;
+							break;
+						default:
+							distance = dis.readDouble();
+						}
+						offHeapCache.setDistance(i, j, distance);
+					}
+				}
+				cache = offHeapCache;
 				
 			} else if (flen <= fileThreshold) {
 				
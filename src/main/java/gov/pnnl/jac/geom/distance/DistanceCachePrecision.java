@@ -0,0 +1,69 @@
+package gov.pnnl.jac.geom.distance;
+
+/**
+ * <p>The precision in which a <tt>DistanceCache</tt> stores its distances.
+ * Distance caches always return distances as doubles, but those created with
+ * lower precisions store them in a half or a quarter of the memory, so that
+ * the distances for more coordinates fit under a given memory or file
+ * threshold.</p>
+ *
+ * @author R. Scarberry
+ *
+ */
+public enum DistanceCachePrecision {
+
+    /**
+     * 8-byte double precision distances.
+     */
+    DOUBLE(8),
+
+    /**
+     * 4-byte single precision distances.
+     */
+    FLOAT(4),
+
+    /**
+     * 2-byte distances quantized to 65,536 evenly spaced levels from 0 to a
+     * maximum distance given when the cache is created.  Distances are stored
+     * with an error of at most 1/131,070th of the maximum, and those outside
+     * of the range are stored as the nearer endpoint, without any error being
+     * raised.  The maximum must therefore be no less than any distance that
+     * will be stored, including distances derived from others such as Ward
+     * linkage distances, which can exceed every distance between the
+     * coordinates.
+     */
+    SHORT(2);
+
+    private int mBytesPerDistance;
+
+    private DistanceCachePrecision(int bytesPerDistance) {
+        mBytesPerDistance = bytesPerDistance;
+    }
+
+    /**
+     * Returns the number of bytes used to store each distance.
+     *
+     * @return
+     */
+    public int getBytesPerDistance() {
+        return mBytesPerDistance;
+    }
+
+    /**
+     * Returns the precision of a distance cache.
+     *
+     * @param cache
+     *
+     * @return
+     */
+    public static DistanceCachePrecision of(DistanceCache cache) {
+        if (cache instanceof FloatRAMDistanceCache) {
+            return FLOAT;
+        } else if (cache instanceof ShortRAMDistanceCache) {
+            return SHORT;
+        } else if (cache instanceof AbstractSegmentedDistanceCache) {
+            return ((AbstractSegmentedDistanceCache) cache).getPrecision();
+        }
+        return DOUBLE;
+    }
+}
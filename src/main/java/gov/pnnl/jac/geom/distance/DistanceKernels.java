@@ -0,0 +1,232 @@
+package gov.pnnl.jac.geom.distance;
+
+import gov.pnnl.jac.geom.SparseVector;
+
+/**
+ * <p>The inner loops shared by the built-in distance functions, each
+ * comparing a coordinate <code>a</code> to the coordinate starting at
+ * <code>bOffset</code> in <code>b</code>, so the same loop serves both
+ * <code>distanceBetween()</code> and the rows of
+ * <code>distancesBetween()</code>.</p>
+ *
+ * <p>For coordinates of <code>UNROLL_THRESHOLD</code> or more dimensions,
+ * the Euclidean and Manhattan sums and the dot products are accumulated in
+ * four independent lanes that are combined at the end.  A single running sum
+ * makes every addition wait on the one before it, while the lanes let the
+ * processor overlap them.  Summing in lanes can change the last bits of a
+ * result, so shorter coordinates, for which the savings are small, are still
+ * summed in order.  NaNs propagate to the results just as they do in the
+ * in-order loops.  The other loops are bound by their divisions or
+ * comparisons rather than by the additions, and are not split.</p>
+ *
+ * @author R. Scarberry
+ *
+ */
+final class DistanceKernels {
+
+    /**
+     * The minimum number of dimensions for which the lanes are used.
+     */
+    static final int UNROLL_THRESHOLD = 32;
+
+    private DistanceKernels() {}
+
+    /**
+     * Returns the sum of the squared differences.
+     */
+    static double sumSquaredDifferences(double[] a, double[] b, int bOffset, int len) {
+        if (len < UNROLL_THRESHOLD) {
+            double sum = 0.0;
+            for (int i = 0; i < len; i++) {
+                double d = b[bOffset + i] - a[i];
+                sum += d*d;
+            }
+            return sum;
+        }
+        double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+        final int limit = len & ~3;
+        int i = 0;
+        for (int j = bOffset; i < limit; i += 4, j += 4) {
+            double d0 = b[j] - a[i];
+            double d1 = b[j + 1] - a[i + 1];
+            double d2 = b[j + 2] - a[i + 2];
+            double d3 = b[j + 3] - a[i + 3];
+            s0 += d0*d0;
+            s1 += d1*d1;
+            s2 += d2*d2;
+            s3 += d3*d3;
+        }
+        for (; i < len; i++) {
+            double d = b[bOffset + i] - a[i];
+            s0 += d*d;
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Returns the sum of the absolute differences.
+     */
+    static double sumAbsDifferences(double[] a, double[] b, int bOffset, int len) {
+        if (len < UNROLL_THRESHOLD) {
+            double sum = 0.0;
+            for (int i = 0; i < len; i++) {
+                sum += Math.abs(b[bOffset + i] - a[i]);
+            }
+            return sum;
+        }
+        double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+        final int limit = len & ~3;
+        int i = 0;
+        for (int j = bOffset; i < limit; i += 4, j += 4) {
+            s0 += Math.abs(b[j] - a[i]);
+            s1 += Math.abs(b[j + 1] - a[i + 1]);
+            s2 += Math.abs(b[j + 2] - a[i + 2]);
+            s3 += Math.abs(b[j + 3] - a[i + 3]);
+        }
+        for (; i < len; i++) {
+            s0 += Math.abs(b[bOffset + i] - a[i]);
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Returns the dot product.
+     */
+    static double dot(double[] a, double[] b, int bOffset, int len) {
+        if (len < UNROLL_THRESHOLD) {
+            double sum = 0.0;
+            for (int i = 0; i < len; i++) {
+                sum += a[i]*b[bOffset + i];
+            }
+            return sum;
+        }
+        double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+        final int limit = len & ~3;
+        int i = 0;
+        for (int j = bOffset; i < limit; i += 4, j += 4) {
+            s0 += a[i]*b[j];
+            s1 += a[i + 1]*b[j + 1];
+            s2 += a[i + 2]*b[j + 2];
+            s3 += a[i + 3]*b[j + 3];
+        }
+        for (; i < len; i++) {
+            s0 += a[i]*b[bOffset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Returns the sum of the squares of the non-zero elements.
+     */
+    static double sumSquares(SparseVector v) {
+        final double[] values = v.getValues();
+        final int n = v.getNonZeroCount();
+        double sum = 0.0;
+        for (int i = 0; i < n; i++) {
+            sum += values[i]*values[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the dot product of two sparse vectors, merging the
+     * indices of their non-zero elements.
+     */
+    static double dot(SparseVector a, SparseVector b) {
+        final int[] aIndices = a.getIndices(), bIndices = b.getIndices();
+        final double[] aValues = a.getValues(), bValues = b.getValues();
+        final int aCount = a.getNonZeroCount(), bCount = b.getNonZeroCount();
+        double sum = 0.0;
+        int i = 0, j = 0;
+        while (i < aCount && j < bCount) {
+            int ai = aIndices[i], bj = bIndices[j];
+            if (ai == bj) {
+                sum += aValues[i++]*bValues[j++];
+            } else if (ai < bj) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the dot product of a sparse vector and a dense vector.
+     */
+    static double dot(SparseVector a, double[] b) {
+        final int[] indices = a.getIndices();
+        final double[] values = a.getValues();
+        final int n = a.getNonZeroCount();
+        double sum = 0.0;
+        for (int i = 0; i < n; i++) {
+            sum += values[i]*b[indices[i]];
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the Tanimoto distance between packed binary coordinates,
+     * 1 less the ratio of the bits set in both to the bits set in either.
+     */
+    static double tanimoto(long[] a, long[] b) {
+        final int len = a.length;
+        int both = 0, either = 0;
+        for (int i = 0; i < len; i++) {
+            both += Long.bitCount(a[i] & b[i]);
+            either += Long.bitCount(a[i] | b[i]);
+        }
+        return either != 0 ? 1.0 - (double) both/either : 0.0;
+    }
+
+    /**
+     * Returns the maximum absolute difference, ignoring differences
+     * that are NaN.
+     */
+    static double maxAbsDifference(double[] a, double[] b, int bOffset, int len) {
+        double max = 0.0;
+        for (int i = 0; i < len; i++) {
+            double d = Math.abs(b[bOffset + i] - a[i]);
+            if (d > max) {
+                max = d;
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Returns the Canberra sum of <code>|a - b|/(|a| + |b|)</code>, skipping
+     * the dimensions in which both are 0.
+     */
+    static double canberraSum(double[] a, double[] b, int bOffset, int len) {
+        double sum = 0.0;
+        for (int i = 0; i < len; i++) {
+            double c1 = a[i];
+            double c2 = b[bOffset + i];
+            double denom = Math.abs(c1) + Math.abs(c2);
+            if (denom > 0.0) {
+                sum += Math.abs(c1 - c2) / denom;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the Bray-Curtis dissimilarity, with negative values
+     * treated as 0.
+     */
+    static double brayCurtis(double[] a, double[] b, int bOffset, int len) {
+        double sigmaDif = 0.0;
+        double sigmaSum = 0.0;
+        for (int i = 0; i < len; i++) {
+            double samp1 = a[i] > 0.0 ? a[i] : 0.0;
+            double samp2 = b[bOffset + i] > 0.0 ? b[bOffset + i] : 0.0;
+            sigmaDif += Math.abs(samp1 - samp2);
+            sigmaSum += samp1 + samp2;
+        }
+        if (sigmaSum <= 0.0) {
+            return 0.0;
+        }
+        return sigmaDif / sigmaSum;
+    }
+}
@@ -2,7 +2,7 @@ package gov.pnnl.jac.geom.distance;
 
 import gov.pnnl.jac.geom.*;
 
-public class Euclidean extends AbstractDistanceFunc {
+public class Euclidean extends AbstractDistanceFunc implements SquaredDistanceFunc {
 
     private boolean[] mColumnFlags;
     private double[] mColumnReplacementValues;
@@ -28,6 +28,18 @@ public class Euclidean extends AbstractDistanceFunc {
     }
     
     public double distanceBetween(double[] coord1, double[] coord2) {
+        return Math.sqrt(squaredDistanceBetween(coord1, coord2));
+    }
+    
+    public double squaredDistanceBetween(double[] coord1, double[] coord2) {
+        // Without NaNs, the sum is the same as that computed by 
+        // squaredDistanceWithNaNs(), so there's no need to check every
+        // difference.  A NaN anywhere makes the sum NaN.
+        double distSq = DistanceKernels.sumSquaredDifferences(coord1, coord2, 0, coord1.length);
+        return !Double.isNaN(distSq) ? distSq : squaredDistanceWithNaNs(coord1, coord2);
+    }
+    
+    private double squaredDistanceWithNaNs(double[] coord1, double[] coord2) {
         // To count the number of columns with NaN in coord1 and/or coord2
         int nanDimensions = 0;
         
@@ -92,7 +104,35 @@ public class Euclidean extends AbstractDistanceFunc {
             distSq *= dim/(dim - nanDimensions);
         }
 
-        return Math.sqrt(distSq);
+        return distSq;
+    }
+
+    public void distancesBetween(double[] coord, double[] block, int start, int count, double[] distances) {
+        squaredDistancesBetween(coord, block, start, count, distances);
+        final int end = start + count;
+        for (int j=start; j<end; j++) {
+            distances[j] = Math.sqrt(distances[j]);
+        }
+    }
+
+    // Rows without NaNs are computed directly.  Those with NaNs are copied
+    // and passed to squaredDistanceWithNaNs().
+    public void squaredDistancesBetween(double[] coord, double[] block, int start, int count, double[] distances) {
+        final int dim = coord.length;
+        final int end = start + count;
+        double[] buf = null;
+        for (int j=start, offset=start*dim; j<end; j++, offset+=dim) {
+            double distSq = DistanceKernels.sumSquaredDifferences(coord, block, offset, dim);
+            if (!Double.isNaN(distSq)) {
+                distances[j] = distSq;
+            } else {
+                if (buf == null) {
+                    buf = new double[dim];
+                }
+                System.arraycopy(block, offset, buf, 0, dim);
+                distances[j] = squaredDistanceWithNaNs(coord, buf);
+            }
+        }
     }
 
     public String methodName() {
@@ -1,5 +1,7 @@
 package gov.pnnl.jac.geom.distance;
 
+import gov.pnnl.jac.geom.SparseVector;
+
 /**
  * <p>Title: </p>
  *
@@ -12,7 +14,7 @@ package gov.pnnl.jac.geom.distance;
  * @author not attributable
  * @version 1.0
  */
-public class EuclideanNoNaN extends AbstractDistanceFunc {
+public class EuclideanNoNaN extends AbstractDistanceFunc implements FloatDistanceFunc, SquaredDistanceFunc, SparseDistanceFunc {
 
     public EuclideanNoNaN() {
     }
@@ -22,6 +24,40 @@ public class EuclideanNoNaN extends AbstractDistanceFunc {
     }
     
     public double distanceBetween(double[] coord1, double[] coord2) {
+        return Math.sqrt(DistanceKernels.sumSquaredDifferences(coord1, coord2, 0, coord1.length));
+    }
+    
+    public double squaredDistanceBetween(double[] coord1, double[] coord2) {
+        return DistanceKernels.sumSquaredDifferences(coord1, coord2, 0, coord1.length);
+    }
+    
+    public void distancesBetween(double[] coord, double[] block, int start, int count, double[] distances) {
+        squaredDistancesBetween(coord, block, start, count, distances);
+        final int end = start + count;
+        for (int j=start; j<end; j++) {
+            distances[j] = Math.sqrt(distances[j]);
+        }
+    }
+    
+    public void squaredDistancesBetween(double[] coord, double[] block, int start, int count, double[] distances) {
+        final int dim = coord.length;
+        final int end = start + count;
+        for (int j=start, offset=start*dim; j<end; j++, offset+=dim) {
+            distances[j] = DistanceKernels.sumSquaredDifferences(coord, block, offset, dim);
+        }
+    }
+    
+    public double distanceBetween(float[] coord1, float[] coord2) {
+        double distSq = 0.0;
+        int dim = coord1.length;
+        for (int i = 0; i < dim; i++) {
+            double d = (double) coord2[i] - coord1[i];
+            distSq += d*d;
+        }
+        return Math.sqrt(distSq);
+    }
+    
+    public double distanceBetween(float[] coord1, double[] coord2) {
         double distSq = 0.0;
         int dim = coord1.length;
         for (int i = 0; i < dim; i++) {
@@ -31,6 +67,58 @@ public class EuclideanNoNaN extends AbstractDistanceFunc {
         return Math.sqrt(distSq);
     }
     
+    public double distanceBetween(SparseVector coord1, SparseVector coord2) {
+        final int[] indices1 = coord1.getIndices(), indices2 = coord2.getIndices();
+        final double[] values1 = coord1.getValues(), values2 = coord2.getValues();
+        final int count1 = coord1.getNonZeroCount(), count2 = coord2.getNonZeroCount();
+        double distSq = 0.0;
+        int i = 0, j = 0;
+        while (i < count1 && j < count2) {
+            int ndx1 = indices1[i], ndx2 = indices2[j];
+            double d;
+            if (ndx1 == ndx2) {
+                d = values2[j++] - values1[i++];
+            } else if (ndx1 < ndx2) {
+                d = values1[i++];
+            } else {
+                d = values2[j++];
+            }
+            distSq += d*d;
+        }
+        for (; i < count1; i++) {
+            distSq += values1[i]*values1[i];
+        }
+        for (; j < count2; j++) {
+            distSq += values2[j]*values2[j];
+        }
+        return Math.sqrt(distSq);
+    }
+    
+    public double norm(double[] coord) {
+        return DistanceKernels.dot(coord, coord, 0, coord.length);
+    }
+    
+    public double distanceBetween(SparseVector coord1, double[] coord2, double norm2) {
+        final int[] indices = coord1.getIndices();
+        final double[] values = coord1.getValues();
+        final int n = coord1.getNonZeroCount();
+        double distSq = 0.0;
+        // The part of norm2 from the elements also in coord1.
+        double shared = 0.0;
+        for (int i = 0; i < n; i++) {
+            double c = coord2[indices[i]];
+            double d = c - values[i];
+            distSq += d*d;
+            shared += c*c;
+        }
+        // What's left of norm2 comes from the elements where coord1 is 0.
+        double rest = norm2 - shared;
+        if (rest > 0.0) {
+            distSq += rest;
+        }
+        return Math.sqrt(distSq);
+    }
+    
     public int hashCode() {
     	return BasicDistanceMethod.EUCLIDEAN_NO_NAN.name().hashCode();
     }
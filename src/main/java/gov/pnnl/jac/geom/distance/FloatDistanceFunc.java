@@ -0,0 +1,34 @@
+package gov.pnnl.jac.geom.distance;
+
+/**
+ * <p>A <tt>DistanceFunc</tt> that can also compute distances directly from
+ * single precision coordinates, such as those fetched from a
+ * <tt>FloatCoordinateList</tt>.  The arithmetic is still performed in
+ * double precision, so the results are the same as widening the
+ * coordinates first.</p>
+ *
+ * @author R. Scarberry
+ *
+ */
+public interface FloatDistanceFunc extends DistanceFunc {
+
+    /**
+     * Compute the distance between two single precision coordinates.
+     * The coordinates should have equal lengths.
+     * @param coord1
+     * @param coord2
+     * @return
+     */
+    public double distanceBetween(float[] coord1, float[] coord2);
+
+    /**
+     * Compute the distance between a single precision coordinate and a
+     * double precision coordinate, such as a cluster center.
+     * The coordinates should have equal lengths.
+     * @param coord1
+     * @param coord2
+     * @return
+     */
+    public double distanceBetween(float[] coord1, double[] coord2);
+
+}
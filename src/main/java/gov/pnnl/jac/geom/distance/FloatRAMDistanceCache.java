@@ -0,0 +1,36 @@
+package gov.pnnl.jac.geom.distance;
+
+/**
+ * <p>The single precision counterpart of <tt>RAMDistanceCache</tt>, which
+ * keeps the distances in a float array in memory, half the size of the
+ * double array.  Distances are rounded to the nearest float when they
+ * are set.</p>
+ *
+ * @author R. Scarberry
+ *
+ */
+public class FloatRAMDistanceCache extends AbstractRAMDistanceCache {
+
+	private float[] mDistances;
+
+	public FloatRAMDistanceCache(int indexCount) {
+		super(indexCount);
+		mDistances = new float[mDistanceCount];
+	}
+
+	FloatRAMDistanceCache(int indexCount, float[] distances) {
+		super(indexCount);
+		if (distances.length != mDistanceCount) {
+			throw new IllegalArgumentException("invalid number of distances: " + distances.length + " != " + mDistanceCount);
+		}
+		mDistances = distances;
+	}
+
+	protected double distanceAt(int pos) {
+		return mDistances[pos];
+	}
+
+	protected void setDistanceAt(int pos, double distance) {
+		mDistances[pos] = (float) distance;
+	}
+}
@@ -44,6 +44,14 @@ public class Manhattan extends AbstractDistanceFunc {
     }
     
     public double distanceBetween(double[] coord1, double[] coord2) {
+        // Without NaNs, the sum is the same as that computed by 
+        // distanceWithNaNs(), so there's no need to check every
+        // difference.  A NaN anywhere makes the sum NaN.
+        double dist = DistanceKernels.sumAbsDifferences(coord1, coord2, 0, coord1.length);
+        return !Double.isNaN(dist) ? dist : distanceWithNaNs(coord1, coord2);
+    }
+    
+    private double distanceWithNaNs(double[] coord1, double[] coord2) {
         // To count the number of columns with NaN in coord1 and/or coord2
         int nanDimensions = 0;
         
@@ -110,6 +118,26 @@ public class Manhattan extends AbstractDistanceFunc {
         return dist;
     }
 
+    // Rows without NaNs are computed directly.  Those with NaNs are copied
+    // and passed to distanceWithNaNs().
+    public void distancesBetween(double[] coord, double[] block, int start, int count, double[] distances) {
+        final int dim = coord.length;
+        final int end = start + count;
+        double[] buf = null;
+        for (int j=start, offset=start*dim; j<end; j++, offset+=dim) {
+            double dist = DistanceKernels.sumAbsDifferences(coord, block, offset, dim);
+            if (!Double.isNaN(dist)) {
+                distances[j] = dist;
+            } else {
+                if (buf == null) {
+                    buf = new double[dim];
+                }
+                System.arraycopy(block, offset, buf, 0, dim);
+                distances[j] = distanceWithNaNs(coord, buf);
+            }
+        }
+    }
+
     private double getNaNReplacement(int column) {
         Double replacement = Double.NaN;
         if (mDataSource != null) {
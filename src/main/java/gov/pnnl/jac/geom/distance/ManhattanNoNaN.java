@@ -12,7 +12,7 @@ package gov.pnnl.jac.geom.distance;
  * @author not attributable
  * @version 1.0
  */
-public class ManhattanNoNaN extends AbstractDistanceFunc {
+public class ManhattanNoNaN extends AbstractDistanceFunc implements FloatDistanceFunc {
 
     public ManhattanNoNaN() {
     }
@@ -22,6 +22,27 @@ public class ManhattanNoNaN extends AbstractDistanceFunc {
     }
     
     public double distanceBetween(double[] coord1, double[] coord2) {
+        return DistanceKernels.sumAbsDifferences(coord1, coord2, 0, coord1.length);
+    }
+
+    public void distancesBetween(double[] coord, double[] block, int start, int count, double[] distances) {
+        final int dim = coord.length;
+        final int end = start + count;
+        for (int j=start, offset=start*dim; j<end; j++, offset+=dim) {
+            distances[j] = DistanceKernels.sumAbsDifferences(coord, block, offset, dim);
+        }
+    }
+
+    public double distanceBetween(float[] coord1, float[] coord2) {
+        double dist = 0.0;
+        int dim = coord1.length;
+        for (int i=0; i<dim; i++) {
+            dist += Math.abs((double) coord2[i] - coord1[i]);
+        }
+        return dist;
+    }
+
+    public double distanceBetween(float[] coord1, double[] coord2) {
         double dist = 0.0;
         int dim = coord1.length;
         for (int i=0; i<dim; i++) {
@@ -0,0 +1,59 @@
+package gov.pnnl.jac.geom.distance;
+
+/**
+ * <p>A <tt>DistanceFunc</tt> whose distances depend on the lengths of the
+ * coordinates as well as on their dot product, such as <tt>Cosine</tt> and
+ * <tt>TanimotoNoNaN</tt>.  The length of a coordinate that takes part in many
+ * distance computations, such as a row compared to every other row when
+ * clustering hierarchically, or a cluster center in an iteration of k-means,
+ * may be computed once with <tt>norm()</tt> and passed to the methods taking
+ * norms, which then only have to compute the dot products.</p>
+ *
+ * <p>The results may differ in the last bits from those of the methods
+ * without norms, since the terms are summed differently.</p>
+ *
+ * @author R. Scarberry
+ *
+ */
+public interface NormedDistanceFunc extends BlockDistanceFunc {
+
+    /**
+     * Returns the norm of a coordinate to pass to the other methods of this
+     * interface, which is the sum of the squares of its elements.  May be NaN
+     * if the coordinate cannot be handled with a precomputed norm, in which
+     * case the other methods fall back to the methods without norms.
+     *
+     * @param coord
+     * @return
+     */
+    public double norm(double[] coord);
+
+    /**
+     * Compute the distance between two coordinates, given their norms.
+     * The coordinates should have equal lengths.
+     * @param coord1
+     * @param norm1 the value returned by <code>norm(coord1)</code>.
+     * @param coord2
+     * @param norm2 the value returned by <code>norm(coord2)</code>.
+     * @return
+     */
+    public double distanceBetween(double[] coord1, double norm1, double[] coord2, double norm2);
+
+    /**
+     * The analogue of <code>distancesBetween()</code> taking norms.
+     * The norm of coordinate <code>k</code> of the block is taken from
+     * <code>blockNorms[k]</code>, and its distance is stored in 
+     * <code>distances[k]</code>.
+     *
+     * @param coord
+     * @param norm the value returned by <code>norm(coord)</code>.
+     * @param block
+     * @param blockNorms
+     * @param start
+     * @param count
+     * @param distances
+     */
+    public void distancesBetween(double[] coord, double norm, double[] block, double[] blockNorms, 
+            int start, int count, double[] distances);
+
+}
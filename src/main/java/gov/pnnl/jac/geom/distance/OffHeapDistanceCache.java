@@ -0,0 +1,57 @@
+package gov.pnnl.jac.geom.distance;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * <p>A distance cache keeping its distances in memory outside of the Java heap,
+ * in direct <tt>ByteBuffer</tt>s of <code>2^SEGMENT_SHIFT</code> distances each.
+ * Unlike the caches backed by arrays, it is not limited to
+ * <code>RAMDistanceCache.MAX_INDEX_COUNT</code> indices, and it does not enlarge
+ * the heap.  The memory is limited instead by the JVM option
+ * <code>-XX:MaxDirectMemorySize</code>, which defaults to the maximum heap size.
+ * It is released when the cache is garbage collected.</p>
+ *
+ * <p>Any number of threads may read the distances concurrently without locking.
+ * Threads may write distinct distances concurrently, but reads of distances being
+ * written by other threads must be ordered by the caller.</p>
+ *
+ * @author R. Scarberry
+ *
+ */
+public class OffHeapDistanceCache extends AbstractSegmentedDistanceCache {
+
+	private ByteBuffer[] mSegments;
+
+	public OffHeapDistanceCache(int indexCount) {
+		this(indexCount, DistanceCachePrecision.DOUBLE, Double.NaN);
+	}
+
+	/**
+	 * Constructs a cache storing its distances in the specified precision.
+	 *
+	 * @param indexCount the number of indices.
+	 * @param precision the precision of the stored distances.
+	 * @param maxDistance the maximum distance to be stored without clamping
+	 *   if the precision is SHORT, ignored otherwise.
+	 *
+	 * @throws IllegalArgumentException if the precision is SHORT and maxDistance
+	 *   is not positive and finite.
+	 * @throws OutOfMemoryError if the direct memory is exhausted.
+	 */
+	public OffHeapDistanceCache(int indexCount, DistanceCachePrecision precision, double maxDistance) {
+		super(indexCount, precision, maxDistance);
+		int segmentCount = segmentCount();
+		mSegments = new ByteBuffer[segmentCount];
+		for (int i=0; i<segmentCount; i++) {
+			// Native order, since the distances are never shared with other
+			// platforms in this form.
+			mSegments[i] = ByteBuffer.allocateDirect((int) (segmentDistanceCount(i) * mBytesPerDistance))
+					.order(ByteOrder.nativeOrder());
+		}
+	}
+
+	protected ByteBuffer[] segments() {
+		return mSegments;
+	}
+}
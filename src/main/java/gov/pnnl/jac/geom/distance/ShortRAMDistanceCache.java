@@ -0,0 +1,91 @@
+package gov.pnnl.jac.geom.distance;
+
+/**
+ * <p>A distance cache keeping its distances in a short array in memory, a
+ * quarter the size of the double array of a <tt>RAMDistanceCache</tt>.
+ * Each distance is quantized to one of 65,536 evenly spaced levels from 0
+ * to the maximum distance given to the constructor.  Distances outside of
+ * that range are stored as the nearer endpoint, and NaNs as the maximum.
+ * Distances that differ by less than the spacing between the levels may
+ * be stored as equal, which is usually harmless when the cache is used to
+ * find nearest neighbors.</p>
+ *
+ * @author R. Scarberry
+ *
+ */
+public class ShortRAMDistanceCache extends AbstractRAMDistanceCache {
+
+	// The number of levels less 1.
+	static final int MAX_LEVEL = 0xFFFF;
+
+	private double mMaxDistance;
+	// The distance between successive levels, mMaxDistance/MAX_LEVEL.
+	private double mScale;
+	private short[] mDistances;
+
+	/**
+	 * Constructs a cache for distances from 0 to maxDistance.
+	 *
+	 * @param indexCount the number of indices.
+	 * @param maxDistance the maximum distance to be stored without clamping.
+	 *
+	 * @throws IllegalArgumentException if maxDistance is not positive and finite.
+	 */
+	public ShortRAMDistanceCache(int indexCount, double maxDistance) {
+		super(indexCount);
+		checkMaxDistance(maxDistance);
+		mMaxDistance = maxDistance;
+		mScale = maxDistance/MAX_LEVEL;
+		mDistances = new short[mDistanceCount];
+	}
+
+	ShortRAMDistanceCache(int indexCount, double maxDistance, short[] distances) {
+		super(indexCount);
+		checkMaxDistance(maxDistance);
+		if (distances.length != mDistanceCount) {
+			throw new IllegalArgumentException("invalid number of distances: " + distances.length + " != " + mDistanceCount);
+		}
+		mMaxDistance = maxDistance;
+		mScale = maxDistance/MAX_LEVEL;
+		mDistances = distances;
+	}
+
+	/**
+	 * Returns the maximum distance that can be stored without clamping.
+	 * @return
+	 */
+	public double getMaxDistance() {
+		return mMaxDistance;
+	}
+
+	// Returns the quantized distance at pos for saving.
+	short levelAt(int pos) {
+		return mDistances[pos];
+	}
+
+	protected double distanceAt(int pos) {
+		return (mDistances[pos] & MAX_LEVEL) * mScale;
+	}
+
+	protected void setDistanceAt(int pos, double distance) {
+		mDistances[pos] = quantize(distance, mMaxDistance);
+	}
+
+	// Quantizes a distance to the nearest level.  Shared with
+	// FileDistanceCache.
+	static short quantize(double distance, double maxDistance) {
+		if (distance >= maxDistance || Double.isNaN(distance)) {
+			return (short) MAX_LEVEL;
+		}
+		if (distance <= 0.0) {
+			return 0;
+		}
+		return (short) Math.round(distance/maxDistance*MAX_LEVEL);
+	}
+
+	static void checkMaxDistance(double maxDistance) {
+		if (!(maxDistance > 0.0) || Double.isInfinite(maxDistance)) {
+			throw new IllegalArgumentException("maximum distance not positive and finite: " + maxDistance);
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package gov.pnnl.jac.geom.distance;
+
+import gov.pnnl.jac.geom.SparseVector;
+
+/**
+ * <p>A <tt>DistanceFunc</tt> that can compute distances from the non-zero
+ * elements of coordinates, such as those fetched from a
+ * <tt>SparseCoordinateList</tt> with <tt>getSparseCoordinates()</tt>.
+ * The cost then depends on the numbers of non-zero elements instead of on
+ * the number of dimensions, which matters for coordinates with many
+ * dimensions of which only a few are non-zero, such as term vectors of
+ * documents.</p>
+ *
+ * <p>A sparse coordinate may also be compared to a dense one, such as a
+ * cluster center, given the norm of the dense coordinate.  The norm of a
+ * coordinate compared to many others only has to be computed once.</p>
+ *
+ * @author R. Scarberry
+ *
+ */
+public interface SparseDistanceFunc extends DistanceFunc {
+
+    /**
+     * Compute the distance between two sparse coordinates, which should
+     * have the same number of dimensions.
+     * @param coord1
+     * @param coord2
+     * @return
+     */
+    public double distanceBetween(SparseVector coord1, SparseVector coord2);
+
+    /**
+     * Returns the norm of a dense coordinate to pass to 
+     * <code>distanceBetween(SparseVector, double[], double)</code>, which is
+     * the sum of the squares of its elements.  May be NaN if the coordinate
+     * cannot be handled with a precomputed norm, in which case the sparse
+     * coordinate is expanded to compute the distance.
+     * @param coord
+     * @return
+     */
+    public double norm(double[] coord);
+
+    /**
+     * Compute the distance between a sparse coordinate and a dense
+     * coordinate, given the norm of the dense coordinate.
+     * @param coord1
+     * @param coord2
+     * @param norm2 the value returned by <code>norm(coord2)</code>.
+     * @return
+     */
+    public double distanceBetween(SparseVector coord1, double[] coord2, double norm2);
+
+}
@@ -1,54 +1,365 @@
 package gov.pnnl.jac.geom.distance;
 
-import java.io.IOException;
+import gov.pnnl.jac.collections.LongDoubleHashMap;
 
+/**
+ * <p>A distance cache keeping only some of the distances in memory, in a hash
+ * map keyed by distance position, so that it can be used for more coordinates
+ * than fit in a <tt>RAMDistanceCache</tt> or a <tt>FileDistanceCache</tt>.
+ * Distances greater than a threshold are never stored.  If a number of nearest
+ * neighbors k is specified, the distances set before <code>finishSelection()</code>
+ * is called are also dropped unless they are among the k nearest of one of their
+ * indices.  Among equal distances, those to lower indices are nearer, so the
+ * distances kept do not depend on the order in which they are set, and the
+ * nearest neighbor of each index, the lowest at the least distance, is always
+ * kept.  Each distance should be set only once before then.</p>
+ *
+ * <p>Distances that are not stored are <i>missing</i> and are returned as
+ * <code>MISSING</code>, positive infinity, since all that is known of them is that
+ * they are greater than those stored.  Setting a distance to <code>MISSING</code>
+ * or NaN removes it.  So the minimum of a missing and a stored distance is the
+ * stored distance, while their maximum or weighted mean is missing, which lets
+ * the hierarchical clustering tasks update the cache for single, complete or
+ * mean linkage.  Single and complete linkage merges below the threshold are the
+ * same as with all distances cached.</p>
+ *
+ * <p>The methods are synchronized, since the hash map cannot be read while
+ * another thread is writing it.</p>
+ *
+ * @author R. Scarberry
+ *
+ */
 public class SparseRAMDistanceCache implements DistanceCache {
 
+	/**
+	 * The value returned for distances that are not stored.
+	 */
+	public static final double MISSING = Double.POSITIVE_INFINITY;
+
+	private int mIndexCount;
+	private long mDistanceCount;
+	private double mThreshold;
+	private int mNearestNeighborCount;
+
+	// The stored distances, keyed by distancePos().
+	private LongDoubleHashMap mDistances;
+
+	// The k nearest neighbors of each index found so far, held in max-heaps
+	// of the indices and their distances at [i*k, (i+1)*k), ordered by
+	// distance, then by index.  Only allocated
+	// until finishSelection() is called, and only if k > 0.
+	private int[] mNeighbors;
+	private double[] mNeighborDistances;
+	private int[] mNeighborCounts;
+
+	/**
+	 * Constructs a cache storing all finite distances.
+	 * @param indexCount the number of indices.
+	 */
 	public SparseRAMDistanceCache(int indexCount) {
-		
+		this(indexCount, MISSING, 0);
 	}
-	
-	public double[] getDistances(int[] indices1, int[] indices2,
-			double[] distances) throws IOException {
-		// TODO Auto-generated method stub
-		return null;
+
+	/**
+	 * Constructs a cache storing the distances no greater than a threshold.
+	 * @param indexCount the number of indices.
+	 * @param threshold the greatest distance stored.
+	 */
+	public SparseRAMDistanceCache(int indexCount, double threshold) {
+		this(indexCount, threshold, 0);
 	}
 
-	public void setDistance(int index1, int index2, double distance)
-			throws IOException {
-		// TODO Auto-generated method stub
+	/**
+	 * Constructs a cache storing the distances no greater than a threshold which,
+	 * until <code>finishSelection()</code> is called, are also among the nearest
+	 * neighbors of one of their indices.
+	 * @param indexCount the number of indices.
+	 * @param threshold the greatest distance stored.
+	 * @param nearestNeighborCount the number of nearest neighbors of each index
+	 *   whose distances are kept, or 0 to keep them all.
+	 */
+	public SparseRAMDistanceCache(int indexCount, double threshold, int nearestNeighborCount) {
+		if (indexCount < 0) {
+			throw new IllegalArgumentException("number of indices < 0: " + indexCount);
+		}
+		if (Double.isNaN(threshold)) {
+			throw new IllegalArgumentException("threshold is NaN");
+		}
+		if (nearestNeighborCount < 0) {
+			throw new IllegalArgumentException("number of nearest neighbors < 0: " + nearestNeighborCount);
+		}
+		mIndexCount = indexCount;
+		mDistanceCount = ((long) indexCount * ((long) indexCount - 1L))/2L;
+		mThreshold = threshold;
+		mNearestNeighborCount = nearestNeighborCount;
+		if (nearestNeighborCount > 0) {
+			long heapSize = (long) indexCount * nearestNeighborCount;
+			if (heapSize > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("too many nearest neighbors for " + indexCount +
+						" indices: " + nearestNeighborCount);
+			}
+			mNeighbors = new int[(int) heapSize];
+			mNeighborDistances = new double[(int) heapSize];
+			mNeighborCounts = new int[indexCount];
+			mDistances = new LongDoubleHashMap((int) heapSize);
+		} else {
+			mDistances = new LongDoubleHashMap();
+		}
+		mDistances.setMissingValue(MISSING);
+	}
 
+	/**
+	 * Returns the greatest distance stored.
+	 * @return
+	 */
+	public double getThreshold() {
+		return mThreshold;
 	}
 
-	public void setDistances(int[] indices1, int[] indices2, double[] distances)
-			throws IOException {
-		// TODO Auto-generated method stub
+	/**
+	 * Returns the number of nearest neighbors of each index whose distances are
+	 * kept until <code>finishSelection()</code> is called, or 0 if the distances
+	 * are not selected by nearest neighbors.
+	 * @return
+	 */
+	public int getNearestNeighborCount() {
+		return mNearestNeighborCount;
+	}
 
+	/**
+	 * Returns the number of distances currently stored.
+	 * @return
+	 */
+	public synchronized int getStoredDistanceCount() {
+		return mDistances.size();
 	}
 
-	public long distancePos(int index1, int index2) {
-		// TODO Auto-generated method stub
-		return 0;
+	/**
+	 * Stops dropping distances that are not among the nearest neighbors of their
+	 * indices, which should be done after every distance has been set once.
+	 * Subsequently, all distances no greater than the threshold are stored.
+	 */
+	public synchronized void finishSelection() {
+		mNeighbors = null;
+		mNeighborDistances = null;
+		mNeighborCounts = null;
 	}
 
-	public double getDistance(int index1, int index2) throws IOException {
-		// TODO Auto-generated method stub
-		return 0;
+	private void checkIndex(int index) {
+		if (index < 0 || index >= mIndexCount) {
+			throw new IllegalArgumentException("index not in [0 - (" + mIndexCount + " - 1)]: " + index);
+		}
 	}
 
-	public double getDistance(long n) throws IOException {
-		// TODO Auto-generated method stub
-		return 0;
+	public long distancePos(int index1, int index2) {
+		if (index1 == index2) {
+			throw new IllegalArgumentException("indices are equal: " + index1);
+		}
+        if (index1 > index2) { // Swap them
+            index1 ^= index2;
+            index2 ^= index1;
+            index1 ^= index2;
+        }
+        long n = mIndexCount - index1;
+        return mDistanceCount - n *(n - 1)/2 + index2 - index1 - 1;
+	}
+
+	/**
+	 * Get the number of indices, N.  Valid indices for the other methods are
+	 * then [0 - (N-1)].
+	 * @return - the number of indices.
+	 */
+	public int getNumIndices() {
+		return mIndexCount;
 	}
 
 	public long getNumDistances() {
-		// TODO Auto-generated method stub
-		return 0;
+		return mDistanceCount;
 	}
 
-	public int getNumIndices() {
-		// TODO Auto-generated method stub
-		return 0;
+	public synchronized double getDistance(long n) {
+		return mDistances.get(n);
+	}
+
+	/**
+	 * Get the distance between the entities represented by index1 and index2,
+	 * which is <code>MISSING</code> if not stored.
+	 * @param index1
+	 * @param index2
+	 * @return
+	 */
+	public synchronized double getDistance(int index1, int index2) {
+		checkIndex(index1);
+		checkIndex(index2);
+		return index1 != index2 ? mDistances.get(distancePos(index1, index2)) : 0.0;
 	}
 
+	/**
+	 * Get distances in bulk.  Element i of the returned array will contain the
+	 * distance between indices1[i] and indices2[i].  Therefore, indices1 and indices2
+	 * must be the same length.  If distances is non-null, it must be the same length
+	 * as indices1 and indices2.  If it's null, a new distances array is allocated and
+	 * returned.
+	 * @param indices1
+	 * @param indices2
+	 * @param distances
+	 * @return
+	 */
+	public synchronized double[] getDistances(int[] indices1, int[] indices2, double[] distances) {
+		int n = indices1.length;
+		if (n != indices2.length) {
+			throw new IllegalArgumentException(String.valueOf(n) + " != " + indices2.length);
+		}
+		double[] d = distances;
+		if (distances != null) {
+			if (distances.length != n) {
+				throw new IllegalArgumentException("distance buffer length not equal to number of indices");
+			}
+		} else {
+			d = new double[n];
+		}
+		for (int i=0; i<n; i++) {
+			d[i] = getDistance(indices1[i], indices2[i]);
+		}
+		return d;
+	}
+
+	public synchronized void getDistances(long n, double[] distances, int offset, int count) {
+		if (n < 0 || count < 0 || n + count > mDistanceCount) {
+			throw new IndexOutOfBoundsException("distances [" + n + " - " + (n + count) +
+					") not in [0 - " + mDistanceCount + ")");
+		}
+		for (int i=0; i<count; i++) {
+			distances[offset + i] = mDistances.get(n + i);
+		}
+	}
+
+	/**
+	 * Set the distance between the identities identified by index1 and index2.
+	 * The distance is removed if it is greater than the threshold, NaN, or not
+	 * among the nearest neighbors of either index while they are being selected.
+	 * @param index1
+	 * @param index2
+	 * @param distance
+	 */
+	public synchronized void setDistance(int index1, int index2, double distance) {
+		checkIndex(index1);
+		checkIndex(index2);
+		if (index1 != index2) {
+			setDistanceQuick(index1, index2, distance);
+		}
+	}
+
+	/**
+	 * Set distances in bulk.  All three arrays must be the same length.
+	 * @param indices1
+	 * @param indices2
+	 * @param distances
+	 */
+	public synchronized void setDistances(int[] indices1, int[] indices2, double[] distances) {
+		int n = indices1.length;
+		if (n != indices2.length) {
+			throw new IllegalArgumentException(String.valueOf(n) + " != " + indices2.length);
+		}
+		if (n != distances.length) {
+			throw new IllegalArgumentException("distance buffer length not equal to number of indices");
+		}
+		for (int i=0; i<n; i++) {
+			setDistance(indices1[i], indices2[i], distances[i]);
+		}
+	}
+
+	private void setDistanceQuick(int index1, int index2, double distance) {
+		long pos = distancePos(index1, index2);
+		if (!(distance <= mThreshold && distance < MISSING)) {
+			mDistances.remove(pos);
+		} else if (mNeighbors == null) {
+			mDistances.put(pos, distance);
+		} else {
+			int displaced1 = offerNeighbor(index1, index2, distance);
+			int displaced2 = offerNeighbor(index2, index1, distance);
+			if (displaced1 != index2 || displaced2 != index1) {
+				mDistances.put(pos, distance);
+				// A displaced neighbor's distance is only kept if it is still
+				// among the nearest of the other index.
+				if (displaced1 >= 0 && displaced1 != index2 && !isNeighbor(displaced1, index1)) {
+					mDistances.remove(distancePos(index1, displaced1));
+				}
+				if (displaced2 >= 0 && displaced2 != index1 && !isNeighbor(displaced2, index2)) {
+					mDistances.remove(distancePos(index2, displaced2));
+				}
+			}
+		}
+	}
+
+	// Offers neighbor with the specified distance to the nearest neighbors of
+	// index.  Returns neighbor if it is not one of the nearest, otherwise the
+	// neighbor it displaced, or -1 if there was room for it.
+	private int offerNeighbor(int index, int neighbor, double distance) {
+		final int k = mNearestNeighborCount;
+		final int base = index*k;
+		int count = mNeighborCounts[index];
+		if (count < k) {
+			// Sift up from the end of the heap.
+			int pos = count;
+			while (pos > 0) {
+				int parent = (pos - 1)/2;
+				if (!isNearer(mNeighborDistances[base + parent], mNeighbors[base + parent],
+						distance, neighbor)) {
+					break;
+				}
+				mNeighbors[base + pos] = mNeighbors[base + parent];
+				mNeighborDistances[base + pos] = mNeighborDistances[base + parent];
+				pos = parent;
+			}
+			mNeighbors[base + pos] = neighbor;
+			mNeighborDistances[base + pos] = distance;
+			mNeighborCounts[index] = count + 1;
+			return -1;
+		}
+		if (!isNearer(distance, neighbor, mNeighborDistances[base], mNeighbors[base])) {
+			return neighbor;
+		}
+		int displaced = mNeighbors[base];
+		// Sift down from the root, which is replaced.
+		int pos = 0;
+		while (true) {
+			int child = 2*pos + 1;
+			if (child >= k) {
+				break;
+			}
+			if (child + 1 < k && isNearer(mNeighborDistances[base + child], mNeighbors[base + child],
+					mNeighborDistances[base + child + 1], mNeighbors[base + child + 1])) {
+				child++;
+			}
+			if (isNearer(mNeighborDistances[base + child], mNeighbors[base + child],
+					distance, neighbor)) {
+				break;
+			}
+			mNeighbors[base + pos] = mNeighbors[base + child];
+			mNeighborDistances[base + pos] = mNeighborDistances[base + child];
+			pos = child;
+		}
+		mNeighbors[base + pos] = neighbor;
+		mNeighborDistances[base + pos] = distance;
+		return displaced;
+	}
+
+	// Returns whether neighbor1 at distance1 is nearer than neighbor2 at
+	// distance2, the lower index being nearer if the distances are equal.
+	private static boolean isNearer(double distance1, int neighbor1, double distance2, int neighbor2) {
+		return distance1 < distance2 || (distance1 == distance2 && neighbor1 < neighbor2);
+	}
+
+	// Returns whether neighbor is among the nearest neighbors of index.
+	private boolean isNeighbor(int index, int neighbor) {
+		final int base = index*mNearestNeighborCount;
+		final int lim = base + mNeighborCounts[index];
+		for (int i=base; i<lim; i++) {
+			if (mNeighbors[i] == neighbor) {
+				return true;
+			}
+		}
+		return false;
+	}
 }
@@ -0,0 +1,37 @@
+package gov.pnnl.jac.geom.distance;
+
+/**
+ * <p>A <tt>DistanceFunc</tt> whose distances are square roots, which can
+ * return the squared distances without taking them.  Since squaring does not
+ * change the order of distances, searches for the nearest coordinate, such as
+ * assigning coordinates to their nearest cluster centers, can compare the
+ * squared distances instead.</p>
+ *
+ * @author R. Scarberry
+ *
+ */
+public interface SquaredDistanceFunc extends BlockDistanceFunc {
+
+    /**
+     * Compute the square of the distance between two coordinates.
+     * The coordinates should have equal lengths.
+     * @param coord1
+     * @param coord2
+     * @return
+     */
+    public double squaredDistanceBetween(double[] coord1, double[] coord2);
+
+    /**
+     * The squared analogue of <code>distancesBetween()</code>, storing the
+     * square of the distance to coordinate <code>k</code> of the block
+     * in <code>distances[k]</code>.
+     *
+     * @param coord
+     * @param block
+     * @param start
+     * @param count
+     * @param distances
+     */
+    public void squaredDistancesBetween(double[] coord, double[] block, int start, int count, double[] distances);
+
+}
@@ -1,5 +1,7 @@
 package gov.pnnl.jac.geom.distance;
 
+import gov.pnnl.jac.geom.SparseVector;
+
 /**
  * <p>Title: </p>
  *
@@ -12,7 +14,7 @@ package gov.pnnl.jac.geom.distance;
  * @author not attributable
  * @version 1.0
  */
-public class TanimotoNoNaN extends AbstractDistanceFunc {
+public class TanimotoNoNaN extends AbstractDistanceFunc implements NormedDistanceFunc, SparseDistanceFunc, BitDistanceFunc {
 
     public TanimotoNoNaN() {
     }
@@ -35,6 +37,60 @@ public class TanimotoNoNaN extends AbstractDistanceFunc {
         return sdenom != 0.0 ? 1.0 - snum/sdenom : 0.0;
     }
 
+    public void distancesBetween(double[] coord, double[] block, int start, int count, double[] distances) {
+        final int dim = coord.length;
+        final int end = start + count;
+        for (int j=start, offset=start*dim; j<end; j++, offset+=dim) {
+            double snum = 0.0;
+            double sdenom = 0.0;
+            for (int i=0; i<dim; i++) {
+                double x = coord[i];
+                double y = block[offset + i];
+                double xy = x*y;
+                snum += xy;
+                sdenom += (x*x + y*y - xy);
+            }
+            distances[j] = sdenom != 0.0 ? 1.0 - snum/sdenom : 0.0;
+        }
+    }
+
+    public double norm(double[] coord) {
+        return DistanceKernels.dot(coord, coord, 0, coord.length);
+    }
+
+    public double distanceBetween(double[] coord1, double norm1, double[] coord2, double norm2) {
+        return distanceFromDot(DistanceKernels.dot(coord1, coord2, 0, coord1.length), norm1, norm2);
+    }
+
+    public void distancesBetween(double[] coord, double norm, double[] block, double[] blockNorms, 
+            int start, int count, double[] distances) {
+        final int dim = coord.length;
+        final int end = start + count;
+        for (int j=start, offset=start*dim; j<end; j++, offset+=dim) {
+            distances[j] = distanceFromDot(DistanceKernels.dot(coord, block, offset, dim), norm, blockNorms[j]);
+        }
+    }
+
+    public double distanceBetween(SparseVector coord1, SparseVector coord2) {
+        return distanceFromDot(DistanceKernels.dot(coord1, coord2), 
+                DistanceKernels.sumSquares(coord1), DistanceKernels.sumSquares(coord2));
+    }
+
+    public double distanceBetween(SparseVector coord1, double[] coord2, double norm2) {
+        return distanceFromDot(DistanceKernels.dot(coord1, coord2), 
+                DistanceKernels.sumSquares(coord1), norm2);
+    }
+
+    public double distanceBetween(long[] bits1, long[] bits2) {
+        return DistanceKernels.tanimoto(bits1, bits2);
+    }
+
+    // The denominator of distanceBetween() is the sum of the norms less the dot product.
+    private static double distanceFromDot(double dot, double norm1, double norm2) {
+        double denom = norm1 + norm2 - dot;
+        return denom != 0.0 ? 1.0 - dot/denom : 0.0;
+    }
+
     public int hashCode() {
     	return BasicDistanceMethod.TANIMOTO_NO_NAN.name().hashCode();
     }
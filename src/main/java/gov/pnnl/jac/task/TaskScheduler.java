@@ -9,6 +9,8 @@ import java.util.Set;
 import java.util.concurrent.AbstractExecutorService;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.SynchronousQueue;
@@ -26,6 +28,12 @@ import java.util.concurrent.atomic.AtomicInteger;
  *   TaskScheduler.schedule(task);
  * </code>
  * 
+ * <p>Tasks that divide their work among concurrently-executing subtasks, 
+ * such as the clustering tasks, should invoke them using 
+ * <tt>invokeSubtasks()</tt>.  All such subtasks then share one process-wide 
+ * work-stealing pool, so running several tasks at once, or tasks that run 
+ * other tasks from their subtasks, does not oversubscribe the processors.</p>
+ * 
  * @author D3J923
  *
  */
@@ -40,6 +48,12 @@ public final class TaskScheduler {
 	private static long mKeepAliveTime = 60L;
 	private static TimeUnit mKeepAliveTimeUnit = TimeUnit.SECONDS;
 	
+	// The work-stealing pool shared by all tasks for executing their subtasks.
+	private static volatile ForkJoinPool mSubtaskPool;
+	
+	// The target parallelism of the subtask pool.
+	private static int mSubtaskParallelism = Runtime.getRuntime().availableProcessors();
+	
 	// The currently-running tasks.  Keys and values are the same.  Used as a set
 	// even though it's a map, since IdentityHashSets do not exist.
 	private final static Map<Task<?>, Task<?>> mRunningTasks = 
@@ -211,6 +225,84 @@ public final class TaskScheduler {
 		mExecutor = null;
 	}
 	
+	/**
+	 * Sets the number of threads the pool shared by all tasks for executing
+	 * their subtasks tries to keep active.  This defaults to the number of 
+	 * processors.  If the pool already exists, it is replaced for tasks 
+	 * invoking subtasks from then on.  The old pool is not shut down, since 
+	 * callers may still hold it, and subtasks running on it invoke their 
+	 * nested subtasks on it.  Its threads exit once it has drained.
+	 * 
+	 * @param parallelism the target parallelism.
+	 * 
+	 * @throws IllegalArgumentException if parallelism is less than or equal to zero.
+	 */
+	public synchronized static void setSubtaskParallelism(int parallelism) {
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("parallelism must be positive");
+		}
+		if (parallelism != mSubtaskParallelism) {
+			mSubtaskParallelism = parallelism;
+			// The next call to getSubtaskPool() creates the new pool.
+			mSubtaskPool = null;
+		}
+	}
+	
+	/**
+	 * Returns the target parallelism of the pool shared by all tasks for 
+	 * executing their subtasks.
+	 * 
+	 * @return the target parallelism
+	 * @see #setSubtaskParallelism
+	 */
+	public synchronized static int getSubtaskParallelism() {
+		return mSubtaskParallelism;
+	}
+	
+	/**
+	 * Returns the process-wide work-stealing pool on which tasks execute their
+	 * subtasks.  Callers should not shut it down.
+	 * 
+	 * @return the subtask pool
+	 */
+	public static ForkJoinPool getSubtaskPool() {
+		ForkJoinPool pool = mSubtaskPool;
+		if (pool == null) {
+			synchronized (TaskScheduler.class) {
+				pool = mSubtaskPool;
+				if (pool == null) {
+					// The worker threads of a ForkJoinPool are daemons.
+					pool = mSubtaskPool = new ForkJoinPool(mSubtaskParallelism, 
+							SubtaskWorkerThread.FACTORY, null, false);
+				}
+			}
+		}
+		return pool;
+	}
+	
+	/**
+	 * Executes the subtasks of a task on the shared subtask pool, returning 
+	 * when all have completed.  This may be called from within a subtask, 
+	 * in which case the calling thread helps execute the nested subtasks 
+	 * instead of blocking a thread of the pool.  Nested subtasks are executed
+	 * on the pool executing the calling subtask, even if the pool has since
+	 * been replaced by <tt>setSubtaskParallelism()</tt>.
+	 * 
+	 * @param subtasks the subtasks to execute.
+	 * 
+	 * @return a list of futures holding the results of the subtasks in 
+	 *   the same order as the subtasks.
+	 *   
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	public static <T> List<Future<T>> invokeSubtasks(Collection<? extends Callable<T>> subtasks) 
+		throws InterruptedException {
+		Thread thread = Thread.currentThread();
+		ForkJoinPool pool = thread instanceof SubtaskWorkerThread ?
+				((SubtaskWorkerThread) thread).getPool() : getSubtaskPool();
+		return pool.invokeAll(subtasks);
+	}
+	
 	/**
 	 * Shuts down the internal thread pool.  Tasks currently in its queue continue to
 	 * be executed, but no new tasks may be submitted.
@@ -367,4 +459,22 @@ public final class TaskScheduler {
         }
     }
 
+    /**
+     * The worker threads of the subtask pools, by which nested subtasks are
+     * recognized.
+     */
+    static class SubtaskWorkerThread extends ForkJoinWorkerThread {
+
+        static final ForkJoinPool.ForkJoinWorkerThreadFactory FACTORY = 
+            new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+                public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                    return new SubtaskWorkerThread(pool);
+                }
+            };
+
+        SubtaskWorkerThread(ForkJoinPool pool) {
+            super(pool);
+        }
+    }
+
 }
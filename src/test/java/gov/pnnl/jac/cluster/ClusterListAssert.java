@@ -0,0 +1,137 @@
+package gov.pnnl.jac.cluster;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import gov.pnnl.jac.geom.CoordinateList;
+import gov.pnnl.jac.geom.SimpleCoordinateList;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Fixed datasets and cluster list comparisons shared by the partitional
+ * clustering tests.
+ */
+final class ClusterListAssert {
+
+	private ClusterListAssert() {
+	}
+
+	/**
+	 * Returns count coordinates of dim dimensions drawn around 12 centers
+	 * that overlap, so that clustering them into fewer clusters takes
+	 * several iterations.  The coordinates are the same for the same seed.
+	 */
+	static SimpleCoordinateList coordinates(int count, int dim, long seed) {
+		Random random = new Random(seed);
+		double[][] centers = new double[12][dim];
+		for (int c=0; c<centers.length; c++) {
+			for (int d=0; d<dim; d++) {
+				centers[c][d] = 10.0*random.nextDouble();
+			}
+		}
+		SimpleCoordinateList cs = new SimpleCoordinateList(dim, count);
+		double[] coords = new double[dim];
+		for (int i=0; i<count; i++) {
+			double[] center = centers[random.nextInt(centers.length)];
+			for (int d=0; d<dim; d++) {
+				coords[d] = center[d] + random.nextGaussian();
+			}
+			cs.setCoordinates(i, coords);
+		}
+		return cs;
+	}
+
+	/**
+	 * Returns count coordinates of dim dimensions drawn around groups
+	 * centers so far apart that any reasonable clustering into that many
+	 * clusters finds the groups.  Coordinate i belongs to group i % groups.
+	 */
+	static SimpleCoordinateList separatedCoordinates(int count, int dim, int groups, long seed) {
+		Random random = new Random(seed);
+		SimpleCoordinateList cs = new SimpleCoordinateList(dim, count);
+		double[] coords = new double[dim];
+		for (int i=0; i<count; i++) {
+			int group = i % groups;
+			for (int d=0; d<dim; d++) {
+				// Each group is 100 units from the others along its own axis.
+				coords[d] = (d == group % dim ? 100.0*(1 + group/dim) : 0.0) + random.nextGaussian();
+			}
+			cs.setCoordinates(i, coords);
+		}
+		return cs;
+	}
+
+	/**
+	 * Returns the cluster of each coordinate, numbered in order of first
+	 * appearance, so that lists with the same memberships in another order
+	 * give the same array.  Coordinates in no cluster are -1.
+	 */
+	static int[] memberships(ClusterList clusters, int coordCount) {
+		int[] clusterOf = new int[coordCount];
+		Arrays.fill(clusterOf, -1);
+		for (int c=0; c<clusters.getClusterCount(); c++) {
+			for (int member : clusters.getCluster(c).getMembership()) {
+				clusterOf[member] = c;
+			}
+		}
+		int[] renumbered = new int[clusters.getClusterCount()];
+		Arrays.fill(renumbered, -1);
+		int next = 0;
+		for (int i=0; i<coordCount; i++) {
+			if (clusterOf[i] >= 0) {
+				if (renumbered[clusterOf[i]] < 0) {
+					renumbered[clusterOf[i]] = next++;
+				}
+				clusterOf[i] = renumbered[clusterOf[i]];
+			}
+		}
+		return clusterOf;
+	}
+
+	/**
+	 * Returns the groups of separatedCoordinates() numbered the same way.
+	 */
+	static int[] groups(int count, int groups) {
+		int[] rtn = new int[count];
+		for (int i=0; i<count; i++) {
+			rtn[i] = i % groups;
+		}
+		return rtn;
+	}
+
+	/**
+	 * Returns the sum of the squared Euclidean distances of the coordinates
+	 * from the centers of their clusters.
+	 */
+	static double sse(ClusterList clusters, CoordinateList cs) {
+		double[] coords = new double[cs.getDimensionCount()];
+		double sse = 0.0;
+		for (int c=0; c<clusters.getClusterCount(); c++) {
+			Cluster cluster = clusters.getCluster(c);
+			double[] center = cluster.getCenter();
+			for (int member : cluster.getMembership()) {
+				cs.getCoordinates(member, coords);
+				for (int d=0; d<coords.length; d++) {
+					double diff = coords[d] - center[d];
+					sse += diff*diff;
+				}
+			}
+		}
+		return sse;
+	}
+
+	/**
+	 * Asserts that the cluster lists have the same memberships, in any order,
+	 * and squared errors equal to within rounding.
+	 */
+	static void assertSameClusters(String msg, ClusterList expected, ClusterList actual,
+			CoordinateList cs) {
+		int coordCount = cs.getCoordinateCount();
+		assertEquals(msg, expected.getClusterCount(), actual.getClusterCount());
+		assertArrayEquals(msg, memberships(expected, coordCount), memberships(actual, coordCount));
+		double expectedSSE = sse(expected, cs);
+		assertEquals(msg, expectedSSE, sse(actual, cs), 1e-9*expectedSSE);
+	}
+}
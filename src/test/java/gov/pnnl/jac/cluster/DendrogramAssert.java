@@ -0,0 +1,112 @@
+package gov.pnnl.jac.cluster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import gov.pnnl.jac.geom.SimpleCoordinateList;
+import gov.pnnl.jac.geom.distance.DistanceFunc;
+import gov.pnnl.jac.task.TaskOutcome;
+
+import java.util.Random;
+
+/**
+ * Fixed datasets and dendrogram comparisons shared by the hierarchical
+ * clustering tests.
+ */
+final class DendrogramAssert {
+
+	private DendrogramAssert() {
+	}
+
+	/**
+	 * Returns count coordinates of dim dimensions drawn around a few
+	 * well separated centers, the same for the same seed.
+	 */
+	static SimpleCoordinateList gaussianClusters(int count, int dim, long seed) {
+		Random random = new Random(seed);
+		SimpleCoordinateList cs = new SimpleCoordinateList(dim, count);
+		double[] coords = new double[dim];
+		for (int i=0; i<count; i++) {
+			int center = random.nextInt(5);
+			for (int d=0; d<dim; d++) {
+				coords[d] = 3.0*center + random.nextGaussian();
+			}
+			cs.setCoordinates(i, coords);
+		}
+		return cs;
+	}
+
+	static HierarchicalClusterTaskParams params(HierarchicalClusterTaskParams.Linkage linkage,
+			DistanceFunc distanceFunc, int workerThreads, boolean optimize) {
+		return new HierarchicalClusterTaskParams.Builder(HierarchicalClusterTaskParams.Criterion.CLUSTERS)
+			.clustersDesired(5).linkage(linkage).distanceFunc(distanceFunc)
+			.numWorkerThreads(workerThreads).optimize(optimize).build();
+	}
+
+	/**
+	 * Runs a task, failing unless it succeeds, and returns its dendrogram.
+	 */
+	static Dendrogram run(AbstractHierarchicalClusterTask task) {
+		task.run();
+		assertEquals(task.getErrorMessage(), TaskOutcome.SUCCESS, task.getTaskOutcome());
+		Dendrogram dendrogram = task.getDendrogram();
+		assertTrue(dendrogram.isFinished());
+		return dendrogram;
+	}
+
+	/**
+	 * Asserts that the dendrograms have the same children at every level,
+	 * on the same sides, with merge distances equal within the tolerance
+	 * relative to the greater distance, or 1.0 if it is less.
+	 */
+	static void assertSameDendrogram(String msg, Dendrogram expected, Dendrogram actual,
+			double tolerance) {
+		int leafCount = expected.getLeafCount();
+		assertEquals(msg, leafCount, actual.getLeafCount());
+		for (int level=0; level<leafCount-1; level++) {
+			String where = msg + ", level " + level;
+			assertEquals(where, expected.getLeftChildID(level), actual.getLeftChildID(level));
+			assertEquals(where, expected.getRightChildID(level), actual.getRightChildID(level));
+			assertDistance(where, expected.getNode(level).distance(),
+					actual.getNode(level).distance(), tolerance);
+		}
+	}
+
+	/**
+	 * Asserts that the dendrograms group the leaves the same at every level,
+	 * whichever side the children are on, with merge distances equal within
+	 * the tolerance.
+	 */
+	static void assertSameGroupings(String msg, Dendrogram expected, Dendrogram actual,
+			double tolerance) {
+		assertSameGroupings(msg, expected, actual, expected.getLeafCount() - 1, tolerance);
+	}
+
+	/**
+	 * Like the other <tt>assertSameGroupings</tt>, but only checks the top
+	 * levelCount levels, those of the last merges, as when merges at nearly
+	 * equal distances may be made in different orders below them.  Level 0
+	 * is the root.
+	 */
+	static void assertSameGroupings(String msg, Dendrogram expected, Dendrogram actual,
+			int levelCount, double tolerance) {
+		int leafCount = expected.getLeafCount();
+		assertEquals(msg, leafCount, actual.getLeafCount());
+		for (int level=0; level<levelCount; level++) {
+			String where = msg + ", level " + level;
+			int e1 = expected.getLeftChildID(level), e2 = expected.getRightChildID(level);
+			int a1 = actual.getLeftChildID(level), a2 = actual.getRightChildID(level);
+			// Node ids are the lowest leaf indices of the nodes, so the same
+			// pairs of ids merged level by level are the same groupings.
+			assertEquals(where, Math.min(e1, e2), Math.min(a1, a2));
+			assertEquals(where, Math.max(e1, e2), Math.max(a1, a2));
+			assertDistance(where, expected.getNode(level).distance(),
+					actual.getNode(level).distance(), tolerance);
+		}
+	}
+
+	private static void assertDistance(String msg, double expected, double actual, double tolerance) {
+		double scale = Math.max(1.0, Math.max(Math.abs(expected), Math.abs(actual)));
+		assertEquals(msg, expected, actual, tolerance*scale);
+	}
+}
@@ -0,0 +1,64 @@
+package gov.pnnl.jac.cluster;
+
+import static gov.pnnl.jac.cluster.ClusterListAssert.groups;
+import static gov.pnnl.jac.cluster.ClusterListAssert.memberships;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import gov.pnnl.jac.geom.CoordinateList;
+import gov.pnnl.jac.geom.SimpleBitCoordinateList;
+import gov.pnnl.jac.geom.SimpleCoordinateList;
+import gov.pnnl.jac.geom.distance.TanimotoNoNaN;
+import gov.pnnl.jac.task.TaskOutcome;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class JarvisPatrickClusterTaskTest {
+
+	private static ClusterList cluster(CoordinateList cs, int workerThreads) {
+		JarvisPatrickClusterTaskParams params = new JarvisPatrickClusterTaskParams.Builder()
+			.nearestNeighborsToExamine(9).nearestNeighborOverlap(3)
+			.distanceFunc(new TanimotoNoNaN()).workerThreadCount(workerThreads).build();
+		JarvisPatrickClusterTask task = new JarvisPatrickClusterTask(cs, params);
+		task.run();
+		assertEquals(task.getErrorMessage(), TaskOutcome.SUCCESS, task.getTaskOutcome());
+		return task.getClusterList();
+	}
+
+	@Test
+	public void testBitsSameAsDoubles() {
+		// Fingerprints made by flipping a few bits of some prototypes, ten
+		// to a prototype.  Many distances are equal, and the paths break ties
+		// with the farthest neighbor differently, so the neighbors examined
+		// are exactly the others made from the same prototype.
+		final int dim = 256, count = 80;
+		Random random = new Random(6L);
+		boolean[][] prototypes = new boolean[8][dim];
+		for (boolean[] prototype : prototypes) {
+			for (int d=0; d<dim; d++) {
+				prototype[d] = random.nextInt(4) == 0;
+			}
+		}
+		SimpleBitCoordinateList bits = new SimpleBitCoordinateList(dim, count);
+		SimpleCoordinateList doubles = new SimpleCoordinateList(dim, count);
+		double[] coords = new double[dim];
+		for (int i=0; i<count; i++) {
+			boolean[] prototype = prototypes[i % prototypes.length];
+			for (int d=0; d<dim; d++) {
+				boolean bit = random.nextInt(20) == 0 ? !prototype[d] : prototype[d];
+				coords[d] = bit ? 1.0 : 0.0;
+			}
+			bits.setCoordinates(i, coords);
+			doubles.setCoordinates(i, coords);
+		}
+		ClusterList expected = cluster(doubles, 1);
+		assertArrayEquals(groups(count, prototypes.length), memberships(expected, count));
+		for (int threads=1; threads<=3; threads+=2) {
+			ClusterList actual = cluster(bits, threads);
+			assertEquals(threads + " threads", expected.getClusterCount(), actual.getClusterCount());
+			assertArrayEquals(threads + " threads", memberships(expected, count), memberships(actual, count));
+		}
+	}
+}
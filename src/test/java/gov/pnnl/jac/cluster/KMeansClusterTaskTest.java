@@ -0,0 +1,267 @@
+package gov.pnnl.jac.cluster;
+
+import static gov.pnnl.jac.cluster.ClusterListAssert.assertSameClusters;
+import static gov.pnnl.jac.cluster.ClusterListAssert.coordinates;
+import static gov.pnnl.jac.cluster.ClusterListAssert.memberships;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import gov.pnnl.jac.geom.CoordinateList;
+import gov.pnnl.jac.geom.SimpleCoordinateList;
+import gov.pnnl.jac.geom.SimpleFloatCoordinateList;
+import gov.pnnl.jac.geom.distance.DistanceFunc;
+import gov.pnnl.jac.geom.distance.EuclideanNoNaN;
+import gov.pnnl.jac.task.TaskOutcome;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class KMeansClusterTaskTest {
+
+	private static final int CLUSTERS = 8;
+
+	// The first coordinates, so every run starts from the same centers.
+	private static ClusterSeeder seeder(CoordinateList cs) {
+		int dim = cs.getDimensionCount();
+		SimpleCoordinateList seeds = new SimpleCoordinateList(dim, CLUSTERS);
+		double[] coords = new double[dim];
+		for (int i=0; i<CLUSTERS; i++) {
+			seeds.setCoordinates(i, cs.getCoordinates(i, coords));
+		}
+		return new PreassignedSeeder(seeds);
+	}
+
+	private static ClusterList cluster(CoordinateList cs, DistanceFunc distanceFunc,
+			KMeansClusterTaskParams.AssignmentMode mode, int workerThreads) {
+		KMeansClusterTaskParams params = new KMeansClusterTaskParams.Builder(CLUSTERS)
+			.distanceFunc(distanceFunc).seeder(seeder(cs)).numWorkerThreads(workerThreads)
+			.assignmentMode(mode).build();
+		KMeansClusterTask task = new KMeansClusterTask(cs, params);
+		task.run();
+		assertEquals(task.getErrorMessage(), TaskOutcome.SUCCESS, task.getTaskOutcome());
+		return task.getClusterList();
+	}
+
+	private static void assertSameAsStandard(CoordinateList cs, KMeansClusterTaskParams.AssignmentMode mode) {
+		DistanceFunc distanceFunc = new EuclideanNoNaN();
+		ClusterList expected = cluster(cs, distanceFunc, KMeansClusterTaskParams.AssignmentMode.STANDARD, 1);
+		for (int threads=1; threads<=3; threads+=2) {
+			assertSameClusters(mode + ", " + threads + " threads", expected,
+					cluster(cs, distanceFunc, mode, threads), cs);
+		}
+	}
+
+	@Test
+	public void testStandardThreadsAgree() {
+		assertSameAsStandard(coordinates(3000, 6, 30L), KMeansClusterTaskParams.AssignmentMode.STANDARD);
+	}
+
+	@Test
+	public void testMembershipsSortedAndComplete() {
+		// A count that does not divide evenly among the workers.
+		CoordinateList cs = coordinates(3001, 6, 35L);
+		DistanceFunc distanceFunc = new EuclideanNoNaN();
+		ClusterList expected = cluster(cs, distanceFunc, KMeansClusterTaskParams.AssignmentMode.STANDARD, 1);
+		for (int threads=1; threads<=5; threads++) {
+			String msg = threads + " threads";
+			ClusterList actual = cluster(cs, distanceFunc, KMeansClusterTaskParams.AssignmentMode.STANDARD, threads);
+			assertSameClusters(msg, expected, actual, cs);
+			boolean[] assigned = new boolean[3001];
+			for (int c=0; c<actual.getClusterCount(); c++) {
+				int[] members = actual.getCluster(c).getMembership();
+				for (int m=0; m<members.length; m++) {
+					assertTrue(msg, m == 0 || members[m - 1] < members[m]);
+					assertFalse(msg, assigned[members[m]]);
+					assigned[members[m]] = true;
+				}
+			}
+			for (int i=0; i<assigned.length; i++) {
+				assertTrue(msg + ", coordinate " + i, assigned[i]);
+			}
+		}
+	}
+
+	@Test
+	public void testTriangleInequalitySameAsStandard() {
+		assertSameAsStandard(coordinates(3000, 6, 31L),
+				KMeansClusterTaskParams.AssignmentMode.TRIANGLE_INEQUALITY);
+	}
+
+	@Test
+	public void testKDTreeFilteringSameAsStandard() {
+		// kd-tree filtering is meant for few dimensions.
+		assertSameAsStandard(coordinates(3000, 3, 32L),
+				KMeansClusterTaskParams.AssignmentMode.KD_TREE_FILTERING);
+	}
+
+	@Test
+	public void testFloatCoordinatesSameAsDouble() {
+		CoordinateList cs = coordinates(3000, 6, 34L);
+		int coordCount = cs.getCoordinateCount();
+		int dim = cs.getDimensionCount();
+		// The same values in single precision, and widened back to double.
+		SimpleFloatCoordinateList floats = new SimpleFloatCoordinateList(dim, coordCount);
+		SimpleCoordinateList widened = new SimpleCoordinateList(dim, coordCount);
+		double[] coords = new double[dim];
+		for (int i=0; i<coordCount; i++) {
+			floats.setCoordinates(i, cs.getCoordinates(i, coords));
+			widened.setCoordinates(i, floats.getCoordinates(i, coords));
+		}
+		DistanceFunc distanceFunc = new EuclideanNoNaN();
+		ClusterList expected = cluster(widened, distanceFunc, KMeansClusterTaskParams.AssignmentMode.STANDARD, 1);
+		for (int threads=1; threads<=3; threads+=2) {
+			assertSameClusters(threads + " threads", expected,
+					cluster(floats, distanceFunc, KMeansClusterTaskParams.AssignmentMode.STANDARD, threads),
+					widened);
+		}
+	}
+
+	private static ClusterList warmStart(CoordinateList cs, ClusterList initialClusters, int workerThreads) {
+		KMeansClusterTaskParams params = new KMeansClusterTaskParams.Builder(CLUSTERS)
+			.distanceFunc(new EuclideanNoNaN()).numWorkerThreads(workerThreads).build();
+		KMeansClusterTask task = new KMeansClusterTask(cs, params, initialClusters);
+		task.run();
+		assertEquals(task.getErrorMessage(), TaskOutcome.SUCCESS, task.getTaskOutcome());
+		return task.getClusterList();
+	}
+
+	// Seeded with the centers of clusters.
+	private static ClusterList clusterFromCenters(CoordinateList cs, ClusterList clusters) {
+		int dim = cs.getDimensionCount();
+		SimpleCoordinateList seeds = new SimpleCoordinateList(dim, clusters.getClusterCount());
+		for (int c=0; c<clusters.getClusterCount(); c++) {
+			seeds.setCoordinates(c, clusters.getCluster(c).getCenter());
+		}
+		KMeansClusterTaskParams params = new KMeansClusterTaskParams.Builder(clusters.getClusterCount())
+			.distanceFunc(new EuclideanNoNaN()).seeder(new PreassignedSeeder(seeds))
+			.numWorkerThreads(1).build();
+		KMeansClusterTask task = new KMeansClusterTask(cs, params);
+		task.run();
+		assertEquals(task.getErrorMessage(), TaskOutcome.SUCCESS, task.getTaskOutcome());
+		return task.getClusterList();
+	}
+
+	@Test
+	public void testWarmStartUnchanged() {
+		CoordinateList cs = coordinates(3000, 6, 36L);
+		ClusterList expected = cluster(cs, new EuclideanNoNaN(), KMeansClusterTaskParams.AssignmentMode.STANDARD, 1);
+		for (int threads=1; threads<=3; threads+=2) {
+			assertSameClusters(threads + " threads", expected, warmStart(cs, expected, threads), cs);
+		}
+	}
+
+	@Test
+	public void testWarmStartSameAsSeededWithCenters() {
+		// The same first 3000 coordinates followed by 300 more.
+		CoordinateList cs = coordinates(3000, 6, 37L);
+		CoordinateList appended = coordinates(3300, 6, 37L);
+		ClusterList previous = cluster(cs, new EuclideanNoNaN(), KMeansClusterTaskParams.AssignmentMode.STANDARD, 1);
+		ClusterList expected = clusterFromCenters(appended, previous);
+		for (int threads=1; threads<=3; threads+=2) {
+			assertSameClusters(threads + " threads", expected, warmStart(appended, previous, threads), appended);
+		}
+	}
+
+	@Test
+	public void testWarmStartRejectsInvalidClusters() {
+		CoordinateList cs = coordinates(100, 3, 38L);
+		double[] center = new double[3];
+		ClusterList outOfRange = new ClusterList(new Cluster[] {
+				new Cluster(new int[] { 0, 1, 100 }, center) });
+		ClusterList overlapping = new ClusterList(new Cluster[] {
+				new Cluster(new int[] { 0, 1 }, center), new Cluster(new int[] { 1, 2 }, center) });
+		ClusterList wrongDimensions = new ClusterList(new Cluster[] {
+				new Cluster(new int[] { 0, 1 }, new double[2]) });
+		for (ClusterList initialClusters : new ClusterList[] { outOfRange, overlapping, wrongDimensions }) {
+			KMeansClusterTask task = new KMeansClusterTask(cs,
+					new KMeansClusterTaskParams.Builder(1).numWorkerThreads(1).build(), initialClusters);
+			task.run();
+			assertEquals(TaskOutcome.ERROR, task.getTaskOutcome());
+		}
+	}
+
+	private static ClusterList clusterWithRestarts(CoordinateList cs, long randomSeed, int numRestarts,
+			int workerThreads) {
+		KMeansClusterTaskParams params = new KMeansClusterTaskParams.Builder(CLUSTERS)
+			.distanceFunc(new EuclideanNoNaN()).seeder(new RandomSeeder(randomSeed))
+			.numRestarts(numRestarts).numWorkerThreads(workerThreads).build();
+		KMeansClusterTask task = new KMeansClusterTask(cs, params);
+		task.run();
+		assertEquals(task.getErrorMessage(), TaskOutcome.SUCCESS, task.getTaskOutcome());
+		return task.getClusterList();
+	}
+
+	@Test
+	public void testRestartsKeepBest() {
+		CoordinateList cs = coordinates(2000, 6, 39L);
+		DistanceFunc distanceFunc = new EuclideanNoNaN();
+		ClusterList single = clusterWithRestarts(cs, 7L, 1, 1);
+		double singleError = ClusterStats.computeSquaredError(cs, single, distanceFunc);
+		ClusterList expected = clusterWithRestarts(cs, 7L, 6, 1);
+		double bestError = ClusterStats.computeSquaredError(cs, expected, distanceFunc);
+		// The first restart reproduces the single run, so the best is no worse.
+		assertTrue(bestError + " vs " + singleError, bestError <= singleError);
+		// Each restart is a separate clustering of its own, so the threads
+		// they run on don't matter.
+		for (int threads=2; threads<=4; threads++) {
+			assertSameClusters(threads + " threads", expected, clusterWithRestarts(cs, 7L, 6, threads), cs);
+		}
+	}
+
+	@Test
+	public void testRestartsIgnoredWithPreassignedSeeds() {
+		CoordinateList cs = coordinates(2000, 6, 40L);
+		DistanceFunc distanceFunc = new EuclideanNoNaN();
+		ClusterList expected = cluster(cs, distanceFunc, KMeansClusterTaskParams.AssignmentMode.STANDARD, 2);
+		KMeansClusterTaskParams params = new KMeansClusterTaskParams.Builder(CLUSTERS)
+			.distanceFunc(distanceFunc).seeder(seeder(cs)).numRestarts(4).numWorkerThreads(2).build();
+		KMeansClusterTask task = new KMeansClusterTask(cs, params);
+		task.run();
+		assertEquals(task.getErrorMessage(), TaskOutcome.SUCCESS, task.getTaskOutcome());
+		assertSameClusters("preassigned", expected, task.getClusterList(), cs);
+	}
+
+	// Seeds the first clusters with the first coordinates and the last with
+	// a coordinate far from all, whose cluster stays empty until it is
+	// replaced by splitting another.
+	private static ClusterList clusterWithEmptySeed(CoordinateList cs, int centerRecomputeInterval) {
+		int dim = cs.getDimensionCount();
+		SimpleCoordinateList seeds = new SimpleCoordinateList(dim, CLUSTERS);
+		double[] coords = new double[dim];
+		for (int i=0; i<CLUSTERS-1; i++) {
+			seeds.setCoordinates(i, cs.getCoordinates(i, coords));
+		}
+		Arrays.fill(coords, 1000.0);
+		seeds.setCoordinates(CLUSTERS-1, coords);
+		KMeansClusterTaskParams params = new KMeansClusterTaskParams.Builder(CLUSTERS)
+			.distanceFunc(new EuclideanNoNaN()).seeder(new PreassignedSeeder(seeds))
+			.numWorkerThreads(2).replaceEmptyClusters(true)
+			.centerRecomputeInterval(centerRecomputeInterval).build();
+		KMeansClusterTask task = new KMeansClusterTask(cs, params);
+		task.run();
+		assertEquals(task.getErrorMessage(), TaskOutcome.SUCCESS, task.getTaskOutcome());
+		return task.getClusterList();
+	}
+
+	@Test
+	public void testRunningSumsAfterEmptyClusterReplaced() {
+		CoordinateList cs = coordinates(3000, 6, 33L);
+		int coordCount = cs.getCoordinateCount();
+		ClusterList expected = clusterWithEmptySeed(cs, 0);
+		assertEquals(CLUSTERS, expected.getClusterCount());
+		for (int interval=2; interval<=8; interval++) {
+			String msg = "interval " + interval;
+			ClusterList actual = clusterWithEmptySeed(cs, interval);
+			assertEquals(msg, CLUSTERS, actual.getClusterCount());
+			assertArrayEquals(msg, memberships(expected, coordCount), memberships(actual, coordCount));
+			for (int c=0; c<CLUSTERS; c++) {
+				Cluster cluster = actual.getCluster(c);
+				double[] mean = cs.computeAverage(cluster.getMembership(), null);
+				assertArrayEquals(msg + ", cluster " + c, mean, cluster.getCenter(), 1e-9);
+			}
+		}
+	}
+}
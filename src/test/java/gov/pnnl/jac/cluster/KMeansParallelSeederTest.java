@@ -0,0 +1,105 @@
+package gov.pnnl.jac.cluster;
+
+import static gov.pnnl.jac.cluster.ClusterListAssert.assertSameClusters;
+import static gov.pnnl.jac.cluster.ClusterListAssert.coordinates;
+import static gov.pnnl.jac.cluster.ClusterListAssert.groups;
+import static gov.pnnl.jac.cluster.ClusterListAssert.memberships;
+import static gov.pnnl.jac.cluster.ClusterListAssert.separatedCoordinates;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import gov.pnnl.jac.geom.CoordinateList;
+import gov.pnnl.jac.geom.distance.EuclideanNoNaN;
+import gov.pnnl.jac.task.TaskOutcome;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class KMeansParallelSeederTest {
+
+	private static KMeansParallelSeeder seeder(long seed, int workerThreads) {
+		return new KMeansParallelSeeder(seed, new Random(), new EuclideanNoNaN(), 2.0, 3, workerThreads);
+	}
+
+	private static double[][] seeds(ClusterSeeder seeder, CoordinateList cs, int numSeeds) {
+		CoordinateList seeds = seeder.generateSeeds(cs, numSeeds);
+		double[][] rtn = new double[seeds.getCoordinateCount()][];
+		for (int i=0; i<rtn.length; i++) {
+			rtn[i] = seeds.getCoordinates(i, null);
+		}
+		return rtn;
+	}
+
+	private static ClusterList cluster(CoordinateList cs, int numClusters, ClusterSeeder seeder) {
+		KMeansClusterTaskParams params = new KMeansClusterTaskParams.Builder(numClusters)
+			.seeder(seeder).numWorkerThreads(1).build();
+		KMeansClusterTask task = new KMeansClusterTask(cs, params);
+		task.run();
+		assertEquals(task.getErrorMessage(), TaskOutcome.SUCCESS, task.getTaskOutcome());
+		return task.getClusterList();
+	}
+
+	@Test
+	public void testSeedsAreDistinctCoordinates() {
+		CoordinateList cs = coordinates(2000, 5, 50L);
+		Set<List<Double>> coordSet = new HashSet<List<Double>>();
+		double[] coords = new double[5];
+		for (int i=0; i<2000; i++) {
+			cs.getCoordinates(i, coords);
+			coordSet.add(asList(coords));
+		}
+		double[][] seeds = seeds(seeder(51L, 1), cs, 10);
+		assertEquals(10, seeds.length);
+		Set<List<Double>> seedSet = new HashSet<List<Double>>();
+		for (double[] seed : seeds) {
+			assertTrue(coordSet.contains(asList(seed)));
+			assertTrue(seedSet.add(asList(seed)));
+		}
+	}
+
+	@Test
+	public void testThreadsAgree() {
+		CoordinateList cs = coordinates(3000, 5, 52L);
+		double[][] expected = seeds(seeder(53L, 1), cs, 10);
+		for (int threads=2; threads<=4; threads++) {
+			double[][] actual = seeds(seeder(53L, threads), cs, 10);
+			assertEquals(expected.length, actual.length);
+			for (int i=0; i<expected.length; i++) {
+				assertArrayEquals(threads + " threads, seed " + i, expected[i], actual[i], 0.0);
+			}
+		}
+	}
+
+	@Test
+	public void testDifferentRandomSeeds() {
+		CoordinateList cs = coordinates(3000, 5, 54L);
+		double[][] seeds1 = seeds(seeder(55L, 1), cs, 10);
+		double[][] seeds2 = seeds(seeder(55L, 1).withRandomSeed(56L), cs, 10);
+		assertFalse(Arrays.deepEquals(seeds1, seeds2));
+		assertTrue(Arrays.deepEquals(seeds1, seeds(seeder(56L, 1).withRandomSeed(55L), cs, 10)));
+	}
+
+	@Test
+	public void testSeparatedSameAsPlusPlus() {
+		CoordinateList cs = separatedCoordinates(3000, 4, 8, 57L);
+		// One seed falls in each group, so k-means finds the groups.
+		ClusterList expected = cluster(cs, 8, new KMeansPlusPlusSeeder(58L));
+		assertArrayEquals(groups(3000, 8), memberships(expected, 3000));
+		assertSameClusters("k-means||", expected, cluster(cs, 8, seeder(58L, 2)), cs);
+	}
+
+	private static List<Double> asList(double[] coords) {
+		Double[] boxed = new Double[coords.length];
+		for (int d=0; d<coords.length; d++) {
+			boxed[d] = coords[d];
+		}
+		return Arrays.asList(boxed);
+	}
+}
@@ -0,0 +1,103 @@
+package gov.pnnl.jac.cluster;
+
+import static gov.pnnl.jac.cluster.ClusterListAssert.assertSameClusters;
+import static gov.pnnl.jac.cluster.ClusterListAssert.coordinates;
+import static gov.pnnl.jac.cluster.ClusterListAssert.groups;
+import static gov.pnnl.jac.cluster.ClusterListAssert.memberships;
+import static gov.pnnl.jac.cluster.ClusterListAssert.separatedCoordinates;
+import static gov.pnnl.jac.cluster.ClusterListAssert.sse;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import gov.pnnl.jac.geom.CoordinateList;
+import gov.pnnl.jac.geom.FileMappedCoordinateList;
+import gov.pnnl.jac.geom.SimpleCoordinateList;
+import gov.pnnl.jac.task.TaskOutcome;
+
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MiniBatchKMeansClusterTaskTest {
+
+	@Rule
+	public TemporaryFolder mFolder = new TemporaryFolder();
+
+	// The first coordinates, so every run starts from the same centers.
+	private static ClusterSeeder seeder(CoordinateList cs, int numClusters) {
+		int dim = cs.getDimensionCount();
+		SimpleCoordinateList seeds = new SimpleCoordinateList(dim, numClusters);
+		double[] coords = new double[dim];
+		for (int i=0; i<numClusters; i++) {
+			seeds.setCoordinates(i, cs.getCoordinates(i, coords));
+		}
+		return new PreassignedSeeder(seeds);
+	}
+
+	private static ClusterList miniBatch(CoordinateList cs, int numClusters, int batchSize,
+			int maxBatches, int workerThreads) {
+		MiniBatchKMeansClusterTaskParams params = new MiniBatchKMeansClusterTaskParams.Builder(numClusters)
+			.batchSize(batchSize).maxBatches(maxBatches).numWorkerThreads(workerThreads)
+			.seeder(seeder(cs, numClusters)).build();
+		MiniBatchKMeansClusterTask task = new MiniBatchKMeansClusterTask(cs, params);
+		task.run();
+		assertEquals(task.getErrorMessage(), TaskOutcome.SUCCESS, task.getTaskOutcome());
+		return task.getClusterList();
+	}
+
+	private static ClusterList standard(CoordinateList cs, int numClusters) {
+		KMeansClusterTaskParams params = new KMeansClusterTaskParams.Builder(numClusters)
+			.seeder(seeder(cs, numClusters)).numWorkerThreads(1).build();
+		KMeansClusterTask task = new KMeansClusterTask(cs, params);
+		task.run();
+		assertEquals(task.getErrorMessage(), TaskOutcome.SUCCESS, task.getTaskOutcome());
+		return task.getClusterList();
+	}
+
+	@Test
+	public void testSeparatedSameAsStandard() {
+		// The first 6 coordinates are one from each group.
+		CoordinateList cs = separatedCoordinates(2000, 6, 6, 40L);
+		ClusterList expected = standard(cs, 6);
+		assertArrayEquals(groups(2000, 6), memberships(expected, 2000));
+		assertSameClusters("mini-batch", expected, miniBatch(cs, 6, 100, 10, 1), cs);
+	}
+
+	@Test
+	public void testSquaredErrorNearStandard() {
+		CoordinateList cs = coordinates(3000, 6, 41L);
+		double expected = sse(standard(cs, 8), cs);
+		double actual = sse(miniBatch(cs, 8, 200, 60, 1), cs);
+		// Mini-batch centers only approximate the k-means centers.
+		assertTrue(actual + " vs " + expected, actual <= 1.05*expected);
+	}
+
+	@Test
+	public void testThreadsAgree() {
+		CoordinateList cs = coordinates(3000, 6, 42L);
+		ClusterList expected = miniBatch(cs, 8, 200, 30, 1);
+		for (int threads=2; threads<=4; threads++) {
+			assertSameClusters(threads + " threads", expected, miniBatch(cs, 8, 200, 30, threads), cs);
+		}
+	}
+
+	@Test
+	public void testFileMappedSameAsMemory() throws IOException {
+		CoordinateList cs = coordinates(3000, 6, 43L);
+		ClusterList expected = miniBatch(cs, 8, 250, 20, 2);
+		FileMappedCoordinateList fcs = FileMappedCoordinateList.createNew(
+				mFolder.newFile("coords.dat"), 6, 3000);
+		try {
+			double[] coords = new double[6];
+			for (int i=0; i<3000; i++) {
+				fcs.setCoordinates(i, cs.getCoordinates(i, coords));
+			}
+			assertSameClusters("file mapped", expected, miniBatch(fcs, 8, 250, 20, 2), cs);
+		} finally {
+			fcs.closeFile();
+		}
+	}
+}
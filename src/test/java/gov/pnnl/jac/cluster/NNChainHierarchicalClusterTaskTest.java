@@ -0,0 +1,77 @@
+package gov.pnnl.jac.cluster;
+
+import static gov.pnnl.jac.cluster.DendrogramAssert.assertSameDendrogram;
+import static gov.pnnl.jac.cluster.DendrogramAssert.gaussianClusters;
+import static gov.pnnl.jac.cluster.DendrogramAssert.params;
+import static gov.pnnl.jac.cluster.DendrogramAssert.run;
+
+import gov.pnnl.jac.geom.CoordinateList;
+import gov.pnnl.jac.geom.SimpleCoordinateList;
+import gov.pnnl.jac.geom.distance.EuclideanNoNaN;
+
+import org.junit.Test;
+
+public class NNChainHierarchicalClusterTaskTest {
+
+	private static void assertSameAsStandard(HierarchicalClusterTaskParams.Linkage linkage,
+			double tolerance) {
+		CoordinateList cs = gaussianClusters(300, 8, 20L);
+		for (int threads=1; threads<=3; threads+=2) {
+			HierarchicalClusterTaskParams params = params(linkage, new EuclideanNoNaN(), threads, false);
+			Dendrogram expected = run(new StandardHierarchicalClusterTask(cs, params));
+			Dendrogram actual = run(new NNChainHierarchicalClusterTask(cs, params));
+			assertSameDendrogram(linkage + ", " + threads + " threads", expected, actual, tolerance);
+		}
+	}
+
+	@Test
+	public void testComplete() {
+		assertSameAsStandard(HierarchicalClusterTaskParams.Linkage.COMPLETE, 0.0);
+	}
+
+	@Test
+	public void testSingle() {
+		assertSameAsStandard(HierarchicalClusterTaskParams.Linkage.SINGLE, 0.0);
+	}
+
+	// The distances updated in a different order than by the standard task
+	// are only the same up to rounding.
+
+	@Test
+	public void testMean() {
+		assertSameAsStandard(HierarchicalClusterTaskParams.Linkage.MEAN, 1e-12);
+	}
+
+	@Test
+	public void testAverage() {
+		assertSameAsStandard(HierarchicalClusterTaskParams.Linkage.AVERAGE, 1e-12);
+	}
+
+	@Test
+	public void testWard() {
+		assertSameAsStandard(HierarchicalClusterTaskParams.Linkage.WARD, 1e-12);
+	}
+
+	@Test
+	public void testEqualDistances() {
+		// All the distances are equal, but the updated distances differ in
+		// their last bits, so a merged node may be nearer to another than its
+		// children were to each other.
+		SimpleCoordinateList cs = new SimpleCoordinateList(4, 4);
+		for (int i=0; i<4; i++) {
+			double[] coords = new double[4];
+			coords[i] = 1.1;
+			cs.setCoordinates(i, coords);
+		}
+		HierarchicalClusterTaskParams.Linkage[] linkages = {
+				HierarchicalClusterTaskParams.Linkage.MEAN,
+				HierarchicalClusterTaskParams.Linkage.AVERAGE,
+				HierarchicalClusterTaskParams.Linkage.WARD };
+		for (HierarchicalClusterTaskParams.Linkage linkage : linkages) {
+			HierarchicalClusterTaskParams params = params(linkage, new EuclideanNoNaN(), 1, false);
+			Dendrogram expected = run(new StandardHierarchicalClusterTask(cs, params));
+			Dendrogram actual = run(new NNChainHierarchicalClusterTask(cs, params));
+			assertSameDendrogram(linkage + ", equal distances", expected, actual, 0.0);
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package gov.pnnl.jac.cluster;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import gov.pnnl.jac.geom.CoordinateList;
+import gov.pnnl.jac.geom.SimpleCoordinateList;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class RandomSeederTest {
+
+	public static class SubRandom extends Random {
+		private static final long serialVersionUID = 1L;
+	}
+
+	static class NoDefaultConstructorRandom extends Random {
+		private static final long serialVersionUID = 1L;
+		NoDefaultConstructorRandom(long seed) {
+			super(seed);
+		}
+	}
+
+	private static CoordinateList coordinates() {
+		Random random = new Random(1L);
+		SimpleCoordinateList cs = new SimpleCoordinateList(3, 200);
+		double[] coords = new double[3];
+		for (int i=0; i<200; i++) {
+			for (int d=0; d<3; d++) {
+				coords[d] = random.nextDouble();
+			}
+			cs.setCoordinates(i, coords);
+		}
+		return cs;
+	}
+
+	private static double[][] seeds(ClusterSeeder seeder, CoordinateList cs) {
+		CoordinateList seeds = seeder.generateSeeds(cs, 10);
+		double[][] result = new double[seeds.getCoordinateCount()][];
+		for (int i=0; i<result.length; i++) {
+			result[i] = seeds.getCoordinates(i, null);
+		}
+		return result;
+	}
+
+	@Test
+	public void testWithRandomSeedSameAsSeeded() {
+		CoordinateList cs = coordinates();
+		RandomSeeder copy = new RandomSeeder(0L).withRandomSeed(7L);
+		assertEquals(7L, copy.getRandomSeed());
+		double[][] expected = seeds(new RandomSeeder(7L), cs);
+		double[][] actual = seeds(copy, cs);
+		assertEquals(expected.length, actual.length);
+		for (int i=0; i<expected.length; i++) {
+			assertArrayEquals(expected[i], actual[i], 0.0);
+		}
+	}
+
+	@Test
+	public void testWithRandomSeedCopiesSubclass() {
+		CoordinateList cs = coordinates();
+		RandomSeeder seeder = new RandomSeeder(0L, new SubRandom());
+		RandomSeeder copy1 = seeder.withRandomSeed(11L);
+		RandomSeeder copy2 = seeder.withRandomSeed(11L);
+		assertEquals(SubRandom.class, copy1.getRandom().getClass());
+		assertNotSame(seeder.getRandom(), copy1.getRandom());
+		assertNotSame(copy1.getRandom(), copy2.getRandom());
+		double[][] expected = seeds(copy1, cs);
+		double[][] actual = seeds(copy2, cs);
+		for (int i=0; i<expected.length; i++) {
+			assertArrayEquals(expected[i], actual[i], 0.0);
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testWithRandomSeedFailsWithoutConstructor() {
+		new RandomSeeder(0L, new NoDefaultConstructorRandom(3L)).withRandomSeed(11L);
+	}
+}
@@ -0,0 +1,43 @@
+package gov.pnnl.jac.cluster;
+
+import static gov.pnnl.jac.cluster.DendrogramAssert.assertSameDendrogram;
+import static gov.pnnl.jac.cluster.DendrogramAssert.gaussianClusters;
+import static gov.pnnl.jac.cluster.DendrogramAssert.params;
+import static gov.pnnl.jac.cluster.DendrogramAssert.run;
+
+import gov.pnnl.jac.geom.CoordinateList;
+import gov.pnnl.jac.geom.distance.DistanceFunc;
+import gov.pnnl.jac.geom.distance.EuclideanNoNaN;
+
+import org.junit.Test;
+
+public class ReverseNNHierarchicalClusterTaskTest {
+
+	// Computes the distances one pair at a time, since it is not a
+	// BlockDistanceFunc.
+	private static class PairwiseEuclidean implements DistanceFunc {
+		private final EuclideanNoNaN mEuclidean = new EuclideanNoNaN();
+		public double distanceBetween(double[] coord1, double[] coord2) {
+			return mEuclidean.distanceBetween(coord1, coord2);
+		}
+		public String methodName() {
+			return "pairwise euclidean";
+		}
+		public DistanceFunc clone() {
+			return new PairwiseEuclidean();
+		}
+	}
+
+	@Test
+	public void testBlocksSameAsPairs() {
+		// Enough coordinates for several blocks per worker.
+		CoordinateList cs = gaussianClusters(700, 6, 40L);
+		Dendrogram expected = run(new ReverseNNHierarchicalClusterTask(cs,
+				params(HierarchicalClusterTaskParams.Linkage.COMPLETE, new PairwiseEuclidean(), 1, false)));
+		for (int threads=1; threads<=3; threads+=2) {
+			Dendrogram actual = run(new ReverseNNHierarchicalClusterTask(cs,
+					params(HierarchicalClusterTaskParams.Linkage.COMPLETE, new EuclideanNoNaN(), threads, false)));
+			assertSameDendrogram(threads + " threads", expected, actual, 0.0);
+		}
+	}
+}
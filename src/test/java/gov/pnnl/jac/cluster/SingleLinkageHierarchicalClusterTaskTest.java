@@ -0,0 +1,103 @@
+package gov.pnnl.jac.cluster;
+
+import static gov.pnnl.jac.cluster.DendrogramAssert.assertSameDendrogram;
+import static gov.pnnl.jac.cluster.DendrogramAssert.gaussianClusters;
+import static gov.pnnl.jac.cluster.DendrogramAssert.params;
+import static gov.pnnl.jac.cluster.DendrogramAssert.run;
+import static org.junit.Assert.assertEquals;
+
+import gov.pnnl.jac.geom.CoordinateList;
+import gov.pnnl.jac.geom.SimpleBitCoordinateList;
+import gov.pnnl.jac.geom.SparseCoordinateList;
+import gov.pnnl.jac.geom.distance.DistanceFunc;
+import gov.pnnl.jac.geom.distance.EuclideanNoNaN;
+import gov.pnnl.jac.geom.distance.ManhattanNoNaN;
+import gov.pnnl.jac.geom.distance.TanimotoNoNaN;
+import gov.pnnl.jac.task.TaskOutcome;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SingleLinkageHierarchicalClusterTaskTest {
+
+	private static void assertSameAsStandard(String msg, CoordinateList cs, DistanceFunc distanceFunc) {
+		for (int threads=1; threads<=3; threads+=2) {
+			for (boolean optimize : new boolean[] { false, true }) {
+				HierarchicalClusterTaskParams params = params(HierarchicalClusterTaskParams.Linkage.SINGLE,
+						distanceFunc, threads, optimize);
+				Dendrogram expected = run(new StandardHierarchicalClusterTask(cs, params));
+				Dendrogram actual = run(new SingleLinkageHierarchicalClusterTask(cs, params));
+				assertSameDendrogram(msg + ", " + threads + " threads, optimize " + optimize,
+						expected, actual, 0.0);
+			}
+		}
+	}
+
+	@Test
+	public void testDenseSameAsStandard() {
+		CoordinateList cs = gaussianClusters(300, 8, 1L);
+		assertSameAsStandard("euclidean", cs, new EuclideanNoNaN());
+		assertSameAsStandard("manhattan", cs, new ManhattanNoNaN());
+		assertSameAsStandard("tanimoto", cs, new TanimotoNoNaN());
+	}
+
+	@Test
+	public void testSparseSameAsStandard() {
+		CoordinateList dense = gaussianClusters(200, 12, 2L);
+		Random random = new Random(3L);
+		SparseCoordinateList cs = new SparseCoordinateList();
+		double[] coords = new double[12];
+		for (int i=0; i<200; i++) {
+			dense.getCoordinates(i, coords);
+			for (int d=0; d<12; d++) {
+				if (random.nextInt(3) > 0) {
+					coords[d] = 0.0;
+				}
+			}
+			cs.setCoordinates(i, coords);
+		}
+		assertSameAsStandard("sparse euclidean", cs, new EuclideanNoNaN());
+	}
+
+	@Test
+	public void testBitsSameAsStandard() {
+		Random random = new Random(4L);
+		SimpleBitCoordinateList cs = new SimpleBitCoordinateList(300, 150);
+		double[] bits = new double[300];
+		for (int i=0; i<150; i++) {
+			for (int d=0; d<300; d++) {
+				bits[d] = random.nextInt(4) == 0 ? 1.0 : 0.0;
+			}
+			cs.setCoordinates(i, bits);
+		}
+		// Many distances are equal, but they only decide the order of
+		// merges at equal distances.
+		for (int threads=1; threads<=3; threads+=2) {
+			HierarchicalClusterTaskParams params = params(HierarchicalClusterTaskParams.Linkage.SINGLE,
+					new TanimotoNoNaN(), threads, false);
+			Dendrogram expected = run(new StandardHierarchicalClusterTask(cs, params));
+			Dendrogram actual = run(new SingleLinkageHierarchicalClusterTask(cs, params));
+			for (int level=0; level<149; level++) {
+				assertEquals(expected.getNode(level).distance(), actual.getNode(level).distance(), 0.0);
+			}
+		}
+	}
+
+	@Test
+	public void testOtherLinkagesRejected() {
+		CoordinateList cs = gaussianClusters(20, 3, 5L);
+		SingleLinkageHierarchicalClusterTask task = new SingleLinkageHierarchicalClusterTask(cs,
+				params(HierarchicalClusterTaskParams.Linkage.COMPLETE, new EuclideanNoNaN(), 1, false));
+		task.run();
+		assertEquals(TaskOutcome.ERROR, task.getTaskOutcome());
+	}
+
+	@Test
+	public void testOneCoordinate() {
+		CoordinateList cs = gaussianClusters(1, 3, 6L);
+		Dendrogram dendrogram = run(new SingleLinkageHierarchicalClusterTask(cs,
+				params(HierarchicalClusterTaskParams.Linkage.SINGLE, new EuclideanNoNaN(), 1, false)));
+		assertEquals(1, dendrogram.getLeafCount());
+	}
+}
@@ -0,0 +1,277 @@
+package gov.pnnl.jac.cluster;
+
+import static gov.pnnl.jac.cluster.DendrogramAssert.assertSameDendrogram;
+import static gov.pnnl.jac.cluster.DendrogramAssert.assertSameGroupings;
+import static gov.pnnl.jac.cluster.DendrogramAssert.gaussianClusters;
+import static gov.pnnl.jac.cluster.DendrogramAssert.params;
+import static gov.pnnl.jac.cluster.DendrogramAssert.run;
+import static org.junit.Assert.assertEquals;
+
+import gov.pnnl.jac.geom.CoordinateList;
+import gov.pnnl.jac.geom.distance.AbstractDistanceFunc;
+import gov.pnnl.jac.geom.distance.DistanceCachePrecision;
+import gov.pnnl.jac.geom.distance.DistanceFunc;
+import gov.pnnl.jac.geom.distance.EuclideanNoNaN;
+import gov.pnnl.jac.task.TaskOutcome;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class StandardHierarchicalClusterTaskTest {
+
+	// Squared euclidean distances, which do not obey the triangle inequality.
+	private static class SquaredEuclidean extends AbstractDistanceFunc {
+		public double distanceBetween(double[] coord1, double[] coord2) {
+			double sum = 0.0;
+			for (int i=0; i<coord1.length; i++) {
+				double d = coord1[i] - coord2[i];
+				sum += d*d;
+			}
+			return sum;
+		}
+		public String methodName() {
+			return "squared euclidean";
+		}
+	}
+
+	private static StandardHierarchicalClusterTask newTask(CoordinateList cs,
+			HierarchicalClusterTaskParams.Linkage linkage, DistanceCachePrecision precision) {
+		return newTask(cs, linkage, new EuclideanNoNaN(), precision);
+	}
+
+	private static StandardHierarchicalClusterTask newTask(CoordinateList cs,
+			HierarchicalClusterTaskParams.Linkage linkage, DistanceFunc distanceFunc,
+			DistanceCachePrecision precision) {
+		StandardHierarchicalClusterTask task = new StandardHierarchicalClusterTask(cs,
+				params(linkage, distanceFunc, 2, false));
+		task.setDistanceCachePrecision(precision);
+		return task;
+	}
+
+	@Test
+	public void testWardShortRejected() {
+		CoordinateList cs = gaussianClusters(50, 4, 10L);
+		StandardHierarchicalClusterTask task = newTask(cs,
+				HierarchicalClusterTaskParams.Linkage.WARD, DistanceCachePrecision.SHORT);
+		task.run();
+		assertEquals(TaskOutcome.ERROR, task.getTaskOutcome());
+	}
+
+	@Test
+	public void testWardFloatSameAsDouble() {
+		CoordinateList cs = gaussianClusters(300, 8, 11L);
+		Dendrogram expected = run(newTask(cs,
+				HierarchicalClusterTaskParams.Linkage.WARD, DistanceCachePrecision.DOUBLE));
+		Dendrogram actual = run(newTask(cs,
+				HierarchicalClusterTaskParams.Linkage.WARD, DistanceCachePrecision.FLOAT));
+		assertSameDendrogram("ward", expected, actual, 1e-5);
+	}
+
+	@Test
+	public void testShortSameAsDouble() {
+		CoordinateList cs = gaussianClusters(300, 8, 12L);
+		HierarchicalClusterTaskParams.Linkage[] linkages = {
+				HierarchicalClusterTaskParams.Linkage.COMPLETE,
+				HierarchicalClusterTaskParams.Linkage.SINGLE,
+				HierarchicalClusterTaskParams.Linkage.MEAN,
+				HierarchicalClusterTaskParams.Linkage.AVERAGE };
+		for (HierarchicalClusterTaskParams.Linkage linkage : linkages) {
+			Dendrogram expected = run(newTask(cs, linkage, DistanceCachePrecision.DOUBLE));
+			Dendrogram actual = run(newTask(cs, linkage, DistanceCachePrecision.SHORT));
+			// Quantization may reorder merges at nearly equal distances, but
+			// not the merges of the well separated clusters, whose distances
+			// are within the quantization step, about 1e-3 here.
+			assertSameGroupings(linkage.toString(), expected, actual, 4, 1e-3);
+		}
+	}
+
+	@Test
+	public void testShortOutOfRangeRejected() {
+		CoordinateList cs = gaussianClusters(50, 4, 13L);
+		StandardHierarchicalClusterTask task = newTask(cs,
+				HierarchicalClusterTaskParams.Linkage.COMPLETE, new SquaredEuclidean(),
+				DistanceCachePrecision.SHORT);
+		task.run();
+		assertEquals(TaskOutcome.ERROR, task.getTaskOutcome());
+		// The same distances fit in a FLOAT cache.
+		run(newTask(cs, HierarchicalClusterTaskParams.Linkage.COMPLETE, new SquaredEuclidean(),
+				DistanceCachePrecision.FLOAT));
+	}
+
+	@Test
+	public void testFileCacheSameAsRAM() {
+		CoordinateList cs = gaussianClusters(200, 6, 14L);
+		for (HierarchicalClusterTaskParams.Linkage linkage : HierarchicalClusterTaskParams.Linkage.values()) {
+			for (DistanceCachePrecision precision : DistanceCachePrecision.values()) {
+				if (linkage == HierarchicalClusterTaskParams.Linkage.WARD &&
+						precision == DistanceCachePrecision.SHORT) {
+					continue;
+				}
+				Dendrogram expected = run(newTask(cs, linkage, precision));
+				StandardHierarchicalClusterTask task = newTask(cs, linkage, precision);
+				task.setDistanceCacheMemoryThreshold(0L);
+				assertSameDendrogram(linkage + ", " + precision, expected, run(task), 0.0);
+			}
+		}
+	}
+
+	// Merges clusters by brute force, the nearest two at a time, computing
+	// their distances from their definitions rather than by updating them.
+	// Returns the lowest leaf indices of the clusters merged at each level
+	// and the distances between them.
+	private static double[][] referenceMerges(CoordinateList cs, HierarchicalClusterTaskParams.Linkage linkage) {
+		int n = cs.getCoordinateCount();
+		int dim = cs.getDimensionCount();
+		EuclideanNoNaN distanceFunc = new EuclideanNoNaN();
+		double[][] coords = new double[n][dim];
+		for (int i=0; i<n; i++) {
+			cs.getCoordinates(i, coords[i]);
+		}
+		List<List<Integer>> clusters = new ArrayList<List<Integer>>();
+		for (int i=0; i<n; i++) {
+			List<Integer> cluster = new ArrayList<Integer>();
+			cluster.add(i);
+			clusters.add(cluster);
+		}
+		double[][] merges = new double[n-1][];
+		for (int level=0; level<n-1; level++) {
+			int best1 = -1, best2 = -1;
+			double bestDistance = Double.MAX_VALUE;
+			for (int a=0; a<clusters.size(); a++) {
+				for (int b=a+1; b<clusters.size(); b++) {
+					double d = clusterDistance(clusters.get(a), clusters.get(b), coords, distanceFunc, linkage);
+					if (d < bestDistance) {
+						bestDistance = d;
+						best1 = a;
+						best2 = b;
+					}
+				}
+			}
+			List<Integer> cluster1 = clusters.get(best1), cluster2 = clusters.remove(best2);
+			merges[level] = new double[] { cluster1.get(0), cluster2.get(0), bestDistance };
+			cluster1.addAll(cluster2);
+			// Keeps the lowest leaf index first.
+			Collections.sort(cluster1);
+		}
+		return merges;
+	}
+
+	private static double clusterDistance(List<Integer> cluster1, List<Integer> cluster2, double[][] coords,
+			EuclideanNoNaN distanceFunc, HierarchicalClusterTaskParams.Linkage linkage) {
+		if (linkage == HierarchicalClusterTaskParams.Linkage.AVERAGE) {
+			double sum = 0.0;
+			for (int i : cluster1) {
+				for (int j : cluster2) {
+					sum += distanceFunc.distanceBetween(coords[i], coords[j]);
+				}
+			}
+			return sum/(cluster1.size()*cluster2.size());
+		}
+		// Ward: the increase in the sum of squared distances from the center,
+		// scaled so the distance between single coordinates is euclidean.
+		double[] center1 = center(cluster1, coords), center2 = center(cluster2, coords);
+		double n1 = cluster1.size(), n2 = cluster2.size();
+		return Math.sqrt(2.0*n1*n2/(n1 + n2)) * distanceFunc.distanceBetween(center1, center2);
+	}
+
+	private static double[] center(List<Integer> cluster, double[][] coords) {
+		double[] center = new double[coords[0].length];
+		for (int i : cluster) {
+			for (int d=0; d<center.length; d++) {
+				center[d] += coords[i][d];
+			}
+		}
+		for (int d=0; d<center.length; d++) {
+			center[d] /= cluster.size();
+		}
+		return center;
+	}
+
+	@Test
+	public void testAverageAndWardSameAsReference() {
+		CoordinateList cs = gaussianClusters(80, 4, 15L);
+		HierarchicalClusterTaskParams.Linkage[] linkages = {
+				HierarchicalClusterTaskParams.Linkage.AVERAGE,
+				HierarchicalClusterTaskParams.Linkage.MEAN,
+				HierarchicalClusterTaskParams.Linkage.WARD };
+		for (HierarchicalClusterTaskParams.Linkage linkage : linkages) {
+			double[][] expected = referenceMerges(cs, linkage == HierarchicalClusterTaskParams.Linkage.MEAN ?
+					HierarchicalClusterTaskParams.Linkage.AVERAGE : linkage);
+			for (DistanceCachePrecision precision : new DistanceCachePrecision[] {
+					DistanceCachePrecision.DOUBLE, DistanceCachePrecision.FLOAT }) {
+				Dendrogram dendrogram = run(newTask(cs, linkage, precision));
+				double tolerance = precision == DistanceCachePrecision.DOUBLE ? 1e-9 : 1e-5;
+				for (int k=0; k<expected.length; k++) {
+					// Level 0 is the root, so the first merge is at the bottom.
+					int level = expected.length - 1 - k;
+					String where = linkage + ", " + precision + ", level " + level;
+					int id1 = dendrogram.getLeftChildID(level), id2 = dendrogram.getRightChildID(level);
+					assertEquals(where, (int) Math.min(expected[k][0], expected[k][1]), Math.min(id1, id2));
+					assertEquals(where, (int) Math.max(expected[k][0], expected[k][1]), Math.max(id1, id2));
+					assertEquals(where, expected[k][2], dendrogram.getNode(level).distance(),
+							tolerance*Math.max(1.0, expected[k][2]));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testCandidateListsSameAsNone() {
+		CoordinateList cs = gaussianClusters(250, 6, 16L);
+		for (HierarchicalClusterTaskParams.Linkage linkage : HierarchicalClusterTaskParams.Linkage.values()) {
+			for (DistanceCachePrecision precision : DistanceCachePrecision.values()) {
+				if (linkage == HierarchicalClusterTaskParams.Linkage.WARD &&
+						precision == DistanceCachePrecision.SHORT) {
+					continue;
+				}
+				Dendrogram expected = run(newTask(cs, linkage, precision));
+				// Lists of 2 candidates, which are often used up, and of the most.
+				for (int candidates : new int[] { 2, StandardHierarchicalClusterTask.MAX_NEAREST_NEIGHBOR_CANDIDATES }) {
+					StandardHierarchicalClusterTask task = newTask(cs, linkage, precision);
+					task.setNearestNeighborCandidateMemory(12L * cs.getCoordinateCount() * candidates);
+					assertSameDendrogram(linkage + ", " + precision + ", " + candidates + " candidates",
+							expected, run(task), 0.0);
+				}
+			}
+		}
+	}
+
+	// Cached sparsely if both are given, with the threshold if it is
+	// positive and otherwise the nearest neighbors.
+	private static Dendrogram tiled(CoordinateList cs, HierarchicalClusterTaskParams.Linkage linkage,
+			int workerThreads, double sparseThreshold, int sparseNeighbors) {
+		StandardHierarchicalClusterTask task = new StandardHierarchicalClusterTask(cs,
+				params(linkage, new EuclideanNoNaN(), workerThreads, false));
+		if (sparseThreshold > 0.0 || sparseNeighbors > 0) {
+			task.setDistanceCacheMemoryThreshold(0L);
+			task.setDistanceCacheFileThreshold(0L);
+			if (sparseThreshold > 0.0) {
+				task.setSparseDistanceThreshold(sparseThreshold);
+			} else {
+				task.setSparseNearestNeighbors(sparseNeighbors);
+			}
+		}
+		return run(task);
+	}
+
+	@Test
+	public void testTiledInitializationIndependentOfThreads() {
+		// Several rows of tiles, the last partial.
+		CoordinateList cs = gaussianClusters(700, 6, 17L);
+		HierarchicalClusterTaskParams.Linkage[] linkages = {
+				HierarchicalClusterTaskParams.Linkage.COMPLETE,
+				HierarchicalClusterTaskParams.Linkage.SINGLE,
+				HierarchicalClusterTaskParams.Linkage.AVERAGE };
+		for (HierarchicalClusterTaskParams.Linkage linkage : linkages) {
+			assertSameDendrogram(linkage + ", dense", tiled(cs, linkage, 1, 0.0, 0),
+					tiled(cs, linkage, 4, 0.0, 0), 0.0);
+			assertSameDendrogram(linkage + ", threshold", tiled(cs, linkage, 1, 3.0, 0),
+					tiled(cs, linkage, 4, 3.0, 0), 0.0);
+			assertSameDendrogram(linkage + ", neighbors", tiled(cs, linkage, 1, 0.0, 8),
+					tiled(cs, linkage, 4, 0.0, 8), 0.0);
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package gov.pnnl.jac.geom;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FloatCoordinateListTest {
+
+	@Rule
+	public TemporaryFolder mFolder = new TemporaryFolder();
+
+	private static double[][] values(int count, int dim, long seed) {
+		Random random = new Random(seed);
+		double[][] values = new double[count][dim];
+		for (int i=0; i<count; i++) {
+			for (int d=0; d<dim; d++) {
+				values[i][d] = random.nextGaussian()*100.0;
+			}
+		}
+		// Missing values are kept.
+		values[count/2][0] = Double.NaN;
+		return values;
+	}
+
+	// Sets the values as doubles and checks that they read back as the
+	// floats nearest to them, both as doubles and as floats.
+	private static void assertStoresFloats(CoordinateList cs, double[][] values) {
+		int dim = values[0].length;
+		for (int i=0; i<values.length; i++) {
+			cs.setCoordinates(i, values[i]);
+		}
+		FloatCoordinateList fcs = (FloatCoordinateList) cs;
+		double[] coords = new double[dim];
+		float[] fcoords = new float[dim];
+		for (int i=0; i<values.length; i++) {
+			cs.getCoordinates(i, coords);
+			fcs.getCoordinates(i, fcoords);
+			for (int d=0; d<dim; d++) {
+				float expected = (float) values[i][d];
+				assertEquals(expected, coords[d], 0.0);
+				assertEquals(expected, fcoords[d], 0.0f);
+				assertEquals(expected, cs.getCoordinate(i, d), 0.0);
+			}
+		}
+		int[] indices = { 0, 3, 5 };
+		double[] average = cs.computeAverage(indices, null);
+		for (int d=1; d<dim; d++) {
+			double sum = 0.0;
+			for (int i : indices) {
+				sum += (float) values[i][d];
+			}
+			assertEquals(sum/indices.length, average[d], 1e-9*Math.abs(sum));
+		}
+	}
+
+	@Test
+	public void testSimpleStoresFloats() {
+		double[][] values = values(40, 7, 1L);
+		assertStoresFloats(new SimpleFloatCoordinateList(7, 40), values);
+	}
+
+	@Test
+	public void testFileMappedStoresFloats() throws IOException {
+		double[][] values = values(40, 7, 2L);
+		File file = mFolder.newFile("floats.dat");
+		try (FileMappedFloatCoordinateList cs = FileMappedFloatCoordinateList.createNew(file, 7, 40)) {
+			assertStoresFloats(cs, values);
+		}
+		// The file holds the same format as SimpleFloatCoordinateList saves.
+		SimpleFloatCoordinateList loaded = SimpleFloatCoordinateList.load(file);
+		for (int i=0; i<values.length; i++) {
+			assertArrayEquals(loaded.getCoordinates(i, (float[]) null), toFloats(values[i]), 0.0f);
+		}
+	}
+
+	@Test
+	public void testFileMappedClose() throws IOException {
+		File file = mFolder.newFile("floats.dat");
+		FileMappedFloatCoordinateList cs = FileMappedFloatCoordinateList.createNew(file, 3, 5);
+		assertTrue(cs.isOpen());
+		cs.close();
+		assertFalse(cs.isOpen());
+		// Closing again does nothing, and the list can be reopened.
+		cs.close();
+		cs.openFile();
+		assertTrue(cs.isOpen());
+		assertEquals(5, cs.getCoordinateCount());
+		cs.close();
+		assertTrue(file.delete());
+	}
+
+	private static float[] toFloats(double[] values) {
+		float[] rtn = new float[values.length];
+		for (int i=0; i<values.length; i++) {
+			rtn[i] = (float) values[i];
+		}
+		return rtn;
+	}
+}
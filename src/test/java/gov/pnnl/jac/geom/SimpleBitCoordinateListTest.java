@@ -0,0 +1,63 @@
+package gov.pnnl.jac.geom;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SimpleBitCoordinateListTest {
+
+	@Test
+	public void testBitsReadAsZerosAndOnes() {
+		SimpleBitCoordinateList cs = new SimpleBitCoordinateList(150, 2);
+		assertEquals(3, cs.getWordCount());
+		double[] coords = new double[150];
+		coords[0] = 1.0;
+		coords[63] = -2.5;
+		coords[64] = 0.5;
+		coords[149] = 7.0;
+		coords[100] = Double.NaN;
+		cs.setCoordinates(1, coords);
+		double[] expected = new double[150];
+		expected[0] = expected[63] = expected[64] = expected[149] = 1.0;
+		assertArrayEquals(expected, cs.getCoordinates(1, null), 0.0);
+		assertArrayEquals(new double[150], cs.getCoordinates(0, null), 0.0);
+		// Dimension d is bit d % 64 of word d / 64.
+		long[] words = cs.getBits(1, null);
+		assertArrayEquals(new long[] { 1L | (1L << 63), 1L, 1L << (149 - 128) }, words);
+		assertEquals(1.0, cs.getCoordinate(1, 149), 0.0);
+		assertEquals(0.0, cs.getCoordinate(1, 100), 0.0);
+	}
+
+	@Test
+	public void testSameAsDoubles() {
+		Random random = new Random(3L);
+		SimpleBitCoordinateList bits = new SimpleBitCoordinateList(130, 40);
+		SimpleCoordinateList doubles = new SimpleCoordinateList(130, 40);
+		double[] coords = new double[130];
+		for (int i=0; i<40; i++) {
+			for (int d=0; d<130; d++) {
+				coords[d] = random.nextInt(3) == 0 ? 1.0 : 0.0;
+			}
+			if (i % 2 == 0) {
+				bits.setCoordinates(i, coords);
+			} else {
+				// Through the packed words instead.
+				SimpleBitCoordinateList one = new SimpleBitCoordinateList(130, 1);
+				one.setCoordinates(0, coords);
+				bits.setBits(i, one.getBits(0, null));
+			}
+			doubles.setCoordinates(i, coords);
+		}
+		for (int i=0; i<40; i++) {
+			assertArrayEquals(doubles.getCoordinates(i, null), bits.getCoordinates(i, null), 0.0);
+		}
+		for (int d=0; d<130; d++) {
+			assertArrayEquals(doubles.getDimensionValues(d, null), bits.getDimensionValues(d, null), 0.0);
+		}
+		int[] indices = { 1, 4, 9, 16, 25, 36 };
+		assertArrayEquals(doubles.computeAverage(indices, null), bits.computeAverage(indices, null), 1e-15);
+	}
+}
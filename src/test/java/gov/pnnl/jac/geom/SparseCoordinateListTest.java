@@ -0,0 +1,54 @@
+package gov.pnnl.jac.geom;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class SparseCoordinateListTest {
+
+	private static SparseCoordinateList list() {
+		SparseCoordinateList cs = new SparseCoordinateList();
+		cs.setCoordinates(0, new double[] { 0.0, 0.0, 2.0, 0.0 });
+		cs.setCoordinates(1, new double[] { 0.0, 3.0, 0.0, 4.0 });
+		cs.setCoordinates(2, new double[] { 5.0, 0.0, 0.0, 0.0 });
+		return cs;
+	}
+
+	@Test
+	public void testSetCoordinatesOverwrites() {
+		SparseCoordinateList cs = list();
+		cs.setCoordinates(1, new double[] { 6.0, 0.0, 7.0, 0.0 });
+		assertEquals(3, cs.getCoordinateCount());
+		assertArrayEquals(new double[] { 6.0, 0.0, 7.0, 0.0 }, cs.getCoordinates(1, null), 0.0);
+		assertArrayEquals(new double[] { 0.0, 0.0, 2.0, 0.0 }, cs.getCoordinates(0, null), 0.0);
+		assertArrayEquals(new double[] { 5.0, 0.0, 0.0, 0.0 }, cs.getCoordinates(2, null), 0.0);
+	}
+
+	@Test
+	public void testGetCoordinatesClearsBuffer() {
+		SparseCoordinateList cs = list();
+		double[] buffer = new double[4];
+		Arrays.fill(buffer, 9.0);
+		assertSame(buffer, cs.getCoordinates(0, buffer));
+		assertArrayEquals(new double[] { 0.0, 0.0, 2.0, 0.0 }, buffer, 0.0);
+		cs.getCoordinates(1, buffer);
+		assertArrayEquals(new double[] { 0.0, 3.0, 0.0, 4.0 }, buffer, 0.0);
+	}
+
+	@Test
+	public void testGetCoordinateQuickSearchesDimension() {
+		SparseCoordinateList cs = list();
+		double[] coords = new double[4];
+		for (int i=0; i<3; i++) {
+			cs.getCoordinates(i, coords);
+			for (int d=0; d<4; d++) {
+				assertEquals("coordinate " + i + ", dimension " + d, coords[d],
+						cs.getCoordinateQuick(i, d), 0.0);
+			}
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package gov.pnnl.jac.geom.distance;
+
+import static org.junit.Assert.assertEquals;
+
+import gov.pnnl.jac.geom.SimpleBitCoordinateList;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BitDistanceFuncTest {
+
+	@Test
+	public void testTanimotoSameAsDoubles() {
+		Random random = new Random(4L);
+		TanimotoNoNaN tanimoto = new TanimotoNoNaN();
+		for (int t=0; t<200; t++) {
+			int dim = 1 + random.nextInt(300);
+			// Sparse and dense fingerprints, including empty ones.
+			int density = 1 + t % 8;
+			SimpleBitCoordinateList cs = new SimpleBitCoordinateList(dim, 2);
+			double[][] coords = new double[2][dim];
+			for (int i=0; i<2; i++) {
+				for (int d=0; d<dim; d++) {
+					coords[i][d] = random.nextInt(density + 1) == 0 ? 1.0 : 0.0;
+				}
+				if (t % 17 == i) {
+					coords[i] = new double[dim];
+				}
+				cs.setCoordinates(i, coords[i]);
+			}
+			assertEquals("trial " + t, tanimoto.distanceBetween(coords[0], coords[1]),
+					tanimoto.distanceBetween(cs.getBits(0, null), cs.getBits(1, null)), 0.0);
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package gov.pnnl.jac.geom.distance;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+/**
+ * Fixed distances and checks of what distance caches return for them,
+ * shared by the distance cache tests.
+ */
+final class DistanceCacheAssert {
+
+	// The greatest of the distances below, for SHORT caches.
+	static final double MAX_DISTANCE = 10.0;
+
+	private DistanceCacheAssert() {
+	}
+
+	// Distances in (0, MAX_DISTANCE], without any pattern in the positions.
+	static double distance(int i, int j) {
+		return MAX_DISTANCE * (1 + (31*i + 17*j + i*j) % 997)/997.0;
+	}
+
+	/**
+	 * Sets the distances of the first half of the indices one at a time, and
+	 * the rest row by row.
+	 */
+	static void fill(DistanceCache cache) throws IOException {
+		int indexCount = cache.getNumIndices();
+		for (int i=0; i<indexCount/2; i++) {
+			for (int j=i+1; j<indexCount; j++) {
+				cache.setDistance(i, j, distance(i, j));
+			}
+		}
+		for (int i=indexCount/2; i<indexCount-1; i++) {
+			int count = indexCount - 1 - i;
+			int[] indices1 = new int[count];
+			int[] indices2 = new int[count];
+			double[] distances = new double[count];
+			for (int k=0; k<count; k++) {
+				// Reversed, so the indices are given in both orders.
+				indices1[k] = i + 1 + k;
+				indices2[k] = i;
+				distances[k] = distance(i, i + 1 + k);
+			}
+			cache.setDistances(indices1, indices2, distances);
+		}
+	}
+
+	/**
+	 * Asserts that every way of reading the distances of a cache filled by
+	 * <code>fill()</code> returns them as stored in the precision, SHORT
+	 * distances having been quantized up to MAX_DISTANCE.
+	 */
+	static void assertFilled(String msg, DistanceCache cache, DistanceCachePrecision precision)
+		throws IOException {
+		int indexCount = cache.getNumIndices();
+		assertEquals(msg, (long) indexCount * (indexCount - 1)/2, cache.getNumDistances());
+		double[] row = new double[indexCount];
+		for (int i=0; i<indexCount-1; i++) {
+			int count = indexCount - 1 - i;
+			int[] indices1 = new int[count];
+			int[] indices2 = new int[count];
+			for (int k=0; k<count; k++) {
+				indices1[k] = i;
+				indices2[k] = i + 1 + k;
+			}
+			double[] distances = cache.getDistances(indices1, indices2, null);
+			cache.getDistances(cache.distancePos(i, i + 1), row, 1, count);
+			for (int k=0; k<count; k++) {
+				int j = i + 1 + k;
+				String where = msg + ", (" + i + ", " + j + ")";
+				double expected = cache.getDistance(i, j);
+				assertStored(where, distance(i, j), expected, precision);
+				assertEquals(where, expected, cache.getDistance(j, i), 0.0);
+				assertEquals(where, expected, cache.getDistance(cache.distancePos(i, j)), 0.0);
+				assertEquals(where, expected, distances[k], 0.0);
+				assertEquals(where, expected, row[1 + k], 0.0);
+			}
+		}
+	}
+
+	/**
+	 * Asserts that a distance was stored as it should be in the precision.
+	 */
+	static void assertStored(String msg, double distance, double stored, DistanceCachePrecision precision) {
+		switch (precision) {
+		case FLOAT:
+			assertEquals(msg, (float) distance, stored, 0.0);
+			break;
+		case SHORT:
+			// Within half a level, allowing for rounding in the scaling.
+			double halfStep = 0.5*MAX_DISTANCE/ShortRAMDistanceCache.MAX_LEVEL;
+			assertEquals(msg, distance, stored, halfStep*(1.0 + 1e-9));
+			break;
+		default:
+			assertEquals(msg, distance, stored, 0.0);
+		}
+	}
+}
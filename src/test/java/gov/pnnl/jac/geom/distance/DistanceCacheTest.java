@@ -0,0 +1,58 @@
+package gov.pnnl.jac.geom.distance;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class DistanceCacheTest {
+
+	// Relies on the default bulk read of the interface.
+	private static class Delegate implements DistanceCache {
+		private final DistanceCache mCache;
+		Delegate(DistanceCache cache) {
+			mCache = cache;
+		}
+		public int getNumIndices() {
+			return mCache.getNumIndices();
+		}
+		public double getDistance(int index1, int index2) throws IOException {
+			return mCache.getDistance(index1, index2);
+		}
+		public double[] getDistances(int[] indices1, int[] indices2, double[] distances) throws IOException {
+			return mCache.getDistances(indices1, indices2, distances);
+		}
+		public long getNumDistances() {
+			return mCache.getNumDistances();
+		}
+		public double getDistance(long n) throws IOException {
+			return mCache.getDistance(n);
+		}
+		public long distancePos(int index1, int index2) {
+			return mCache.distancePos(index1, index2);
+		}
+		public void setDistance(int index1, int index2, double distance) throws IOException {
+			mCache.setDistance(index1, index2, distance);
+		}
+		public void setDistances(int[] indices1, int[] indices2, double[] distances) throws IOException {
+			mCache.setDistances(indices1, indices2, distances);
+		}
+	}
+
+	@Test
+	public void testDefaultBulkReadSameAsCache() throws IOException {
+		RAMDistanceCache cache = new RAMDistanceCache(30);
+		DistanceCacheAssert.fill(cache);
+		Delegate delegate = new Delegate(cache);
+		for (int i=0; i<29; i++) {
+			long pos = cache.distancePos(i, i + 1);
+			int count = 29 - i;
+			double[] expected = new double[count + 2];
+			double[] actual = new double[count + 2];
+			cache.getDistances(pos, expected, 2, count);
+			delegate.getDistances(pos, actual, 2, count);
+			assertArrayEquals(expected, actual, 0.0);
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package gov.pnnl.jac.geom.distance;
+
+import static gov.pnnl.jac.geom.distance.DistanceCacheAssert.MAX_DISTANCE;
+import static gov.pnnl.jac.geom.distance.DistanceCacheAssert.assertFilled;
+import static gov.pnnl.jac.geom.distance.DistanceCacheAssert.fill;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileDistanceCacheTest {
+
+	private static final int INDEX_COUNT = 150;
+
+	@Rule
+	public TemporaryFolder mFolder = new TemporaryFolder();
+
+	private FileDistanceCache newCache(DistanceCachePrecision precision) throws IOException {
+		FileDistanceCache cache = new FileDistanceCache(INDEX_COUNT, mFolder.newFile(precision + ".dcache"),
+				precision, MAX_DISTANCE);
+		fill(cache);
+		return cache;
+	}
+
+	@Test
+	public void testDistancesStored() throws IOException {
+		for (DistanceCachePrecision precision : DistanceCachePrecision.values()) {
+			FileDistanceCache cache = newCache(precision);
+			assertEquals(precision, DistanceCachePrecision.of(cache));
+			assertFilled(precision.toString(), cache, precision);
+			// Unmapped and mapped again when next used.
+			cache.closeFile();
+			assertFalse(cache.isOpen());
+			assertFilled(precision + " reopened", cache, precision);
+			assertTrue(cache.isOpen());
+			cache.closeFile();
+		}
+	}
+
+	@Test
+	public void testRead() throws IOException {
+		for (DistanceCachePrecision precision : DistanceCachePrecision.values()) {
+			FileDistanceCache cache = newCache(precision);
+			cache.closeFile();
+			File f = cache.getFile();
+			// Into memory, then left in the file.
+			DistanceCache ramCache = DistanceCacheFactory.read(f, Long.MAX_VALUE, Long.MAX_VALUE);
+			assertFilled(precision + " in memory", ramCache, precision);
+			DistanceCache fileCache = DistanceCacheFactory.read(f, 0L, Long.MAX_VALUE);
+			assertTrue(fileCache instanceof FileDistanceCache);
+			assertFilled(precision + " in the file", fileCache, precision);
+			((FileDistanceCache) fileCache).closeFile();
+		}
+	}
+
+	@Test
+	public void testConcurrentReads() throws Exception {
+		final FileDistanceCache cache = newCache(DistanceCachePrecision.DOUBLE);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for (int t=0; t<4; t++) {
+				futures.add(executor.submit(new Callable<Void>() {
+					public Void call() throws IOException {
+						for (int pass=0; pass<5; pass++) {
+							assertFilled("concurrent", cache, DistanceCachePrecision.DOUBLE);
+						}
+						return null;
+					}
+				}));
+			}
+			// Rethrows any failure of the readers.
+			for (Future<Void> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+			cache.closeFile();
+		}
+	}
+}
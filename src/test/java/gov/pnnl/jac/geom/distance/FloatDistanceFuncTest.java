@@ -0,0 +1,66 @@
+package gov.pnnl.jac.geom.distance;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class FloatDistanceFuncTest {
+
+	private static float[] floats(Random random, int dim, double scale) {
+		float[] rtn = new float[dim];
+		for (int d=0; d<dim; d++) {
+			rtn[d] = (float) (scale*random.nextGaussian());
+		}
+		return rtn;
+	}
+
+	private static double[] widen(float[] coord) {
+		double[] rtn = new double[coord.length];
+		for (int d=0; d<coord.length; d++) {
+			rtn[d] = coord[d];
+		}
+		return rtn;
+	}
+
+	// The float kernels compute in doubles, so their distances are those of
+	// the widened coordinates, up to the order in which terms are summed.
+	private static void assertSameAsWidened(FloatDistanceFunc distanceFunc) {
+		Random random = new Random(5L);
+		for (int t=0; t<200; t++) {
+			int dim = 1 + random.nextInt(40);
+			double scale = t % 3 == 0 ? 1.0e-30 : (t % 3 == 1 ? 1.0 : 1.0e30);
+			float[] coord1 = floats(random, dim, scale);
+			float[] coord2 = floats(random, dim, scale);
+			double[] center = widen(floats(random, dim, scale));
+			String msg = distanceFunc.methodName() + ", trial " + t;
+			double expected = distanceFunc.distanceBetween(widen(coord1), widen(coord2));
+			assertEquals(msg, expected, distanceFunc.distanceBetween(coord1, coord2),
+					1e-12*expected);
+			expected = distanceFunc.distanceBetween(widen(coord1), center);
+			assertEquals(msg, expected, distanceFunc.distanceBetween(coord1, center),
+					1e-12*expected);
+		}
+	}
+
+	@Test
+	public void testEuclidean() {
+		assertSameAsWidened(new EuclideanNoNaN());
+	}
+
+	@Test
+	public void testManhattan() {
+		assertSameAsWidened(new ManhattanNoNaN());
+	}
+
+	@Test
+	public void testChebyshev() {
+		assertSameAsWidened(new ChebyshevNoNaN());
+	}
+
+	@Test
+	public void testCosine() {
+		assertSameAsWidened(new Cosine());
+	}
+}
@@ -0,0 +1,31 @@
+package gov.pnnl.jac.geom.distance;
+
+import static gov.pnnl.jac.geom.distance.DistanceCacheAssert.assertFilled;
+import static gov.pnnl.jac.geom.distance.DistanceCacheAssert.fill;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class FloatRAMDistanceCacheTest {
+
+	@Test
+	public void testDistancesRounded() throws IOException {
+		FloatRAMDistanceCache cache = new FloatRAMDistanceCache(100);
+		fill(cache);
+		assertFilled("float", cache, DistanceCachePrecision.FLOAT);
+		assertEquals(DistanceCachePrecision.FLOAT, DistanceCachePrecision.of(cache));
+	}
+
+	@Test
+	public void testSameAsDoubleCacheRounded() throws IOException {
+		RAMDistanceCache expected = new RAMDistanceCache(100);
+		fill(expected);
+		FloatRAMDistanceCache cache = new FloatRAMDistanceCache(100);
+		fill(cache);
+		for (long n=0; n<expected.getNumDistances(); n++) {
+			assertEquals((float) expected.getDistance(n), cache.getDistance(n), 0.0);
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package gov.pnnl.jac.geom.distance;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class NormedDistanceFuncTest {
+
+	private static double[] coords(Random random, int dim, double scale) {
+		double[] rtn = new double[dim];
+		for (int d=0; d<dim; d++) {
+			rtn[d] = scale*random.nextGaussian();
+		}
+		return rtn;
+	}
+
+	// Compares the methods taking norms with those without, on rows of a
+	// block generated by the given scales, within the tolerance.
+	private static void assertSameWithNorms(NormedDistanceFunc distanceFunc, double[] scales,
+			double nanFraction, double tolerance) {
+		Random random = new Random(9L);
+		for (int t=0; t<100; t++) {
+			int dim = 1 + random.nextInt(60);
+			double scale = scales[t % scales.length];
+			double[] coord = coords(random, dim, scale);
+			int count = 1 + random.nextInt(10);
+			double[] block = new double[count*dim];
+			double[][] rows = new double[count][];
+			double[] blockNorms = new double[count];
+			for (int j=0; j<count; j++) {
+				rows[j] = j == 0 ? new double[dim] : coords(random, dim, scale);
+				if (random.nextDouble() < nanFraction) {
+					rows[j][random.nextInt(dim)] = Double.NaN;
+				}
+				System.arraycopy(rows[j], 0, block, j*dim, dim);
+				blockNorms[j] = distanceFunc.norm(rows[j]);
+			}
+			double norm = distanceFunc.norm(coord);
+			double[] expected = new double[count];
+			double[] actual = new double[count];
+			distanceFunc.distancesBetween(coord, block, 0, count, expected);
+			distanceFunc.distancesBetween(coord, norm, block, blockNorms, 0, count, actual);
+			for (int j=0; j<count; j++) {
+				String msg = distanceFunc.methodName() + ", trial " + t + ", row " + j;
+				assertEquals(msg, distanceFunc.distanceBetween(coord, rows[j]), expected[j], tolerance);
+				assertEquals(msg, expected[j], actual[j], tolerance);
+				assertEquals(msg, expected[j],
+						distanceFunc.distanceBetween(coord, norm, rows[j], blockNorms[j]), tolerance);
+			}
+		}
+	}
+
+	@Test
+	public void testCosine() {
+		assertSameWithNorms(new Cosine(), new double[] { 1.0, 1.0e-3, 1.0e3 }, 0.0, 1e-12);
+	}
+
+	@Test
+	public void testCosineUnusableNorms() {
+		Cosine cosine = new Cosine();
+		// The norms of coordinates with NaNs or extreme lengths are NaN, so
+		// the methods with norms fall back to those without.
+		assertTrue(Double.isNaN(cosine.norm(new double[] { 1.0, Double.NaN })));
+		assertTrue(Double.isNaN(cosine.norm(new double[] { 1.0e-60, 1.0e-60 })));
+		assertTrue(Double.isNaN(cosine.norm(new double[] { 1.0e60, 1.0e60 })));
+		assertSameWithNorms(cosine, new double[] { 1.0e-150, 1.0e150 }, 0.0, 0.0);
+		assertSameWithNorms(cosine, new double[] { 1.0 }, 0.5, 1e-12);
+	}
+
+	@Test
+	public void testTanimoto() {
+		assertSameWithNorms(new TanimotoNoNaN(), new double[] { 1.0, 1.0e-3, 1.0e3 }, 0.0, 1e-12);
+	}
+}
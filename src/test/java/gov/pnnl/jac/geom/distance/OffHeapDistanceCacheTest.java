@@ -0,0 +1,48 @@
+package gov.pnnl.jac.geom.distance;
+
+import static gov.pnnl.jac.geom.distance.DistanceCacheAssert.MAX_DISTANCE;
+import static gov.pnnl.jac.geom.distance.DistanceCacheAssert.assertFilled;
+import static gov.pnnl.jac.geom.distance.DistanceCacheAssert.fill;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class OffHeapDistanceCacheTest {
+
+	private static final int INDEX_COUNT = 150;
+
+	// The factory only creates off-heap caches for more indices than RAM
+	// caches allow, too many to test, so they are created directly.
+
+	@Test
+	public void testDistancesStored() throws IOException {
+		for (DistanceCachePrecision precision : DistanceCachePrecision.values()) {
+			OffHeapDistanceCache cache = new OffHeapDistanceCache(INDEX_COUNT, precision, MAX_DISTANCE);
+			fill(cache);
+			assertEquals(precision, DistanceCachePrecision.of(cache));
+			assertFilled(precision.toString(), cache, precision);
+		}
+	}
+
+	@Test
+	public void testSameAsRAMCaches() throws IOException {
+		DistanceCache[] expected = { new RAMDistanceCache(INDEX_COUNT),
+				new FloatRAMDistanceCache(INDEX_COUNT), new ShortRAMDistanceCache(INDEX_COUNT, MAX_DISTANCE) };
+		for (DistanceCache ramCache : expected) {
+			DistanceCachePrecision precision = DistanceCachePrecision.of(ramCache);
+			OffHeapDistanceCache cache = new OffHeapDistanceCache(INDEX_COUNT, precision, MAX_DISTANCE);
+			fill(ramCache);
+			fill(cache);
+			for (long n=0; n<cache.getNumDistances(); n++) {
+				assertEquals(precision.toString(), ramCache.getDistance(n), cache.getDistance(n), 0.0);
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidMaxDistance() {
+		new OffHeapDistanceCache(INDEX_COUNT, DistanceCachePrecision.SHORT, 0.0);
+	}
+}
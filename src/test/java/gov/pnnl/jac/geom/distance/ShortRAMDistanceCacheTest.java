@@ -0,0 +1,40 @@
+package gov.pnnl.jac.geom.distance;
+
+import static gov.pnnl.jac.geom.distance.DistanceCacheAssert.MAX_DISTANCE;
+import static gov.pnnl.jac.geom.distance.DistanceCacheAssert.assertFilled;
+import static gov.pnnl.jac.geom.distance.DistanceCacheAssert.fill;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class ShortRAMDistanceCacheTest {
+
+	@Test
+	public void testDistancesQuantized() throws IOException {
+		ShortRAMDistanceCache cache = new ShortRAMDistanceCache(100, MAX_DISTANCE);
+		fill(cache);
+		assertFilled("short", cache, DistanceCachePrecision.SHORT);
+		assertEquals(DistanceCachePrecision.SHORT, DistanceCachePrecision.of(cache));
+	}
+
+	@Test
+	public void testEndpoints() throws IOException {
+		ShortRAMDistanceCache cache = new ShortRAMDistanceCache(4, MAX_DISTANCE);
+		cache.setDistance(0, 1, 0.0);
+		cache.setDistance(0, 2, MAX_DISTANCE);
+		cache.setDistance(0, 3, -1.0);
+		cache.setDistance(1, 2, 2.0*MAX_DISTANCE);
+		assertEquals(0.0, cache.getDistance(0, 1), 0.0);
+		assertEquals(MAX_DISTANCE, cache.getDistance(0, 2), 0.0);
+		// Outside of the range, the nearer endpoint.
+		assertEquals(0.0, cache.getDistance(0, 3), 0.0);
+		assertEquals(MAX_DISTANCE, cache.getDistance(1, 2), 0.0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidMaxDistance() {
+		new ShortRAMDistanceCache(4, Double.POSITIVE_INFINITY);
+	}
+}
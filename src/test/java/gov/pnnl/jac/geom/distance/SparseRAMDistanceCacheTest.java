@@ -0,0 +1,90 @@
+package gov.pnnl.jac.geom.distance;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SparseRAMDistanceCacheTest {
+
+	private static final int INDEX_COUNT = 40;
+
+	// Distances with many ties, as between points on a small lattice.
+	private static double distance(int i, int j) {
+		return Math.abs(i % 7 - j % 7) + Math.abs(i / 7 - j / 7);
+	}
+
+	private static SparseRAMDistanceCache fill(long seed, int k) {
+		List<int[]> pairs = new ArrayList<int[]>();
+		for (int i=0; i<INDEX_COUNT; i++) {
+			for (int j=i+1; j<INDEX_COUNT; j++) {
+				pairs.add(new int[] { i, j });
+			}
+		}
+		Collections.shuffle(pairs, new Random(seed));
+		SparseRAMDistanceCache cache = new SparseRAMDistanceCache(INDEX_COUNT,
+				SparseRAMDistanceCache.MISSING, k);
+		for (int[] pair : pairs) {
+			cache.setDistance(pair[0], pair[1], distance(pair[0], pair[1]));
+		}
+		cache.finishSelection();
+		return cache;
+	}
+
+	@Test
+	public void testSelectionIndependentOfOrder() {
+		for (int k=1; k<=3; k++) {
+			SparseRAMDistanceCache expected = fill(0L, k);
+			for (long seed=1L; seed<=5L; seed++) {
+				SparseRAMDistanceCache cache = fill(seed, k);
+				assertEquals(expected.getStoredDistanceCount(), cache.getStoredDistanceCount());
+				for (int i=0; i<INDEX_COUNT; i++) {
+					for (int j=i+1; j<INDEX_COUNT; j++) {
+						assertEquals("k = " + k + ", (" + i + ", " + j + ")",
+								expected.getDistance(i, j), cache.getDistance(i, j), 0.0);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testNearestNeighborKept() {
+		for (long seed=0L; seed<5L; seed++) {
+			SparseRAMDistanceCache cache = fill(seed, 1);
+			for (int i=0; i<INDEX_COUNT; i++) {
+				// The lowest index at the least distance.
+				int nearest = -1;
+				for (int j=0; j<INDEX_COUNT; j++) {
+					if (j != i && (nearest < 0 || distance(i, j) < distance(i, nearest))) {
+						nearest = j;
+					}
+				}
+				assertEquals(distance(i, nearest), cache.getDistance(i, nearest), 0.0);
+			}
+		}
+	}
+
+	@Test
+	public void testThreshold() {
+		SparseRAMDistanceCache cache = new SparseRAMDistanceCache(INDEX_COUNT, 2.0);
+		for (int i=0; i<INDEX_COUNT; i++) {
+			for (int j=i+1; j<INDEX_COUNT; j++) {
+				cache.setDistance(i, j, distance(i, j));
+			}
+		}
+		for (int i=0; i<INDEX_COUNT; i++) {
+			for (int j=i+1; j<INDEX_COUNT; j++) {
+				double d = distance(i, j);
+				assertEquals(d <= 2.0 ? d : SparseRAMDistanceCache.MISSING, cache.getDistance(i, j), 0.0);
+			}
+		}
+		cache.setDistance(0, 1, Double.NaN);
+		assertTrue(cache.getDistance(0, 1) == SparseRAMDistanceCache.MISSING);
+	}
+}
@@ -0,0 +1,91 @@
+package gov.pnnl.jac.geom.distance;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SquaredDistanceFuncTest {
+
+	private static double[] coords(Random random, int dim, double nanFraction) {
+		double[] rtn = new double[dim];
+		for (int d=0; d<dim; d++) {
+			rtn[d] = random.nextDouble() < nanFraction ? Double.NaN : 10.0*random.nextGaussian();
+		}
+		return rtn;
+	}
+
+	// Euclidean distances as computed before the NaN-free fast path: the
+	// squares of the differences are summed over the dimensions where neither
+	// coordinate is NaN and scaled up for the others, by the whole part of
+	// the ratio as before.  Returns NaN when they have no dimension in common,
+	// where Euclidean uses replacement values that this doesn't know.
+	private static double reference(double[] coord1, double[] coord2) {
+		final int dim = coord1.length;
+		int nanDimensions = 0;
+		double distSq = 0.0;
+		for (int i=0; i<dim; i++) {
+			double d = coord2[i] - coord1[i];
+			if (!Double.isNaN(d)) {
+				distSq += d*d;
+			} else {
+				nanDimensions++;
+			}
+		}
+		if (nanDimensions == dim) {
+			return Double.NaN;
+		}
+		if (nanDimensions > 0) {
+			distSq *= dim/(dim - nanDimensions);
+		}
+		return Math.sqrt(distSq);
+	}
+
+	private static void assertSameAsReference(SquaredDistanceFunc distanceFunc, double nanFraction) {
+		Random random = new Random(7L);
+		for (int t=0; t<100; t++) {
+			int dim = 1 + random.nextInt(80);
+			double[] coord = coords(random, dim, nanFraction);
+			int count = 1 + random.nextInt(10);
+			double[] block = new double[count*dim];
+			double[][] rows = new double[count][];
+			for (int j=0; j<count; j++) {
+				rows[j] = coords(random, dim, nanFraction);
+				System.arraycopy(rows[j], 0, block, j*dim, dim);
+			}
+			double[] distances = new double[count];
+			double[] squared = new double[count];
+			distanceFunc.distancesBetween(coord, block, 0, count, distances);
+			distanceFunc.squaredDistancesBetween(coord, block, 0, count, squared);
+			for (int j=0; j<count; j++) {
+				String msg = distanceFunc.methodName() + ", trial " + t + ", row " + j;
+				double expected = reference(coord, rows[j]);
+				if (Double.isNaN(expected)) {
+					continue;
+				}
+				double tolerance = 1e-12*expected;
+				assertEquals(msg, expected, distanceFunc.distanceBetween(coord, rows[j]), tolerance);
+				assertEquals(msg, expected, distances[j], tolerance);
+				assertEquals(msg, expected*expected,
+						distanceFunc.squaredDistanceBetween(coord, rows[j]), 2.0*tolerance*expected);
+				assertEquals(msg, expected*expected, squared[j], 2.0*tolerance*expected);
+			}
+		}
+	}
+
+	@Test
+	public void testEuclideanWithoutNaNs() {
+		assertSameAsReference(new Euclidean(), 0.0);
+	}
+
+	@Test
+	public void testEuclideanWithNaNs() {
+		assertSameAsReference(new Euclidean(), 0.1);
+	}
+
+	@Test
+	public void testEuclideanNoNaN() {
+		assertSameAsReference(new EuclideanNoNaN(), 0.0);
+	}
+}
@@ -0,0 +1,75 @@
+package gov.pnnl.jac.task;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class TaskSchedulerTest {
+
+	private static List<Callable<Integer>> subtasks(int count) {
+		List<Callable<Integer>> subtasks = new ArrayList<Callable<Integer>>();
+		for (int i=0; i<count; i++) {
+			final int n = i;
+			subtasks.add(new Callable<Integer>() {
+				public Integer call() {
+					return n;
+				}
+			});
+		}
+		return subtasks;
+	}
+
+	@Test
+	public void testOldPoolUsableAfterParallelismChanged() throws Exception {
+		int parallelism = TaskScheduler.getSubtaskParallelism();
+		ForkJoinPool oldPool = TaskScheduler.getSubtaskPool();
+		try {
+			TaskScheduler.setSubtaskParallelism(parallelism + 1);
+			assertFalse(oldPool.isShutdown());
+			List<Future<Integer>> results = oldPool.invokeAll(subtasks(4));
+			for (int i=0; i<4; i++) {
+				assertEquals(i, results.get(i).get().intValue());
+			}
+			ForkJoinPool newPool = TaskScheduler.getSubtaskPool();
+			assertNotSame(oldPool, newPool);
+			assertEquals(parallelism + 1, newPool.getParallelism());
+		} finally {
+			TaskScheduler.setSubtaskParallelism(parallelism);
+		}
+	}
+
+	@Test
+	public void testNestedSubtasksStayOnTheirPool() throws Exception {
+		int parallelism = TaskScheduler.getSubtaskParallelism();
+		final ForkJoinPool pool = TaskScheduler.getSubtaskPool();
+		try {
+			List<Callable<ForkJoinPool>> outer = new ArrayList<Callable<ForkJoinPool>>();
+			outer.add(new Callable<ForkJoinPool>() {
+				public ForkJoinPool call() throws Exception {
+					// Replaced while this subtask runs.
+					TaskScheduler.setSubtaskParallelism(pool.getParallelism() + 1);
+					List<Callable<ForkJoinPool>> inner = new ArrayList<Callable<ForkJoinPool>>();
+					inner.add(new Callable<ForkJoinPool>() {
+						public ForkJoinPool call() {
+							return ((ForkJoinWorkerThread) Thread.currentThread()).getPool();
+						}
+					});
+					return TaskScheduler.invokeSubtasks(inner).get(0).get();
+				}
+			});
+			assertSame(pool, TaskScheduler.invokeSubtasks(outer).get(0).get());
+		} finally {
+			TaskScheduler.setSubtaskParallelism(parallelism);
+		}
+	}
+}